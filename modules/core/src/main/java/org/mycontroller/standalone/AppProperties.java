@@ -18,9 +18,12 @@ package org.mycontroller.standalone;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.Properties;
 
 import org.apache.commons.io.FileUtils;
+import org.mycontroller.standalone.McThreadPoolFactory.POOL_TYPE;
+import org.mycontroller.standalone.McThreadPoolFactory.REJECTION_POLICY;
 import org.mycontroller.standalone.db.LoggerMySql;
 import org.mycontroller.standalone.settings.BackupSettings;
 import org.mycontroller.standalone.settings.EmailSettings;
@@ -89,9 +92,28 @@ public class AppProperties {
     private String mcPersistentStoresLocation;
     private Boolean clearMessagesQueueOnStart;
     private Boolean clearSmartSleepMsgQueueOnStart;
+    private Boolean smartSleepDedupSetMessages;
 
     private Boolean mDNSserviceEnabled = false;
 
+    private Integer resourcesLogsQueueSize;
+    private Boolean resourcesLogsDropOnFull;
+    private Integer metricsWriteBufferSize;
+    private Long metricsWriteBufferFlushInterval;
+    private Integer metricsAggregationParallelism;
+    private Integer metricsHotCacheSize;
+    private Integer metricsHotCacheSamples;
+    private Integer operationThreads;
+    private Integer operationQueueSize;
+    private Long operationTimeout;
+    private Integer operationRetryMax;
+    private Long operationRetryBackoff;
+
+    private HashMap<POOL_TYPE, Integer> threadPoolMaximumSize = new HashMap<POOL_TYPE, Integer>();
+    private HashMap<POOL_TYPE, Integer> threadPoolQueueSize = new HashMap<POOL_TYPE, Integer>();
+    private HashMap<POOL_TYPE, REJECTION_POLICY> threadPoolRejectionPolicy =
+            new HashMap<POOL_TYPE, REJECTION_POLICY>();
+
     private boolean googleAnalyticsEnabled = true;
 
     MyControllerSettings controllerSettings;
@@ -514,12 +536,65 @@ public class AppProperties {
                 "mcc.clear.message.queue.on.start", "true"));
         clearSmartSleepMsgQueueOnStart = McUtils.getBoolean(getValue(properties,
                 "mcc.clear.smart.sleep.msg.queue.on.start", "true"));
+        smartSleepDedupSetMessages = McUtils.getBoolean(getValue(properties,
+                "mcc.smart.sleep.msg.dedup.set", "false"));
         //mDNS service, enabled or disabled
         mDNSserviceEnabled = McUtils.getBoolean(getValue(properties,
                 "mcc.mdns.service.enable", "false"));
 
         googleAnalyticsEnabled = McUtils.getBoolean(getValue(properties,
                 "mcc.collect.anonymous.data", "true"));
+
+        //Resources logs queue, drop or wait when the queue is full
+        resourcesLogsQueueSize = McUtils.getInteger(getValue(properties,
+                "mcc.resources.logs.queue.size", "10000"));
+        resourcesLogsDropOnFull = McUtils.getBoolean(getValue(properties,
+                "mcc.resources.logs.drop.on.full", "true"));
+
+        //Metrics write buffer of the built-in metric engine
+        metricsWriteBufferSize = McUtils.getInteger(getValue(properties,
+                "mcc.metrics.write.buffer.size", "500"));
+        metricsWriteBufferFlushInterval = McUtils.getLong(getValue(properties,
+                "mcc.metrics.write.buffer.flush.interval", "1000"));
+        //Metrics aggregation partitions, 0 - number of processors (up to 4)
+        metricsAggregationParallelism = McUtils.getInteger(getValue(properties,
+                "mcc.metrics.aggregation.parallelism", "0"));
+        if (metricsAggregationParallelism <= 0) {
+            metricsAggregationParallelism = Math.min(Runtime.getRuntime().availableProcessors(), 4);
+        }
+        //Last value and recent samples of sensor variables
+        metricsHotCacheSize = McUtils.getInteger(getValue(properties,
+                "mcc.metrics.hot.cache.size", "1000"));
+        metricsHotCacheSamples = McUtils.getInteger(getValue(properties,
+                "mcc.metrics.hot.cache.samples", "500"));
+        //Operations of triggered rules, per operation type
+        operationThreads = McUtils.getInteger(getValue(properties, "mcc.operation.threads", "2"));
+        operationQueueSize = McUtils.getInteger(getValue(properties, "mcc.operation.queue.size", "100"));
+        operationTimeout = McUtils.getLong(getValue(properties, "mcc.operation.timeout", "30000"));
+        operationRetryMax = McUtils.getInteger(getValue(properties, "mcc.operation.retry.max", "2"));
+        operationRetryBackoff = McUtils.getLong(getValue(properties, "mcc.operation.retry.backoff", "1000"));
+
+        //Thread pools, "mcc.thread.pool.io_listener.queue.size"
+        for (POOL_TYPE poolType : POOL_TYPE.values()) {
+            String prefix = "mcc.thread.pool." + poolType.getText();
+            threadPoolMaximumSize.put(poolType, McUtils.getInteger(getValue(properties,
+                    prefix + ".max.size", String.valueOf(poolType.getMaximumSize()))));
+            threadPoolQueueSize.put(poolType, McUtils.getInteger(getValue(properties,
+                    prefix + ".queue.size", String.valueOf(poolType.getQueueSize()))));
+            REJECTION_POLICY rejectionPolicy = REJECTION_POLICY.fromString(getValue(properties,
+                    prefix + ".rejection.policy", poolType.getRejectionPolicy().getText()));
+            if (rejectionPolicy == null) {
+                rejectionPolicy = poolType.getRejectionPolicy();
+            }
+            // without a queue there is no oldest task to discard
+            if (rejectionPolicy == REJECTION_POLICY.DISCARD_OLDEST && getThreadPoolQueueSize(poolType) <= 0) {
+                _logger.error("Rejection policy {} needs a queue, queue size of {} is {}. Using {}",
+                        rejectionPolicy.getText(), prefix, getThreadPoolQueueSize(poolType),
+                        REJECTION_POLICY.DISCARD.getText());
+                rejectionPolicy = REJECTION_POLICY.DISCARD;
+            }
+            threadPoolRejectionPolicy.put(poolType, rejectionPolicy);
+        }
     }
 
     public void createDirectoryLocation(String directoryLocation) {
@@ -808,6 +883,10 @@ public class AppProperties {
         return clearSmartSleepMsgQueueOnStart;
     }
 
+    public Boolean getSmartSleepDedupSetMessages() {
+        return smartSleepDedupSetMessages;
+    }
+
     public String getMcPersistentStoresLocation() {
         return mcPersistentStoresLocation;
     }
@@ -816,6 +895,69 @@ public class AppProperties {
         return getMcPersistentStoresLocation() + "/mqtt_clients/";
     }
 
+    public Integer getResourcesLogsQueueSize() {
+        return resourcesLogsQueueSize;
+    }
+
+    public Boolean getResourcesLogsDropOnFull() {
+        return resourcesLogsDropOnFull;
+    }
+
+    public Integer getMetricsWriteBufferSize() {
+        return metricsWriteBufferSize;
+    }
+
+    public Long getMetricsWriteBufferFlushInterval() {
+        return metricsWriteBufferFlushInterval;
+    }
+
+    public Integer getMetricsAggregationParallelism() {
+        return metricsAggregationParallelism;
+    }
+
+    public Integer getMetricsHotCacheSize() {
+        return metricsHotCacheSize;
+    }
+
+    public Integer getMetricsHotCacheSamples() {
+        return metricsHotCacheSamples;
+    }
+
+    public Integer getOperationThreads() {
+        return operationThreads;
+    }
+
+    public Integer getOperationQueueSize() {
+        return operationQueueSize;
+    }
+
+    public Long getOperationTimeout() {
+        return operationTimeout;
+    }
+
+    public Integer getOperationRetryMax() {
+        return operationRetryMax;
+    }
+
+    public Long getOperationRetryBackoff() {
+        return operationRetryBackoff;
+    }
+
+    public int getThreadPoolMaximumSize(POOL_TYPE poolType) {
+        Integer size = threadPoolMaximumSize.get(poolType);
+        return size != null ? size : poolType.getMaximumSize();
+    }
+
+    public int getThreadPoolQueueSize(POOL_TYPE poolType) {
+        Integer size = threadPoolQueueSize.get(poolType);
+        return size != null ? size : poolType.getQueueSize();
+    }
+
+    public REJECTION_POLICY getThreadPoolRejectionPolicy(POOL_TYPE poolType) {
+        REJECTION_POLICY rejectionPolicy = threadPoolRejectionPolicy.get(poolType);
+        return rejectionPolicy != null ? rejectionPolicy : poolType.getRejectionPolicy();
+    }
+
     public boolean isMDNSserviceEnabled() {
         return mDNSserviceEnabled;
     }
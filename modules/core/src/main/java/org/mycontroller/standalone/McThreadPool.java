@@ -0,0 +1,181 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mycontroller.standalone.McThreadPoolFactory.POOL_TYPE;
+import org.mycontroller.standalone.McThreadPoolFactory.REJECTION_POLICY;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Thread pool of a workload class, keeps rejected tasks count and recent tasks latency
+ * (queue wait + execution).
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+@Slf4j
+public class McThreadPool extends ThreadPoolExecutor {
+    private static final int KEEP_ALIVE_TIME = 60;
+    private static final int LATENCY_SAMPLES = 1024;
+
+    private final POOL_TYPE type;
+    private final REJECTION_POLICY rejectionPolicy;
+    private final int sizeQueueMaximum;
+    private final AtomicLong countRejected = new AtomicLong();
+    private final AtomicLong countSamples = new AtomicLong();
+    // nanoseconds, ring buffer of the recent tasks
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+
+    // implemented by the tasks which keep a state until they run, called when a task is dropped without running
+    public interface DiscardAware {
+        void discarded();
+    }
+
+    public McThreadPool(POOL_TYPE type, int coreSize, int maximumSize, int queueSize,
+            REJECTION_POLICY rejectionPolicy) {
+        super(Math.min(coreSize, maximumSize), maximumSize, KEEP_ALIVE_TIME, TimeUnit.SECONDS,
+                getWorkQueue(queueSize),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("mc-" + type.getText() + "-%d")
+                        .setUncaughtExceptionHandler(new McUncaughtException())
+                        .build());
+        this.type = type;
+        this.rejectionPolicy = rejectionPolicy;
+        this.sizeQueueMaximum = queueSize;
+        setRejectedExecutionHandler(new CountingRejectionHandler());
+        allowCoreThreadTimeOut(true);
+    }
+
+    // queue size 0, hands off the task directly to a thread
+    private static BlockingQueue<Runnable> getWorkQueue(int queueSize) {
+        if (queueSize <= 0) {
+            return new SynchronousQueue<Runnable>();
+        }
+        return new ArrayBlockingQueue<Runnable>(queueSize);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        super.execute(new TimedTask(command));
+    }
+
+    private void record(long latency) {
+        int index = (int) (countSamples.getAndIncrement() % LATENCY_SAMPLES);
+        latencies[index] = latency;
+    }
+
+    public McThreadPoolStatistics getStatistics() {
+        int samples = (int) Math.min(countSamples.get(), LATENCY_SAMPLES);
+        long[] _latencies = Arrays.copyOf(latencies, samples);
+        Arrays.sort(_latencies);
+        return McThreadPoolStatistics.builder()
+                .name(type.getText())
+                .rejectionPolicy(rejectionPolicy.getText())
+                .sizeCore(getCorePoolSize())
+                .sizeMaximum(getMaximumPoolSize())
+                .sizePool(getPoolSize())
+                .countActive(getActiveCount())
+                .sizeQueue(getQueue().size())
+                .sizeQueueMaximum(sizeQueueMaximum)
+                .countCompleted(getCompletedTaskCount())
+                .countRejected(countRejected.get())
+                .timeP99(samples > 0 ? toMilliseconds(_latencies[(int) Math.ceil(samples * 0.99) - 1]) : 0)
+                .timeMax(samples > 0 ? toMilliseconds(_latencies[samples - 1]) : 0)
+                .build();
+    }
+
+    private double toMilliseconds(long nanoseconds) {
+        return nanoseconds / 1000000.0;
+    }
+
+    private class TimedTask implements Runnable {
+        private final Runnable command;
+        private final long timeQueued = System.nanoTime();
+
+        private TimedTask(Runnable command) {
+            this.command = command;
+        }
+
+        @Override
+        public void run() {
+            try {
+                command.run();
+            } finally {
+                record(System.nanoTime() - timeQueued);
+            }
+        }
+    }
+
+    private static void discarded(Runnable task) {
+        if (task instanceof TimedTask && ((TimedTask) task).command instanceof DiscardAware) {
+            ((DiscardAware) ((TimedTask) task).command).discarded();
+        }
+    }
+
+    private class CountingRejectionHandler implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            long count = countRejected.incrementAndGet();
+            // avoid log flooding on bursts
+            if (count % 1000 == 1) {
+                _logger.warn("Thread pool[{}] is full, policy:{}, rejected tasks so far:{}", type.getText(),
+                        rejectionPolicy.getText(), count);
+            }
+            switch (rejectionPolicy) {
+                case CALLER_RUNS:
+                    if (!executor.isShutdown()) {
+                        task.run();
+                    } else {
+                        discarded(task);
+                    }
+                    break;
+                case DISCARD:
+                    discarded(task);
+                    break;
+                case DISCARD_OLDEST:
+                    // retried once, the task is dropped when there is no oldest task or the queue is full again
+                    Runnable oldest = executor.isShutdown() ? null : executor.getQueue().poll();
+                    if (oldest == null) {
+                        discarded(task);
+                    } else {
+                        discarded(oldest);
+                        if (!executor.getQueue().offer(task)) {
+                            countRejected.incrementAndGet();
+                            discarded(task);
+                        }
+                    }
+                    break;
+                case ABORT:
+                default:
+                    throw new RejectedExecutionException("Thread pool[" + type.getText() + "] is full");
+            }
+        }
+    }
+}
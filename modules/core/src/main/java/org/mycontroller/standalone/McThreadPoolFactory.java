@@ -16,51 +16,147 @@
  */
 package org.mycontroller.standalone;
 
+import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import lombok.extern.slf4j.Slf4j;
+
 /**
+ * Separate thread pools for each workload class, long running listeners do not hold the slots of the short
+ * tasks and a burst on one class does not reject the tasks of the others.
+ *
  * @author Jeeva Kandasamy (jkandasa)
  * @since 1.2.0
  */
-import java.lang.Thread.UncaughtExceptionHandler;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+public class McThreadPoolFactory {
+    private static final ConcurrentHashMap<POOL_TYPE, McThreadPool> _EXECUTORS =
+            new ConcurrentHashMap<POOL_TYPE, McThreadPool>();
 
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
+    public enum POOL_TYPE {
+        IO_LISTENER("io_listener", 2, 100, 0, REJECTION_POLICY.ABORT),
+        DEPENDENT_TASK("dependent_task", 4, 16, 1000, REJECTION_POLICY.CALLER_RUNS),
+        OUTBOUND("outbound", 2, 8, 500, REJECTION_POLICY.DISCARD_OLDEST),
+        GENERAL("general", 10, 70, 100, REJECTION_POLICY.ABORT);
 
-import lombok.extern.slf4j.Slf4j;
+        private final String value;
+        private final int coreSize;
+        private final int maximumSize;
+        private final int queueSize;
+        private final REJECTION_POLICY rejectionPolicy;
 
-public class McThreadPoolFactory {
-    private static final int CORE_POOL_SIZE = 10;
-    private static final int MAXIMUM_POOL_SIZE = 70;
-    private static final int KEEP_ALIVE_TIME = 60;
-
-    private static final ThreadFactory _THREAD_FACTORY = new ThreadFactoryBuilder()
-            .setNameFormat("mc-th-pool-%d")
-            .setUncaughtExceptionHandler(new McUncaughtException())
-            .build();
-    private static final BlockingQueue<Runnable> _WORK_QUEUE = new ArrayBlockingQueue<Runnable>(100);
-    private static final ThreadPoolExecutor _EXECUTOR = new ThreadPoolExecutor(
-            CORE_POOL_SIZE,
-            MAXIMUM_POOL_SIZE,
-            KEEP_ALIVE_TIME, TimeUnit.SECONDS,
-            _WORK_QUEUE,
-            _THREAD_FACTORY);
+        private POOL_TYPE(String value, int coreSize, int maximumSize, int queueSize,
+                REJECTION_POLICY rejectionPolicy) {
+            this.value = value;
+            this.coreSize = coreSize;
+            this.maximumSize = maximumSize;
+            this.queueSize = queueSize;
+            this.rejectionPolicy = rejectionPolicy;
+        }
+
+        public String getText() {
+            return this.value;
+        }
+
+        public int getCoreSize() {
+            return coreSize;
+        }
+
+        public int getMaximumSize() {
+            return maximumSize;
+        }
+
+        public int getQueueSize() {
+            return queueSize;
+        }
+
+        public REJECTION_POLICY getRejectionPolicy() {
+            return rejectionPolicy;
+        }
+    }
+
+    public enum REJECTION_POLICY {
+        ABORT("Abort"),
+        CALLER_RUNS("CallerRuns"),
+        DISCARD("Discard"),
+        DISCARD_OLDEST("DiscardOldest");
+
+        private final String value;
+
+        private REJECTION_POLICY(String value) {
+            this.value = value;
+        }
+
+        public String getText() {
+            return this.value;
+        }
+
+        public static REJECTION_POLICY fromString(String text) {
+            if (text != null) {
+                for (REJECTION_POLICY type : REJECTION_POLICY.values()) {
+                    if (text.equalsIgnoreCase(type.getText())) {
+                        return type;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    // pools are created on the first use, after the properties are loaded. lock taken only on creation
+    private static McThreadPool getExecutor(POOL_TYPE type) {
+        McThreadPool _executor = _EXECUTORS.get(type);
+        if (_executor != null && !_executor.isShutdown()) {
+            return _executor;
+        }
+        return createExecutor(type);
+    }
+
+    private static synchronized McThreadPool createExecutor(POOL_TYPE type) {
+        McThreadPool _executor = _EXECUTORS.get(type);
+        if (_executor == null || _executor.isShutdown()) {
+            AppProperties _properties = AppProperties.getInstance();
+            _executor = new McThreadPool(type, type.getCoreSize(),
+                    _properties.getThreadPoolMaximumSize(type),
+                    _properties.getThreadPoolQueueSize(type),
+                    _properties.getThreadPoolRejectionPolicy(type));
+            _EXECUTORS.put(type, _executor);
+        }
+        return _executor;
+    }
 
     public static void execute(Runnable command) {
-        _EXECUTOR.execute(command);
+        execute(POOL_TYPE.GENERAL, command);
+    }
+
+    public static void execute(POOL_TYPE type, Runnable command) {
+        getExecutor(type).execute(command);
+    }
+
+    public static synchronized List<McThreadPoolStatistics> getStatistics() {
+        List<McThreadPoolStatistics> statistics = new ArrayList<McThreadPoolStatistics>();
+        for (POOL_TYPE type : POOL_TYPE.values()) {
+            if (_EXECUTORS.get(type) != null) {
+                statistics.add(_EXECUTORS.get(type).getStatistics());
+            }
+        }
+        return statistics;
     }
 
-    public static void shutdown() {
-        if (!_EXECUTOR.isShutdown()) {
-            _EXECUTOR.shutdown();
+    public static synchronized void shutdown() {
+        for (McThreadPool _executor : _EXECUTORS.values()) {
+            if (!_executor.isShutdown()) {
+                _executor.shutdown();
+            }
         }
     }
 
-    public static void shutdownNow() {
-        if (!_EXECUTOR.isShutdown()) {
-            _EXECUTOR.shutdownNow();
+    public static synchronized void shutdownNow() {
+        for (McThreadPool _executor : _EXECUTORS.values()) {
+            if (!_executor.isShutdown()) {
+                _executor.shutdownNow();
+            }
         }
     }
 }
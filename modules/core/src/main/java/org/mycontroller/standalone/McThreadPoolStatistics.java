@@ -0,0 +1,46 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.ToString;
+
+/**
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+@Data
+@ToString
+@Builder
+@AllArgsConstructor
+public class McThreadPoolStatistics {
+    private String name;
+    private String rejectionPolicy;
+    private int sizeCore;
+    private int sizeMaximum;
+    private int sizePool;
+    private int countActive;
+    private int sizeQueue;
+    private int sizeQueueMaximum;
+    private long countCompleted;
+    private long countRejected;
+    // milliseconds, recent 1024 tasks
+    private double timeP99;
+    private double timeMax;
+}
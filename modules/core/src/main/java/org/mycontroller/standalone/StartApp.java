@@ -70,6 +70,7 @@ import org.mycontroller.standalone.api.jaxrs.mixins.McJacksonJson2Provider;
 import org.mycontroller.standalone.auth.BasicAthenticationSecurityDomain;
 import org.mycontroller.standalone.auth.McContainerRequestFilter;
 import org.mycontroller.standalone.db.DataBaseUtils;
+import org.mycontroller.standalone.db.ResourcesRegistry;
 import org.mycontroller.standalone.externalserver.ExternalServerFactory;
 import org.mycontroller.standalone.gateway.GatewayUtils;
 import org.mycontroller.standalone.mdns.McmDNSFactory;
@@ -79,6 +80,10 @@ import org.mycontroller.standalone.offheap.OffHeapFactory;
 import org.mycontroller.standalone.onetime.ExecuteOneTime;
 import org.mycontroller.standalone.onetime.RemoveCorruptedResources;
 import org.mycontroller.standalone.onetime.ResetPassword;
+import org.mycontroller.standalone.operation.McOperationDispatcher;
+import org.mycontroller.standalone.provider.ResourcesLogsPipeline;
+import org.mycontroller.standalone.rule.McRuleRegistry;
+import org.mycontroller.standalone.rule.McRuleStateStore;
 import org.mycontroller.standalone.scheduler.SchedulerUtils;
 import org.mycontroller.standalone.scripts.McScriptEngineUtils;
 import org.mycontroller.standalone.settings.SettingsUtils;
@@ -322,6 +327,15 @@ public class StartApp {
         // - Start MQTT Broker
         MoquetteMqttBroker.start();
 
+        // - Start resources registry, flushes gateway updates to database
+        ResourcesRegistry.getInstance().start();
+
+        // - Start rule state store, checkpoints dampening and trigger state of rules
+        McRuleStateStore.getInstance().start();
+
+        // - Start resources logs pipeline
+        ResourcesLogsPipeline.getInstance().start();
+
         //Start all the gateways
         GatewayUtils.loadEngineAll();
 
@@ -365,6 +379,10 @@ public class StartApp {
         // - clear external servers
         // - Stop scheduler
         // - Stop GatewayTable Listener
+        // - Stop resources logs pipeline
+        // - Flush resources registry
+        // - Stop operation dispatcher
+        // - Flush rule state store
         // - Stop MQTT broker
         // - Stop message Monitor Thread
         // - Clear Raw Message Queue (Optional)
@@ -374,6 +392,11 @@ public class StartApp {
         ExternalServerFactory.clearDrivers();
         SchedulerUtils.stop();
         GatewayUtils.unloadEngineAll();
+        ResourcesLogsPipeline.getInstance().stop();
+        ResourcesRegistry.getInstance().stop();
+        McOperationDispatcher.getInstance().stop();
+        McRuleStateStore.getInstance().stop();
+        McRuleRegistry.getInstance().invalidateAll();
         MoquetteMqttBroker.stop();
         MetricsUtils.shutdownEngine();
         OffHeapFactory.close();
@@ -25,6 +25,7 @@ import org.mycontroller.restclient.core.RestHttpClient;
 import org.mycontroller.restclient.core.TRUST_HOST_TYPE;
 import org.mycontroller.standalone.AppProperties;
 import org.mycontroller.standalone.McThreadPoolFactory;
+import org.mycontroller.standalone.McThreadPoolFactory.POOL_TYPE;
 import org.mycontroller.standalone.api.jaxrs.ScriptsHandler;
 import org.mycontroller.standalone.api.jaxrs.TemplatesHandler;
 import org.mycontroller.standalone.api.jaxrs.model.Query;
@@ -366,7 +367,7 @@ public class GoogleAnalyticsApi extends RestHttpClient {
             return;
         }
 
-        McThreadPoolFactory.execute(new Runnable() {
+        McThreadPoolFactory.execute(POOL_TYPE.OUTBOUND, new Runnable() {
             @Override
             public void run() {
                 try {
@@ -383,7 +384,7 @@ public class GoogleAnalyticsApi extends RestHttpClient {
             return;
         }
 
-        McThreadPoolFactory.execute(new Runnable() {
+        McThreadPoolFactory.execute(POOL_TYPE.OUTBOUND, new Runnable() {
             @Override
             public void run() {
                 try {
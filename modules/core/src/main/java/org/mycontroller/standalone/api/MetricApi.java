@@ -19,7 +19,9 @@ package org.mycontroller.standalone.api;
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.script.ScriptException;
 
@@ -36,8 +38,14 @@ import org.mycontroller.standalone.db.tables.SensorVariable;
 import org.mycontroller.standalone.db.tables.UidTag;
 import org.mycontroller.standalone.exceptions.McBadRequestException;
 import org.mycontroller.standalone.metrics.DATA_TYPE;
+import org.mycontroller.standalone.metrics.McMetricsHotCache;
 import org.mycontroller.standalone.metrics.MetricsUtils;
 import org.mycontroller.standalone.metrics.MetricsUtils.METRIC_TYPE;
+import org.mycontroller.standalone.metrics.engine.McInfluxDBPipelineStatistics;
+import org.mycontroller.standalone.metrics.engine.McMetricsAggregationBase;
+import org.mycontroller.standalone.metrics.engine.McMetricsAggregationStatistics;
+import org.mycontroller.standalone.metrics.engine.McMetricsWriteBuffer;
+import org.mycontroller.standalone.metrics.engine.MetricEngineInfluxDB;
 import org.mycontroller.standalone.metrics.model.Criteria;
 import org.mycontroller.standalone.metrics.model.MetricDouble;
 import org.mycontroller.standalone.model.ResourceCountModel;
@@ -61,6 +69,17 @@ public class MetricApi {
         return new ResourceCountModel(resourceType, resourceId);
     }
 
+    public McMetricsAggregationStatistics getAggregationStatistics() {
+        return McMetricsAggregationBase.getStatistics();
+    }
+
+    public McInfluxDBPipelineStatistics getInfluxDBStatistics() throws McBadRequestException {
+        if (!(MetricsUtils.engine() instanceof MetricEngineInfluxDB)) {
+            throw new McBadRequestException("InfluxDB is not the active metric engine!");
+        }
+        return ((MetricEngineInfluxDB) MetricsUtils.engine()).getPipelineStatistics();
+    }
+
     public MetricDouble getSensorVariableMetricDouble(SensorVariable sensorVariable, Long start,
             Long end) {
         Criteria criteria = Criteria.builder()
@@ -68,9 +87,20 @@ public class MetricApi {
                 .end(end)
                 .resourceModel(new ResourceModel(RESOURCE_TYPE.SENSOR_VARIABLE, sensorVariable))
                 .build();
-        //Query from metric engine
-
-        DataPointDouble metric = (DataPointDouble) MetricsUtils.engine().get(criteria);
+        //Recent samples from the hot cache, otherwise query from metric engine
+        DataPointDouble metric = null;
+        MetricsDoubleTypeDevice recent = null;
+        if (start != null && end != null) {
+            recent = McMetricsHotCache.getInstance().getMinMaxAvg(sensorVariable.getId(), start, end);
+        }
+        if (recent != null && recent.getSamples() == 0) {
+            // no sample on the range, same as the metric engine returns
+            metric = DataPointDouble.get((MetricsDoubleTypeDevice) null, criteria.getStart(), criteria.getEnd());
+        } else if (recent != null) {
+            metric = DataPointDouble.get(recent, criteria.getStart(), criteria.getEnd());
+        } else {
+            metric = (DataPointDouble) MetricsUtils.engine().get(criteria);
+        }
         MetricDouble metricDouble = null;
         //If current value not available, do not allow any value
         if (sensorVariable.getValue() == null || metric.getMin() == null) {
@@ -156,8 +186,12 @@ public class MetricApi {
         }
         Double value = null;
         for (SensorVariable sVariable : sVariables) {
-            if (sVariable.getValue() != null) {
-                value = McUtils.round(McUtils.getDouble(sVariable.getValue()) / upperLimit, 2);
+            String currentValue = McMetricsHotCache.getInstance().getValue(sVariable.getId());
+            if (currentValue == null) {
+                currentValue = sVariable.getValue();
+            }
+            if (currentValue != null) {
+                value = McUtils.round(McUtils.getDouble(currentValue) / upperLimit, 2);
                 mcHeatMap.add(McHeatMap.builder()
                         .id(sVariable.getId().longValue())
                         .altId(sVariable.getSensor().getId().longValue())
@@ -261,6 +295,7 @@ public class MetricApi {
 
     public List<MetricsDoubleTypeDevice> getMetricsDoubleData(SensorVariable sensorVariable,
             Long start, Long end) {
+        McMetricsWriteBuffer.getInstance().flush();
         return DaoUtils.getMetricsDoubleTypeDeviceDao().getAll(
                 MetricsDoubleTypeDevice.builder()
                         .sensorVariable(sensorVariable)
@@ -270,6 +305,7 @@ public class MetricApi {
 
     public List<MetricsBatteryUsage> getMetricsBatteryUsage(Node node,
             Long start, Long end) {
+        McMetricsWriteBuffer.getInstance().flush();
         return DaoUtils.getMetricsBatteryUsageDao().getAll(
                 MetricsBatteryUsage.builder()
                         .node(node)
@@ -285,6 +321,7 @@ public class MetricApi {
         if (start != null) {
             binaryTypeDevice.setStart(start);
         }
+        McMetricsWriteBuffer.getInstance().flush();
         return DaoUtils.getMetricsBinaryTypeDeviceDao().getAll(binaryTypeDevice);
     }
 
@@ -325,6 +362,53 @@ public class MetricApi {
 
     public List<?> getMetricData(ResourceModel resourceModel, Long start, Long end, String duration,
             String bucketDuration, DATA_TYPE dataType) throws McBadRequestException {
+        return MetricsUtils.engine().list(getCriteria(resourceModel, start, end, duration, bucketDuration,
+                dataType));
+    }
+
+    // metric data of sensor variables with a single engine request, key: sensor variable id
+    public Map<Integer, List<?>> getMetricData(List<SensorVariable> sensorVariables, Long start, Long end,
+            String duration, String bucketDurationDouble, String bucketDurationCounter, String bucketDurationBinary)
+            throws McBadRequestException {
+        List<Integer> ids = new ArrayList<Integer>();
+        List<Criteria> criteriaList = new ArrayList<Criteria>();
+        for (SensorVariable sensorVariable : sensorVariables) {
+            String bucketDuration = null;
+            switch (sensorVariable.getMetricType()) {
+                case DOUBLE:
+                    bucketDuration = bucketDurationDouble;
+                    break;
+                case COUNTER:
+                    bucketDuration = bucketDurationCounter;
+                    break;
+                case BINARY:
+                    bucketDuration = bucketDurationBinary;
+                    break;
+                default:
+                    break;
+            }
+            if (bucketDuration == null) {
+                continue;
+            }
+            ids.add(sensorVariable.getId());
+            criteriaList.add(getCriteria(
+                    getResourceModel(sensorVariable.getId(), RESOURCE_TYPE.SENSOR_VARIABLE.getText(), null),
+                    start, end, duration, bucketDuration, DATA_TYPE.SENSOR_VARIABLE));
+        }
+        Map<Integer, List<?>> metricsData = new HashMap<Integer, List<?>>();
+        if (criteriaList.isEmpty()) {
+            return metricsData;
+        }
+        List<List<?>> results = MetricsUtils.engine().list(criteriaList);
+        for (int index = 0; index < ids.size(); index++) {
+            metricsData.put(ids.get(index), results.get(index));
+        }
+        return metricsData;
+    }
+
+    // validates the request and resolves start and end from the duration
+    public Criteria getCriteria(ResourceModel resourceModel, Long start, Long end, String duration,
+            String bucketDuration, DATA_TYPE dataType) throws McBadRequestException {
         if (bucketDuration == null) {
             throw new McBadRequestException(MessageFormat.format(
                     "Required fields is missing! bucketDuration:[{0}]",
@@ -377,12 +461,12 @@ public class MetricApi {
         //give result if bucketDuration and duration are equal.
         start--;
 
-        return MetricsUtils.engine().list(Criteria.builder()
+        return Criteria.builder()
                 .resourceModel(resourceModel)
                 .start(start)
                 .end(end)
                 .bucketDuration(bucketDuration)
                 .dataType(dataType)
-                .build());
+                .build();
     }
 }
@@ -26,11 +26,14 @@ import org.mycontroller.standalone.api.jaxrs.model.QueryResponse;
 import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.db.tables.OperationTable;
 import org.mycontroller.standalone.email.EmailUtils;
+import org.mycontroller.standalone.operation.McOperationDispatcher;
+import org.mycontroller.standalone.operation.McOperationStatistics;
 import org.mycontroller.standalone.operation.OperationUtils;
 import org.mycontroller.standalone.operation.PushbulletUtils;
 import org.mycontroller.standalone.operation.SMSUtils;
 import org.mycontroller.standalone.operation.TelegramBotUtils;
 import org.mycontroller.standalone.operation.model.Operation;
+import org.mycontroller.standalone.rule.McRuleRegistry;
 
 /**
  * @author Jeeva Kandasamy (jkandasa)
@@ -76,6 +79,7 @@ public class OperationApi {
     public void add(Operation operation) {
         DaoUtils.getOperationDao().create(operation.getOperationTable());
         GoogleAnalyticsApi.instance().trackOperationCreation(operation.getType().getText());
+        McRuleRegistry.getInstance().invalidateAll();
     }
 
     public void update(Operation operation) {
@@ -83,11 +87,14 @@ public class OperationApi {
             OperationUtils.unloadOperationTimerJobs(operation.getOperationTable());
         }
         DaoUtils.getOperationDao().update(operation.getOperationTable());
+        // rules keep their operations
+        McRuleRegistry.getInstance().invalidateAll();
     }
 
     public void deleteIds(List<Integer> ids) {
         OperationUtils.unloadOperationTimerJobs(ids);
         DaoUtils.getOperationDao().deleteByIds(ids);
+        McRuleRegistry.getInstance().invalidateAll();
     }
 
     public void enableIds(List<Integer> ids) {
@@ -95,6 +102,7 @@ public class OperationApi {
             operationTable.setEnabled(true);
             DaoUtils.getOperationDao().update(operationTable);
         }
+        McRuleRegistry.getInstance().invalidateAll();
     }
 
     public void disableIds(List<Integer> ids) {
@@ -103,6 +111,7 @@ public class OperationApi {
             operationTable.setEnabled(false);
             DaoUtils.getOperationDao().update(operationTable);
         }
+        McRuleRegistry.getInstance().invalidateAll();
     }
 
     public void sendSMS(String toPhoneNumbers, String message) {
@@ -124,4 +133,8 @@ public class OperationApi {
     public void sendTelegramMessage(String chatId, String parseMode, String text) {
         TelegramBotUtils.sendMessage(chatId, parseMode, text);
     }
+
+    public List<McOperationStatistics> getStatistics() {
+        return McOperationDispatcher.getInstance().getStatistics();
+    }
 }
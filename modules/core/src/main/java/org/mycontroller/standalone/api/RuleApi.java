@@ -24,6 +24,8 @@ import org.mycontroller.standalone.api.jaxrs.model.Query;
 import org.mycontroller.standalone.api.jaxrs.model.QueryResponse;
 import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.db.tables.RuleDefinitionTable;
+import org.mycontroller.standalone.rule.McRuleEngineStatistics;
+import org.mycontroller.standalone.rule.McRuleLocks;
 import org.mycontroller.standalone.rule.RuleUtils;
 import org.mycontroller.standalone.rule.model.RuleDefinitionAbstract;
 
@@ -90,4 +92,8 @@ public class RuleApi {
         RuleUtils.disableRuleDefinitions(ids);
     }
 
+    public McRuleEngineStatistics getStatistics() {
+        return McRuleLocks.getStatistics();
+    }
+
 }
@@ -39,6 +39,7 @@ import org.mycontroller.standalone.exceptions.McDuplicateException;
 import org.mycontroller.standalone.exceptions.McException;
 import org.mycontroller.standalone.exceptions.McInvalidException;
 import org.mycontroller.standalone.message.IMessage;
+import org.mycontroller.standalone.metrics.McMetricsHotCache;
 import org.mycontroller.standalone.metrics.MetricsUtils;
 import org.mycontroller.standalone.metrics.MetricsUtils.METRIC_TYPE;
 import org.mycontroller.standalone.model.ResourceModel;
@@ -196,6 +197,7 @@ public class SensorApi {
             if (!sensorVariable.getMetricType().getText().equalsIgnoreCase(sensorVariableJson.getMetricType())) {
                 //clear existing data
                 MetricsUtils.engine().purge(new ResourceModel(RESOURCE_TYPE.SENSOR_VARIABLE, sensorVariable));
+                McMetricsHotCache.getInstance().remove(sensorVariable.getId());
                 //Update new metric type
                 sensorVariable.setMetricType(METRIC_TYPE.fromString(sensorVariableJson.getMetricType()));
             }
@@ -279,5 +281,6 @@ public class SensorApi {
             throw new McBadRequestException("Selected sensor variable is not found! " + purge);
         }
         MetricsUtils.engine().purge(new ResourceModel(RESOURCE_TYPE.SENSOR_VARIABLE, sVar), purge);
+        McMetricsHotCache.getInstance().remove(sVar.getId());
     }
 }
@@ -19,6 +19,8 @@ package org.mycontroller.standalone.api;
 import java.util.HashMap;
 import java.util.List;
 
+import org.mycontroller.standalone.McThreadPoolFactory;
+import org.mycontroller.standalone.McThreadPoolStatistics;
 import org.mycontroller.standalone.api.jaxrs.model.McAbout;
 import org.mycontroller.standalone.api.jaxrs.model.McGuiSettings;
 import org.mycontroller.standalone.api.jaxrs.model.Query;
@@ -27,6 +29,8 @@ import org.mycontroller.standalone.api.jaxrs.utils.StatusJVM;
 import org.mycontroller.standalone.api.jaxrs.utils.StatusOS;
 import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.db.tables.ResourcesLogs;
+import org.mycontroller.standalone.provider.ResourcesLogsPipeline;
+import org.mycontroller.standalone.provider.ResourcesLogsStatistics;
 import org.mycontroller.standalone.scripts.McScriptEngineUtils;
 
 import lombok.extern.slf4j.Slf4j;
@@ -57,6 +61,14 @@ public class SystemApi {
         return new McGuiSettings();
     }
 
+    public ResourcesLogsStatistics getResourcesLogsStatistics() {
+        return ResourcesLogsPipeline.getInstance().getStatistics();
+    }
+
+    public List<McThreadPoolStatistics> getThreadPoolsStatistics() {
+        return McThreadPoolFactory.getStatistics();
+    }
+
     public void runGarbageCollection() {
         System.gc();
         _logger.info("Manually executed JVM Garbage Collection..");
@@ -19,11 +19,13 @@ package org.mycontroller.standalone.api.jaxrs;
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.security.RolesAllowed;
 import javax.script.ScriptException;
@@ -32,8 +34,11 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.mycontroller.standalone.AppProperties;
 import org.mycontroller.standalone.AppProperties.NETWORK_TYPE;
@@ -64,6 +69,7 @@ import org.mycontroller.standalone.exceptions.McBadRequestException;
 import org.mycontroller.standalone.metrics.DATA_TYPE;
 import org.mycontroller.standalone.metrics.MetricsUtils.METRIC_TYPE;
 import org.mycontroller.standalone.metrics.export.CsvExportEngine;
+import org.mycontroller.standalone.metrics.model.Criteria;
 import org.mycontroller.standalone.metrics.model.MetricDouble;
 import org.mycontroller.standalone.model.ResourceModel;
 import org.mycontroller.standalone.provider.mysensors.MySensors;
@@ -109,6 +115,22 @@ public class MetricsHandler extends AccessEngine {
         return RestUtils.getResponse(Status.OK, metricApi.getResourceCount(resourceType, resourceId));
     }
 
+    @GET
+    @Path("/aggregation/statistics")
+    public Response getAggregationStatistics() {
+        return RestUtils.getResponse(Status.OK, metricApi.getAggregationStatistics());
+    }
+
+    @GET
+    @Path("/influxdb/statistics")
+    public Response getInfluxDBStatistics() {
+        try {
+            return RestUtils.getResponse(Status.OK, metricApi.getInfluxDBStatistics());
+        } catch (McBadRequestException ex) {
+            return RestUtils.getResponse(Status.BAD_REQUEST, new ApiError(ex.getMessage()));
+        }
+    }
+
     @GET
     @Path("/nvd3data")
     public Response getMetricsNvd3Data(
@@ -247,6 +269,47 @@ public class MetricsHandler extends AccessEngine {
         }
     }
 
+    @GET
+    @Path("/export/download")
+    public Response downloadResourceData(@QueryParam("resourceId") List<Integer> resourceIds,
+            @QueryParam("resourceType") String resourceType,
+            @QueryParam("start") Long start,
+            @QueryParam("end") Long end,
+            @QueryParam("duration") String duration,
+            @QueryParam("bucketDuration") String bucketDuration,
+            @QueryParam("uid") List<String> uids,
+            @QueryParam("gzip") Boolean gzip) {
+        final List<Criteria> criteriaList;
+        final CsvExportEngine csvExportEngine = new CsvExportEngine();
+        final boolean compress = gzip != null && gzip;
+        try {
+            List<ResourceModel> resourceModels = new ArrayList<ResourceModel>();
+            for (Integer resourceId : resourceIds) {
+                resourceModels.add(getResourceModel(resourceId, resourceType, null));
+            }
+            for (String uid : uids) {
+                resourceModels.add(getResourceModel(null, null, uid));
+            }
+            if (resourceModels.isEmpty()) {
+                return RestUtils.getResponse(Status.BAD_REQUEST, new ApiError("Resource id(s) or uid(s) required!"));
+            }
+            criteriaList = csvExportEngine.getCriteria(resourceModels, start, end, duration, bucketDuration);
+        } catch (Exception ex) {
+            return RestUtils.getResponse(Status.BAD_REQUEST, new ApiError(ex.getMessage()));
+        }
+        StreamingOutput stream = new StreamingOutput() {
+            @Override
+            public void write(OutputStream output) throws IOException, WebApplicationException {
+                csvExportEngine.write(criteriaList, output, compress);
+            }
+        };
+        return Response
+                .ok(stream, MediaType.APPLICATION_OCTET_STREAM)
+                .header("content-disposition", "attachment; filename = "
+                        + csvExportEngine.getFileName(criteriaList, compress))
+                .build();
+    }
+
     @GET
     @Path("/statsBattery")
     public Response getMetricsBattery(
@@ -645,6 +708,10 @@ public class MetricsHandler extends AccessEngine {
             bucketDurationBinary = MetricApi.getBucketDuration(start, end, METRIC_TYPE.BINARY);
         }
 
+        // fetch all the variables with a single engine request
+        Map<Integer, List<?>> metricsData = metricApi.getMetricData(sensorVariables, start, end, duration,
+                bucketDurationDouble, bucketDurationCounter, bucketDurationBinary);
+
         for (SensorVariable sensorVariable : sensorVariables) {
             MetricsGraph metrics = sensorVariable.getMetricsGraph();
             //Load initial settings
@@ -707,9 +774,8 @@ public class MetricsHandler extends AccessEngine {
             switch (sensorVariable.getMetricType()) {
                 case DOUBLE:
                     @SuppressWarnings("unchecked")
-                    List<DataPointDouble> doubleMetrics = (List<DataPointDouble>) metricApi
-                            .getMetricData(sensorVariable.getId(), RESOURCE_TYPE.SENSOR_VARIABLE.getText(),
-                                    start, end, duration, bucketDurationDouble, DATA_TYPE.SENSOR_VARIABLE);
+                    List<DataPointDouble> doubleMetrics = (List<DataPointDouble>) metricsData
+                            .get(sensorVariable.getId());
                     ArrayList<Object> avgMetricDoubleValues = new ArrayList<Object>();
                     long timestamp = 0L;
                     for (DataPointDouble metric : doubleMetrics) {
@@ -741,9 +807,8 @@ public class MetricsHandler extends AccessEngine {
                     break;
                 case COUNTER:
                     @SuppressWarnings("unchecked")
-                    List<DataPointCounter> counterMetrics = (List<DataPointCounter>) metricApi
-                            .getMetricData(sensorVariable.getId(), RESOURCE_TYPE.SENSOR_VARIABLE.getText(),
-                                    start, end, duration, bucketDurationCounter, DATA_TYPE.SENSOR_VARIABLE);
+                    List<DataPointCounter> counterMetrics = (List<DataPointCounter>) metricsData
+                            .get(sensorVariable.getId());
                     ArrayList<Object> metricCounterValues = new ArrayList<Object>();
                     for (DataPointCounter metric : counterMetrics) {
                         if (!metric.isEmpty()) {
@@ -773,9 +838,8 @@ public class MetricsHandler extends AccessEngine {
                     break;
                 case BINARY:
                     @SuppressWarnings("unchecked")
-                    List<DataPointBinary> binaryMetrics = (List<DataPointBinary>) metricApi
-                            .getMetricData(sensorVariable.getId(), RESOURCE_TYPE.SENSOR_VARIABLE.getText(), start,
-                                    end, duration, bucketDurationBinary, DATA_TYPE.SENSOR_VARIABLE);
+                    List<DataPointBinary> binaryMetrics = (List<DataPointBinary>) metricsData
+                            .get(sensorVariable.getId());
                     ArrayList<Object> metricBinaryValues = new ArrayList<Object>();
                     for (DataPointBinary metric : binaryMetrics) {
                         if (!metric.isEmpty()) {
@@ -864,15 +928,18 @@ public class MetricsHandler extends AccessEngine {
             bucketDurationBinary = MetricApi.getBucketDuration(start, end, METRIC_TYPE.BINARY);
         }
 
+        // fetch all the variables with a single engine request
+        Map<Integer, List<?>> metricsData = metricApi.getMetricData(sensorVariables, start, end, duration,
+                bucketDurationDouble, bucketDurationCounter, bucketDurationBinary);
+
         for (SensorVariable sensorVariable : sensorVariables) {
             MetricsGraph metrics = sensorVariable.getMetricsGraph();
             switch (sensorVariable.getMetricType()) {
                 case DOUBLE:
                     ArrayList<MetricsChartDataNVD3> preDoubleData = new ArrayList<MetricsChartDataNVD3>();
                     @SuppressWarnings("unchecked")
-                    List<DataPointDouble> doubleMetrics = (List<DataPointDouble>) metricApi
-                            .getMetricData(sensorVariable.getId(), RESOURCE_TYPE.SENSOR_VARIABLE.getText(),
-                                    start, end, duration, bucketDurationDouble, DATA_TYPE.SENSOR_VARIABLE);
+                    List<DataPointDouble> doubleMetrics = (List<DataPointDouble>) metricsData
+                            .get(sensorVariable.getId());
                     ArrayList<Object> avgMetricDoubleValues = new ArrayList<Object>();
                     ArrayList<Object> minMetricDoubleValues = new ArrayList<Object>();
                     ArrayList<Object> maxMetricDoubleValues = new ArrayList<Object>();
@@ -937,9 +1004,8 @@ public class MetricsHandler extends AccessEngine {
                 case COUNTER:
                     ArrayList<MetricsChartDataNVD3> preCounterData = new ArrayList<MetricsChartDataNVD3>();
                     @SuppressWarnings("unchecked")
-                    List<DataPointCounter> counterMetrics = (List<DataPointCounter>) metricApi
-                            .getMetricData(sensorVariable.getId(), RESOURCE_TYPE.SENSOR_VARIABLE.getText(),
-                                    start, end, duration, bucketDurationCounter, DATA_TYPE.SENSOR_VARIABLE);
+                    List<DataPointCounter> counterMetrics = (List<DataPointCounter>) metricsData
+                            .get(sensorVariable.getId());
                     ArrayList<Object> metricCounterValues = new ArrayList<Object>();
                     for (DataPointCounter metric : counterMetrics) {
                         if (!metric.isEmpty()) {
@@ -981,9 +1047,8 @@ public class MetricsHandler extends AccessEngine {
                 case BINARY:
                     ArrayList<MetricsChartDataNVD3> preBinaryData = new ArrayList<MetricsChartDataNVD3>();
                     @SuppressWarnings("unchecked")
-                    List<DataPointBinary> binaryMetrics = (List<DataPointBinary>) metricApi
-                            .getMetricData(sensorVariable.getId(), RESOURCE_TYPE.SENSOR_VARIABLE.getText(), start,
-                                    end, duration, bucketDurationBinary, DATA_TYPE.SENSOR_VARIABLE);
+                    List<DataPointBinary> binaryMetrics = (List<DataPointBinary>) metricsData
+                            .get(sensorVariable.getId());
                     ArrayList<Object> metricBinaryValues = new ArrayList<Object>();
                     for (DataPointBinary metric : binaryMetrics) {
                         if (!metric.isEmpty()) {
@@ -154,6 +154,13 @@ public class MyControllerHandler extends AccessEngine {
         return RestUtils.getResponse(Status.OK, systemApi.getScriptEngines());
     }
 
+    @RolesAllowed({ "Admin" })
+    @GET
+    @Path("/threadPools")
+    public Response getThreadPools() {
+        return RestUtils.getResponse(Status.OK, systemApi.getThreadPoolsStatistics());
+    }
+
     @RolesAllowed({ "Admin" })
     @PUT
     @Path("/runGarbageCollection")
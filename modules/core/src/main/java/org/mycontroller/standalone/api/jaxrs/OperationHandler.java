@@ -53,6 +53,12 @@ public class OperationHandler extends AccessEngine {
 
     private OperationApi operationApi = new OperationApi();
 
+    @GET
+    @Path("/statistics")
+    public Response getStatistics() {
+        return RestUtils.getResponse(Status.OK, operationApi.getStatistics());
+    }
+
     @GET
     @Path("/{id}")
     public Response get(@PathParam("id") int id) {
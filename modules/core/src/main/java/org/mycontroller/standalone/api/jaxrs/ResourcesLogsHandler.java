@@ -92,6 +92,13 @@ public class ResourcesLogsHandler extends AccessEngine {
         return RestUtils.getResponse(Status.OK, systemApi.getResourcesLogsAll(filters));
     }
 
+    @RolesAllowed({ "Admin" })
+    @GET
+    @Path("/statistics")
+    public Response getStatistics() {
+        return RestUtils.getResponse(Status.OK, systemApi.getResourcesLogsStatistics());
+    }
+
     @RolesAllowed({ "Admin" })
     @PUT
     @Path("/")
@@ -55,6 +55,12 @@ public class RuleHandler extends AccessEngine {
 
     private static RuleApi ruleApi = new RuleApi();
 
+    @GET
+    @Path("/statistics")
+    public Response getStatistics() {
+        return RestUtils.getResponse(Status.OK, ruleApi.getStatistics());
+    }
+
     @GET
     @Path("/{id}")
     public Response get(@PathParam("id") int id) {
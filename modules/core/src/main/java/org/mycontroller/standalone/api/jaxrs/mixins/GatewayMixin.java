@@ -32,6 +32,7 @@ import org.mycontroller.standalone.gateway.config.GatewayConfigPhantIO;
 import org.mycontroller.standalone.gateway.config.GatewayConfigPhilipsHue;
 import org.mycontroller.standalone.gateway.config.GatewayConfigSerial;
 import org.mycontroller.standalone.gateway.config.GatewayConfigWunderground;
+import org.mycontroller.standalone.offheap.OffHeapFactory.QUEUE_TYPE;
 import org.mycontroller.standalone.utils.McUtils;
 
 import com.fasterxml.jackson.core.JsonGenerator;
@@ -158,11 +159,23 @@ class GatewayDeserializer extends JsonDeserializer<GatewayConfig> {
                 gatewayConfig.setStreamAckEnabled(node.get("streamAckEnabled").asBoolean());
                 gatewayConfig.setFailedRetryCount(node.get("failedRetryCount").asInt());
                 gatewayConfig.setAckWaitTime(node.get("ackWaitTime").asLong());
+                if (node.get("txWindowSize") != null) {
+                    gatewayConfig.setTxWindowSize(node.get("txWindowSize").asInt());
+                }
             }
         } else {
             gatewayConfig.setAckEnabled(false);
         }
         gatewayConfig.setTxDelay(node.get("txDelay").asLong());
+        if (node.get("executorLanes") != null) {
+            gatewayConfig.setExecutorLanes(node.get("executorLanes").asInt());
+        }
+        if (node.get("queueType") != null) {
+            gatewayConfig.setQueueType(QUEUE_TYPE.fromString(node.get("queueType").asText()));
+            if (node.get("queueSyncInterval") != null) {
+                gatewayConfig.setQueueSyncInterval(node.get("queueSyncInterval").asLong());
+            }
+        }
         gatewayConfig.setReconnectDelay(node.get("reconnectDelay").asInt());
         gatewayConfig.setEnabled(node.get("enabled").asBoolean());
         gatewayConfig.setName(node.get("name").asText());
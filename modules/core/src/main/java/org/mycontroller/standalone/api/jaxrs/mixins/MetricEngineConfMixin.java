@@ -23,6 +23,7 @@ import org.mycontroller.standalone.api.jaxrs.mixins.serializers.MetricEngineType
 import org.mycontroller.standalone.api.jaxrs.mixins.serializers.TrustHostTypeSerializer;
 import org.mycontroller.standalone.metrics.METRIC_ENGINE;
 import org.mycontroller.standalone.metrics.engine.conf.MetricEngineConf;
+import org.mycontroller.standalone.metrics.engine.conf.MetricEngineConfigChunks;
 import org.mycontroller.standalone.metrics.engine.conf.MetricEngineConfigInfluxDB;
 import org.mycontroller.standalone.metrics.engine.conf.MetricEngineConfigMyController;
 
@@ -69,6 +70,9 @@ class MetricEngineConfDeserializer extends JsonDeserializer<MetricEngineConf> {
                 MetricEngineConfigMyController mcConf = new MetricEngineConfigMyController();
                 conf = mcConf;
                 break;
+            case CHUNKS:
+                conf = new MetricEngineConfigChunks();
+                break;
             case INFLUXDB:
                 MetricEngineConfigInfluxDB infulxConf = MetricEngineConfigInfluxDB.builder()
                         .url(node.get("url").asText())
@@ -79,6 +83,18 @@ class MetricEngineConfDeserializer extends JsonDeserializer<MetricEngineConf> {
                     infulxConf.setUsername(node.get("username").asText());
                     infulxConf.setPassword(node.get("password").asText());
                 }
+                if (node.get("batchSize") != null) {
+                    infulxConf.setBatchSize(node.get("batchSize").asInt());
+                }
+                if (node.get("batchLinger") != null) {
+                    infulxConf.setBatchLinger(node.get("batchLinger").asLong());
+                }
+                if (node.get("maxInFlight") != null) {
+                    infulxConf.setMaxInFlight(node.get("maxInFlight").asInt());
+                }
+                if (node.get("spillLimit") != null) {
+                    infulxConf.setSpillLimit(node.get("spillLimit").asLong());
+                }
                 conf = infulxConf;
                 break;
             default:
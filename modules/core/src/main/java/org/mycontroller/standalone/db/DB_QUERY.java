@@ -22,6 +22,7 @@ import org.mycontroller.standalone.AppProperties;
 import org.mycontroller.standalone.db.tables.MetricsBatteryUsage;
 import org.mycontroller.standalone.db.tables.MetricsCounterTypeDevice;
 import org.mycontroller.standalone.db.tables.MetricsDoubleTypeDevice;
+import org.mycontroller.standalone.db.tables.MetricsGPSTypeDevice;
 import org.mycontroller.standalone.db.tables.Node;
 import org.mycontroller.standalone.db.tables.Sensor;
 
@@ -35,11 +36,12 @@ public class DB_QUERY {
     public static final String ORDER_BY_NODE_NAME = MessageFormat
             .format("SELECT ${0}$ FROM ${1}$ WHERE id=${2}$ ", Node.KEY_NAME, DB_TABLES.NODE, Sensor.KEY_NODE_ID);
 
-    public static final String INSERT_METRICS_DOUBLE_AGGREGATION_BY_TYPE = MessageFormat
+    public static final String INSERT_METRICS_DOUBLE_AGGREGATION_BUCKETS = MessageFormat
             .format("INSERT INTO ${5}$ (${0}$, ${1}$, ${2}$, ${3}$, ${4}$, ${7}$, ${6}$) SELECT ${0}$, MIN(${1}$) "
                     + "AS ${1}$, MAX(${2}$) AS ${2}$, SUM(${3}$*${4}$)/SUM(${4}$) AS ${3}$, SUM(${4}$) "
-                    + "AS ${4}$, '{2}' AS ${7}$, '{3}' AS ${6}$ FROM ${5}$ "
-                    + "WHERE ${6}$='{0}' AND ${7}$ > '{1}' AND ${7}$ <= '{2}' GROUP BY ${0}$ ",
+                    + "AS ${4}$, '{4}' AS ${7}$, '{3}' AS ${6}$ FROM ${5}$ "
+                    + "WHERE ${6}$='{0}' AND ${7}$ > '{1}' AND ${7}$ <= '{2}' AND ${0}$ >= '{5}' AND ${0}$ <= '{6}' "
+                    + "GROUP BY ${0}$, '{4}' ",
                     MetricsDoubleTypeDevice.KEY_SENSOR_VARIABLE_ID,
                     MetricsDoubleTypeDevice.KEY_MIN,
                     MetricsDoubleTypeDevice.KEY_MAX,
@@ -49,11 +51,12 @@ public class DB_QUERY {
                     MetricsDoubleTypeDevice.KEY_AGGREGATION_TYPE,
                     MetricsDoubleTypeDevice.KEY_TIMESTAMP);
 
-    public static final String INSERT_METRICS_BATTERY_AGGREGATION_BY_TYPE = MessageFormat
+    public static final String INSERT_METRICS_BATTERY_AGGREGATION_BUCKETS = MessageFormat
             .format("INSERT INTO ${5}$ (${0}$, ${1}$, ${2}$, ${3}$, ${4}$, ${7}$, ${6}$) SELECT ${0}$, MIN(${1}$) "
                     + "AS ${1}$, MAX(${2}$) AS ${2}$, SUM(${3}$*${4}$)/SUM(${4}$) AS ${3}$, SUM(${4}$) "
-                    + "AS ${4}$, '{2}' AS ${7}$, '{3}' AS ${6}$ FROM ${5}$ "
-                    + "WHERE ${6}$='{0}' AND ${7}$ > '{1}' AND ${7}$ <= '{2}' GROUP BY ${0}$ ",
+                    + "AS ${4}$, '{4}' AS ${7}$, '{3}' AS ${6}$ FROM ${5}$ "
+                    + "WHERE ${6}$='{0}' AND ${7}$ > '{1}' AND ${7}$ <= '{2}' AND ${0}$ >= '{5}' AND ${0}$ <= '{6}' "
+                    + "GROUP BY ${0}$, '{4}' ",
                     MetricsBatteryUsage.KEY_NODE_ID,
                     MetricsBatteryUsage.KEY_MIN,
                     MetricsBatteryUsage.KEY_MAX,
@@ -63,10 +66,11 @@ public class DB_QUERY {
                     MetricsBatteryUsage.KEY_AGGREGATION_TYPE,
                     MetricsBatteryUsage.KEY_TIMESTAMP);
 
-    public static final String INSERT_METRICS_COUNTER_AGGREGATION_BY_TYPE = MessageFormat
+    public static final String INSERT_METRICS_COUNTER_AGGREGATION_BUCKETS = MessageFormat
             .format("INSERT INTO ${3}$ (${0}$, ${1}$, ${2}$, ${5}$, ${4}$) SELECT ${0}$, SUM(${1}$) "
-                    + "AS ${1}$, SUM(${2}$) AS ${2}$, '{2}' AS ${5}$, '''''{3}''''' AS ${4}$ FROM ${3}$ "
-                    + "WHERE ${4}$='''''{0}''''' AND ${5}$ > '{1}' AND ${5}$ <= '{2}' GROUP BY ${0}$ ",
+                    + "AS ${1}$, SUM(${2}$) AS ${2}$, '{4}' AS ${5}$, '''''{3}''''' AS ${4}$ FROM ${3}$ "
+                    + "WHERE ${4}$='''''{0}''''' AND ${5}$ > '{1}' AND ${5}$ <= '{2}' AND ${0}$ >= '{5}' "
+                    + "AND ${0}$ <= '{6}' GROUP BY ${0}$, '{4}' ",
                     MetricsCounterTypeDevice.KEY_SENSOR_VARIABLE_ID,
                     MetricsCounterTypeDevice.KEY_VALUE,
                     MetricsCounterTypeDevice.KEY_SAMPLES,
@@ -75,22 +79,31 @@ public class DB_QUERY {
                     MetricsCounterTypeDevice.KEY_TIMESTAMP);
 
     public static final String DELETE_METRICS_DOUBLE_BY_TYPE = MessageFormat
-            .format("DELETE FROM ${0}$ WHERE ${1}$='{0}' AND ${2}$ <= '{1}' ",
+            .format("DELETE FROM ${0}$ WHERE ${1}$='{0}' AND ${2}$ <= '{1}' "
+                    + "AND ${3}$ >= '{2}' AND ${3}$ <= '{3}' ",
                     DB_TABLES.METRICS_DOUBLE_TYPE_DEVICE,
                     MetricsDoubleTypeDevice.KEY_AGGREGATION_TYPE,
-                    MetricsCounterTypeDevice.KEY_TIMESTAMP);
+                    MetricsCounterTypeDevice.KEY_TIMESTAMP,
+                    MetricsDoubleTypeDevice.KEY_SENSOR_VARIABLE_ID);
 
     public static final String DELETE_METRICS_BATTERY_BY_TYPE = MessageFormat
-            .format("DELETE FROM ${0}$ WHERE ${1}$='{0}' AND ${2}$ <= '{1}' ",
+            .format("DELETE FROM ${0}$ WHERE ${1}$='{0}' AND ${2}$ <= '{1}' "
+                    + "AND ${3}$ >= '{2}' AND ${3}$ <= '{3}' ",
                     DB_TABLES.METRICS_BATTERY_USAGE,
                     MetricsBatteryUsage.KEY_AGGREGATION_TYPE,
-                    MetricsBatteryUsage.KEY_TIMESTAMP);
+                    MetricsBatteryUsage.KEY_TIMESTAMP,
+                    MetricsBatteryUsage.KEY_NODE_ID);
 
     public static final String DELETE_METRICS_COUNTER_BY_TYPE = MessageFormat
-            .format("DELETE FROM ${0}$ WHERE ${1}$='''''{0}''''' AND ${2}$ <= '{1}' ",
+            .format("DELETE FROM ${0}$ WHERE ${1}$='''''{0}''''' AND ${2}$ <= '{1}' "
+                    + "AND ${3}$ >= '{2}' AND ${3}$ <= '{3}' ",
                     DB_TABLES.METRICS_COUNTER_TYPE_DEVICE,
                     MetricsCounterTypeDevice.KEY_AGGREGATION_TYPE,
-                    MetricsCounterTypeDevice.KEY_TIMESTAMP);
+                    MetricsCounterTypeDevice.KEY_TIMESTAMP,
+                    MetricsCounterTypeDevice.KEY_SENSOR_VARIABLE_ID);
+
+    // highest resource id of a metrics table, {0} - id column, {1} - table
+    public static final String SELECT_MAX_RESOURCE_ID = "SELECT MAX(${0}$) FROM ${1}$";
 
     public static final String DELETE_METRICS_BINARY = MessageFormat
             .format("DELETE FROM ${0}$ WHERE ${1}$ > '{0}' AND ${1}$ <= '{1}' ",
@@ -102,38 +115,48 @@ public class DB_QUERY {
                     DB_TABLES.METRICS_GPS_TYPE_DEVICE,
                     MetricsCounterTypeDevice.KEY_TIMESTAMP);
 
-    public static final String SELECT_METRICS_DOUBLE_BY_SENSOR_VARIABLE = MessageFormat
-            .format("SELECT ${0}$, MIN(${1}$) AS ${1}$, MAX(${2}$) AS ${2}$, SUM(${3}$*${4}$)/SUM(${4}$) "
-                    + "AS ${3}$, SUM(${4}$) AS ${4}$, '{2}' AS ${6}$ FROM ${5}$ WHERE ${0}$='{0}' "
-                    + "AND ${6}$ > '{1}' AND ${6}$ <= '{2}' GROUP BY ${0}$",
+    // bucketed queries, {1} - range condition, {2} - bucket index expression of the timestamp,
+    // last column - rows aggregated
+    public static final String SELECT_METRICS_DOUBLE_BUCKETS_BY_SENSOR_VARIABLE = MessageFormat
+            .format("SELECT '{2}', MIN(${1}$), MAX(${2}$), SUM(${3}$*${4}$)/SUM(${4}$), SUM(${4}$), COUNT(*) "
+                    + "FROM ${5}$ "
+                    + "WHERE ${0}$='{0}' AND '{1}' GROUP BY '{2}'",
                     MetricsDoubleTypeDevice.KEY_SENSOR_VARIABLE_ID,
                     MetricsDoubleTypeDevice.KEY_MIN,
                     MetricsDoubleTypeDevice.KEY_MAX,
                     MetricsDoubleTypeDevice.KEY_AVG,
                     MetricsDoubleTypeDevice.KEY_SAMPLES,
-                    DB_TABLES.METRICS_DOUBLE_TYPE_DEVICE,
-                    MetricsDoubleTypeDevice.KEY_TIMESTAMP);
+                    DB_TABLES.METRICS_DOUBLE_TYPE_DEVICE);
 
-    public static final String SELECT_METRICS_BATTERY_BY_NODE = MessageFormat
-            .format("SELECT ${0}$, MIN(${1}$) AS ${1}$, MAX(${2}$) AS ${2}$, SUM(${3}$*${4}$)/SUM(${4}$) "
-                    + "AS ${3}$, SUM(${4}$) AS ${4}$, '{2}' AS ${6}$ FROM ${5}$ WHERE ${0}$='{0}' "
-                    + "AND ${6}$ > '{1}' AND ${6}$ <= '{2}'  GROUP BY ${0}$",
+    public static final String SELECT_METRICS_BATTERY_BUCKETS_BY_NODE = MessageFormat
+            .format("SELECT '{2}', MIN(${1}$), MAX(${2}$), SUM(${3}$*${4}$)/SUM(${4}$), SUM(${4}$), COUNT(*) "
+                    + "FROM ${5}$ "
+                    + "WHERE ${0}$='{0}' AND '{1}' GROUP BY '{2}'",
                     MetricsBatteryUsage.KEY_NODE_ID,
                     MetricsBatteryUsage.KEY_MIN,
                     MetricsBatteryUsage.KEY_MAX,
                     MetricsBatteryUsage.KEY_AVG,
                     MetricsBatteryUsage.KEY_SAMPLES,
-                    DB_TABLES.METRICS_BATTERY_USAGE,
-                    MetricsBatteryUsage.KEY_TIMESTAMP);
+                    DB_TABLES.METRICS_BATTERY_USAGE);
 
-    public static final String SELECT_METRICS_COUNTER_BY_SENSOR_VARIABLE = MessageFormat
-            .format("SELECT ${0}$, SUM(${1}$) AS ${1}$, SUM(${2}$) AS ${2}$, '{2}' AS ${4}$ FROM ${3}$ "
-                    + "WHERE ${0}$='{0}' AND ${4}$ > '{1}' AND ${4}$ <= '{2}'  GROUP BY ${0}$",
+    public static final String SELECT_METRICS_COUNTER_BUCKETS_BY_SENSOR_VARIABLE = MessageFormat
+            .format("SELECT '{2}', SUM(${1}$), SUM(${2}$), COUNT(*) FROM ${3}$ "
+                    + "WHERE ${0}$='{0}' AND '{1}' GROUP BY '{2}'",
                     MetricsCounterTypeDevice.KEY_SENSOR_VARIABLE_ID,
                     MetricsCounterTypeDevice.KEY_VALUE,
                     MetricsCounterTypeDevice.KEY_SAMPLES,
-                    DB_TABLES.METRICS_COUNTER_TYPE_DEVICE,
-                    MetricsCounterTypeDevice.KEY_TIMESTAMP);
+                    DB_TABLES.METRICS_COUNTER_TYPE_DEVICE);
+
+    public static final String SELECT_METRICS_GPS_BUCKETS_BY_SENSOR_VARIABLE = MessageFormat
+            .format("SELECT '{2}', SUM(${1}$*${4}$)/SUM(${4}$), SUM(${2}$*${4}$)/SUM(${4}$), "
+                    + "SUM(${3}$*${4}$)/SUM(${4}$), SUM(${4}$), COUNT(*) FROM ${5}$ "
+                    + "WHERE ${0}$='{0}' AND '{1}' GROUP BY '{2}'",
+                    MetricsGPSTypeDevice.KEY_SENSOR_VARIABLE_ID,
+                    MetricsGPSTypeDevice.KEY_LATITUDE,
+                    MetricsGPSTypeDevice.KEY_LONGITUDE,
+                    MetricsGPSTypeDevice.KEY_ALTITUDE,
+                    MetricsGPSTypeDevice.KEY_SAMPLES,
+                    DB_TABLES.METRICS_GPS_TYPE_DEVICE);
 
     public static String getQuery(String query) {
         switch (AppProperties.getInstance().getDbType()) {
@@ -27,6 +27,9 @@ import org.mycontroller.standalone.db.tables.ResourcesGroup;
 import org.mycontroller.standalone.db.tables.Sensor;
 import org.mycontroller.standalone.db.tables.SensorVariable;
 import org.mycontroller.standalone.gateway.GatewayUtils;
+import org.mycontroller.standalone.metrics.McMetricsHotCache;
+import org.mycontroller.standalone.metrics.engine.McMetricsRollup;
+import org.mycontroller.standalone.metrics.engine.McMetricsWriteBuffer;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -72,9 +75,13 @@ public class DeleteResourceUtils {
         //Delete alarmDefinitions
         //deleteAlarmDefinitions(RESOURCE_TYPE.SENSOR_VARIABLE, sensorVariable.getId());
 
-        //Delete from metrics table
+        //Delete from metrics table, buffered points written first
+        McMetricsWriteBuffer.getInstance().flush();
         DaoUtils.getMetricsDoubleTypeDeviceDao().deleteBySensorVariableRefId(sensorVariable.getId());
         DaoUtils.getMetricsBinaryTypeDeviceDao().deleteBySensorVariableRefId(sensorVariable.getId());
+        McMetricsWriteBuffer.getInstance().invalidateBinaryState(sensorVariable.getId());
+        McMetricsRollup.getInstance().reset();
+        McMetricsHotCache.getInstance().remove(sensorVariable.getId());
 
         //Delete from resources log
         DaoUtils.getResourcesLogsDao().deleteAll(RESOURCE_TYPE.SENSOR_VARIABLE, sensorVariable.getId());
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.db;
+
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.mycontroller.standalone.AppProperties.RESOURCE_TYPE;
+import org.mycontroller.standalone.AppProperties.STATE;
+import org.mycontroller.standalone.db.tables.Node;
+import org.mycontroller.standalone.db.tables.Sensor;
+import org.mycontroller.standalone.db.tables.SensorVariable;
+import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE_SET_REQ;
+import org.mycontroller.standalone.utils.McUtils;
+
+/**
+ * Keeps node, sensor and sensor variable used by gateway executors in memory, keyed by natural keys.
+ * Frequently changing columns (last seen, state, rssi, battery level and variable value) are not written
+ * on every message, those are coalesced and flushed to database in a batch on every flush interval.
+ * Reads return copies and the database reads overlay the pending values, see merge.
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+public class ResourcesRegistry extends WriteBehindStore {
+    public static final long FLUSH_INTERVAL = McUtils.SECOND * 3;
+
+    private static final ResourcesRegistry _instance = new ResourcesRegistry();
+
+    private final ConcurrentHashMap<String, Node> nodes = new ConcurrentHashMap<String, Node>();
+    private final ConcurrentHashMap<String, Sensor> sensors = new ConcurrentHashMap<String, Sensor>();
+    private final ConcurrentHashMap<String, SensorVariable> variables = new ConcurrentHashMap<String, SensorVariable>();
+
+    // pending column updates, key: database id
+    private final ConcurrentHashMap<Integer, HashMap<String, Object>> pendingNodes =
+            new ConcurrentHashMap<Integer, HashMap<String, Object>>();
+    private final ConcurrentHashMap<Integer, HashMap<String, Object>> pendingSensors =
+            new ConcurrentHashMap<Integer, HashMap<String, Object>>();
+    private final ConcurrentHashMap<Integer, HashMap<String, Object>> pendingVariables =
+            new ConcurrentHashMap<Integer, HashMap<String, Object>>();
+
+    // incremented on invalidate, avoids caching a row loaded before an external update
+    private volatile long versionNodes = 0;
+    private volatile long versionSensors = 0;
+    private volatile long versionVariables = 0;
+
+    private ResourcesRegistry() {
+        super("resources-registry", FLUSH_INTERVAL);
+    }
+
+    public static ResourcesRegistry getInstance() {
+        return _instance;
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        invalidate(RESOURCE_TYPE.NODE);
+        invalidate(RESOURCE_TYPE.SENSOR);
+        invalidate(RESOURCE_TYPE.SENSOR_VARIABLE);
+    }
+
+    // returns a copy, cached node can be shared with the tasks which are still running
+    public Node getNode(Integer gatewayId, String nodeEui) {
+        String key = gatewayId + "_" + nodeEui;
+        Node node = nodes.get(key);
+        if (node == null) {
+            long version = versionNodes;
+            node = DaoUtils.getNodeDao().get(gatewayId, nodeEui);
+            if (node != null) {
+                synchronized (nodes) {
+                    if (version == versionNodes) {
+                        nodes.put(key, node);
+                    }
+                }
+            }
+        }
+        return node != null ? node.clone() : null;
+    }
+
+    // returns a copy, cached sensor can be shared with the tasks which are still running
+    public Sensor getSensor(Integer gatewayId, String nodeEui, String sensorId) {
+        Node node = getNode(gatewayId, nodeEui);
+        if (node == null) {
+            return null;
+        }
+        String key = node.getId() + "_" + sensorId;
+        Sensor sensor = sensors.get(key);
+        if (sensor == null) {
+            long version = versionSensors;
+            sensor = DaoUtils.getSensorDao().get(node.getId(), sensorId);
+            if (sensor == null) {
+                return null;
+            }
+            synchronized (sensors) {
+                if (version == versionSensors) {
+                    sensors.put(key, sensor);
+                }
+            }
+        }
+        return sensor.clone();
+    }
+
+    // returns a copy, cached variable can be shared with the tasks which are still running
+    public SensorVariable getSensorVariable(Integer sensorRefId, MESSAGE_TYPE_SET_REQ variableType) {
+        String key = sensorRefId + "_" + variableType;
+        SensorVariable sensorVariable = variables.get(key);
+        if (sensorVariable == null) {
+            long version = versionVariables;
+            sensorVariable = DaoUtils.getSensorVariableDao().get(sensorRefId, variableType);
+            if (sensorVariable == null) {
+                return null;
+            }
+            synchronized (variables) {
+                if (version == versionVariables) {
+                    variables.put(key, sensorVariable);
+                }
+            }
+        }
+        return sensorVariable.clone();
+    }
+
+    public void updateNodeState(Node node) {
+        HashMap<String, Object> columns = new HashMap<String, Object>();
+        columns.put(Node.KEY_LAST_SEEN, node.getLastSeen());
+        columns.put(Node.KEY_STATE, node.getState());
+        columns.put(Node.KEY_RSSI, node.getRssi());
+        columns.put(Node.KEY_BATTERY_LEVEL, node.getBatteryLevel());
+        pendingNodes.put(node.getId(), columns);
+        synchronized (nodes) {
+            String key = node.getGatewayTable().getId() + "_" + node.getEui();
+            if (nodes.containsKey(key)) {
+                nodes.put(key, node.clone());
+            }
+        }
+    }
+
+    public void updateSensorLastSeen(Sensor sensor) {
+        HashMap<String, Object> columns = new HashMap<String, Object>();
+        columns.put(Sensor.KEY_LAST_SEEN, sensor.getLastSeen());
+        pendingSensors.put(sensor.getId(), columns);
+        synchronized (sensors) {
+            String key = sensor.getNode().getId() + "_" + sensor.getSensorId();
+            if (sensors.containsKey(key)) {
+                sensors.put(key, sensor.clone());
+            }
+        }
+    }
+
+    public void updateSensorVariableValue(SensorVariable sensorVariable) {
+        HashMap<String, Object> columns = new HashMap<String, Object>();
+        columns.put(SensorVariable.KEY_VALUE, sensorVariable.getValue());
+        columns.put(SensorVariable.KEY_PREVIOUS_VALUE, sensorVariable.getPreviousValue());
+        columns.put(SensorVariable.KEY_TIMESTAMP, sensorVariable.getTimestamp());
+        pendingVariables.put(sensorVariable.getId(), columns);
+        synchronized (variables) {
+            String key = sensorVariable.getSensor().getId() + "_" + sensorVariable.getVariableType();
+            if (variables.containsKey(key)) {
+                variables.put(key, sensorVariable);
+            }
+        }
+    }
+
+    // update pending values on the node loaded from database
+    public Node merge(Node node) {
+        if (node == null || node.getId() == null) {
+            return node;
+        }
+        HashMap<String, Object> columns = pendingNodes.get(node.getId());
+        if (columns != null) {
+            if (columns.get(Node.KEY_LAST_SEEN) != null) {
+                node.setLastSeen((Long) columns.get(Node.KEY_LAST_SEEN));
+            }
+            if (columns.get(Node.KEY_STATE) != null) {
+                node.setState((STATE) columns.get(Node.KEY_STATE));
+            }
+            if (columns.get(Node.KEY_RSSI) != null) {
+                node.setRssi((String) columns.get(Node.KEY_RSSI));
+            }
+            if (columns.get(Node.KEY_BATTERY_LEVEL) != null) {
+                node.setBatteryLevel((String) columns.get(Node.KEY_BATTERY_LEVEL));
+            }
+        }
+        return node;
+    }
+
+    // update pending value on the sensor loaded from database
+    public Sensor merge(Sensor sensor) {
+        if (sensor == null || sensor.getId() == null) {
+            return sensor;
+        }
+        HashMap<String, Object> columns = pendingSensors.get(sensor.getId());
+        if (columns != null && columns.get(Sensor.KEY_LAST_SEEN) != null) {
+            sensor.setLastSeen((Long) columns.get(Sensor.KEY_LAST_SEEN));
+        }
+        return sensor;
+    }
+
+    // update pending value on the variable loaded from database
+    public SensorVariable merge(SensorVariable sensorVariable) {
+        if (sensorVariable == null || sensorVariable.getId() == null) {
+            return sensorVariable;
+        }
+        HashMap<String, Object> columns = pendingVariables.get(sensorVariable.getId());
+        if (columns != null) {
+            if (columns.get(SensorVariable.KEY_VALUE) != null) {
+                sensorVariable.setValue((String) columns.get(SensorVariable.KEY_VALUE));
+            }
+            if (columns.get(SensorVariable.KEY_PREVIOUS_VALUE) != null) {
+                sensorVariable.setPreviousValue((String) columns.get(SensorVariable.KEY_PREVIOUS_VALUE));
+            }
+            if (columns.get(SensorVariable.KEY_TIMESTAMP) != null) {
+                sensorVariable.setTimestamp((Long) columns.get(SensorVariable.KEY_TIMESTAMP));
+            }
+        }
+        return sensorVariable;
+    }
+
+    public void invalidate(RESOURCE_TYPE resourceType) {
+        switch (resourceType) {
+            case NODE:
+                synchronized (nodes) {
+                    versionNodes++;
+                    nodes.clear();
+                }
+                break;
+            case SENSOR:
+                synchronized (sensors) {
+                    versionSensors++;
+                    sensors.clear();
+                }
+                break;
+            case SENSOR_VARIABLE:
+                synchronized (variables) {
+                    versionVariables++;
+                    variables.clear();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void flushAll() {
+        flush(RESOURCE_TYPE.NODE);
+        flush(RESOURCE_TYPE.SENSOR);
+        flush(RESOURCE_TYPE.SENSOR_VARIABLE);
+    }
+
+    public synchronized void flush(RESOURCE_TYPE resourceType) {
+        switch (resourceType) {
+            case NODE:
+                flush(DaoUtils.getNodeDao().getDao(), pendingNodes, Node.KEY_ID);
+                break;
+            case SENSOR:
+                flush(DaoUtils.getSensorDao().getDao(), pendingSensors, Sensor.KEY_ID);
+                break;
+            case SENSOR_VARIABLE:
+                flush(DaoUtils.getSensorVariableDao().getDao(), pendingVariables, SensorVariable.KEY_ID);
+                break;
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.db;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.mycontroller.standalone.utils.McUtils;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.stmt.UpdateBuilder;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pending column updates, keyed by database id, are coalesced and flushed in a batch by a background thread
+ * on every interval, when signaled and on stop. Only the given columns are updated, a newer update of the
+ * same id replaces the pending one.
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+@Slf4j
+public abstract class WriteBehindStore implements Runnable {
+    private final String name;
+    private final long interval;
+
+    private final Object _signal = new Object();
+    private Thread _thread = null;
+    private volatile boolean terminate = false;
+
+    protected WriteBehindStore(String name, long interval) {
+        this.name = name;
+        this.interval = interval;
+    }
+
+    public abstract void flushAll();
+
+    public synchronized void start() {
+        if (_thread != null) {
+            return;
+        }
+        terminate = false;
+        _thread = new Thread(this, name);
+        _thread.setDaemon(true);
+        _thread.start();
+        _logger.debug("{} started, flush interval:{} ms", name, interval);
+    }
+
+    public void stop() {
+        Thread thread = null;
+        synchronized (this) {
+            terminate = true;
+            thread = _thread;
+            _thread = null;
+        }
+        signal();
+        if (thread != null) {
+            try {
+                thread.join(McUtils.SECOND * 10);
+            } catch (InterruptedException ex) {
+                _logger.error("Exception,", ex);
+            }
+        }
+        flushAll();
+        _logger.debug("{} stopped", name);
+    }
+
+    @Override
+    public void run() {
+        while (!terminate) {
+            synchronized (_signal) {
+                try {
+                    _signal.wait(interval);
+                } catch (InterruptedException ex) {
+                    _logger.error("Exception,", ex);
+                    break;
+                }
+            }
+            try {
+                flushAll();
+            } catch (Exception ex) {
+                _logger.error("Exception,", ex);
+            }
+        }
+    }
+
+    // flush before the interval
+    protected void signal() {
+        synchronized (_signal) {
+            _signal.notifyAll();
+        }
+    }
+
+    protected <T> void flush(final Dao<T, Integer> dao,
+            final ConcurrentHashMap<Integer, HashMap<String, Object>> pending, final String idColumn) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        final List<Integer> ids = new ArrayList<Integer>();
+        final List<HashMap<String, Object>> updates = new ArrayList<HashMap<String, Object>>();
+        for (Integer id : pending.keySet()) {
+            HashMap<String, Object> columns = pending.remove(id);
+            if (columns != null) {
+                ids.add(id);
+                updates.add(columns);
+            }
+        }
+        try {
+            dao.callBatchTasks(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    for (int index = 0; index < ids.size(); index++) {
+                        UpdateBuilder<T, Integer> updateBuilder = dao.updateBuilder();
+                        int columnsCount = 0;
+                        for (Entry<String, Object> column : updates.get(index).entrySet()) {
+                            if (column.getValue() != null) {
+                                updateBuilder.updateColumnValue(column.getKey(), column.getValue());
+                                columnsCount++;
+                            }
+                        }
+                        if (columnsCount > 0) {
+                            updateBuilder.where().eq(idColumn, ids.get(index));
+                            updateBuilder.update();
+                        }
+                    }
+                    return null;
+                }
+            });
+            _logger.debug("Flushed {} pending update(s) of {}", ids.size(), dao.getDataClass().getSimpleName());
+        } catch (Exception ex) {
+            _logger.error("Unable to flush pending updates of {}", dao.getDataClass().getSimpleName(), ex);
+            // keep it for the next flush, unless there is a newer update
+            for (int index = 0; index < ids.size(); index++) {
+                pending.putIfAbsent(ids.get(index), updates.get(index));
+            }
+        }
+    }
+}
@@ -237,7 +237,28 @@ public abstract class BaseAbstractDaoImpl<Tdao, Tid> {
 
         //Remove allowed resources from query, to avoid send list to user
         query.getFilters().put(AllowedResources.KEY_ALLOWED_RESOURCES, null);
-        return QueryResponse.builder().data(queryBuilder.query()).query(query).build();
+        return QueryResponse.builder().data(afterRead(queryBuilder.query())).query(query).build();
+    }
+
+    //Called before and after every update or delete, sub classes can override it to keep caches in sync
+    protected void beforeChange() {
+    }
+
+    protected void afterChange() {
+    }
+
+    //Called on every item read, sub classes can override it to update the values not written yet
+    protected Tdao afterRead(Tdao item) {
+        return item;
+    }
+
+    protected List<Tdao> afterRead(List<Tdao> items) {
+        if (items != null) {
+            for (int index = 0; index < items.size(); index++) {
+                items.set(index, afterRead(items.get(index)));
+            }
+        }
+        return items;
     }
 
     //Create new item
@@ -254,7 +275,9 @@ public abstract class BaseAbstractDaoImpl<Tdao, Tid> {
     //Create or update item
     public void createOrUpdate(Tdao tdao) {
         try {
+            beforeChange();
             CreateOrUpdateStatus status = this.getDao().createOrUpdate(tdao);
+            afterChange();
             _logger.debug("CreateOrUpdate item:[{}],Create:{},Update:{},Lines Changed:{}",
                     tdao, status.isCreated(), status.isUpdated(),
                     status.getNumLinesChanged());
@@ -267,7 +290,9 @@ public abstract class BaseAbstractDaoImpl<Tdao, Tid> {
     //delete item
     public void delete(Tdao tdao) {
         try {
+            beforeChange();
             Integer count = this.getDao().delete(tdao);
+            afterChange();
             _logger.debug("item:[{}] deleted, Delete count:{}", tdao, count);
         } catch (SQLException ex) {
             _logger.error("unable to delete item:[{}]", tdao, ex);
@@ -278,7 +303,9 @@ public abstract class BaseAbstractDaoImpl<Tdao, Tid> {
     //Update item
     public void update(Tdao tdao) {
         try {
+            beforeChange();
             Integer count = this.getDao().update(tdao);
+            afterChange();
             _logger.debug("Updated item:[{}], Update count:{}", tdao, count);
         } catch (SQLException ex) {
             _logger.error("unable to update item:[{}]", tdao, ex);
@@ -288,7 +315,9 @@ public abstract class BaseAbstractDaoImpl<Tdao, Tid> {
 
     public void updateId(Tdao tdao, Tid tid) {
         try {
+            beforeChange();
             Integer count = this.getDao().updateId(tdao, tid);
+            afterChange();
             _logger.debug("Updated item:[{}, id:{}], Update count:{}", tdao, tid, count);
         } catch (SQLException ex) {
             _logger.error("unable to update item:[{}]", tdao, ex);
@@ -313,7 +342,9 @@ public abstract class BaseAbstractDaoImpl<Tdao, Tid> {
                     updateBuilder.where().isNull(whereColName);
                 }
             }
+            beforeChange();
             Integer updateCount = updateBuilder.update();
+            afterChange();
             _logger.debug("Updated column[{}] with value[{}] where column[{}] == value[{}], Updated row count:{}",
                     setColName, setColValue, whereColName, whereColValue, updateCount);
         } catch (SQLException ex) {
@@ -326,7 +357,7 @@ public abstract class BaseAbstractDaoImpl<Tdao, Tid> {
     //Get all items
     public List<Tdao> getAll() {
         try {
-            return this.getDao().queryForAll();
+            return afterRead(this.getDao().queryForAll());
         } catch (SQLException ex) {
             _logger.error("unable to get all items", ex);
             throw new McDatabaseException(ex);
@@ -336,7 +367,7 @@ public abstract class BaseAbstractDaoImpl<Tdao, Tid> {
     //Get item with id
     public Tdao getById(Tid id) {
         try {
-            return this.getDao().queryForId(id);
+            return afterRead(this.getDao().queryForId(id));
         } catch (SQLException ex) {
             _logger.error("unable to get item[id:{}]", id, ex);
             throw new McDatabaseException(ex);
@@ -345,7 +376,9 @@ public abstract class BaseAbstractDaoImpl<Tdao, Tid> {
 
     public void deleteByIds(List<Tid> ids) {
         try {
+            beforeChange();
             Integer count = this.getDao().deleteIds(ids);
+            afterChange();
             _logger.debug("Ids:[{}] deleted, Delete count:{}", ids, count);
         } catch (SQLException ex) {
             _logger.error("unable to delete Ids:[{}]", ids, ex);
@@ -355,7 +388,9 @@ public abstract class BaseAbstractDaoImpl<Tdao, Tid> {
 
     public void deleteById(Tid id) {
         try {
+            beforeChange();
             this.getDao().deleteById(id);
+            afterChange();
         } catch (SQLException ex) {
             _logger.error("unable to delete item, id:[{}]", id, ex);
             throw new McDatabaseException(ex);
@@ -366,7 +401,9 @@ public abstract class BaseAbstractDaoImpl<Tdao, Tid> {
         try {
             DeleteBuilder<Tdao, Tid> deleteBuilder = this.getDao().deleteBuilder();
             deleteBuilder.where().eq(key, value);
+            beforeChange();
             int deleteCount = deleteBuilder.delete();
+            afterChange();
             _logger.debug("Deleted count:{}, for key:{}, value:{}", deleteCount, key, value);
         } catch (SQLException ex) {
             _logger.error("unable to delete item, key:{}, value:{}", key, value, ex);
@@ -378,7 +415,9 @@ public abstract class BaseAbstractDaoImpl<Tdao, Tid> {
         try {
             DeleteBuilder<Tdao, Tid> deleteBuilder = this.getDao().deleteBuilder();
             deleteBuilder.where().in(key, values);
+            beforeChange();
             int deleteCount = deleteBuilder.delete();
+            afterChange();
             _logger.debug("Deleted count:{}, for key:{}, values:{}", deleteCount, key, values);
         } catch (SQLException ex) {
             _logger.error("unable to delete item, key:{}, values:{}", key, values, ex);
@@ -404,7 +443,9 @@ public abstract class BaseAbstractDaoImpl<Tdao, Tid> {
                 where.and(whereCount);
             }
             deleteBuilder.setWhere(where);
+            beforeChange();
             int deleteCount = deleteBuilder.delete();
+            afterChange();
             _logger.debug("Deleted count:{}, for map:{}", deleteCount, map);
         } catch (SQLException ex) {
             _logger.error("unable to delete item, map:{}", map, ex);
@@ -415,7 +456,7 @@ public abstract class BaseAbstractDaoImpl<Tdao, Tid> {
     public List<Tdao> getAll(String key, List<Tid> ids) {
         try {
             if (ids != null && !ids.isEmpty()) {
-                return this.getDao().queryBuilder().where().in(key, ids).query();
+                return afterRead(this.getDao().queryBuilder().where().in(key, ids).query());
             }
             return new ArrayList<Tdao>();
         } catch (SQLException ex) {
@@ -426,7 +467,7 @@ public abstract class BaseAbstractDaoImpl<Tdao, Tid> {
 
     public List<Tdao> getAll(String key, Object value) {
         try {
-            return this.getDao().queryBuilder().where().eq(key, value).query();
+            return afterRead(this.getDao().queryBuilder().where().eq(key, value).query());
         } catch (SQLException ex) {
             _logger.error("unable to get all items key:{}, value:{}", key, value, ex);
             throw new McDatabaseException(ex);
@@ -435,7 +476,7 @@ public abstract class BaseAbstractDaoImpl<Tdao, Tid> {
 
     public Tdao get(String key, Object value) {
         try {
-            return this.getDao().queryBuilder().where().eq(key, value).queryForFirst();
+            return afterRead(this.getDao().queryBuilder().where().eq(key, value).queryForFirst());
         } catch (SQLException ex) {
             _logger.error("unable to get all items key:{}, value:{}", key, value, ex);
             throw new McDatabaseException(ex);
@@ -535,7 +576,9 @@ public abstract class BaseAbstractDaoImpl<Tdao, Tid> {
         DeleteBuilder<Tdao, Tid> deleteBuilder = this.getDao().deleteBuilder();
         int count = 0;
         try {
+            beforeChange();
             count = deleteBuilder.delete();
+            afterChange();
             _logger.debug("Deleted, {} records", count);
         } catch (SQLException ex) {
             _logger.error("Exception,", ex);
@@ -560,7 +603,7 @@ public abstract class BaseAbstractDaoImpl<Tdao, Tid> {
             if (orderBy != null) {
                 queryBuilder.orderBy(orderBy, true);
             }
-            return queryBuilder.offset(startRow).limit(limit).query();
+            return afterRead(queryBuilder.offset(startRow).limit(limit).query());
         } catch (SQLException ex) {
             _logger.error("Exception,", ex);
         }
@@ -26,6 +26,7 @@ import org.mycontroller.standalone.api.jaxrs.model.Query;
 import org.mycontroller.standalone.api.jaxrs.model.QueryResponse;
 import org.mycontroller.standalone.auth.AuthUtils;
 import org.mycontroller.standalone.db.DaoUtils;
+import org.mycontroller.standalone.db.ResourcesRegistry;
 import org.mycontroller.standalone.db.tables.GatewayTable;
 import org.mycontroller.standalone.db.tables.Node;
 import org.mycontroller.standalone.exceptions.McDatabaseException;
@@ -47,6 +48,21 @@ public class NodeDaoImpl extends BaseAbstractDaoImpl<Node, Integer> implements N
         super(connectionSource, Node.class);
     }
 
+    @Override
+    protected void beforeChange() {
+        ResourcesRegistry.getInstance().flush(RESOURCE_TYPE.NODE);
+    }
+
+    @Override
+    protected void afterChange() {
+        ResourcesRegistry.getInstance().invalidate(RESOURCE_TYPE.NODE);
+    }
+
+    @Override
+    protected Node afterRead(Node node) {
+        return ResourcesRegistry.getInstance().merge(node);
+    }
+
     @Override
     public List<Node> getAllByGatewayId(Integer gatewayId) {
         return super.getAll(Node.KEY_GATEWAY_ID, gatewayId);
@@ -63,7 +79,7 @@ public class NodeDaoImpl extends BaseAbstractDaoImpl<Node, Integer> implements N
         try {
             queryBuilder = this.getDao().queryBuilder();
             queryBuilder.where().eq(Node.KEY_GATEWAY_ID, gatewayId).and().eq(Node.KEY_EUI, nodeEui);
-            return queryBuilder.queryForFirst();
+            return afterRead(queryBuilder.queryForFirst());
         } catch (SQLException ex) {
             _logger.error("unable to get Node. gatewayId:{}, nodeEui:{}", gatewayId, nodeEui, ex);
             try {
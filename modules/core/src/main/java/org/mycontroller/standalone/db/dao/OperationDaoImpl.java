@@ -24,6 +24,7 @@ import org.mycontroller.standalone.api.jaxrs.model.QueryResponse;
 import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.db.tables.OperationTable;
 import org.mycontroller.standalone.exceptions.McDatabaseException;
+import org.mycontroller.standalone.rule.McRuleStateStore;
 
 import com.j256.ormlite.support.ConnectionSource;
 
@@ -40,6 +41,11 @@ public class OperationDaoImpl extends BaseAbstractDaoImpl<OperationTable, Intege
         super(connectionSource, OperationTable.class);
     }
 
+    @Override
+    protected void beforeChange() {
+        McRuleStateStore.getInstance().flushOperations();
+    }
+
     @Override
     public List<OperationTable> getAll(List<Integer> ids) {
         return super.getAll(OperationTable.KEY_ID, ids);
@@ -25,6 +25,7 @@ import org.mycontroller.standalone.api.jaxrs.model.Query;
 import org.mycontroller.standalone.api.jaxrs.model.QueryResponse;
 import org.mycontroller.standalone.db.tables.RuleDefinitionTable;
 import org.mycontroller.standalone.exceptions.McDatabaseException;
+import org.mycontroller.standalone.rule.McRuleStateStore;
 import org.mycontroller.standalone.rule.RuleUtils.DAMPENING_TYPE;
 
 import com.j256.ormlite.stmt.UpdateBuilder;
@@ -43,6 +44,11 @@ public class RuleDefinitionDaoImpl extends BaseAbstractDaoImpl<RuleDefinitionTab
         super(connectionSource, RuleDefinitionTable.class);
     }
 
+    @Override
+    protected void beforeChange() {
+        McRuleStateStore.getInstance().flushRules();
+    }
+
     @Override
     public List<RuleDefinitionTable> getAllEnabled() {
         return super.getAll(RuleDefinitionTable.KEY_ENABLED, true);
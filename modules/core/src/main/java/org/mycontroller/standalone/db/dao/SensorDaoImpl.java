@@ -27,6 +27,7 @@ import org.mycontroller.standalone.api.jaxrs.model.QueryResponse;
 import org.mycontroller.standalone.auth.AuthUtils;
 import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.db.DbException;
+import org.mycontroller.standalone.db.ResourcesRegistry;
 import org.mycontroller.standalone.db.tables.Node;
 import org.mycontroller.standalone.db.tables.Sensor;
 import org.mycontroller.standalone.exceptions.McDatabaseException;
@@ -49,6 +50,21 @@ public class SensorDaoImpl extends BaseAbstractDaoImpl<Sensor, Integer> implemen
         super(connectionSource, Sensor.class);
     }
 
+    @Override
+    protected void beforeChange() {
+        ResourcesRegistry.getInstance().flush(RESOURCE_TYPE.SENSOR);
+    }
+
+    @Override
+    protected void afterChange() {
+        ResourcesRegistry.getInstance().invalidate(RESOURCE_TYPE.SENSOR);
+    }
+
+    @Override
+    protected Sensor afterRead(Sensor sensor) {
+        return ResourcesRegistry.getInstance().merge(sensor);
+    }
+
     @Override
     public void create(Integer gatewayId, String nodeEui, Sensor sensor) {
         create(DaoUtils.getNodeDao().get(gatewayId, nodeEui).getId(), sensor);
@@ -85,7 +101,9 @@ public class SensorDaoImpl extends BaseAbstractDaoImpl<Sensor, Integer> implemen
             DeleteBuilder<Sensor, Integer> deleteBuilder = this.getDao().deleteBuilder();
             deleteBuilder.where().eq(Sensor.KEY_NODE_ID, sensor.getNode().getId())
                     .and().eq(Sensor.KEY_SENSOR_ID, sensor.getSensorId());
+            beforeChange();
             int deleteCount = deleteBuilder.delete();
+            afterChange();
             _logger.debug("Deleted senosor:[{}], delete count:{}", sensor, deleteCount);
         } catch (SQLException ex) {
             _logger.error("unable to delete, sensor:{}", sensor, ex);
@@ -152,7 +170,7 @@ public class SensorDaoImpl extends BaseAbstractDaoImpl<Sensor, Integer> implemen
             if (nodeId == null) {
                 return null;
             }
-            return this.getDao().queryForEq(Sensor.KEY_NODE_ID, nodeId);
+            return afterRead(this.getDao().queryForEq(Sensor.KEY_NODE_ID, nodeId));
         } catch (SQLException ex) {
             _logger.error("unable to get all list with node id:{}", nodeId, ex);
             throw new McDatabaseException(ex);
@@ -167,8 +185,8 @@ public class SensorDaoImpl extends BaseAbstractDaoImpl<Sensor, Integer> implemen
     @Override
     public List<Sensor> getByType(String typeString) {
         try {
-            return this.getDao()
-                    .queryForEq("type", MESSAGE_TYPE_PRESENTATION.valueOf(typeString));
+            return afterRead(this.getDao()
+                    .queryForEq("type", MESSAGE_TYPE_PRESENTATION.valueOf(typeString)));
         } catch (SQLException ex) {
             _logger.error("unable to get all list with typeString: {}", typeString, ex);
             throw new McDatabaseException(ex);
@@ -178,7 +196,7 @@ public class SensorDaoImpl extends BaseAbstractDaoImpl<Sensor, Integer> implemen
     @Override
     public List<Sensor> getAll() {
         try {
-            return this.getDao().queryForAll();
+            return afterRead(this.getDao().queryForAll());
         } catch (SQLException ex) {
             _logger.error("unable to get all list", ex);
             throw new McDatabaseException(ex);
@@ -193,7 +211,7 @@ public class SensorDaoImpl extends BaseAbstractDaoImpl<Sensor, Integer> implemen
             }
             QueryBuilder<Sensor, Integer> queryBuilder = this.getDao().queryBuilder();
             queryBuilder.where().in(Sensor.KEY_NODE_ID, nodeIds);
-            return queryBuilder.query();
+            return afterRead(queryBuilder.query());
         } catch (SQLException ex) {
             _logger.error("unable to get all list with nodeIds:{}", nodeIds, ex);
             throw new McDatabaseException(ex);
@@ -204,10 +222,10 @@ public class SensorDaoImpl extends BaseAbstractDaoImpl<Sensor, Integer> implemen
     public Sensor get(Integer nodeId, String sensorId) {
         try {
             nodeIdSensorIdnullCheck(nodeId, sensorId);
-            return this.getDao().queryForFirst(
+            return afterRead(this.getDao().queryForFirst(
                     this.getDao().queryBuilder()
                             .where().eq(Sensor.KEY_NODE_ID, nodeId)
-                            .and().eq(Sensor.KEY_SENSOR_ID, sensorId).prepare());
+                            .and().eq(Sensor.KEY_SENSOR_ID, sensorId).prepare()));
         } catch (SQLException ex) {
             _logger.error("unable to get", ex);
             throw new McDatabaseException(ex);
@@ -285,7 +303,7 @@ public class SensorDaoImpl extends BaseAbstractDaoImpl<Sensor, Integer> implemen
             if (ids != null && !ids.isEmpty()) {
                 QueryBuilder<Sensor, Integer> queryBuilder = this.getDao().queryBuilder();
                 queryBuilder.where().in(Sensor.KEY_ID, ids);
-                return queryBuilder.query();
+                return afterRead(queryBuilder.query());
             }
         } catch (SQLException ex) {
             _logger.error("unable to get all list with sensor Ids:{}", ids, ex);
@@ -326,7 +344,7 @@ public class SensorDaoImpl extends BaseAbstractDaoImpl<Sensor, Integer> implemen
             if (roomId == null) {
                 return null;
             }
-            return this.getDao().queryForEq(Sensor.KEY_ROOM_ID, roomId);
+            return afterRead(this.getDao().queryForEq(Sensor.KEY_ROOM_ID, roomId));
         } catch (SQLException ex) {
             _logger.error("unable to get all list with room id:{}", roomId, ex);
             throw new McDatabaseException(ex);
@@ -337,15 +355,15 @@ public class SensorDaoImpl extends BaseAbstractDaoImpl<Sensor, Integer> implemen
     public Sensor getByRoomId(String sensorName, Integer roomId) {
         try {
             if (roomId == null) {
-                return this.getDao().queryForFirst(
+                return afterRead(this.getDao().queryForFirst(
                         this.getDao().queryBuilder()
                                 .where().isNull(Sensor.KEY_ROOM_ID)
-                                .and().eq(Sensor.KEY_NAME, sensorName).prepare());
+                                .and().eq(Sensor.KEY_NAME, sensorName).prepare()));
             } else {
-                return this.getDao().queryForFirst(
+                return afterRead(this.getDao().queryForFirst(
                         this.getDao().queryBuilder()
                                 .where().eq(Sensor.KEY_ROOM_ID, roomId)
-                                .and().eq(Sensor.KEY_NAME, sensorName).prepare());
+                                .and().eq(Sensor.KEY_NAME, sensorName).prepare()));
             }
 
         } catch (SQLException ex) {
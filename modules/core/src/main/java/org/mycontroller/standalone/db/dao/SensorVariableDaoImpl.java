@@ -27,6 +27,7 @@ import org.mycontroller.standalone.api.jaxrs.model.QueryResponse;
 import org.mycontroller.standalone.auth.AuthUtils;
 import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.db.DbException;
+import org.mycontroller.standalone.db.ResourcesRegistry;
 import org.mycontroller.standalone.db.tables.Sensor;
 import org.mycontroller.standalone.db.tables.SensorVariable;
 import org.mycontroller.standalone.exceptions.McDatabaseException;
@@ -51,6 +52,21 @@ public class SensorVariableDaoImpl extends BaseAbstractDaoImpl<SensorVariable, I
         super(connectionSource, SensorVariable.class);
     }
 
+    @Override
+    protected void beforeChange() {
+        ResourcesRegistry.getInstance().flush(RESOURCE_TYPE.SENSOR_VARIABLE);
+    }
+
+    @Override
+    protected void afterChange() {
+        ResourcesRegistry.getInstance().invalidate(RESOURCE_TYPE.SENSOR_VARIABLE);
+    }
+
+    @Override
+    protected SensorVariable afterRead(SensorVariable sensorVariable) {
+        return ResourcesRegistry.getInstance().merge(sensorVariable);
+    }
+
     @Override
     public void create(SensorVariable sensorVariable) {
         try {
@@ -114,7 +130,9 @@ public class SensorVariableDaoImpl extends BaseAbstractDaoImpl<SensorVariable, I
                 updateBuilder.where().eq(SensorVariable.KEY_SENSOR_DB_ID, sensorVariable.getSensor().getId()).and()
                         .eq(SensorVariable.KEY_VARIABLE_TYPE, sensorVariable.getVariableType());
             }
+            beforeChange();
             int updateCount = updateBuilder.update();
+            afterChange();
             _logger.debug("Updated senosorValue:[{}], update count:{}", sensorVariable, updateCount);
         } catch (SQLException ex) {
             _logger.error("unable to get", ex);
@@ -131,7 +149,7 @@ public class SensorVariableDaoImpl extends BaseAbstractDaoImpl<SensorVariable, I
             if (sensorRefId == null) {
                 return new ArrayList<SensorVariable>();
             }
-            return this.getDao().queryForEq(SensorVariable.KEY_SENSOR_DB_ID, sensorRefId);
+            return afterRead(this.getDao().queryForEq(SensorVariable.KEY_SENSOR_DB_ID, sensorRefId));
         } catch (SQLException ex) {
             _logger.error("unable to get all list with sensorRefId:{}", sensorRefId, ex);
             throw new McDatabaseException(ex);
@@ -158,7 +176,7 @@ public class SensorVariableDaoImpl extends BaseAbstractDaoImpl<SensorVariable, I
             if (variableType == null) {
                 return null;
             }
-            return this.getDao().queryForEq(SensorVariable.KEY_VARIABLE_TYPE, variableType);
+            return afterRead(this.getDao().queryForEq(SensorVariable.KEY_VARIABLE_TYPE, variableType));
         } catch (SQLException ex) {
             _logger.error("unable to get all list with variableType: {}", variableType, ex);
             throw new McDatabaseException(ex);
@@ -174,7 +192,7 @@ public class SensorVariableDaoImpl extends BaseAbstractDaoImpl<SensorVariable, I
             QueryBuilder<SensorVariable, Integer> queryBuilder = this.getDao().queryBuilder();
             queryBuilder.where().eq(SensorVariable.KEY_SENSOR_DB_ID, sensorRefId).and()
                     .eq(SensorVariable.KEY_METRIC, MetricsUtils.METRIC_TYPE.DOUBLE);
-            return queryBuilder.query();
+            return afterRead(queryBuilder.query());
         } catch (SQLException ex) {
             _logger.error("unable to get all list with sensorRefId:{}, MetricType:{}", sensorRefId,
                     MetricsUtils.METRIC_TYPE.DOUBLE, ex);
@@ -186,10 +204,10 @@ public class SensorVariableDaoImpl extends BaseAbstractDaoImpl<SensorVariable, I
     public SensorVariable get(Integer sensorRefId, MESSAGE_TYPE_SET_REQ messageVariableType) {
         try {
             nodeIdSensorIdnullCheck(sensorRefId, messageVariableType);
-            return this.getDao().queryForFirst(
+            return afterRead(this.getDao().queryForFirst(
                     this.getDao().queryBuilder()
                             .where().eq(SensorVariable.KEY_SENSOR_DB_ID, sensorRefId)
-                            .and().eq(SensorVariable.KEY_VARIABLE_TYPE, messageVariableType).prepare());
+                            .and().eq(SensorVariable.KEY_VARIABLE_TYPE, messageVariableType).prepare()));
         } catch (SQLException ex) {
             _logger.error("unable to get", ex);
             throw new McDatabaseException(ex);
@@ -203,7 +221,7 @@ public class SensorVariableDaoImpl extends BaseAbstractDaoImpl<SensorVariable, I
     public SensorVariable get(SensorVariable sensorVariable) {
         try {
             if (sensorVariable.getId() != null) {
-                return this.getDao().queryForId(sensorVariable.getId());
+                return afterRead(this.getDao().queryForId(sensorVariable.getId()));
             } else {
                 return this.get(sensorVariable.getSensor().getId(), sensorVariable.getVariableType());
             }
@@ -216,7 +234,7 @@ public class SensorVariableDaoImpl extends BaseAbstractDaoImpl<SensorVariable, I
     @Override
     public SensorVariable get(int id) {
         try {
-            return this.getDao().queryForId(id);
+            return afterRead(this.getDao().queryForId(id));
         } catch (SQLException ex) {
             _logger.error("unable to get", ex);
             throw new McDatabaseException(ex);
@@ -262,7 +280,7 @@ public class SensorVariableDaoImpl extends BaseAbstractDaoImpl<SensorVariable, I
                 where.in(SensorVariable.KEY_ID, ids);
                 queryBuilder.setWhere(where);
                 queryBuilder.orderBy(SensorVariable.KEY_PRIORITY, true);
-                return queryBuilder.query();
+                return afterRead(queryBuilder.query());
             }
             return new ArrayList<SensorVariable>();
         } catch (SQLException ex) {
@@ -135,6 +135,29 @@ public class Node {
     @DatabaseField(canBeNull = true, columnName = KEY_SMART_SLEEP_ENABLED)
     private Boolean smartSleepEnabled;
 
+    @SuppressWarnings("unchecked")
+    public Node clone() {
+        return Node.builder()
+                .id(id)
+                .eui(eui)
+                .gatewayTable(gatewayTable)
+                .name(name)
+                .version(version)
+                .type(type)
+                .libVersion(libVersion)
+                .batteryLevel(batteryLevel)
+                .eraseConfig(eraseConfig)
+                .firmware(firmware)
+                .state(state)
+                .lastSeen(lastSeen)
+                .rssi(rssi)
+                .properties(properties != null ? (HashMap<String, Object>) properties.clone() : null)
+                .parentNodeEui(parentNodeEui)
+                .registrationState(registrationState)
+                .smartSleepEnabled(smartSleepEnabled)
+                .build();
+    }
+
     public HashMap<String, Object> getProperties() {
         if (properties == null) {
             properties = new HashMap<String, Object>();
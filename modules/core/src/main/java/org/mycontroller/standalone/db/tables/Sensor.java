@@ -16,6 +16,7 @@
  */
 package org.mycontroller.standalone.db.tables;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.mycontroller.standalone.db.DB_TABLES;
@@ -81,6 +82,19 @@ public class Sensor {
 
     private List<String> variableTypes;
 
+    public Sensor clone() {
+        return Sensor.builder()
+                .id(id)
+                .sensorId(sensorId)
+                .type(type)
+                .name(name)
+                .lastSeen(lastSeen)
+                .node(node)
+                .room(room)
+                .variableTypes(variableTypes != null ? new ArrayList<String>(variableTypes) : null)
+                .build();
+    }
+
     public List<String> getVariableTypes() {
         if (this.variableTypes == null) {
             this.variableTypes = SensorUtils.getVariableTypes(this);
@@ -123,6 +123,24 @@ public class SensorVariable {
         return this;
     }
 
+    @SuppressWarnings("unchecked")
+    public SensorVariable clone() {
+        return SensorVariable.builder()
+                .id(id)
+                .sensor(sensor)
+                .variableType(variableType)
+                .metricType(metricType)
+                .timestamp(timestamp)
+                .value(value)
+                .previousValue(previousValue)
+                .unitType(unitType)
+                .readOnly(readOnly)
+                .offset(offset)
+                .priority(priority)
+                .properties(properties != null ? (HashMap<String, Object>) properties.clone() : null)
+                .build();
+    }
+
     public void setValue(String value) {
         previousValue = this.value;
         this.value = value;
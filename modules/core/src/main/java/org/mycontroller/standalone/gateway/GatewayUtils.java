@@ -20,6 +20,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.mycontroller.standalone.AppProperties.RESOURCE_TYPE;
 import org.mycontroller.standalone.AppProperties.STATE;
 import org.mycontroller.standalone.McObjectManager;
 import org.mycontroller.standalone.db.DaoUtils;
@@ -40,6 +41,7 @@ import org.mycontroller.standalone.provider.phantio.PhantIOEngine;
 import org.mycontroller.standalone.provider.philipshue.PhilipsHueEngine;
 import org.mycontroller.standalone.provider.rflink.RFLinkEngine;
 import org.mycontroller.standalone.provider.wunderground.WundergroundEngine;
+import org.mycontroller.standalone.rule.McRuleEventBus;
 
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
@@ -137,10 +139,7 @@ public class GatewayUtils {
         //Before load all gateways, make state to unavailable
         for (GatewayTable gatewayTable : gateways) {
             if (gatewayTable.getEnabled()) {
-                gatewayTable.setState(STATE.UNAVAILABLE);
-                gatewayTable.setStatusSince(System.currentTimeMillis());
-                gatewayTable.setStatusMessage("Yet to start this gateway!");
-                DaoUtils.getGatewayDao().update(gatewayTable);
+                updateState(gatewayTable, STATE.UNAVAILABLE, "Yet to start this gateway!");
             }
         }
         //Load all the gateways
@@ -296,10 +295,19 @@ public class GatewayUtils {
         // disable this gateway
         gatewayTable = DaoUtils.getGatewayDao().getById(gatewayId);
         gatewayTable.setEnabled(false);
+        updateState(gatewayTable, STATE.UNAVAILABLE, "Disabled by user");
+    }
+
+    // rules of the gateway are evaluated, when the state changed. See GatewayConfig.setStatus
+    private static void updateState(GatewayTable gatewayTable, STATE state, String statusMessage) {
+        boolean stateChanged = gatewayTable.getState() != state;
+        gatewayTable.setState(state);
         gatewayTable.setStatusSince(System.currentTimeMillis());
-        gatewayTable.setState(STATE.UNAVAILABLE);
-        gatewayTable.setStatusMessage("Disabled by user");
+        gatewayTable.setStatusMessage(statusMessage);
         DaoUtils.getGatewayDao().update(gatewayTable);
+        if (stateChanged) {
+            McRuleEventBus.getInstance().publishStateChange(RESOURCE_TYPE.GATEWAY, gatewayTable.getId());
+        }
     }
 
     public static void enableGateways(List<Integer> ids) {
@@ -19,10 +19,13 @@ package org.mycontroller.standalone.gateway.config;
 import java.util.HashMap;
 
 import org.mycontroller.standalone.AppProperties.NETWORK_TYPE;
+import org.mycontroller.standalone.AppProperties.RESOURCE_TYPE;
 import org.mycontroller.standalone.AppProperties.STATE;
 import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.db.tables.GatewayTable;
 import org.mycontroller.standalone.gateway.GatewayUtils.GATEWAY_TYPE;
+import org.mycontroller.standalone.offheap.OffHeapFactory.QUEUE_TYPE;
+import org.mycontroller.standalone.rule.McRuleEventBus;
 import org.mycontroller.standalone.utils.McUtils;
 
 import com.fasterxml.jackson.annotation.JsonGetter;
@@ -44,6 +47,10 @@ public abstract class GatewayConfig {
     public static final String KEY_FAILED_RETRY_COUNT = "failedRetryCount";
     public static final String KEY_ACK_WAIT_TIME = "ackWaitTime";
     public static final String KEY_RECONNECT_DELAY = "reconnectDelay";
+    public static final String KEY_TX_WINDOW_SIZE = "txWindowSize";
+    public static final String KEY_EXECUTOR_LANES = "executorLanes";
+    public static final String KEY_QUEUE_TYPE = "queueType";
+    public static final String KEY_QUEUE_SYNC_INTERVAL = "queueSyncInterval";
 
     private Integer id;
     private Boolean enabled;
@@ -60,6 +67,10 @@ public abstract class GatewayConfig {
     private Long statusSince;
     private Integer reconnectDelay;
     private Long txDelay;
+    private Integer txWindowSize; // maximum Tx messages waiting for ack at a time
+    private Integer executorLanes; // 0 - messages executed on the engine thread
+    private QUEUE_TYPE queueType;
+    private Long queueSyncInterval; // journal queue, forces writes to disk at this interval, 0 - on every message
 
     public abstract String getConnectionDetails();
 
@@ -82,6 +93,10 @@ public abstract class GatewayConfig {
         gatewayTable.getProperties().put(KEY_FAILED_RETRY_COUNT, failedRetryCount);
         gatewayTable.getProperties().put(KEY_ACK_WAIT_TIME, ackWaitTime);
         gatewayTable.getProperties().put(KEY_RECONNECT_DELAY, reconnectDelay);
+        gatewayTable.getProperties().put(KEY_TX_WINDOW_SIZE, txWindowSize);
+        gatewayTable.getProperties().put(KEY_EXECUTOR_LANES, executorLanes);
+        gatewayTable.getProperties().put(KEY_QUEUE_TYPE, queueType != null ? queueType.getText() : null);
+        gatewayTable.getProperties().put(KEY_QUEUE_SYNC_INTERVAL, queueSyncInterval);
         return gatewayTable;
     }
 
@@ -102,17 +117,26 @@ public abstract class GatewayConfig {
         failedRetryCount = (Integer) gatewayTable.getProperty(KEY_FAILED_RETRY_COUNT, 3);
         ackWaitTime = McUtils.getLong(gatewayTable.getProperty(KEY_ACK_WAIT_TIME, 500L));
         reconnectDelay = (Integer) gatewayTable.getProperty(KEY_RECONNECT_DELAY, 120);
+        txWindowSize = (Integer) gatewayTable.getProperty(KEY_TX_WINDOW_SIZE, 1);
+        executorLanes = (Integer) gatewayTable.getProperty(KEY_EXECUTOR_LANES, 0);
+        queueType = QUEUE_TYPE.fromString((String) gatewayTable.getProperty(KEY_QUEUE_TYPE,
+                QUEUE_TYPE.MAPDB.getText()));
+        queueSyncInterval = McUtils.getLong(gatewayTable.getProperty(KEY_QUEUE_SYNC_INTERVAL, 1000L));
     }
 
     public void setStatus(STATE state, String statusMessage) {
         GatewayTable gw = DaoUtils.getGatewayDao().getById(getId());
-        if (gw.getState() != state) {
+        boolean stateChanged = gw.getState() != state;
+        if (stateChanged) {
             gw.setState(state);
             gw.setStatusSince(System.currentTimeMillis());
         }
         gw.setStatusMessage(statusMessage);
         DaoUtils.getGatewayDao().update(gw);
         updateGateway(gw);
+        if (stateChanged) {
+            McRuleEventBus.getInstance().publishStateChange(RESOURCE_TYPE.GATEWAY, gw.getId());
+        }
     }
 
     //For json
@@ -130,4 +154,9 @@ public abstract class GatewayConfig {
     private String getStateString() {
         return state.getText();
     }
+
+    @JsonGetter("queueType")
+    private String getQueueTypeString() {
+        return queueType != null ? queueType.getText() : null;
+    }
 }
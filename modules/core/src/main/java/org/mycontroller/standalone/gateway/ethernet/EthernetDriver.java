@@ -24,6 +24,7 @@ import java.net.Socket;
 
 import org.mycontroller.standalone.AppProperties.STATE;
 import org.mycontroller.standalone.McThreadPoolFactory;
+import org.mycontroller.standalone.McThreadPoolFactory.POOL_TYPE;
 import org.mycontroller.standalone.eventbus.McEventBus;
 import org.mycontroller.standalone.eventbus.MessageStatus;
 import org.mycontroller.standalone.exceptions.MessageParserException;
@@ -69,7 +70,7 @@ public class EthernetDriver {
             _socket.connect(new InetSocketAddress(_config.getHost(), _config.getPort()), SOCKET_TIMEOUT);
             _listener = new EthernetDataListener(_socket, _config, this._parser, _queue);
             // Start listener in new thread via thread pool
-            McThreadPoolFactory.execute(_listener);
+            McThreadPoolFactory.execute(POOL_TYPE.IO_LISTENER, _listener);
             _logger.info("Connected successfully[{}:{}]", _config.getHost(), _config.getPort());
             _config.setStatus(STATE.UP, "Connected Successfully");
         } catch (Exception ex) {
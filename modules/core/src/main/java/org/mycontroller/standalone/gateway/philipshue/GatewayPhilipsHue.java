@@ -18,6 +18,7 @@ package org.mycontroller.standalone.gateway.philipshue;
 
 import org.mycontroller.standalone.AppProperties.STATE;
 import org.mycontroller.standalone.McThreadPoolFactory;
+import org.mycontroller.standalone.McThreadPoolFactory.POOL_TYPE;
 import org.mycontroller.standalone.db.tables.GatewayTable;
 import org.mycontroller.standalone.exceptions.MessageParserException;
 import org.mycontroller.standalone.gateway.GatewayAbstract;
@@ -52,7 +53,7 @@ public class GatewayPhilipsHue extends GatewayAbstract {
     @Override
     public void connect() {
         _driver.connect();
-        McThreadPoolFactory.execute(_driver);
+        McThreadPoolFactory.execute(POOL_TYPE.IO_LISTENER, _driver);
     }
 
     @Override
@@ -21,14 +21,13 @@ import java.util.List;
 import org.mycontroller.standalone.AppProperties.RESOURCE_TYPE;
 import org.mycontroller.standalone.AppProperties.STATE;
 import org.mycontroller.standalone.McObjectManager;
-import org.mycontroller.standalone.McThreadPoolFactory;
 import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.db.ResourceOperation;
 import org.mycontroller.standalone.db.tables.ResourcesGroup;
 import org.mycontroller.standalone.db.tables.ResourcesGroupMap;
 import org.mycontroller.standalone.gateway.GatewayUtils;
 import org.mycontroller.standalone.model.ResourceModel;
-import org.mycontroller.standalone.rule.McRuleEngine;
+import org.mycontroller.standalone.rule.McRuleEventBus;
 
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
@@ -96,7 +95,7 @@ public class ResourcesGroupUtils {
         DaoUtils.getResourcesGroupDao().update(resourcesGroup);
 
         //Execute Rules for this resources group
-        McThreadPoolFactory.execute(new McRuleEngine(RESOURCE_TYPE.RESOURCES_GROUP, resourcesGroup.getId()));
+        McRuleEventBus.getInstance().publishStateChange(RESOURCE_TYPE.RESOURCES_GROUP, resourcesGroup.getId());
 
         //TODO: add it in to log message
     }
@@ -21,11 +21,14 @@ import java.util.List;
 import org.knowm.sundial.Job;
 import org.knowm.sundial.exceptions.JobInterruptException;
 import org.mycontroller.standalone.AppProperties.NETWORK_TYPE;
+import org.mycontroller.standalone.AppProperties.RESOURCE_TYPE;
 import org.mycontroller.standalone.AppProperties.STATE;
 import org.mycontroller.standalone.McObjectManager;
 import org.mycontroller.standalone.db.DaoUtils;
+import org.mycontroller.standalone.db.ResourcesRegistry;
 import org.mycontroller.standalone.db.tables.Node;
 import org.mycontroller.standalone.gateway.GatewayUtils;
+import org.mycontroller.standalone.rule.McRuleEventBus;
 import org.mycontroller.standalone.utils.McUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -105,6 +108,7 @@ public class NodeAliveStatusJob extends Job {
 
     private void checkHeartbeat() {
         List<Node> nodes = DaoUtils.getNodeDao().getAll();
+        boolean stateChanged = false;
         for (Node node : nodes) {
             STATE newState = null;
             if (node.getLastSeen() == null
@@ -127,6 +131,8 @@ public class NodeAliveStatusJob extends Job {
                 }
                 if (newState != null) {
                     DaoUtils.getNodeDao().update(Node.KEY_STATE, newState, node.getId());
+                    stateChanged = true;
+                    McRuleEventBus.getInstance().publishStateChange(RESOURCE_TYPE.NODE, node.getId());
                     _logger.debug("Node new state[eui:{}, name:{}, gateway:{}, state:{}]",
                             node.getEui(), node.getName(), node.getGatewayTable().getName(), newState);
                     // for mysensors network, node 0 is gateway. if the node 0 is down. reload the gateway.
@@ -141,6 +147,10 @@ public class NodeAliveStatusJob extends Job {
                 }
             }
         }
+        // cached nodes should not keep the old state
+        if (stateChanged) {
+            ResourcesRegistry.getInstance().invalidate(RESOURCE_TYPE.NODE);
+        }
     }
 
     public static synchronized void setTerminateAliveCheck(boolean terminateAliveCheck) {
@@ -22,7 +22,8 @@ package org.mycontroller.standalone.metrics;
  */
 public enum METRIC_ENGINE {
     MY_CONTROLLER("MyController"),
-    INFLUXDB("InfluxDB");
+    INFLUXDB("InfluxDB"),
+    CHUNKS("Local chunks");
 
     public static METRIC_ENGINE get(int id) {
         for (METRIC_ENGINE type : values()) {
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.mycontroller.standalone.AppProperties;
+import org.mycontroller.standalone.db.tables.MetricsDoubleTypeDevice;
+import org.mycontroller.standalone.db.tables.SensorVariable;
+import org.mycontroller.standalone.metrics.MetricsUtils.METRIC_TYPE;
+import org.mycontroller.standalone.utils.McUtils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Last value and the last N samples of the sensor variables, fed on every metrics post. Rules, heat maps
+ * and bullet charts read from here first. Samples answer a range only when none of the samples of the range
+ * was evicted, otherwise callers go to the metric engine. Inactive variables are evicted in LRU order.
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+@Slf4j
+public class McMetricsHotCache {
+    private static final McMetricsHotCache _instance = new McMetricsHotCache();
+
+    private final LinkedHashMap<Integer, Entry> entries = new LinkedHashMap<Integer, Entry>(16, 0.75f, true) {
+        private static final long serialVersionUID = 6413524316318957473L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+            return size() > AppProperties.getInstance().getMetricsHotCacheSize();
+        }
+    };
+
+    private McMetricsHotCache() {
+    }
+
+    public static McMetricsHotCache getInstance() {
+        return _instance;
+    }
+
+    private static class Entry {
+        private String value;
+        private Long timestamp;
+        // ring of double samples
+        private final long[] timestamps;
+        private final double[] values;
+        private int next = 0;
+        private int size = 0;
+        // samples after this timestamp are in the ring
+        private long coveredFrom;
+
+        private Entry(int samples, long coveredFrom) {
+            timestamps = new long[samples];
+            values = new double[samples];
+            this.coveredFrom = coveredFrom;
+        }
+
+        private void add(long timestamp, double value) {
+            if (size == timestamps.length) {
+                coveredFrom = Math.max(coveredFrom, timestamps[next]);
+            } else {
+                size++;
+            }
+            timestamps[next] = timestamp;
+            values[next] = value;
+            next = (next + 1) % timestamps.length;
+        }
+    }
+
+    private boolean isEnabled() {
+        return AppProperties.getInstance().getMetricsHotCacheSize() > 0;
+    }
+
+    public void add(SensorVariable sensorVariable) {
+        if (!isEnabled() || sensorVariable.getId() == null || sensorVariable.getTimestamp() == null) {
+            return;
+        }
+        long timestamp = sensorVariable.getTimestamp();
+        synchronized (entries) {
+            Entry entry = entries.get(sensorVariable.getId());
+            if (entry == null) {
+                // earlier samples are only in the database
+                entry = new Entry(Math.max(AppProperties.getInstance().getMetricsHotCacheSamples(), 1), timestamp);
+                entries.put(sensorVariable.getId(), entry);
+            }
+            // dependent tasks can run out of order, keep the latest value
+            if (entry.timestamp == null || entry.timestamp <= timestamp) {
+                entry.value = sensorVariable.getValue();
+                entry.timestamp = timestamp;
+            }
+            if (sensorVariable.getMetricType() == METRIC_TYPE.DOUBLE) {
+                Double value = McUtils.getDouble(sensorVariable.getValue());
+                if (value != null) {
+                    entry.add(timestamp, value);
+                }
+            }
+        }
+    }
+
+    // returns null, if the variable is not in the cache
+    public String getValue(Integer sensorVariableId) {
+        synchronized (entries) {
+            Entry entry = entries.get(sensorVariableId);
+            return entry != null ? entry.value : null;
+        }
+    }
+
+    // min, max, avg and samples of the range (start, end], null when the samples do not cover the range.
+    // samples 0 with no min, max and avg, when the range is covered and has no sample
+    public MetricsDoubleTypeDevice getMinMaxAvg(Integer sensorVariableId, long start, long end) {
+        synchronized (entries) {
+            Entry entry = entries.get(sensorVariableId);
+            if (entry == null || entry.size == 0 || start < entry.coveredFrom) {
+                return null;
+            }
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            double sum = 0;
+            int samples = 0;
+            for (int index = 0; index < entry.size; index++) {
+                if (entry.timestamps[index] > start && entry.timestamps[index] <= end) {
+                    min = Math.min(min, entry.values[index]);
+                    max = Math.max(max, entry.values[index]);
+                    sum += entry.values[index];
+                    samples++;
+                }
+            }
+            if (samples == 0) {
+                return MetricsDoubleTypeDevice.builder().samples(0).build();
+            }
+            return MetricsDoubleTypeDevice.builder()
+                    .min(min)
+                    .max(max)
+                    .avg(sum / samples)
+                    .samples(samples)
+                    .build();
+        }
+    }
+
+    public void remove(Integer sensorVariableId) {
+        synchronized (entries) {
+            entries.remove(sensorVariableId);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+        _logger.debug("Metrics hot cache cleared");
+    }
+}
@@ -23,9 +23,11 @@ import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.db.tables.Settings;
 import org.mycontroller.standalone.exceptions.McBadRequestException;
 import org.mycontroller.standalone.metrics.engine.IMetricEngine;
+import org.mycontroller.standalone.metrics.engine.MetricEngineChunks;
 import org.mycontroller.standalone.metrics.engine.MetricEngineInfluxDB;
 import org.mycontroller.standalone.metrics.engine.MetricEngineMyController;
 import org.mycontroller.standalone.metrics.engine.conf.MetricEngineConf;
+import org.mycontroller.standalone.metrics.engine.conf.MetricEngineConfigChunks;
 import org.mycontroller.standalone.metrics.engine.conf.MetricEngineConfigInfluxDB;
 import org.mycontroller.standalone.metrics.engine.conf.MetricEngineConfigMyController;
 import org.mycontroller.standalone.metrics.model.Pong;
@@ -166,6 +168,9 @@ public class MetricsUtils {
     public static void loadEngine() throws URISyntaxException {
         engineConf = getConf();
         metricEngine = getEngine(engineConf);
+        if (metricEngine instanceof MetricEngineMyController) {
+            ((MetricEngineMyController) metricEngine).start();
+        }
     }
 
     public static void shutdownEngine() {
@@ -180,6 +185,8 @@ public class MetricsUtils {
                 return new MetricEngineInfluxDB((MetricEngineConfigInfluxDB) engineConf);
             case MY_CONTROLLER:
                 return new MetricEngineMyController();
+            case CHUNKS:
+                return new MetricEngineChunks();
             default:
                 break;
 
@@ -213,6 +220,8 @@ public class MetricsUtils {
                     return OBJECT_MAPPER.readValue(conf, MetricEngineConfigInfluxDB.class);
                 case MY_CONTROLLER:
                     return OBJECT_MAPPER.readValue(conf, MetricEngineConfigMyController.class);
+                case CHUNKS:
+                    return OBJECT_MAPPER.readValue(conf, MetricEngineConfigChunks.class);
             }
         } catch (IOException ex) {
             _logger.error("Exception,", ex);
@@ -238,6 +247,7 @@ public class MetricsUtils {
         switch (conf.getType()) {
             case INFLUXDB:
             case MY_CONTROLLER:
+            case CHUNKS:
                 try {
                     data = OBJECT_MAPPER.writeValueAsString(conf);
                     saveMetricEngineDataInDB(KEY_TYPE, conf.getType().name());
@@ -246,6 +256,7 @@ public class MetricsUtils {
                     if (conf.isPurgeEveryThing()) {
                         _logger.info("Purging existing data triggered for {}", engineConf);
                         engine().purgeEverything();
+                        McMetricsHotCache.getInstance().clear();
                     }
                 } catch (JsonProcessingException | URISyntaxException ex) {
                     _logger.error("Exception,", ex);
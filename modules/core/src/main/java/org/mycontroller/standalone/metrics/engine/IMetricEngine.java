@@ -39,6 +39,9 @@ public interface IMetricEngine {
     //list data
     List<?> list(Criteria criteria);
 
+    //list data of multiple resources, results in the order of criteria
+    List<List<?>> list(List<Criteria> criteriaList);
+
     void purge(ResourceModel resourceModel, ResourcePurgeConf purgeConf);
 
     void purge(ResourceModel resourceModel);
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.metrics.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.influxdb.InfluxDB;
+import org.influxdb.InfluxDB.ConsistencyLevel;
+import org.mycontroller.standalone.utils.McUtils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes points to InfluxDB in batches, flushed on batch size or linger time by max in-flight threads.
+ * When the server is not reachable batches are spilled to disk (one file per batch) and replayed in order,
+ * once the server is reachable again. When the memory queue is full, the caller spills a batch itself.
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+@Slf4j
+public class McInfluxDBPipeline implements Runnable {
+    public static final int DEFAULT_BATCH_SIZE = 200;
+    public static final long DEFAULT_BATCH_LINGER = 2000;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 2;
+    public static final long DEFAULT_SPILL_LIMIT = 100 * 1024 * 1024; // 100 MB
+    private static final long PING_INTERVAL = McUtils.SECOND * 10;
+    private static final String FILE_EXTENSION = ".lp";
+
+    private final InfluxDB _client;
+    private final String database;
+    private final int batchSize;
+    private final long batchLinger;
+    private final int maxInFlight;
+    private final long spillLimit;
+    private final File directory;
+    private final ArrayBlockingQueue<String> queue;
+
+    private final AtomicLong countWritten = new AtomicLong(0);
+    private final AtomicLong countRetried = new AtomicLong(0);
+    private final AtomicLong countSpilled = new AtomicLong(0);
+    private final AtomicLong countDropped = new AtomicLong(0);
+
+    private final Object spillLock = new Object();
+    private long spillSize = 0;
+    private long spillSequence = 0;
+
+    private volatile boolean reachable = true;
+    private volatile long lastPing = 0;
+    private long pingInterval = PING_INTERVAL;
+    private final List<Thread> threads = new ArrayList<Thread>();
+    private volatile boolean terminate = false;
+
+    public McInfluxDBPipeline(InfluxDB _client, String database, Integer batchSize, Long batchLinger,
+            Integer maxInFlight, Long spillLimit, String location) {
+        this._client = _client;
+        this.database = database;
+        this.batchSize = batchSize != null && batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+        this.batchLinger = batchLinger != null && batchLinger > 0 ? batchLinger : DEFAULT_BATCH_LINGER;
+        this.maxInFlight = maxInFlight != null && maxInFlight > 0 ? maxInFlight : DEFAULT_MAX_IN_FLIGHT;
+        this.spillLimit = spillLimit != null && spillLimit >= 0 ? spillLimit : DEFAULT_SPILL_LIMIT;
+        this.queue = new ArrayBlockingQueue<String>(this.batchSize * this.maxInFlight * 4);
+        directory = new File(location);
+        if (!directory.exists() && !directory.mkdirs()) {
+            _logger.error("Unable to create directory {}", directory.getAbsolutePath());
+        }
+        synchronized (spillLock) {
+            for (File file : getSpillFiles()) {
+                spillSize += file.length();
+            }
+        }
+    }
+
+    public synchronized void start() {
+        if (!threads.isEmpty()) {
+            return;
+        }
+        terminate = false;
+        for (int index = 0; index < maxInFlight; index++) {
+            Thread thread = new Thread(this, "influxdb-pipeline-" + index);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        _logger.debug("InfluxDB pipeline started, batch size:{}, linger:{} ms, max in-flight:{}, spill limit:{}",
+                batchSize, batchLinger, maxInFlight, spillLimit);
+    }
+
+    public void stop() {
+        List<Thread> running = null;
+        synchronized (this) {
+            terminate = true;
+            running = new ArrayList<Thread>(threads);
+            threads.clear();
+        }
+        for (Thread thread : running) {
+            try {
+                thread.join(batchLinger * 2);
+            } catch (InterruptedException ex) {
+                _logger.error("Exception,", ex);
+            }
+        }
+        // write remaining points, spilled when the server is not reachable
+        List<String> batch = new ArrayList<String>();
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch = new ArrayList<String>();
+        }
+        _logger.debug("InfluxDB pipeline stopped, {}", getStatistics());
+    }
+
+    public void add(String point) {
+        if (queue.offer(point)) {
+            return;
+        }
+        // queue is full, caller spills a batch
+        List<String> batch = new ArrayList<String>(batchSize);
+        queue.drainTo(batch, batchSize - 1);
+        batch.add(point);
+        spill(batch);
+    }
+
+    public void setReachable(boolean reachable) {
+        this.reachable = reachable;
+        lastPing = System.currentTimeMillis();
+    }
+
+    // shorter interval for tests
+    void setPingInterval(long pingInterval) {
+        this.pingInterval = pingInterval;
+    }
+
+    public McInfluxDBPipelineStatistics getStatistics() {
+        int spillFiles = 0;
+        long spillBytes = 0;
+        synchronized (spillLock) {
+            spillFiles = getSpillFiles().length;
+            spillBytes = spillSize;
+        }
+        return McInfluxDBPipelineStatistics.builder()
+                .reachable(reachable)
+                .batchSize(batchSize)
+                .batchLinger(batchLinger)
+                .maxInFlight(maxInFlight)
+                .sizeQueue(queue.size())
+                .countWritten(countWritten.get())
+                .countRetried(countRetried.get())
+                .countSpilled(countSpilled.get())
+                .countDropped(countDropped.get())
+                .sizeSpillFiles(spillFiles)
+                .sizeSpillBytes(spillBytes)
+                .build();
+    }
+
+    @Override
+    public void run() {
+        boolean replayer = Thread.currentThread().getName().endsWith("-0");
+        while (!terminate) {
+            try {
+                List<String> batch = new ArrayList<String>(batchSize);
+                String point = queue.poll(batchLinger, TimeUnit.MILLISECONDS);
+                if (point != null) {
+                    batch.add(point);
+                    long lingerEnd = System.currentTimeMillis() + batchLinger;
+                    while (batch.size() < batchSize && !terminate) {
+                        queue.drainTo(batch, batchSize - batch.size());
+                        long wait = lingerEnd - System.currentTimeMillis();
+                        if (batch.size() >= batchSize || wait <= 0) {
+                            break;
+                        }
+                        point = queue.poll(wait, TimeUnit.MILLISECONDS);
+                        if (point == null) {
+                            break;
+                        }
+                        batch.add(point);
+                    }
+                    write(batch);
+                }
+                // one thread replays the spilled batches, keeps the order
+                if (replayer) {
+                    replay();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception ex) {
+                _logger.error("Exception,", ex);
+            }
+        }
+    }
+
+    private void write(List<String> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (!reachable) {
+            spill(batch);
+            return;
+        }
+        try {
+            _client.write(database, null, ConsistencyLevel.ONE, batch);
+            countWritten.addAndGet(batch.size());
+        } catch (Exception ex) {
+            if (ping()) {
+                // server is up, points are not accepted
+                countDropped.addAndGet(batch.size());
+                _logger.error("Dropped {} points, not accepted by InfluxDB", batch.size(), ex);
+            } else {
+                _logger.warn("InfluxDB is not reachable, spilling batches to {}. Error:{}",
+                        directory.getAbsolutePath(), ex.getMessage());
+                spill(batch);
+            }
+        }
+    }
+
+    private boolean ping() {
+        try {
+            _client.ping();
+            setReachable(true);
+        } catch (Exception ex) {
+            _logger.debug("Ping failed, {}", ex.getMessage());
+            setReachable(false);
+        }
+        return reachable;
+    }
+
+    private File[] getSpillFiles() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        List<File> spillFiles = new ArrayList<File>();
+        for (File file : files) {
+            if (file.getName().endsWith(FILE_EXTENSION)) {
+                spillFiles.add(file);
+            }
+        }
+        File[] sorted = spillFiles.toArray(new File[spillFiles.size()]);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private void spill(List<String> batch) {
+        StringBuilder builder = new StringBuilder();
+        for (String point : batch) {
+            builder.append(point).append("\n");
+        }
+        byte[] data = builder.toString().getBytes(StandardCharsets.UTF_8);
+        synchronized (spillLock) {
+            if (spillSize + data.length > spillLimit) {
+                countDropped.addAndGet(batch.size());
+                _logger.warn("Spill limit {} bytes reached, dropped {} points", spillLimit, batch.size());
+                return;
+            }
+            // file name keeps the order of the batches
+            File file = new File(directory, String.format("%016d_%08d%s", System.currentTimeMillis(),
+                    spillSequence++ % 100000000, FILE_EXTENSION));
+            try {
+                FileUtils.writeByteArrayToFile(file, data);
+                spillSize += data.length;
+                countSpilled.addAndGet(batch.size());
+            } catch (IOException ex) {
+                countDropped.addAndGet(batch.size());
+                _logger.error("Unable to spill {} points to {}", batch.size(), file.getAbsolutePath(), ex);
+                FileUtils.deleteQuietly(file);
+            }
+        }
+    }
+
+    private void replay() {
+        if (!reachable) {
+            if (System.currentTimeMillis() - lastPing < pingInterval || !ping()) {
+                return;
+            }
+            _logger.info("InfluxDB is reachable, replaying spilled batches");
+        }
+        while (reachable && !terminate) {
+            File file = null;
+            synchronized (spillLock) {
+                File[] files = getSpillFiles();
+                if (files.length == 0) {
+                    return;
+                }
+                file = files[0];
+            }
+            List<String> batch = null;
+            try {
+                batch = new ArrayList<String>(FileUtils.readLines(file, StandardCharsets.UTF_8));
+            } catch (IOException ex) {
+                _logger.error("Unable to read spill file {}, removed", file.getAbsolutePath(), ex);
+                batch = new ArrayList<String>();
+            }
+            try {
+                if (!batch.isEmpty()) {
+                    _client.write(database, null, ConsistencyLevel.ONE, batch);
+                    countRetried.addAndGet(batch.size());
+                }
+            } catch (Exception ex) {
+                if (!ping()) {
+                    // keep the file, will be retried
+                    return;
+                }
+                countDropped.addAndGet(batch.size());
+                _logger.error("Dropped {} spilled points, not accepted by InfluxDB", batch.size(), ex);
+            }
+            synchronized (spillLock) {
+                spillSize = Math.max(0, spillSize - file.length());
+                FileUtils.deleteQuietly(file);
+            }
+        }
+    }
+}
@@ -16,11 +16,13 @@
  */
 package org.mycontroller.standalone.metrics.engine;
 
-import java.text.MessageFormat;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.mycontroller.standalone.AppProperties;
-import org.mycontroller.standalone.db.DB_QUERY;
 import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.metrics.MetricsUtils.AGGREGATION_TYPE;
 import org.mycontroller.standalone.settings.MetricsDataRetentionSettings;
@@ -39,134 +41,134 @@ import lombok.extern.slf4j.Slf4j;
 public class McMetricsAggregationBase {
     public static final AtomicBoolean IS_AGGREGATION_RUNNING = new AtomicBoolean(false);
 
-    private void aggregateAndInsertForBucketDuration(String sourceType, String resultType,
-            Long start, Long end, String insertSqlQuery, String deletionSqlQuery) {
-        if (sourceType == null || resultType == null || start == null || end == null
-                || insertSqlQuery == null) {
-            _logger.warn(
-                    "Null values are not allowed! sourceType:{}, resultType:{}, start:{},"
-                            + " end:{}, insertSqlQuery:{}",
-                    sourceType, resultType, start, end, insertSqlQuery);
-            return;
+    private static ForkJoinPool pool = null;
+    private static volatile Long lastRun = null;
+    private static volatile Long timeTaken = null;
+
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(AppProperties.getInstance().getMetricsAggregationParallelism());
         }
+        return pool;
+    }
 
-        String sqlInsertQuery = MessageFormat.format(insertSqlQuery, sourceType, String.valueOf(start),
-                String.valueOf(end), resultType);
-        String sqlDeleteQuery = MessageFormat.format(deletionSqlQuery, sourceType, String.valueOf(end));
-        _logger.debug(
-                "Running aggregation and data removal for this time range[from:{}, to:{}, sourceType:{},"
-                        + " resultType:{}], SQL query: Insert:[{}], Deletion:[{}]", start, end,
-                sourceType, resultType, sqlInsertQuery, sqlDeleteQuery);
+    public static McMetricsAggregationStatistics getStatistics() {
+        return McMetricsAggregationStatistics.builder()
+                .running(IS_AGGREGATION_RUNNING.get())
+                .parallelism(AppProperties.getInstance().getMetricsAggregationParallelism())
+                .lastRun(lastRun)
+                .timeTaken(timeTaken)
+                .partitions(McMetricsAggregationPartition.getStatus())
+                .build();
+    }
+
+    // runs all the partitions in parallel, returns true if all of them completed
+    private boolean execute(List<McMetricsAggregationPartition> partitions) {
+        boolean completed = true;
         try {
-            long startTime = System.currentTimeMillis();
-            //Aggregate and insert data
-            int insertCount = DaoUtils.getMetricsDoubleTypeDeviceDao().getDao().executeRaw(sqlInsertQuery);
-            //Remove aggregated data
-            int deleteCount = DaoUtils.getMetricsDoubleTypeDeviceDao().getDao().executeRaw(sqlDeleteQuery);
-            _logger.debug("Query execution result. Count[insert:{}, delete:{}], time taken:{} ms", insertCount,
-                    deleteCount, System.currentTimeMillis() - startTime);
-        } catch (Exception ex) {
-            _logger.error("Error,", ex);
+            for (Future<Boolean> future : getPool().invokeAll(partitions)) {
+                try {
+                    if (!future.get()) {
+                        completed = false;
+                    }
+                } catch (ExecutionException ex) {
+                    _logger.error("Exception on aggregation partition", ex);
+                    completed = false;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
         }
+        return completed;
     }
 
-    private void executeBucketByBucket(AGGREGATION_TYPE resultType, AGGREGATION_TYPE sourceType,
+    private void executeBuckets(AGGREGATION_TYPE resultType, AGGREGATION_TYPE sourceType,
             Long start, Long end, Long bucketDuration) {
-        _logger.debug("sourceType:{}, resultType:{}, timestampFrom:{}, timestampTo:{}, bucketDuration:{} ms",
-                sourceType, resultType, start, end, bucketDuration);
-        //Complete for all missed and current time
-        Long cEnd = start + bucketDuration;
-        while (cEnd <= end) {
-            _logger.debug(
-                    "Running aggregation for '{}'. Converting to '{}'. Config:[bucketDuration:{}, start~end:{}~{}"
-                            + " ({}~{})]", sourceType, resultType, bucketDuration,
-                    start, end, DataFormatUtils.DATE_TIME_24_HRS.format(start),
-                    DataFormatUtils.DATE_TIME_24_HRS.format(cEnd));
+        //Complete buckets only, from the last aggregation
+        Long cEnd = start + ((end - start) / bucketDuration) * bucketDuration;
+        if (cEnd <= start) {
+            return;
+        }
+        _logger.debug(
+                "Running aggregation for '{}'. Converting to '{}'. Config:[bucketDuration:{}, start~end:{}~{}"
+                        + " ({}~{})]", sourceType, resultType, bucketDuration,
+                start, cEnd, DataFormatUtils.DATE_TIME_24_HRS.format(start),
+                DataFormatUtils.DATE_TIME_24_HRS.format(cEnd));
 
-            //Call aggregation double data (sensor variables)
-            //-----------------------------------------------
-            //Check is there any data on this time range
-            if (DaoUtils.getMetricsDoubleTypeDeviceDao().isRecordFound(sourceType, start, cEnd)) {
-                aggregateAndInsertForBucketDuration(String.valueOf(sourceType.ordinal()),
-                        String.valueOf(resultType.ordinal()), start, cEnd,
-                        DB_QUERY.getQuery(DB_QUERY.INSERT_METRICS_DOUBLE_AGGREGATION_BY_TYPE),
-                        DB_QUERY.getQuery(DB_QUERY.DELETE_METRICS_DOUBLE_BY_TYPE));
-            }
+        //Raw data received after start are already aggregated in memory
+        McMetricsRollup.Rows rows = null;
+        if (resultType == AGGREGATION_TYPE.ONE_MINUTE) {
+            rows = McMetricsRollup.getInstance().take(start, cEnd);
+        }
+        if (rows != null) {
+            _logger.debug("Writing {} rollup rows", rows.size());
+            McMetricsWriteBuffer.write(DaoUtils.getMetricsDoubleTypeDeviceDao(), rows.getDoubles());
+            McMetricsWriteBuffer.write(DaoUtils.getMetricsBatteryUsageDao(), rows.getBatteryUsages());
+            McMetricsWriteBuffer.write(DaoUtils.getMetricsCounterTypeDeviceDao(), rows.getCounters());
+        }
 
-            //Call aggregation for battery usage
-            //----------------------------------
-            //Check is there any data on this time range
-            if (DaoUtils.getMetricsBatteryUsageDao().isRecordFound(sourceType, start, cEnd)) {
-                aggregateAndInsertForBucketDuration(String.valueOf(sourceType.ordinal()),
-                        String.valueOf(resultType.ordinal()), start, cEnd,
-                        DB_QUERY.getQuery(DB_QUERY.INSERT_METRICS_BATTERY_AGGREGATION_BY_TYPE),
-                        DB_QUERY.getQuery(DB_QUERY.DELETE_METRICS_BATTERY_BY_TYPE));
-            }
-            //Call aggregation counter data (sensor variables)
-            //-----------------------------------------------
-            //Check is there any data on this time range
-            if (DaoUtils.getMetricsCounterTypeDeviceDao().isRecordFound(sourceType, start, cEnd)) {
-                aggregateAndInsertForBucketDuration(sourceType.name(), resultType.name(), start, cEnd,
-                        DB_QUERY.getQuery(DB_QUERY.INSERT_METRICS_COUNTER_AGGREGATION_BY_TYPE),
-                        DB_QUERY.getQuery(DB_QUERY.DELETE_METRICS_COUNTER_BY_TYPE));
-            }
-            //Update last aggregation status
-            //-----------------------------------
-            MetricsDataRetentionSettings dataRetentionSettings = null;
-            switch (resultType) {
-            //One minute should handle raw data also
-                case ONE_MINUTE:
-                    dataRetentionSettings = MetricsDataRetentionSettings.builder()
-                            .lastAggregationOneMinute(cEnd)
-                            .lastAggregationRawData(cEnd)
-                            .build();
-                    break;
-                case FIVE_MINUTES:
-                    dataRetentionSettings = MetricsDataRetentionSettings.builder()
-                            .lastAggregationFiveMinutes(cEnd).build();
-                    break;
-                case ONE_HOUR:
-                    dataRetentionSettings = MetricsDataRetentionSettings.builder()
-                            .lastAggregationOneHour(cEnd).build();
-                    break;
-                case SIX_HOURS:
-                    dataRetentionSettings = MetricsDataRetentionSettings.builder()
-                            .lastAggregationSixHours(cEnd).build();
-                    break;
-                case TWELVE_HOURS:
-                    dataRetentionSettings = MetricsDataRetentionSettings.builder()
-                            .lastAggregationTwelveHours(cEnd).build();
-                    break;
-                case ONE_DAY:
-                    dataRetentionSettings = MetricsDataRetentionSettings.builder()
-                            .lastAggregationOneDay(cEnd).build();
-                    break;
-                default:
-                    break;
-            }
-            if (dataRetentionSettings != null) {
-                dataRetentionSettings.updateInternal();
-                dataRetentionSettings = MetricsDataRetentionSettings.get();
-                AppProperties.getInstance().setMetricsDataRetentionSettings(dataRetentionSettings);
-                _logger.debug(
-                        "Metrics settings update successfully! New referances, Last aggregation:[Raw:{}, "
-                                + "OneMinute:{}, FiveMinute:{}, "
-                                + "OneHour:{}, SixHours:{}, TwelveHours:{}, OneDay:{}]",
-                        dataRetentionSettings.getLastAggregationRawData(),
-                        dataRetentionSettings.getLastAggregationOneMinute(),
-                        dataRetentionSettings.getLastAggregationFiveMinutes(),
-                        dataRetentionSettings.getLastAggregationOneHour(),
-                        dataRetentionSettings.getLastAggregationSixHours(),
-                        dataRetentionSettings.getLastAggregationTwelveHours(),
-                        dataRetentionSettings.getLastAggregationOneDay());
-            } else {
-                _logger.warn("metricsSettings is null cannot update");
-            }
+        //Partitions by metrics table and resource id range, failed one kept for the next run
+        List<McMetricsAggregationPartition> partitions = McMetricsAggregationPartition.get(resultType,
+                sourceType, start, cEnd, bucketDuration, rows == null,
+                AppProperties.getInstance().getMetricsAggregationParallelism());
+        if (!execute(partitions)) {
+            _logger.warn("Aggregation failed for '{}' on range {}~{}, will be retried on the next run",
+                    resultType, start, cEnd);
+            return;
+        }
 
-            //Add bucket duration
-            //-----------------------------
-            start += bucketDuration;
-            cEnd = start + bucketDuration;
+        //Update last aggregation status, once for the range
+        //-----------------------------------
+        MetricsDataRetentionSettings dataRetentionSettings = null;
+        switch (resultType) {
+        //One minute should handle raw data also
+            case ONE_MINUTE:
+                dataRetentionSettings = MetricsDataRetentionSettings.builder()
+                        .lastAggregationOneMinute(cEnd)
+                        .lastAggregationRawData(cEnd)
+                        .build();
+                break;
+            case FIVE_MINUTES:
+                dataRetentionSettings = MetricsDataRetentionSettings.builder()
+                        .lastAggregationFiveMinutes(cEnd).build();
+                break;
+            case ONE_HOUR:
+                dataRetentionSettings = MetricsDataRetentionSettings.builder()
+                        .lastAggregationOneHour(cEnd).build();
+                break;
+            case SIX_HOURS:
+                dataRetentionSettings = MetricsDataRetentionSettings.builder()
+                        .lastAggregationSixHours(cEnd).build();
+                break;
+            case TWELVE_HOURS:
+                dataRetentionSettings = MetricsDataRetentionSettings.builder()
+                        .lastAggregationTwelveHours(cEnd).build();
+                break;
+            case ONE_DAY:
+                dataRetentionSettings = MetricsDataRetentionSettings.builder()
+                        .lastAggregationOneDay(cEnd).build();
+                break;
+            default:
+                break;
+        }
+        if (dataRetentionSettings != null) {
+            dataRetentionSettings.updateInternal();
+            dataRetentionSettings = MetricsDataRetentionSettings.get();
+            AppProperties.getInstance().setMetricsDataRetentionSettings(dataRetentionSettings);
+            _logger.debug(
+                    "Metrics settings update successfully! New referances, Last aggregation:[Raw:{}, "
+                            + "OneMinute:{}, FiveMinute:{}, "
+                            + "OneHour:{}, SixHours:{}, TwelveHours:{}, OneDay:{}]",
+                    dataRetentionSettings.getLastAggregationRawData(),
+                    dataRetentionSettings.getLastAggregationOneMinute(),
+                    dataRetentionSettings.getLastAggregationFiveMinutes(),
+                    dataRetentionSettings.getLastAggregationOneHour(),
+                    dataRetentionSettings.getLastAggregationSixHours(),
+                    dataRetentionSettings.getLastAggregationTwelveHours(),
+                    dataRetentionSettings.getLastAggregationOneDay());
+        } else {
+            _logger.warn("metricsSettings is null cannot update");
         }
     }
 
@@ -178,38 +180,41 @@ public class McMetricsAggregationBase {
         }
         _logger.debug("Data retention settings:{}", AppProperties.getInstance()
                 .getMetricsDataRetentionSettings());
+        long startTime = System.currentTimeMillis();
         try {
             //set aggregation started
             IS_AGGREGATION_RUNNING.set(true);
             //Run aggregation one bye in order..
             //run aggregation for one minute
-            executeBucketByBucket(AGGREGATION_TYPE.ONE_MINUTE, AGGREGATION_TYPE.RAW, AppProperties.getInstance()
+            executeBuckets(AGGREGATION_TYPE.ONE_MINUTE, AGGREGATION_TYPE.RAW, AppProperties.getInstance()
                     .getMetricsDataRetentionSettings().getLastAggregationOneMinute(),
                     getEndTime(AGGREGATION_TYPE.ONE_MINUTE), McUtils.ONE_MINUTE);
             //run aggregation for five minutes
-            executeBucketByBucket(AGGREGATION_TYPE.FIVE_MINUTES, AGGREGATION_TYPE.ONE_MINUTE,
+            executeBuckets(AGGREGATION_TYPE.FIVE_MINUTES, AGGREGATION_TYPE.ONE_MINUTE,
                     AppProperties.getInstance().getMetricsDataRetentionSettings().getLastAggregationFiveMinutes(),
                     getEndTime(AGGREGATION_TYPE.FIVE_MINUTES), McUtils.FIVE_MINUTES);
             //run aggregation for one hour
-            executeBucketByBucket(AGGREGATION_TYPE.ONE_HOUR, AGGREGATION_TYPE.FIVE_MINUTES,
+            executeBuckets(AGGREGATION_TYPE.ONE_HOUR, AGGREGATION_TYPE.FIVE_MINUTES,
                     AppProperties.getInstance().getMetricsDataRetentionSettings().getLastAggregationOneHour(),
                     getEndTime(AGGREGATION_TYPE.ONE_HOUR), McUtils.ONE_HOUR);
             //run aggregation for six hours
-            executeBucketByBucket(AGGREGATION_TYPE.SIX_HOURS, AGGREGATION_TYPE.ONE_HOUR,
+            executeBuckets(AGGREGATION_TYPE.SIX_HOURS, AGGREGATION_TYPE.ONE_HOUR,
                     AppProperties.getInstance()
                             .getMetricsDataRetentionSettings().getLastAggregationSixHours(),
                     getEndTime(AGGREGATION_TYPE.SIX_HOURS),
                     (McUtils.ONE_HOUR * 6));
             //run aggregation for twelve hours
-            executeBucketByBucket(AGGREGATION_TYPE.TWELVE_HOURS, AGGREGATION_TYPE.SIX_HOURS,
+            executeBuckets(AGGREGATION_TYPE.TWELVE_HOURS, AGGREGATION_TYPE.SIX_HOURS,
                     AppProperties.getInstance().getMetricsDataRetentionSettings().getLastAggregationTwelveHours(),
                     getEndTime(AGGREGATION_TYPE.TWELVE_HOURS), (McUtils.ONE_HOUR * 12));
             //run aggregation for one day
-            executeBucketByBucket(AGGREGATION_TYPE.ONE_DAY, AGGREGATION_TYPE.TWELVE_HOURS,
+            executeBuckets(AGGREGATION_TYPE.ONE_DAY, AGGREGATION_TYPE.TWELVE_HOURS,
                     AppProperties.getInstance().getMetricsDataRetentionSettings().getLastAggregationOneDay(),
                     getEndTime(AGGREGATION_TYPE.ONE_DAY), McUtils.ONE_DAY);
 
         } finally {
+            lastRun = startTime;
+            timeTaken = System.currentTimeMillis() - startTime;
             //set aggregation completed
             IS_AGGREGATION_RUNNING.set(false);
         }
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.metrics.engine;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.mycontroller.standalone.db.DB_QUERY;
+import org.mycontroller.standalone.db.DB_TABLES;
+import org.mycontroller.standalone.db.DaoUtils;
+import org.mycontroller.standalone.db.tables.MetricsBatteryUsage;
+import org.mycontroller.standalone.db.tables.MetricsCounterTypeDevice;
+import org.mycontroller.standalone.db.tables.MetricsDoubleTypeDevice;
+import org.mycontroller.standalone.metrics.MetricsUtils.AGGREGATION_TYPE;
+import org.mycontroller.standalone.metrics.engine.McMetricsAggregationPartitionStatus.STATE;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * One aggregation level of one metrics table, limited to a resource id range
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+@Slf4j
+class McMetricsAggregationPartition implements Callable<Boolean> {
+    // last status of all the partitions, key: table_level_partition
+    private static final Map<String, McMetricsAggregationPartitionStatus> STATUS =
+            new ConcurrentHashMap<String, McMetricsAggregationPartitionStatus>();
+
+    public enum METRICS_TABLE {
+        DOUBLE(DB_TABLES.METRICS_DOUBLE_TYPE_DEVICE, MetricsDoubleTypeDevice.KEY_SENSOR_VARIABLE_ID,
+                MetricsDoubleTypeDevice.KEY_TIMESTAMP, DB_QUERY.INSERT_METRICS_DOUBLE_AGGREGATION_BUCKETS,
+                DB_QUERY.DELETE_METRICS_DOUBLE_BY_TYPE, false),
+        BATTERY(DB_TABLES.METRICS_BATTERY_USAGE, MetricsBatteryUsage.KEY_NODE_ID,
+                MetricsBatteryUsage.KEY_TIMESTAMP, DB_QUERY.INSERT_METRICS_BATTERY_AGGREGATION_BUCKETS,
+                DB_QUERY.DELETE_METRICS_BATTERY_BY_TYPE, false),
+        COUNTER(DB_TABLES.METRICS_COUNTER_TYPE_DEVICE, MetricsCounterTypeDevice.KEY_SENSOR_VARIABLE_ID,
+                MetricsCounterTypeDevice.KEY_TIMESTAMP, DB_QUERY.INSERT_METRICS_COUNTER_AGGREGATION_BUCKETS,
+                DB_QUERY.DELETE_METRICS_COUNTER_BY_TYPE, true);
+
+        private final String tableName;
+        private final String idColumn;
+        private final String timestampColumn;
+        private final String insertQuery;
+        private final String deleteQuery;
+        // counter table keeps aggregation type as name
+        private final boolean typeAsName;
+
+        private METRICS_TABLE(String tableName, String idColumn, String timestampColumn, String insertQuery,
+                String deleteQuery, boolean typeAsName) {
+            this.tableName = tableName;
+            this.idColumn = idColumn;
+            this.timestampColumn = timestampColumn;
+            this.insertQuery = insertQuery;
+            this.deleteQuery = deleteQuery;
+            this.typeAsName = typeAsName;
+        }
+
+        private String getType(AGGREGATION_TYPE aggregationType) {
+            return typeAsName ? aggregationType.name() : String.valueOf(aggregationType.ordinal());
+        }
+    }
+
+    private final METRICS_TABLE table;
+    private final int partition;
+    private final int fromId;
+    private final int toId;
+    private final AGGREGATION_TYPE resultType;
+    private final AGGREGATION_TYPE sourceType;
+    private final long start;
+    private final long end;
+    private final long bucketDuration;
+    // false, when aggregated rows are already inserted (in-memory rollup)
+    private final boolean insert;
+
+    private McMetricsAggregationPartition(METRICS_TABLE table, int partition, int fromId, int toId,
+            AGGREGATION_TYPE resultType, AGGREGATION_TYPE sourceType, long start, long end, long bucketDuration,
+            boolean insert) {
+        this.table = table;
+        this.partition = partition;
+        this.fromId = fromId;
+        this.toId = toId;
+        this.resultType = resultType;
+        this.sourceType = sourceType;
+        this.start = start;
+        this.end = end;
+        this.bucketDuration = bucketDuration;
+        this.insert = insert;
+        updateStatus(STATE.PENDING, 0, 0, 0L);
+    }
+
+    // splits all the metrics tables into resource id ranges
+    static List<McMetricsAggregationPartition> get(AGGREGATION_TYPE resultType, AGGREGATION_TYPE sourceType,
+            long start, long end, long bucketDuration, boolean insert, int parallelism) {
+        List<McMetricsAggregationPartition> partitions = new ArrayList<McMetricsAggregationPartition>();
+        for (METRICS_TABLE table : METRICS_TABLE.values()) {
+            long maxId = getMaxId(table);
+            int count = (int) Math.max(1, Math.min(parallelism, maxId));
+            int size = (int) ((maxId + count - 1) / count);
+            for (int index = 0; index < count; index++) {
+                int fromId = index == 0 ? 0 : (index * size) + 1;
+                // last partition takes resources created after the split also
+                int toId = index == count - 1 ? Integer.MAX_VALUE : (index + 1) * size;
+                partitions.add(new McMetricsAggregationPartition(table, index, fromId, toId, resultType,
+                        sourceType, start, end, bucketDuration, insert));
+            }
+            // remove partitions of the previous split
+            for (int index = count; STATUS.remove(getKey(table, resultType, index)) != null; index++) {
+                // nothing to do
+            }
+        }
+        return partitions;
+    }
+
+    private static long getMaxId(METRICS_TABLE table) {
+        String sqlQuery = DB_QUERY.getQuery(MessageFormat.format(DB_QUERY.SELECT_MAX_RESOURCE_ID,
+                table.idColumn, table.tableName));
+        try {
+            return DaoUtils.getMetricsDoubleTypeDeviceDao().getDao().queryRawValue(sqlQuery);
+        } catch (Exception ex) {
+            _logger.error("Exception when executing query[{}] ", sqlQuery, ex);
+            return 0;
+        }
+    }
+
+    private static String getKey(METRICS_TABLE table, AGGREGATION_TYPE resultType, int partition) {
+        return table.name() + "_" + resultType.name() + "_" + partition;
+    }
+
+    static List<McMetricsAggregationPartitionStatus> getStatus() {
+        long now = System.currentTimeMillis();
+        List<McMetricsAggregationPartitionStatus> statusList = new ArrayList<McMetricsAggregationPartitionStatus>();
+        for (McMetricsAggregationPartitionStatus status : STATUS.values()) {
+            statusList.add(McMetricsAggregationPartitionStatus.builder()
+                    .table(status.getTable())
+                    .aggregationType(status.getAggregationType())
+                    .partition(status.getPartition())
+                    .fromId(status.getFromId())
+                    .toId(status.getToId())
+                    .state(status.getState())
+                    .start(status.getStart())
+                    .end(status.getEnd())
+                    .lastAggregated(status.getLastAggregated())
+                    .lag(status.getLastAggregated() != null ? now - status.getLastAggregated() : null)
+                    .countInserted(status.getCountInserted())
+                    .countDeleted(status.getCountDeleted())
+                    .timeTaken(status.getTimeTaken())
+                    .lastRun(status.getLastRun())
+                    .build());
+        }
+        Collections.sort(statusList, new Comparator<McMetricsAggregationPartitionStatus>() {
+            @Override
+            public int compare(McMetricsAggregationPartitionStatus s1, McMetricsAggregationPartitionStatus s2) {
+                int result = s1.getTable().compareTo(s2.getTable());
+                if (result == 0) {
+                    result = AGGREGATION_TYPE.valueOf(s1.getAggregationType())
+                            .compareTo(AGGREGATION_TYPE.valueOf(s2.getAggregationType()));
+                }
+                return result != 0 ? result : Integer.compare(s1.getPartition(), s2.getPartition());
+            }
+        });
+        return statusList;
+    }
+
+    @Override
+    public Boolean call() {
+        long startTime = System.currentTimeMillis();
+        updateStatus(STATE.RUNNING, 0, 0, startTime);
+        String sourceTypeValue = table.getType(sourceType);
+        int inserted = 0;
+        if (insert) {
+            //All the buckets of the range in a single query, grouped by bucket end timestamp
+            inserted = executeSqlQuery(DB_QUERY.getQuery(MessageFormat.format(table.insertQuery, sourceTypeValue,
+                    String.valueOf(start), String.valueOf(end), table.getType(resultType),
+                    McMetricsBuckets.getBucketEndExpression(table.timestampColumn, start, bucketDuration),
+                    String.valueOf(fromId), String.valueOf(toId))));
+            if (inserted < 0) {
+                //Source data kept for the next run
+                updateStatus(STATE.FAILED, 0, 0, startTime);
+                return false;
+            }
+        }
+        //Remove aggregated data, range delete
+        int deleted = executeSqlQuery(MessageFormat.format(DB_QUERY.getQuery(table.deleteQuery), sourceTypeValue,
+                String.valueOf(end), String.valueOf(fromId), String.valueOf(toId)));
+        updateStatus(STATE.COMPLETED, inserted, Math.max(deleted, 0), startTime);
+        return true;
+    }
+
+    private void updateStatus(STATE state, int inserted, int deleted, long startTime) {
+        String key = getKey(table, resultType, partition);
+        McMetricsAggregationPartitionStatus previous = STATUS.get(key);
+        STATUS.put(key, McMetricsAggregationPartitionStatus.builder()
+                .table(table.name())
+                .aggregationType(resultType.name())
+                .partition(partition)
+                .fromId(fromId)
+                .toId(toId)
+                .state(state)
+                .start(start)
+                .end(end)
+                .lastAggregated(state == STATE.COMPLETED ? Long.valueOf(end)
+                        : previous != null ? previous.getLastAggregated() : null)
+                .countInserted(inserted)
+                .countDeleted(deleted)
+                .timeTaken(startTime > 0 ? System.currentTimeMillis() - startTime : 0)
+                .lastRun(startTime > 0 ? startTime : previous != null ? previous.getLastRun() : null)
+                .build());
+    }
+
+    // returns updated rows count, -1 on failure
+    private int executeSqlQuery(String sqlQuery) {
+        try {
+            long startTime = System.currentTimeMillis();
+            int count = DaoUtils.getMetricsDoubleTypeDeviceDao().getDao().executeRaw(sqlQuery);
+            _logger.debug("Sql Query[{}], count:{}, time taken:{} ms", sqlQuery, count,
+                    System.currentTimeMillis() - startTime);
+            return count;
+        } catch (Exception ex) {
+            _logger.error("Exception when executing query[{}] ", sqlQuery, ex);
+            return -1;
+        }
+    }
+}
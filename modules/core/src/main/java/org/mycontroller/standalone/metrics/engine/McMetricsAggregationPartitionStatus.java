@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.metrics.engine;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.ToString;
+
+/**
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+@Data
+@ToString
+@Builder
+@AllArgsConstructor
+public class McMetricsAggregationPartitionStatus {
+    public enum STATE {
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        FAILED;
+    }
+
+    private String table;
+    private String aggregationType;
+    private int partition;
+    // sensor variable id or node id range, inclusive
+    private int fromId;
+    private int toId;
+    private STATE state;
+    private Long start;
+    private Long end;
+    // end of the last completed range, lag = now - lastAggregated
+    private Long lastAggregated;
+    private Long lag;
+    private int countInserted;
+    private int countDeleted;
+    // milliseconds
+    private long timeTaken;
+    private Long lastRun;
+}
@@ -46,6 +46,9 @@ public class McMetricsAggregationUtils {
             DaoUtils.getMetricsCounterTypeDeviceDao().deletePrevious(
                     MetricsCounterTypeDevice.builder().aggregationType(type).timestamp(timestamp).build());
         }
+        if (type == AGGREGATION_TYPE.RAW) {
+            McMetricsRollup.getInstance().reset();
+        }
     }
 
     public static void purgeRawData(METRIC_TYPE metricType) {
@@ -81,8 +84,10 @@ public class McMetricsAggregationUtils {
     }
 
     public static void purgeBinaryData(long timestamp) {
+        McMetricsWriteBuffer.getInstance().flush();
         DaoUtils.getMetricsBinaryTypeDeviceDao().deletePrevious(
                 MetricsBinaryTypeDevice.builder().timestamp(timestamp).build());
+        McMetricsWriteBuffer.getInstance().invalidateBinaryStates();
     }
 
     public static void purgeGpsData(long timestamp) {
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.metrics.engine;
+
+import java.sql.SQLException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+import org.mycontroller.standalone.db.DB_QUERY;
+import org.mycontroller.standalone.utils.McUtils;
+
+import com.j256.ormlite.dao.Dao;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Aggregates all the buckets of a range in a single query. Bucket index is calculated from the timestamp
+ * and the rows are grouped by it. Bucket N covers (boundaries[N], boundaries[N+1]].
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class McMetricsBuckets {
+
+    // fixed duration buckets from the start, the last partial bucket not included
+    public static List<Long> getBoundaries(long start, long end, long bucketDuration) {
+        List<Long> boundaries = new ArrayList<Long>();
+        boundaries.add(start);
+        for (long tmpEnd = start + bucketDuration; tmpEnd < end; tmpEnd += bucketDuration) {
+            boundaries.add(tmpEnd);
+        }
+        return boundaries;
+    }
+
+    // calendar aligned buckets (minutes, hours, days and months), null on invalid bucket duration
+    public static List<Long> getCalendarBoundaries(long start, long end, String bucketDuration) {
+        Calendar calendarFrom = Calendar.getInstance();
+        Calendar calendarTo = Calendar.getInstance();
+        calendarFrom.setTime(new Date(start));
+        calendarTo.setTime(new Date(end));
+        String[] bucket = bucketDuration.trim().split("(?<=\\d)(?=\\D)");
+        if (bucket.length != 2) {
+            _logger.warn("Invalid bucketDuration string: {}, result:{}", bucketDuration, bucket);
+            return null;
+        }
+        Integer increment = McUtils.getInteger(bucket[0]);
+        Integer incrementRef = null;
+        String bucketString = bucket[1].toLowerCase();
+
+        switch (bucketString) {
+            case "m":
+                calendarFrom.set(Calendar.DAY_OF_MONTH, 1);
+                calendarTo.set(Calendar.DAY_OF_MONTH, 1);
+                incrementRef = Calendar.MONTH;
+            case "d":
+                calendarFrom.set(Calendar.HOUR_OF_DAY, 0);
+                calendarTo.set(Calendar.HOUR_OF_DAY, 0);
+                if (incrementRef == null) {
+                    incrementRef = Calendar.DATE;
+                }
+            case "h":
+                calendarFrom.set(Calendar.MINUTE, 0);
+                calendarTo.set(Calendar.MINUTE, 0);
+                if (incrementRef == null) {
+                    incrementRef = Calendar.HOUR;
+                }
+            case "mn":
+                calendarFrom.set(Calendar.MILLISECOND, 0);
+                calendarTo.set(Calendar.MILLISECOND, 0);
+                calendarFrom.set(Calendar.SECOND, 0);
+                calendarTo.set(Calendar.SECOND, 0);
+                if (incrementRef == null) {
+                    incrementRef = Calendar.MINUTE;
+                }
+        }
+        List<Long> boundaries = new ArrayList<Long>();
+        boundaries.add(calendarFrom.getTimeInMillis());
+        while (calendarFrom.before(calendarTo) || calendarFrom.equals(calendarTo)) {
+            calendarFrom.add(incrementRef, increment);
+            long endTmp = calendarFrom.getTimeInMillis();
+            boundaries.add(endTmp);
+            if ((bucketString.equals("mn") || bucketString.equals("h"))
+                    && endTmp > System.currentTimeMillis()) {
+                break;
+            }
+        }
+        return boundaries;
+    }
+
+    // FLOOR on equal buckets, CASE on calendar buckets (days, months)
+    public static String getBucketExpression(String timestampColumn, List<Long> boundaries) {
+        String column = "$" + timestampColumn + "$";
+        long duration = boundaries.get(1) - boundaries.get(0);
+        boolean fixed = true;
+        for (int index = 2; index < boundaries.size(); index++) {
+            if (boundaries.get(index) - boundaries.get(index - 1) != duration) {
+                fixed = false;
+                break;
+            }
+        }
+        if (fixed) {
+            return MessageFormat.format("FLOOR(({0} - {1} - 1) / {2})", column,
+                    String.valueOf(boundaries.get(0)), String.valueOf(duration));
+        }
+        StringBuilder builder = new StringBuilder("CASE");
+        for (int index = 1; index < boundaries.size(); index++) {
+            builder.append(" WHEN ").append(column).append(" <= ").append(boundaries.get(index))
+                    .append(" THEN ").append(index - 1);
+        }
+        return builder.append(" END").toString();
+    }
+
+    // end timestamp of the fixed duration bucket, bucket covers (end - duration, end]
+    public static String getBucketEndExpression(String timestampColumn, long start, long bucketDuration) {
+        return MessageFormat.format("({1} + (FLOOR(({0} - {1} - 1) / {2}) + 1) * {2})",
+                "$" + timestampColumn + "$", String.valueOf(start), String.valueOf(bucketDuration));
+    }
+
+    // for the tables not aggregated, reads the range without a plan
+    public static String[][] query(Dao<?, ?> dao, String query, Integer resourceId, List<Long> boundaries,
+            String timestampColumn) {
+        return query(dao, query, resourceId, boundaries, timestampColumn, null, false);
+    }
+
+    /**
+     * Returns rows by bucket index, null for empty buckets. Last column of the row is rows count.
+     * Range is read level by level as planned by {@link McMetricsQueryPlanner}, when aggregation type
+     * column is given. typeAsName - aggregation type stored as name, otherwise as ordinal.
+     */
+    public static String[][] query(Dao<?, ?> dao, String query, Integer resourceId, List<Long> boundaries,
+            String timestampColumn, String aggregationTypeColumn, boolean typeAsName) {
+        String[][] buckets = new String[Math.max(boundaries.size() - 1, 0)][];
+        if (buckets.length == 0) {
+            return buckets;
+        }
+        long start = boundaries.get(0);
+        long end = boundaries.get(boundaries.size() - 1);
+        McMetricsQueryPlan plan = null;
+        String rangeCondition = null;
+        if (aggregationTypeColumn != null) {
+            plan = McMetricsQueryPlanner.plan(start, end, boundaries.get(1) - boundaries.get(0));
+            if (plan.getSegments().isEmpty()) {
+                return buckets;
+            }
+            rangeCondition = getRangeCondition(plan, timestampColumn, aggregationTypeColumn, typeAsName);
+        } else {
+            rangeCondition = getRangeCondition(timestampColumn, start, end);
+        }
+        long startTime = System.currentTimeMillis();
+        long rowsAggregated = 0;
+        int bucketsReturned = 0;
+        String sqlSelectQuery = DB_QUERY.getQuery(MessageFormat.format(query,
+                String.valueOf(resourceId),
+                rangeCondition,
+                getBucketExpression(timestampColumn, boundaries)));
+        _logger.debug("Sql query:[{}]", sqlSelectQuery);
+        try {
+            for (String[] row : dao.queryRaw(sqlSelectQuery).getResults()) {
+                if (row[0] == null) {
+                    continue;
+                }
+                int index = Double.valueOf(row[0]).intValue();
+                if (index >= 0 && index < buckets.length) {
+                    buckets[index] = row;
+                    bucketsReturned++;
+                    rowsAggregated += getRowsCount(row[row.length - 1]);
+                }
+            }
+        } catch (SQLException ex) {
+            _logger.error("Exception,", ex);
+        }
+        if (plan != null) {
+            plan.setRowsAggregated(rowsAggregated);
+            plan.setBucketsReturned(bucketsReturned);
+            plan.setTimeTaken(System.currentTimeMillis() - startTime);
+            _logger.debug("Resource id:{}, {}", resourceId, plan);
+        }
+        return buckets;
+    }
+
+    // rows of a level on it's planned range, levels joined with OR
+    private static String getRangeCondition(McMetricsQueryPlan plan, String timestampColumn,
+            String aggregationTypeColumn, boolean typeAsName) {
+        StringBuilder builder = new StringBuilder("(");
+        for (McMetricsQueryPlan.Segment segment : plan.getSegments()) {
+            if (builder.length() > 1) {
+                builder.append(" OR ");
+            }
+            builder.append("($").append(aggregationTypeColumn).append("$ = ")
+                    .append(typeAsName ? "'" + segment.getAggregationType().name() + "'"
+                            : String.valueOf(segment.getAggregationType().ordinal()))
+                    .append(" AND ")
+                    .append(getRangeCondition(timestampColumn, segment.getStart(), segment.getEnd()))
+                    .append(")");
+        }
+        return builder.append(")").toString();
+    }
+
+    // (start, end]
+    private static String getRangeCondition(String timestampColumn, long start, long end) {
+        return MessageFormat.format("${0}$ > {1} AND ${0}$ <= {2}", timestampColumn, String.valueOf(start),
+                String.valueOf(end));
+    }
+
+    private static long getRowsCount(String value) {
+        return value != null ? Double.valueOf(value).longValue() : 0L;
+    }
+}
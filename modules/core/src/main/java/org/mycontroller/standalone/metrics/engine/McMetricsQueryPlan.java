@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.metrics.engine;
+
+import java.util.List;
+
+import org.mycontroller.standalone.metrics.MetricsUtils.AGGREGATION_TYPE;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.ToString;
+
+/**
+ * Aggregation levels read to serve a range, coarsest level first
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+@Data
+@ToString
+@Builder
+@AllArgsConstructor
+public class McMetricsQueryPlan {
+    private long start;
+    private long end;
+    private long bucketDuration;
+    private List<Segment> segments;
+    // filled after the query
+    private long rowsAggregated;
+    private int bucketsReturned;
+    private long timeTaken;
+
+    @Data
+    @ToString
+    @AllArgsConstructor
+    public static class Segment {
+        private AGGREGATION_TYPE aggregationType;
+        // range read from this level, (start, end]
+        private long start;
+        private long end;
+        // rows of this level are coarser than the requested bucket
+        private boolean coarser;
+    }
+}
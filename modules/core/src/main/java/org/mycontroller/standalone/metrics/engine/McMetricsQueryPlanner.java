@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.metrics.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mycontroller.standalone.AppProperties;
+import org.mycontroller.standalone.metrics.MetricsUtils.AGGREGATION_TYPE;
+import org.mycontroller.standalone.settings.MetricsDataRetentionSettings;
+import org.mycontroller.standalone.utils.McUtils;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * Every data point lives in one aggregation level at a time. Rows of a level are newer than the last
+ * aggregation of the next coarser level, so a range query reads a level only from there: old part from the
+ * coarse levels, only the recent edge from the finer levels. Levels with nothing on the range are not read.
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class McMetricsQueryPlanner {
+    // coarsest first
+    private static final AGGREGATION_TYPE[] LEVELS = {
+            AGGREGATION_TYPE.ONE_DAY,
+            AGGREGATION_TYPE.TWELVE_HOURS,
+            AGGREGATION_TYPE.SIX_HOURS,
+            AGGREGATION_TYPE.ONE_HOUR,
+            AGGREGATION_TYPE.FIVE_MINUTES,
+            AGGREGATION_TYPE.ONE_MINUTE,
+            AGGREGATION_TYPE.RAW };
+
+    public static McMetricsQueryPlan plan(long start, long end, long bucketDuration) {
+        MetricsDataRetentionSettings settings = AppProperties.getInstance().getMetricsDataRetentionSettings();
+        // last aggregation of the next coarser level
+        long[] levelStarts = {
+                Long.MIN_VALUE,
+                getTimestamp(settings.getLastAggregationOneDay()),
+                getTimestamp(settings.getLastAggregationTwelveHours()),
+                getTimestamp(settings.getLastAggregationSixHours()),
+                getTimestamp(settings.getLastAggregationOneHour()),
+                getTimestamp(settings.getLastAggregationFiveMinutes()),
+                getTimestamp(settings.getLastAggregationOneMinute()) };
+        List<McMetricsQueryPlan.Segment> segments = new ArrayList<McMetricsQueryPlan.Segment>();
+        for (int index = 0; index < LEVELS.length; index++) {
+            // till the end of the range, a partially failed aggregation can leave rows beyond the reference
+            long segmentStart = Math.max(start, levelStarts[index]);
+            if (end > segmentStart) {
+                segments.add(new McMetricsQueryPlan.Segment(LEVELS[index], segmentStart, end,
+                        getResolution(LEVELS[index]) > bucketDuration));
+            }
+        }
+        return McMetricsQueryPlan.builder()
+                .start(start)
+                .end(end)
+                .bucketDuration(bucketDuration)
+                .segments(segments)
+                .build();
+    }
+
+    private static long getTimestamp(Long timestamp) {
+        return timestamp != null ? timestamp : 0L;
+    }
+
+    private static long getResolution(AGGREGATION_TYPE aggregationType) {
+        switch (aggregationType) {
+            case ONE_MINUTE:
+                return McUtils.ONE_MINUTE;
+            case FIVE_MINUTES:
+                return McUtils.FIVE_MINUTES;
+            case ONE_HOUR:
+                return McUtils.ONE_HOUR;
+            case SIX_HOURS:
+                return McUtils.ONE_HOUR * 6;
+            case TWELVE_HOURS:
+                return McUtils.ONE_HOUR * 12;
+            case ONE_DAY:
+                return McUtils.ONE_DAY;
+            default:
+                return 0L;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.metrics.engine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import org.mycontroller.standalone.AppProperties;
+import org.mycontroller.standalone.db.tables.MetricsBatteryUsage;
+import org.mycontroller.standalone.db.tables.MetricsCounterTypeDevice;
+import org.mycontroller.standalone.db.tables.MetricsDoubleTypeDevice;
+import org.mycontroller.standalone.db.tables.Node;
+import org.mycontroller.standalone.db.tables.SensorVariable;
+import org.mycontroller.standalone.metrics.MetricsUtils.AGGREGATION_TYPE;
+import org.mycontroller.standalone.utils.McUtils;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps open one minute buckets (min, max, sum and samples) per resource, fed from the metric engine on
+ * every raw point. Aggregation job takes the closed buckets as rows, instead of aggregating raw data with
+ * SQL queries. Buckets are valid only for the raw data received after the start (or reset), older range
+ * should be aggregated from the database.
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+@Slf4j
+public class McMetricsRollup {
+    public static final long BUCKET_DURATION = McUtils.ONE_MINUTE;
+    // protects memory, when the aggregation job not running
+    public static final int MAXIMUM_BUCKETS = 100000;
+
+    private static final McMetricsRollup _instance = new McMetricsRollup();
+
+    private final HashMap<String, Bucket> buckets = new HashMap<String, Bucket>();
+    private boolean enabled = false;
+    // raw points received after this timestamp are in the buckets
+    private long coveredFrom = Long.MAX_VALUE;
+    private long aggregatedTo = 0;
+
+    private McMetricsRollup() {
+    }
+
+    public static McMetricsRollup getInstance() {
+        return _instance;
+    }
+
+    public synchronized void start() {
+        enabled = true;
+        reset();
+    }
+
+    public synchronized void stop() {
+        enabled = false;
+        buckets.clear();
+        coveredFrom = Long.MAX_VALUE;
+    }
+
+    public synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    // call this when raw data modified outside of the metric engine post
+    public synchronized void reset() {
+        buckets.clear();
+        coveredFrom = System.currentTimeMillis();
+    }
+
+    public void addDouble(Integer sensorVariableId, long timestamp, Double value) {
+        if (value != null) {
+            add(METRIC.DOUBLE, sensorVariableId, timestamp, value, 0L);
+        }
+    }
+
+    public void addBattery(Integer nodeId, long timestamp, Double value) {
+        if (value != null) {
+            add(METRIC.BATTERY, nodeId, timestamp, value, 0L);
+        }
+    }
+
+    public void addCounter(Integer sensorVariableId, long timestamp, Long value) {
+        if (value != null) {
+            add(METRIC.COUNTER, sensorVariableId, timestamp, 0.0, value);
+        }
+    }
+
+    /**
+     * Removes the buckets closed on or before the end and returns them as one minute rows.
+     * Returns null, when the range (start, end] is not fully covered by the buckets.
+     */
+    public synchronized Rows take(long start, long end) {
+        boolean covered = enabled && coveredFrom <= start;
+        Rows rows = new Rows();
+        Iterator<Bucket> iterator = buckets.values().iterator();
+        while (iterator.hasNext()) {
+            Bucket bucket = iterator.next();
+            if (bucket.end <= end) {
+                iterator.remove();
+                if (covered) {
+                    rows.add(bucket);
+                }
+            }
+        }
+        aggregatedTo = Math.max(aggregatedTo, end);
+        return covered ? rows : null;
+    }
+
+    private synchronized void add(METRIC metric, Integer resourceId, long timestamp, double value,
+            long counterValue) {
+        if (!enabled || resourceId == null) {
+            return;
+        }
+        long bucketEnd = getBucketEnd(timestamp);
+        if (bucketEnd <= aggregatedTo) {
+            // late point, bucket already aggregated
+            return;
+        }
+        String key = metric.ordinal() + "_" + resourceId + "_" + bucketEnd;
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= MAXIMUM_BUCKETS) {
+                _logger.warn("Rollup buckets limit reached[{}], aggregation falls back to database", MAXIMUM_BUCKETS);
+                reset();
+                return;
+            }
+            bucket = new Bucket(metric, resourceId, bucketEnd);
+            buckets.put(key, bucket);
+        }
+        bucket.update(value, counterValue);
+    }
+
+    // buckets are aligned with the last one minute aggregation, bucket covers (end - duration, end]
+    private long getBucketEnd(long timestamp) {
+        Long origin = AppProperties.getInstance().getMetricsDataRetentionSettings().getLastAggregationOneMinute();
+        long offset = (timestamp - (origin != null ? origin : 0L)) % BUCKET_DURATION;
+        if (offset < 0) {
+            offset += BUCKET_DURATION;
+        }
+        return offset == 0 ? timestamp : timestamp + BUCKET_DURATION - offset;
+    }
+
+    private enum METRIC {
+        DOUBLE,
+        BATTERY,
+        COUNTER;
+    }
+
+    private static class Bucket {
+        private final METRIC metric;
+        private final Integer resourceId;
+        private final long end;
+        private double min = Double.MAX_VALUE;
+        private double max = -Double.MAX_VALUE;
+        private double sum = 0.0;
+        private long counterValue = 0;
+        private int samples = 0;
+
+        private Bucket(METRIC metric, Integer resourceId, long end) {
+            this.metric = metric;
+            this.resourceId = resourceId;
+            this.end = end;
+        }
+
+        private void update(double value, long counterValue) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sum += value;
+            this.counterValue += counterValue;
+            samples++;
+        }
+    }
+
+    @Getter
+    public static class Rows {
+        private final List<MetricsDoubleTypeDevice> doubles = new ArrayList<MetricsDoubleTypeDevice>();
+        private final List<MetricsBatteryUsage> batteryUsages = new ArrayList<MetricsBatteryUsage>();
+        private final List<MetricsCounterTypeDevice> counters = new ArrayList<MetricsCounterTypeDevice>();
+
+        private void add(Bucket bucket) {
+            switch (bucket.metric) {
+                case DOUBLE:
+                    doubles.add(MetricsDoubleTypeDevice.builder()
+                            .sensorVariable(SensorVariable.builder().id(bucket.resourceId).build())
+                            .aggregationType(AGGREGATION_TYPE.ONE_MINUTE)
+                            .timestamp(bucket.end)
+                            .min(bucket.min)
+                            .max(bucket.max)
+                            .avg(bucket.sum / bucket.samples)
+                            .samples(bucket.samples).build());
+                    break;
+                case BATTERY:
+                    batteryUsages.add(MetricsBatteryUsage.builder()
+                            .node(Node.builder().id(bucket.resourceId).build())
+                            .aggregationType(AGGREGATION_TYPE.ONE_MINUTE)
+                            .timestamp(bucket.end)
+                            .min(bucket.min)
+                            .max(bucket.max)
+                            .avg(bucket.sum / bucket.samples)
+                            .samples(bucket.samples).build());
+                    break;
+                case COUNTER:
+                    counters.add(MetricsCounterTypeDevice.builder()
+                            .sensorVariable(SensorVariable.builder().id(bucket.resourceId).build())
+                            .aggregationType(AGGREGATION_TYPE.ONE_MINUTE)
+                            .timestamp(bucket.end)
+                            .value(bucket.counterValue)
+                            .samples(bucket.samples).build());
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        public int size() {
+            return doubles.size() + batteryUsages.size() + counters.size();
+        }
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.metrics.engine;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.mycontroller.standalone.AppProperties;
+import org.mycontroller.standalone.db.DaoUtils;
+import org.mycontroller.standalone.db.dao.BaseDao;
+import org.mycontroller.standalone.db.tables.MetricsBatteryUsage;
+import org.mycontroller.standalone.db.tables.MetricsBinaryTypeDevice;
+import org.mycontroller.standalone.db.tables.MetricsCounterTypeDevice;
+import org.mycontroller.standalone.db.tables.MetricsDoubleTypeDevice;
+import org.mycontroller.standalone.db.tables.MetricsGPSTypeDevice;
+import org.mycontroller.standalone.db.tables.SensorVariable;
+
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.stmt.QueryBuilder;
+import com.j256.ormlite.stmt.Where;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps metric points of the built-in metric engine in memory and inserts them in batches, per table.
+ * Buffer is flushed when it reaches the configured size, on every flush interval and before any read or
+ * delete on metric tables. Last two binary states of each sensor variable are kept in memory to detect
+ * duplicates without querying the database on every write.
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+@Slf4j
+public class McMetricsWriteBuffer implements Runnable {
+    private static final McMetricsWriteBuffer _instance = new McMetricsWriteBuffer();
+
+    // lock order: binaryLock -> flushLock -> lock
+    private final Object binaryLock = new Object();
+    private final Object flushLock = new Object();
+    private final Object lock = new Object();
+
+    private List<MetricsBatteryUsage> batteryUsages = new ArrayList<MetricsBatteryUsage>();
+    private List<MetricsDoubleTypeDevice> doubles = new ArrayList<MetricsDoubleTypeDevice>();
+    private List<MetricsBinaryTypeDevice> binaries = new ArrayList<MetricsBinaryTypeDevice>();
+    private List<MetricsCounterTypeDevice> counters = new ArrayList<MetricsCounterTypeDevice>();
+    private List<MetricsGPSTypeDevice> gpsPoints = new ArrayList<MetricsGPSTypeDevice>();
+    private int size = 0;
+    // incremented on every flush, binary point added on the current generation is still in the buffer
+    private long generation = 0;
+
+    private final HashMap<Integer, BinaryState> binaryStates = new HashMap<Integer, BinaryState>();
+
+    private int bufferSize = 0;
+    private long flushInterval = 1000;
+    private Thread _thread = null;
+    private volatile boolean terminate = false;
+
+    private McMetricsWriteBuffer() {
+    }
+
+    public static McMetricsWriteBuffer getInstance() {
+        return _instance;
+    }
+
+    public synchronized void start() {
+        if (_thread != null) {
+            return;
+        }
+        bufferSize = AppProperties.getInstance().getMetricsWriteBufferSize();
+        flushInterval = AppProperties.getInstance().getMetricsWriteBufferFlushInterval();
+        terminate = false;
+        if (bufferSize > 0) {
+            _thread = new Thread(this, "metrics-write-buffer");
+            _thread.setDaemon(true);
+            _thread.start();
+        }
+        _logger.debug("Metrics write buffer started, size:{}, flush interval:{} ms", bufferSize, flushInterval);
+    }
+
+    public void stop() {
+        Thread thread = null;
+        synchronized (this) {
+            terminate = true;
+            thread = _thread;
+            _thread = null;
+        }
+        if (thread != null) {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+            try {
+                thread.join(flushInterval * 10);
+            } catch (InterruptedException ex) {
+                _logger.error("Exception,", ex);
+            }
+        }
+        // write remaining points
+        flush();
+        synchronized (binaryLock) {
+            binaryStates.clear();
+        }
+        _logger.debug("Metrics write buffer stopped");
+    }
+
+    public void add(MetricsBatteryUsage batteryUsage) {
+        synchronized (lock) {
+            batteryUsages.add(batteryUsage);
+            added();
+        }
+        flushIfDisabled();
+    }
+
+    public void add(MetricsDoubleTypeDevice metric) {
+        synchronized (lock) {
+            doubles.add(metric);
+            added();
+        }
+        flushIfDisabled();
+    }
+
+    public void add(MetricsCounterTypeDevice metric) {
+        synchronized (lock) {
+            counters.add(metric);
+            added();
+        }
+        flushIfDisabled();
+    }
+
+    public void add(MetricsGPSTypeDevice metric) {
+        synchronized (lock) {
+            gpsPoints.add(metric);
+            added();
+        }
+        flushIfDisabled();
+    }
+
+    public void add(SensorVariable sensorVariable, long timestamp, boolean state, boolean ignoreDuplicate) {
+        synchronized (binaryLock) {
+            BinaryState binaryState = binaryStates.get(sensorVariable.getId());
+            if (binaryState == null) {
+                binaryState = loadBinaryState(sensorVariable);
+                binaryStates.put(sensorVariable.getId(), binaryState);
+            }
+            // check duplicate, if enabled and any update timestamp. Otherwise normal insert
+            if (ignoreDuplicate && binaryState.isDuplicate(state)) {
+                MetricsBinaryTypeDevice last = binaryState.last;
+                boolean updated = false;
+                synchronized (lock) {
+                    if (binaryState.generation == generation) {
+                        // still in the buffer, update in memory
+                        last.setTimestamp(timestamp);
+                        updated = true;
+                    }
+                }
+                if (!updated) {
+                    // wait for the flush in progress, if any
+                    synchronized (flushLock) {
+                        DaoUtils.getMetricsBinaryTypeDeviceDao().updateTimestamp(sensorVariable.getId(),
+                                last.getTimestamp(), timestamp);
+                    }
+                    last.setTimestamp(timestamp);
+                }
+                return;
+            }
+            MetricsBinaryTypeDevice metric = MetricsBinaryTypeDevice.builder()
+                    .sensorVariable(sensorVariable)
+                    .timestamp(timestamp)
+                    .state(state).build();
+            synchronized (lock) {
+                binaries.add(metric);
+                binaryState.previous = binaryState.last;
+                binaryState.last = metric;
+                binaryState.generation = generation;
+                added();
+            }
+        }
+        flushIfDisabled();
+    }
+
+    // call this when binary metrics deleted outside of this buffer
+    public void invalidateBinaryStates() {
+        synchronized (binaryLock) {
+            binaryStates.clear();
+        }
+    }
+
+    public void invalidateBinaryState(Integer sensorVariableId) {
+        synchronized (binaryLock) {
+            binaryStates.remove(sensorVariableId);
+        }
+    }
+
+    public void flush() {
+        synchronized (flushLock) {
+            List<MetricsBatteryUsage> _batteryUsages = null;
+            List<MetricsDoubleTypeDevice> _doubles = null;
+            List<MetricsBinaryTypeDevice> _binaries = null;
+            List<MetricsCounterTypeDevice> _counters = null;
+            List<MetricsGPSTypeDevice> _gpsPoints = null;
+            synchronized (lock) {
+                if (size == 0) {
+                    return;
+                }
+                _batteryUsages = batteryUsages;
+                _doubles = doubles;
+                _binaries = binaries;
+                _counters = counters;
+                _gpsPoints = gpsPoints;
+                batteryUsages = new ArrayList<MetricsBatteryUsage>();
+                doubles = new ArrayList<MetricsDoubleTypeDevice>();
+                binaries = new ArrayList<MetricsBinaryTypeDevice>();
+                counters = new ArrayList<MetricsCounterTypeDevice>();
+                gpsPoints = new ArrayList<MetricsGPSTypeDevice>();
+                size = 0;
+                generation++;
+            }
+            long startTime = System.currentTimeMillis();
+            write(DaoUtils.getMetricsBatteryUsageDao(), _batteryUsages);
+            write(DaoUtils.getMetricsDoubleTypeDeviceDao(), _doubles);
+            write(DaoUtils.getMetricsBinaryTypeDeviceDao(), _binaries);
+            write(DaoUtils.getMetricsCounterTypeDeviceDao(), _counters);
+            write(DaoUtils.getMetricsGPSTypeDeviceDao(), _gpsPoints);
+            _logger.debug("Metrics flushed, battery:{}, double:{}, binary:{}, counter:{}, gps:{}, time taken:{} ms",
+                    _batteryUsages.size(), _doubles.size(), _binaries.size(), _counters.size(),
+                    _gpsPoints.size(), System.currentTimeMillis() - startTime);
+        }
+    }
+
+    @Override
+    public void run() {
+        while (!terminate) {
+            try {
+                synchronized (lock) {
+                    if (size < bufferSize && !terminate) {
+                        lock.wait(flushInterval);
+                    }
+                }
+                flush();
+            } catch (InterruptedException ex) {
+                _logger.error("Exception,", ex);
+                break;
+            } catch (Exception ex) {
+                _logger.error("Exception,", ex);
+            }
+        }
+    }
+
+    // should be called with lock
+    private void added() {
+        size++;
+        if (size >= bufferSize) {
+            lock.notifyAll();
+        }
+    }
+
+    private void flushIfDisabled() {
+        if (bufferSize <= 0 || _thread == null) {
+            flush();
+        }
+    }
+
+    private BinaryState loadBinaryState(SensorVariable sensorVariable) {
+        // points of this sensor variable can be in the buffer, when the state invalidated
+        flush();
+        BinaryState binaryState = new BinaryState();
+        binaryState.generation = -1;
+        List<MetricsBinaryTypeDevice> metrics = DaoUtils.getMetricsBinaryTypeDeviceDao()
+                .getAllLastN(sensorVariable, 2);
+        if (metrics.size() > 0) {
+            binaryState.last = metrics.get(0);
+        }
+        if (metrics.size() > 1) {
+            binaryState.previous = metrics.get(1);
+        }
+        return binaryState;
+    }
+
+    static <T> void write(BaseDao<T, Object> dao, List<T> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        try {
+            if (dao.createBulk(items) == items.size()) {
+                return;
+            }
+        } catch (Exception ex) {
+            _logger.error("Exception,", ex);
+        }
+        // batch failed, a point of deleted resource fails the whole batch. Try one by one
+        // the batch can be written partially, points written already are skipped
+        int dropped = 0;
+        for (T item : items) {
+            try {
+                if (!exists(dao, item)) {
+                    dao.create(item);
+                }
+            } catch (Exception ex) {
+                dropped++;
+                _logger.debug("Unable to write the metric point:{}", item, ex);
+            }
+        }
+        if (dropped > 0) {
+            _logger.warn("Dropped metric points:{} of {}, type:{}", dropped, items.size(),
+                    items.get(0).getClass().getSimpleName());
+        }
+    }
+
+    // looks up the point by the unique columns of the table
+    private static <T> boolean exists(BaseDao<T, Object> dao, T item) throws SQLException {
+        QueryBuilder<T, Object> queryBuilder = dao.getDao().queryBuilder();
+        Where<T, Object> where = queryBuilder.where();
+        int columnsCount = 0;
+        for (FieldType fieldType : dao.getTableInfo().getFieldTypes()) {
+            if (fieldType.isUniqueCombo()) {
+                where.eq(fieldType.getColumnName(), fieldType.extractJavaFieldValue(item));
+                columnsCount++;
+            }
+        }
+        if (columnsCount == 0) {
+            return false;
+        }
+        if (columnsCount > 1) {
+            where.and(columnsCount);
+        }
+        return queryBuilder.countOf() > 0;
+    }
+
+    private static class BinaryState {
+        private MetricsBinaryTypeDevice last;
+        private MetricsBinaryTypeDevice previous;
+        private long generation;
+
+        private boolean isDuplicate(boolean state) {
+            return last != null && previous != null
+                    && last.getState() == state && previous.getState() == state;
+        }
+    }
+}
@@ -0,0 +1,435 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.metrics.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.mycontroller.standalone.AppProperties;
+import org.mycontroller.standalone.api.SystemApi;
+import org.mycontroller.standalone.api.jaxrs.model.DataPointBase;
+import org.mycontroller.standalone.api.jaxrs.model.DataPointBinary;
+import org.mycontroller.standalone.api.jaxrs.model.DataPointCounter;
+import org.mycontroller.standalone.api.jaxrs.model.DataPointDouble;
+import org.mycontroller.standalone.api.jaxrs.model.DataPointGPS;
+import org.mycontroller.standalone.api.jaxrs.model.ResourcePurgCondition;
+import org.mycontroller.standalone.api.jaxrs.model.ResourcePurgeConf;
+import org.mycontroller.standalone.db.tables.MetricsCounterTypeDevice;
+import org.mycontroller.standalone.db.tables.MetricsDoubleTypeDevice;
+import org.mycontroller.standalone.db.tables.MetricsGPSTypeDevice;
+import org.mycontroller.standalone.db.tables.Node;
+import org.mycontroller.standalone.db.tables.SensorVariable;
+import org.mycontroller.standalone.exceptions.McBadRequestException;
+import org.mycontroller.standalone.metrics.MetricsUtils;
+import org.mycontroller.standalone.metrics.engine.chunk.McChunkAggregate;
+import org.mycontroller.standalone.metrics.engine.chunk.McChunkFilter;
+import org.mycontroller.standalone.metrics.engine.chunk.McChunkPoint;
+import org.mycontroller.standalone.metrics.engine.chunk.McChunkSeries;
+import org.mycontroller.standalone.metrics.engine.chunk.McChunkStore;
+import org.mycontroller.standalone.metrics.engine.chunk.McChunkStore.SERIES_TYPE;
+import org.mycontroller.standalone.metrics.model.Criteria;
+import org.mycontroller.standalone.metrics.model.DataPointer;
+import org.mycontroller.standalone.metrics.model.Pong;
+import org.mycontroller.standalone.model.ResourceModel;
+import org.mycontroller.standalone.utils.McUtils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Stores metrics on local disk as compressed chunks, one file per resource. No external service needed.
+ * Aggregate queries are answered from the chunk headers, when a chunk fits in to a bucket.
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+@Slf4j
+public class MetricEngineChunks implements IMetricEngine {
+    private static McChunkStore store = null;
+
+    public MetricEngineChunks() {
+        getStore().start();
+    }
+
+    private static synchronized McChunkStore getStore() {
+        if (store == null) {
+            store = new McChunkStore(AppProperties.getInstance().getMcPersistentStoresLocation()
+                    + "/metrics_chunks/");
+        }
+        return store;
+    }
+
+    @Override
+    public void post(DataPointer data) {
+        switch (data.getResourceModel().getResourceType()) {
+            case NODE:
+                Node node = (Node) data.getResourceModel().getResource();
+                switch (data.getDataType()) {
+                    case NODE_BATTERY_USAGE:
+                        Double batteryLevel = McUtils.getDouble(data.getPayload());
+                        if (batteryLevel != null) {
+                            getStore().get(SERIES_TYPE.BATTERY, node.getId())
+                                    .add(System.currentTimeMillis(), batteryLevel);
+                        }
+                        return;
+                    default:
+                        break;
+                }
+                break;
+            case SENSOR_VARIABLE:
+                SensorVariable sensorVariable = (SensorVariable) data.getResourceModel().getResource();
+                switch (sensorVariable.getMetricType()) {
+                    case DOUBLE:
+                        Double value = McUtils.getDouble(data.getPayload());
+                        if (value != null) {
+                            getStore().get(SERIES_TYPE.DOUBLE, sensorVariable.getId())
+                                    .add(data.getTimestamp(), value);
+                        }
+                        return;
+                    case BINARY:
+                        double state = McUtils.getBoolean(data.getPayload()) ? 1.0 : 0.0;
+                        McChunkSeries series = getStore().get(SERIES_TYPE.BINARY, sensorVariable.getId());
+                        // check duplicate, if enabled and any update timestamp. Otherwise normal insert
+                        if (!(boolean) sensorVariable.getProperties().get(SensorVariable.KEY_IGNORE_DUPLICATE)
+                                || !series.updateLastIfDuplicate(data.getTimestamp(), state)) {
+                            series.add(data.getTimestamp(), state);
+                        }
+                        return;
+                    case COUNTER:
+                        Long counter = McUtils.getLong(data.getPayload());
+                        if (counter != null) {
+                            getStore().get(SERIES_TYPE.COUNTER, sensorVariable.getId())
+                                    .add(data.getTimestamp(), counter.doubleValue());
+                        }
+                        return;
+                    case GPS:
+                        try {
+                            MetricsGPSTypeDevice gpsData = MetricsGPSTypeDevice.get(data.getPayload(),
+                                    data.getTimestamp());
+                            getStore().get(SERIES_TYPE.GPS, sensorVariable.getId()).add(data.getTimestamp(),
+                                    gpsData.getLantitude(), gpsData.getLongitude(), gpsData.getAltitude());
+                        } catch (McBadRequestException ex) {
+                            _logger.error("Exception,", ex);
+                        }
+                        return;
+                    case NONE:
+                        //For None type nothing to do.
+                        return;
+                    default:
+                        break;
+                }
+            default:
+                break;
+        }
+        throw new RuntimeException("Not supported operation for :" + data);
+    }
+
+    @Override
+    public DataPointBase get(Criteria criteria) {
+        switch (criteria.getResourceModel().getResourceType()) {
+            case SENSOR_VARIABLE:
+                SensorVariable sensorVariable = (SensorVariable) criteria.getResourceModel().getResource();
+                switch (sensorVariable.getMetricType()) {
+                    case DOUBLE:
+                        // start inclusive
+                        McChunkAggregate aggregate = getStore().get(SERIES_TYPE.DOUBLE, sensorVariable.getId())
+                                .aggregate(Arrays.asList(criteria.getStart() - 1, criteria.getEnd()))[0];
+                        MetricsDoubleTypeDevice metric = null;
+                        if (!aggregate.isEmpty()) {
+                            metric = MetricsDoubleTypeDevice.builder()
+                                    .min(aggregate.getMin()[0])
+                                    .max(aggregate.getMax()[0])
+                                    .avg(aggregate.getAvg(0))
+                                    .samples(aggregate.getCount())
+                                    .build();
+                        }
+                        return DataPointDouble.get(metric, criteria.getStart(), criteria.getEnd());
+                    default:
+                        break;
+                }
+            default:
+                break;
+        }
+        throw new RuntimeException("Selected query not implemented! " + criteria);
+    }
+
+    @Override
+    public List<List<?>> list(List<Criteria> criteriaList) {
+        List<List<?>> results = new ArrayList<List<?>>();
+        for (Criteria criteria : criteriaList) {
+            results.add(list(criteria));
+        }
+        return results;
+    }
+
+    @Override
+    public List<?> list(Criteria criteria) {
+        Integer resourceId = criteria.getResourceModel().getResourceId();
+        switch (criteria.getResourceModel().getResourceType()) {
+            case NODE:
+                switch (criteria.getDataType()) {
+                    case NODE_BATTERY_USAGE:
+                        return getDataPointsDouble(getStore().get(SERIES_TYPE.BATTERY, resourceId), criteria);
+                    default:
+                        break;
+                }
+                break;
+            case SENSOR_VARIABLE:
+                SensorVariable sensorVariable = (SensorVariable) criteria.getResourceModel().getResource();
+                switch (sensorVariable.getMetricType()) {
+                    case BINARY:
+                        return getDataPointsBinary(getStore().get(SERIES_TYPE.BINARY, resourceId), criteria);
+                    case COUNTER:
+                        return getDataPointsCounter(getStore().get(SERIES_TYPE.COUNTER, resourceId), criteria);
+                    case DOUBLE:
+                        return getDataPointsDouble(getStore().get(SERIES_TYPE.DOUBLE, resourceId), criteria);
+                    case GPS:
+                        return getDataPointsGPS(getStore().get(SERIES_TYPE.GPS, resourceId), criteria);
+                    default:
+                        throw new RuntimeException("Not supported metric type: " + sensorVariable.getMetricType());
+                }
+            default:
+                break;
+        }
+        return new ArrayList<DataPointDouble>();
+    }
+
+    private List<DataPointDouble> getDataPointsDouble(McChunkSeries series, Criteria criteria) {
+        List<DataPointDouble> metricsFinal = new ArrayList<DataPointDouble>();
+        long bucketDuration = criteria.getBucketDurationLong();
+        if (bucketDuration == -1) {
+            for (McChunkPoint point : series.read(criteria.getStart(), criteria.getEnd())) {
+                double value = point.getValues()[0];
+                metricsFinal.add(DataPointDouble.get(value, value, value, 1, point.getTimestamp(), null, null));
+            }
+        } else {
+            List<Long> boundaries = McMetricsBuckets.getBoundaries(criteria.getStart(), criteria.getEnd(),
+                    bucketDuration);
+            McChunkAggregate[] buckets = series.aggregate(boundaries);
+            for (int index = 0; index < buckets.length; index++) {
+                McChunkAggregate bucket = buckets[index];
+                if (bucket.isEmpty()) {
+                    metricsFinal.add(DataPointDouble.get((MetricsDoubleTypeDevice) null, boundaries.get(index),
+                            boundaries.get(index + 1)));
+                } else {
+                    metricsFinal.add(DataPointDouble.get(bucket.getMin()[0], bucket.getMax()[0], bucket.getAvg(0),
+                            bucket.getCount(), boundaries.get(index + 1), null, null));
+                }
+            }
+        }
+        return metricsFinal;
+    }
+
+    private List<DataPointBinary> getDataPointsBinary(McChunkSeries series, Criteria criteria) {
+        List<DataPointBinary> metricsFinal = new ArrayList<DataPointBinary>();
+        for (McChunkPoint point : series.read(criteria.getStart(), criteria.getEnd())) {
+            metricsFinal.add(DataPointBinary.get(point.getValues()[0] == 1.0, point.getTimestamp()));
+        }
+        return metricsFinal;
+    }
+
+    private List<DataPointCounter> getDataPointsCounter(McChunkSeries series, Criteria criteria) {
+        List<DataPointCounter> metricsFinal = new ArrayList<DataPointCounter>();
+        if (criteria.getBucketDuration().equalsIgnoreCase("raw")) {
+            for (McChunkPoint point : series.read(criteria.getStart(), criteria.getEnd())) {
+                metricsFinal.add(DataPointCounter.get((long) point.getValues()[0], 1, point.getTimestamp(), null,
+                        null));
+            }
+        } else {
+            List<Long> boundaries = McMetricsBuckets.getCalendarBoundaries(criteria.getStart(), criteria.getEnd(),
+                    criteria.getBucketDuration());
+            if (boundaries == null) {
+                return metricsFinal;
+            }
+            McChunkAggregate[] buckets = series.aggregate(boundaries);
+            for (int index = 0; index < buckets.length; index++) {
+                McChunkAggregate bucket = buckets[index];
+                if (bucket.isEmpty()) {
+                    metricsFinal.add(DataPointCounter.get((MetricsCounterTypeDevice) null, boundaries.get(index),
+                            boundaries.get(index + 1)));
+                } else {
+                    metricsFinal.add(DataPointCounter.get((long) bucket.getSum()[0], bucket.getCount(),
+                            boundaries.get(index + 1), null, null));
+                }
+            }
+        }
+        return metricsFinal;
+    }
+
+    private List<DataPointGPS> getDataPointsGPS(McChunkSeries series, Criteria criteria) {
+        List<DataPointGPS> metricsFinal = new ArrayList<DataPointGPS>();
+        if (criteria.getBucketDuration().equalsIgnoreCase("raw")) {
+            for (McChunkPoint point : series.read(criteria.getStart(), criteria.getEnd())) {
+                metricsFinal.add(DataPointGPS.get(MetricsGPSTypeDevice.builder()
+                        .lantitude(point.getValues()[0])
+                        .longitude(point.getValues()[1])
+                        .altitude(point.getValues()[2])
+                        .samples(1)
+                        .timestamp(point.getTimestamp())
+                        .build(), null, null));
+            }
+        } else {
+            List<Long> boundaries = McMetricsBuckets.getBoundaries(criteria.getStart(), criteria.getEnd(),
+                    criteria.getBucketDurationLong());
+            McChunkAggregate[] buckets = series.aggregate(boundaries);
+            for (int index = 0; index < buckets.length; index++) {
+                McChunkAggregate bucket = buckets[index];
+                if (bucket.isEmpty()) {
+                    metricsFinal.add(DataPointGPS.get(null, boundaries.get(index), boundaries.get(index + 1)));
+                } else {
+                    metricsFinal.add(DataPointGPS.get(MetricsGPSTypeDevice.builder()
+                            .lantitude(bucket.getAvg(0))
+                            .longitude(bucket.getAvg(1))
+                            .altitude(bucket.getAvg(2))
+                            .samples(bucket.getCount())
+                            .timestamp(boundaries.get(index + 1))
+                            .build(), null, null));
+                }
+            }
+        }
+        return metricsFinal;
+    }
+
+    @Override
+    public void purge(ResourceModel resourceModel, final ResourcePurgeConf purgeConf) {
+        SERIES_TYPE seriesType = getSeriesType(resourceModel);
+        if (seriesType == null) {
+            return;
+        }
+        final Long start = purgeConf.getStart();
+        final Long end = purgeConf.getEnd();
+        final List<ResourcePurgCondition> conditions = new ArrayList<ResourcePurgCondition>();
+        if (purgeConf.getValue() != null) {
+            switch (seriesType) {
+                case BINARY:
+                    conditions.add(new ResourcePurgCondition(
+                            McUtils.getBoolean(purgeConf.getValue()) ? "1" : "0"));
+                    break;
+                case DOUBLE:
+                case COUNTER:
+                case BATTERY:
+                    // raw points, min, max and avg are same as value
+                    if (purgeConf.getAvg() != null && purgeConf.getAvg().getValue() != null) {
+                        conditions.add(purgeConf.getAvg());
+                    }
+                    if (purgeConf.getMin() != null && purgeConf.getMin().getValue() != null) {
+                        conditions.add(purgeConf.getMin());
+                    }
+                    if (purgeConf.getMax() != null && purgeConf.getMax().getValue() != null) {
+                        conditions.add(purgeConf.getMax());
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        int count = getStore().get(seriesType, resourceModel.getResourceId()).remove(new McChunkFilter() {
+            @Override
+            public boolean matches(McChunkPoint point) {
+                if ((start != null && point.getTimestamp() < start) || (end != null && point.getTimestamp() > end)) {
+                    return false;
+                }
+                if (conditions.isEmpty()) {
+                    return true;
+                }
+                for (ResourcePurgCondition condition : conditions) {
+                    if (isMatching(condition, point.getValues()[0])) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        });
+        _logger.debug("Purged {} points of {}, {}", count, resourceModel, purgeConf);
+    }
+
+    @Override
+    public void purge(ResourceModel resourceModel) {
+        SERIES_TYPE seriesType = getSeriesType(resourceModel);
+        if (seriesType != null) {
+            getStore().delete(seriesType, resourceModel.getResourceId());
+        }
+    }
+
+    @Override
+    public void purgeEverything() {
+        getStore().deleteAll();
+    }
+
+    @Override
+    public Pong ping() {
+        boolean writable = getStore().isWritable();
+        return Pong.builder()
+                .reachable(writable)
+                .version(new SystemApi().getAbout().getApplicationVersion())
+                .error(writable ? null : "Not able to write on " + getStore().getDirectory().getAbsolutePath())
+                .build();
+    }
+
+    @Override
+    public void close() {
+        // engine created for ping should not stop the store of the running engine
+        if (MetricsUtils.engine() == this) {
+            getStore().stop();
+        }
+    }
+
+    private SERIES_TYPE getSeriesType(ResourceModel resourceModel) {
+        switch (resourceModel.getResourceType()) {
+            case NODE:
+                return SERIES_TYPE.BATTERY;
+            case SENSOR_VARIABLE:
+                switch (((SensorVariable) resourceModel.getResource()).getMetricType()) {
+                    case DOUBLE:
+                        return SERIES_TYPE.DOUBLE;
+                    case BINARY:
+                        return SERIES_TYPE.BINARY;
+                    case COUNTER:
+                        return SERIES_TYPE.COUNTER;
+                    case GPS:
+                        return SERIES_TYPE.GPS;
+                    default:
+                        return null;
+                }
+            default:
+                return null;
+        }
+    }
+
+    private boolean isMatching(ResourcePurgCondition condition, double value) {
+        Double expected = condition.getValueDouble();
+        if (expected == null || condition.getOperator() == null) {
+            return false;
+        }
+        switch (condition.getOperator()) {
+            case EQ:
+                return value == expected;
+            case NE:
+                return value != expected;
+            case GT:
+                return value > expected;
+            case GE:
+                return value >= expected;
+            case LT:
+                return value < expected;
+            case LE:
+                return value <= expected;
+            default:
+                return false;
+        }
+    }
+}
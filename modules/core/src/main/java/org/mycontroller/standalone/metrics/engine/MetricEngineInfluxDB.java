@@ -19,9 +19,9 @@ package org.mycontroller.standalone.metrics.engine;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
-import org.influxdb.BatchOptions;
 import org.influxdb.InfluxDB;
 import org.influxdb.InfluxDBFactory;
 import org.influxdb.dto.Point;
@@ -30,6 +30,7 @@ import org.mycontroller.restclient.influxdb.model.Pong;
 import org.mycontroller.restclient.influxdb.model.Query;
 import org.mycontroller.restclient.influxdb.model.QueryResult;
 import org.mycontroller.restclient.influxdb.model.Series;
+import org.mycontroller.standalone.AppProperties;
 import org.mycontroller.standalone.api.MetricApi;
 import org.mycontroller.standalone.api.jaxrs.model.DataPointBase;
 import org.mycontroller.standalone.api.jaxrs.model.DataPointBinary;
@@ -61,14 +62,21 @@ public class MetricEngineInfluxDB implements IMetricEngine {
     private static final String MEASUREMENT_RESOURCE_BINARY = "mc_resource_binary";
 
     private static final String VALUE_COLUMN = "value";
+    private static final String SELECT_VALUE = "\"" + VALUE_COLUMN + "\"";
+    private static final String SELECT_COUNTER_AGGREGATED = "sum(\"" + VALUE_COLUMN + "\"), count(\""
+            + VALUE_COLUMN + "\")";
+    private static final String SELECT_DOUBLE_AGGREGATED = "min(\"" + VALUE_COLUMN + "\"), max(\"" + VALUE_COLUMN
+            + "\"), mean(\"" + VALUE_COLUMN + "\"), count(\"" + VALUE_COLUMN + "\")";
+    // max statements in a single multi statement query
+    private static final int MAX_STATEMENTS = 20;
 
     private static final TimeUnit timeUnit = TimeUnit.MILLISECONDS;
 
-    private static final int FLUSH_POINTS = 200;
-    private static final int FLUSH_DURATION = 2000;
-
     private InfluxDBClient _clientQuery = null;
     private InfluxDB _client = null;
+    private MetricEngineConfigInfluxDB _config = null;
+    private volatile McInfluxDBPipeline _pipeline = null;
+    private final ConcurrentHashMap<String, String[]> queryShapes = new ConcurrentHashMap<String, String[]>();
 
     public MetricEngineInfluxDB(InfluxDB _client) {
         this._client = _client;
@@ -84,9 +92,45 @@ public class MetricEngineInfluxDB implements IMetricEngine {
             _client = InfluxDBFactory.connect(_config.getUrl());
         }
         _client.setDatabase(_config.getDatabase());
-        _client.enableBatch(BatchOptions.DEFAULTS.actions(FLUSH_POINTS).flushDuration(FLUSH_DURATION));
-        _logger.debug("MetricEngine, Influxdb client BatchSettings[flush, points:{}, duration:{} ms]",
-                FLUSH_POINTS, FLUSH_DURATION);
+        this._config = _config;
+    }
+
+    // started on first write, engine created only for ping/test does not start it
+    private McInfluxDBPipeline getPipeline() {
+        McInfluxDBPipeline pipeline = _pipeline;
+        if (pipeline != null || _config == null) {
+            return pipeline;
+        }
+        synchronized (this) {
+            if (_pipeline == null) {
+                pipeline = new McInfluxDBPipeline(
+                        _client,
+                        _config.getDatabase(),
+                        _config.getBatchSize(),
+                        _config.getBatchLinger(),
+                        _config.getMaxInFlight(),
+                        _config.getSpillLimit() != null ? _config.getSpillLimit() * 1024 * 1024 : null,
+                        AppProperties.getInstance().getMcPersistentStoresLocation() + "/influxdb_spill/");
+                pipeline.start();
+                _pipeline = pipeline;
+            }
+            return _pipeline;
+        }
+    }
+
+    private void write(Point point) {
+        McInfluxDBPipeline pipeline = getPipeline();
+        if (pipeline != null) {
+            pipeline.add(point.lineProtocol());
+        } else {
+            _client.write(point);
+        }
+    }
+
+    // null until the first write starts the pipeline
+    public McInfluxDBPipelineStatistics getPipelineStatistics() {
+        McInfluxDBPipeline pipeline = _pipeline;
+        return pipeline != null ? pipeline.getStatistics() : null;
     }
 
     private Point getPoint(String measurementName, long timestamp, Object value, Integer internalId, String type) {
@@ -120,7 +164,7 @@ public class MetricEngineInfluxDB implements IMetricEngine {
                                 McUtils.getDouble(data.getPayload()),
                                 node.getId(),
                                 DATA_TYPE.NODE_BATTERY_USAGE.name());
-                        _client.write(point);
+                        write(point);
                         return;
                     default:
                         break;
@@ -159,7 +203,7 @@ public class MetricEngineInfluxDB implements IMetricEngine {
                             payload,
                             sensorVariable.getId(),
                             type);
-                    _client.write(point);
+                    write(point);
                     return;
                 }
             default:
@@ -211,74 +255,118 @@ public class MetricEngineInfluxDB implements IMetricEngine {
 
     @Override
     public List<?> list(Criteria criteria) {
+        String query = getListQuery(criteria);
+        if (query == null) {
+            return new ArrayList<DataPointDouble>();
+        }
+        return getList(getListType(criteria),
+                _clientQuery.query(Query.builder().q(query).epoch("ms").build()), 0, criteria);
+    }
+
+    @Override
+    public List<List<?>> list(List<Criteria> criteriaList) {
+        List<List<?>> results = new ArrayList<List<?>>();
+        List<Criteria> statements = new ArrayList<Criteria>();
+        StringBuilder builder = new StringBuilder();
+        for (int index = 0; index < criteriaList.size(); index++) {
+            Criteria criteria = criteriaList.get(index);
+            String query = getListQuery(criteria);
+            results.add(query == null ? new ArrayList<DataPointDouble>() : null);
+            if (query != null) {
+                if (builder.length() > 0) {
+                    builder.append(";");
+                }
+                builder.append(query);
+                statements.add(criteria);
+            }
+            // send as a single multi statement request, limited to keep the request size sane
+            if (!statements.isEmpty()
+                    && (statements.size() >= MAX_STATEMENTS || index == criteriaList.size() - 1)) {
+                QueryResult response = _clientQuery.query(Query.builder().q(builder.toString()).epoch("ms").build());
+                int statement = 0;
+                for (int resultIndex = 0; resultIndex <= index; resultIndex++) {
+                    if (results.get(resultIndex) == null) {
+                        Criteria statementCriteria = statements.get(statement);
+                        results.set(resultIndex,
+                                getList(getListType(statementCriteria), response, statement, statementCriteria));
+                        statement++;
+                    }
+                }
+                statements.clear();
+                builder.setLength(0);
+            }
+        }
+        return results;
+    }
+
+    private METRIC_TYPE getListType(Criteria criteria) {
+        switch (criteria.getResourceModel().getResourceType()) {
+            case NODE:
+                return METRIC_TYPE.DOUBLE;
+            case SENSOR_VARIABLE:
+                return ((SensorVariable) criteria.getResourceModel().getResource()).getMetricType();
+            default:
+                return null;
+        }
+    }
+
+    // returns null, if there is no data for the criteria
+    private String getListQuery(Criteria criteria) {
         switch (criteria.getResourceModel().getResourceType()) {
             case NODE:
                 switch (criteria.getDataType()) {
                     case NODE_BATTERY_USAGE:    //Update battery level in to metrics table
-                        Query query = Query.builder()
-                                .q(getQueryDouble(MEASUREMENT_RESOURCE_DOUBLE,
-                                        DATA_TYPE.NODE_BATTERY_USAGE.name(),
-                                        criteria.getResourceModel().getResourceId(), criteria.getStart(),
-                                        criteria.getEnd(),
-                                        criteria.getBucketDuration(), false))
-                                .epoch("ms")
-                                .build();
-                        return getList(
-                                METRIC_TYPE.DOUBLE,
-                                _clientQuery.query(query),
-                                criteria);
+                        return getQueryDouble(MEASUREMENT_RESOURCE_DOUBLE,
+                                DATA_TYPE.NODE_BATTERY_USAGE.name(),
+                                criteria.getResourceModel().getResourceId(), criteria.getStart(),
+                                criteria.getEnd(),
+                                criteria.getBucketDuration(), false);
                     default:
                         break;
                 }
                 break;
             case SENSOR_VARIABLE:
                 SensorVariable sensorVariable = (SensorVariable) criteria.getResourceModel().getResource();
-                Query query = Query.builder().epoch("ms").build();
                 switch (sensorVariable.getMetricType()) {
                     case BINARY:
-                        query.setQ(getQueryBinary(MEASUREMENT_RESOURCE_BINARY,
+                        return getQueryBinary(MEASUREMENT_RESOURCE_BINARY,
                                 DATA_TYPE.SENSOR_VARIABLE.name(),
                                 sensorVariable.getId(), criteria.getStart(), criteria.getEnd(),
-                                criteria.getBucketDuration()));
-                        return getList(METRIC_TYPE.BINARY, _clientQuery.query(query), criteria);
-
+                                criteria.getBucketDuration());
                     case COUNTER:
-                        query.setQ(getQueryCounter(MEASUREMENT_RESOURCE_COUNTER,
+                        return getQueryCounter(MEASUREMENT_RESOURCE_COUNTER,
                                 DATA_TYPE.SENSOR_VARIABLE.name(),
                                 sensorVariable.getId(), criteria.getStart(), criteria.getEnd(),
-                                criteria.getBucketDuration()));
-                        return getList(METRIC_TYPE.COUNTER, _clientQuery.query(query), criteria);
-
+                                criteria.getBucketDuration());
                     case DOUBLE:
-                        query.setQ(getQueryDouble(MEASUREMENT_RESOURCE_DOUBLE,
+                        return getQueryDouble(MEASUREMENT_RESOURCE_DOUBLE,
                                 DATA_TYPE.SENSOR_VARIABLE.name(),
                                 sensorVariable.getId(), criteria.getStart(), criteria.getEnd(),
-                                criteria.getBucketDuration(), false));
-                        return getList(METRIC_TYPE.DOUBLE, _clientQuery.query(query), criteria);
-
+                                criteria.getBucketDuration(), false);
                     default:
                         throw new RuntimeException("Not supported metric type: " + sensorVariable.getMetricType());
                 }
             default:
                 break;
         }
-        return new ArrayList<DataPointDouble>();
+        return null;
     }
 
-    private List<?> getList(METRIC_TYPE type, QueryResult response, Criteria criteria) {
+    private List<?> getList(METRIC_TYPE type, QueryResult response, int statement, Criteria criteria) {
         if (response == null) {
             return null;
         }
-        if (response.getError() != null || response.getResults() == null) {
+        if (response.getError() != null || response.getResults() == null
+                || response.getResults().size() <= statement) {
             _logger.warn("Query failed:{}", response);
             return new ArrayList<DataPointDouble>();
         }
 
         //no data
-        if (response.getResults().get(0).getSeries() == null) {
+        if (response.getResults().get(statement).getSeries() == null) {
             return new ArrayList<DataPointDouble>();
         }
-        List<List<Object>> valuesList = response.getResults().get(0).getSeries().get(0).getValues();
+        List<List<Object>> valuesList = response.getResults().get(statement).getSeries().get(0).getValues();
         switch (type) {
             case BINARY:
                 List<DataPointBinary> metricDataBinary = new ArrayList<DataPointBinary>();
@@ -381,82 +469,46 @@ public class MetricEngineInfluxDB implements IMetricEngine {
             Long start, Long end, String bucketDuration) {
         //select "value" from "1_2_state"
         //where time > 1491275029761000000 AND time <= 1491275937583000000 GROUP BY time(2m)
-        StringBuilder builder = new StringBuilder();
-        String bkDuration = getBucketDuration(bucketDuration);
-        builder.append("SELECT ");
-        updateColumnName(VALUE_COLUMN, builder);
-
-        builder.append(" FROM ");
-        updateColumnName(measurement, builder);
-
-        builder.append(" WHERE ").append(TAG_INTERNAL_ID).append(" = '").append(internalId)
-                .append("' AND ").append(TAG_TYPE).append(" = '").append(type).append("'")
-                .append(" AND time > ").append(start).append("000000")
-                .append(" AND time <= ").append(end).append("000000");
-        if (bkDuration != null) {
-            builder.append(" GROUP BY time(").append(bkDuration).append(")");
-        }
-        return builder.toString();
+        return getQuery(SELECT_VALUE, measurement, type, internalId, start, end, getBucketDuration(bucketDuration));
     }
 
     private String getQueryCounter(String measurement, String type, Integer internalId,
             Long start, Long end, String bucketDuration) {
         //select sum("value"), count("value") from "1_2_voltage"
         //where time > 1491275029761000000 AND time <= 1491275937583000000 GROUP BY time(2m)
-        StringBuilder builder = new StringBuilder();
         String bkDuration = getBucketDuration(bucketDuration);
-        builder.append("SELECT ");
-        if (bkDuration != null) {
-            updateColumnName("sum", VALUE_COLUMN, builder);
-            builder.append(", ");
-            updateColumnName("count", VALUE_COLUMN, builder);
-        } else {
-            updateColumnName(VALUE_COLUMN, builder);
-        }
-
-        builder.append(" FROM ");
-        updateColumnName(measurement, builder);
-
-        builder.append(" WHERE ").append(TAG_INTERNAL_ID).append(" = '").append(internalId)
-                .append("' AND ").append(TAG_TYPE).append(" = '").append(type).append("'")
-                .append(" AND time > ").append(start).append("000000")
-                .append(" AND time <= ").append(end).append("000000");
-        if (bkDuration != null) {
-            builder.append(" GROUP BY time(").append(bkDuration).append(")");
-        }
-        return builder.toString();
+        return getQuery(bkDuration != null ? SELECT_COUNTER_AGGREGATED : SELECT_VALUE, measurement, type,
+                internalId, start, end, bkDuration);
     }
 
     private String getQueryDouble(String measurement, String type, Integer internalId,
             Long start, Long end, String bucketDuration, boolean forceMinMax) {
-        //select mean("value"), min("value"), max("value"), count("value"), percentile("value",95) from "1_2_voltage"
+        //select min("value"), max("value"), mean("value"), count("value") from "1_2_voltage"
         //where time > 1491275029761000000 AND time <= 1491275937583000000 GROUP BY time(2m)
-        StringBuilder builder = new StringBuilder();
         String bkDuration = getBucketDuration(bucketDuration);
-        builder.append("SELECT ");
-        if (bkDuration != null || forceMinMax) {
-            updateColumnName("min", VALUE_COLUMN, builder);
-            builder.append(", ");
-            updateColumnName("max", VALUE_COLUMN, builder);
-            builder.append(", ");
-            updateColumnName("mean", VALUE_COLUMN, builder);
-            builder.append(", ");
-            updateColumnName("count", VALUE_COLUMN, builder);
-        } else {
-            updateColumnName(VALUE_COLUMN, builder);
-        }
-
-        builder.append(" FROM ");
-        updateColumnName(measurement, builder);
+        return getQuery(bkDuration != null || forceMinMax ? SELECT_DOUBLE_AGGREGATED : SELECT_VALUE, measurement,
+                type, internalId, start, end, bkDuration);
+    }
 
-        builder.append(" WHERE ").append(TAG_INTERNAL_ID).append(" = '").append(internalId)
-                .append("' AND ").append(TAG_TYPE).append(" = '").append(type).append("'")
-                .append(" AND time > ").append(start).append("000000")
-                .append(" AND time <= ").append(end).append("000000");
-        if (bkDuration != null) {
-            builder.append(" GROUP BY time(").append(bkDuration).append(")");
+    // query shape (everything except internal id and time range) is built once and reused
+    private String getQuery(String select, String measurement, String type, Integer internalId,
+            Long start, Long end, String bkDuration) {
+        String key = select + "|" + measurement + "|" + type + "|" + bkDuration;
+        String[] shape = queryShapes.get(key);
+        if (shape == null) {
+            StringBuilder builder = new StringBuilder();
+            builder.append("SELECT ").append(select).append(" FROM ");
+            updateColumnName(measurement, builder);
+            builder.append(" WHERE ").append(TAG_TYPE).append(" = '").append(type)
+                    .append("' AND ").append(TAG_INTERNAL_ID).append(" = '");
+            shape = new String[] { builder.toString(),
+                    bkDuration != null ? " GROUP BY time(" + bkDuration + ")" : "" };
+            queryShapes.putIfAbsent(key, shape);
         }
-        return builder.toString();
+        return new StringBuilder(shape[0]).append(internalId).append("'")
+                .append(" AND time > ").append(start).append("000000")
+                .append(" AND time <= ").append(end).append("000000")
+                .append(shape[1]).toString();
     }
 
     private void updateColumnName(String column, StringBuilder builder) {
@@ -573,6 +625,9 @@ public class MetricEngineInfluxDB implements IMetricEngine {
                     .version(influxPong.getVersion())
                     .build();
             _logger.info("Ping response of influxDB {}", influxPong);
+            if (_pipeline != null) {
+                _pipeline.setReachable(influxPong.isReachable());
+            }
         } catch (Exception ex) {
             pong = org.mycontroller.standalone.metrics.model.Pong.builder()
                     .reachable(false)
@@ -585,6 +640,12 @@ public class MetricEngineInfluxDB implements IMetricEngine {
 
     @Override
     public void close() {
+        synchronized (this) {
+            if (_pipeline != null) {
+                _pipeline.stop();
+                _pipeline = null;
+            }
+        }
         if (_client != null) {
             _client.close();
             _logger.debug("Influxdb client connection closed.");
@@ -16,11 +16,8 @@
  */
 package org.mycontroller.standalone.metrics.engine;
 
-import java.sql.SQLException;
-import java.text.MessageFormat;
+import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Date;
 import java.util.List;
 
 import org.mycontroller.standalone.api.SystemApi;
@@ -40,6 +37,7 @@ import org.mycontroller.standalone.db.tables.MetricsGPSTypeDevice;
 import org.mycontroller.standalone.db.tables.Node;
 import org.mycontroller.standalone.db.tables.SensorVariable;
 import org.mycontroller.standalone.exceptions.McBadRequestException;
+import org.mycontroller.standalone.metrics.MetricsUtils;
 import org.mycontroller.standalone.metrics.MetricsUtils.AGGREGATION_TYPE;
 import org.mycontroller.standalone.metrics.model.Criteria;
 import org.mycontroller.standalone.metrics.model.DataPointer;
@@ -47,8 +45,6 @@ import org.mycontroller.standalone.metrics.model.Pong;
 import org.mycontroller.standalone.model.ResourceModel;
 import org.mycontroller.standalone.utils.McUtils;
 
-import com.j256.ormlite.dao.GenericRawResults;
-
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -57,6 +53,13 @@ import lombok.extern.slf4j.Slf4j;
  */
 @Slf4j
 public class MetricEngineMyController implements IMetricEngine {
+
+    // called only for the installed engine, engines created for ping share the same buffer and rollup
+    public void start() {
+        McMetricsWriteBuffer.getInstance().start();
+        McMetricsRollup.getInstance().start();
+    }
+
     @Override
     public void post(DataPointer data) {
         switch (data.getResourceModel().getResourceType()) {
@@ -73,7 +76,9 @@ public class MetricEngineMyController implements IMetricEngine {
                                 .max(McUtils.getDouble(data.getPayload()))
                                 .samples(1)
                                 .build();
-                        DaoUtils.getMetricsBatteryUsageDao().create(batteryUsage);
+                        McMetricsWriteBuffer.getInstance().add(batteryUsage);
+                        McMetricsRollup.getInstance().addBattery(node.getId(), batteryUsage.getTimestamp(),
+                                batteryUsage.getAvg());
                         return;
                     default:
                         break;
@@ -83,8 +88,8 @@ public class MetricEngineMyController implements IMetricEngine {
                 SensorVariable sensorVariable = (SensorVariable) data.getResourceModel().getResource();
                 switch (sensorVariable.getMetricType()) {
                     case DOUBLE:
-                        DaoUtils.getMetricsDoubleTypeDeviceDao()
-                                .create(MetricsDoubleTypeDevice.builder()
+                        McMetricsWriteBuffer.getInstance()
+                                .add(MetricsDoubleTypeDevice.builder()
                                         .sensorVariable(sensorVariable)
                                         .aggregationType(AGGREGATION_TYPE.RAW)
                                         .timestamp(data.getTimestamp())
@@ -92,44 +97,41 @@ public class MetricEngineMyController implements IMetricEngine {
                                         .min(McUtils.getDouble(data.getPayload()))
                                         .max(McUtils.getDouble(data.getPayload()))
                                         .samples(1).build());
-
+                        McMetricsRollup.getInstance().addDouble(sensorVariable.getId(), data.getTimestamp(),
+                                McUtils.getDouble(data.getPayload()));
                         return;
                     case BINARY:
-                        // check duplicate, if enabled and any update timestamp. Otherwise normal insert
-                        if ((boolean) sensorVariable.getProperties().get(SensorVariable.KEY_IGNORE_DUPLICATE)
-                                && sensorVariable.getId() != null) {
-                            List<MetricsBinaryTypeDevice> metrics = DaoUtils.getMetricsBinaryTypeDeviceDao()
-                                    .getAllLastN(sensorVariable, 2);
-                            if (metrics.size() == 2
-                                    && metrics.get(0).getState() == McUtils.getBoolean(data.getPayload())
-                                    && metrics.get(0).getState() == metrics.get(1).getState()) {
-                                DaoUtils.getMetricsBinaryTypeDeviceDao().updateTimestamp(sensorVariable.getId(),
-                                        metrics.get(0).getTimestamp(), data.getTimestamp());
-                                return;
-                            }
+                        if (sensorVariable.getId() != null) {
+                            // duplicates are checked against the last states kept in the write buffer
+                            McMetricsWriteBuffer.getInstance().add(sensorVariable, data.getTimestamp(),
+                                    McUtils.getBoolean(data.getPayload()),
+                                    (boolean) sensorVariable.getProperties().get(SensorVariable.KEY_IGNORE_DUPLICATE));
+                        } else {
+                            // Do normal insert
+                            DaoUtils.getMetricsBinaryTypeDeviceDao()
+                                    .create(MetricsBinaryTypeDevice.builder()
+                                            .sensorVariable(sensorVariable)
+                                            .timestamp(data.getTimestamp())
+                                            .state(McUtils.getBoolean(data.getPayload())).build());
                         }
-                        // Do normal insert
-                        DaoUtils.getMetricsBinaryTypeDeviceDao()
-                                .create(MetricsBinaryTypeDevice.builder()
-                                        .sensorVariable(sensorVariable)
-                                        .timestamp(data.getTimestamp())
-                                        .state(McUtils.getBoolean(data.getPayload())).build());
                         return;
                     case COUNTER:
-                        DaoUtils.getMetricsCounterTypeDeviceDao()
-                                .create(MetricsCounterTypeDevice.builder()
+                        McMetricsWriteBuffer.getInstance()
+                                .add(MetricsCounterTypeDevice.builder()
                                         .sensorVariable(sensorVariable)
                                         .aggregationType(AGGREGATION_TYPE.RAW)
                                         .timestamp(data.getTimestamp())
                                         .value(McUtils.getLong(data.getPayload()))
                                         .samples(1).build());
+                        McMetricsRollup.getInstance().addCounter(sensorVariable.getId(), data.getTimestamp(),
+                                McUtils.getLong(data.getPayload()));
                         return;
                     case GPS:
                         try {
                             MetricsGPSTypeDevice gpsData = MetricsGPSTypeDevice.get(data.getPayload(),
                                     data.getTimestamp());
                             gpsData.setSensorVariable(sensorVariable);
-                            DaoUtils.getMetricsGPSTypeDeviceDao().create(gpsData);
+                            McMetricsWriteBuffer.getInstance().add(gpsData);
                         } catch (McBadRequestException ex) {
                             _logger.error("Exception,", ex);
                         }
@@ -149,6 +151,8 @@ public class MetricEngineMyController implements IMetricEngine {
 
     @Override
     public DataPointBase get(Criteria criteria) {
+        // points in the write buffer should be visible to the reads
+        McMetricsWriteBuffer.getInstance().flush();
         switch (criteria.getResourceModel().getResourceType()) {
             case SENSOR_VARIABLE:
                 SensorVariable sensorVariable = (SensorVariable) criteria.getResourceModel().getResource();
@@ -170,8 +174,18 @@ public class MetricEngineMyController implements IMetricEngine {
         throw new RuntimeException("Selected query not implemented! " + criteria);
     }
 
+    @Override
+    public List<List<?>> list(List<Criteria> criteriaList) {
+        List<List<?>> results = new ArrayList<List<?>>();
+        for (Criteria criteria : criteriaList) {
+            results.add(list(criteria));
+        }
+        return results;
+    }
+
     @Override
     public List<?> list(Criteria criteria) {
+        McMetricsWriteBuffer.getInstance().flush();
         switch (criteria.getResourceModel().getResourceType()) {
             case NODE:
                 switch (criteria.getDataType()) {
@@ -232,7 +246,25 @@ public class MetricEngineMyController implements IMetricEngine {
                 metricsFinal.add(DataPointGPS.get(metric, null, null));
             }
         } else {
-            //TODO: add support for runtime aggregation
+            List<Long> boundaries = McMetricsBuckets.getBoundaries(criteria.getStart(), criteria.getEnd(),
+                    criteria.getBucketDurationLong());
+            String[][] buckets = McMetricsBuckets.query(DaoUtils.getMetricsGPSTypeDeviceDao().getDao(),
+                    DB_QUERY.SELECT_METRICS_GPS_BUCKETS_BY_SENSOR_VARIABLE,
+                    criteria.getResourceModel().getResourceId(), boundaries, MetricsGPSTypeDevice.KEY_TIMESTAMP);
+            for (int index = 0; index < buckets.length; index++) {
+                String[] row = buckets[index];
+                if (row == null) {
+                    metricsFinal.add(DataPointGPS.get(null, boundaries.get(index), boundaries.get(index + 1)));
+                } else {
+                    metricsFinal.add(DataPointGPS.get(MetricsGPSTypeDevice.builder()
+                            .lantitude(McUtils.getDouble(row[1]))
+                            .longitude(McUtils.getDouble(row[2]))
+                            .altitude(McUtils.getDouble(row[3]))
+                            .samples(getInteger(row[4]))
+                            .timestamp(boundaries.get(index + 1))
+                            .build(), null, null));
+                }
+            }
         }
         return metricsFinal;
     }
@@ -253,29 +285,14 @@ public class MetricEngineMyController implements IMetricEngine {
                 metricsFinal.add(DataPointDouble.get(metric, null, null));
             }
         } else {
-            Long tmpEnd = start + bucketDuration;
-            while (tmpEnd < end) {
-                if (tmpEnd > end) {
-                    break;
-                }
-                String sqlSelectQuery = MessageFormat.format(
-                        DB_QUERY.getQuery(DB_QUERY.SELECT_METRICS_DOUBLE_BY_SENSOR_VARIABLE),
-                        String.valueOf(criteria.getResourceModel().getResourceId()), String.valueOf(start),
-                        String.valueOf(tmpEnd));
-                _logger.debug("Sql query:[{}]", sqlSelectQuery);
-                MetricsDoubleTypeDevice metric = null;
-                try {
-                    GenericRawResults<MetricsDoubleTypeDevice> rawResult = DaoUtils
-                            .getMetricsDoubleTypeDeviceDao().getDao().queryRaw(sqlSelectQuery,
-                                    DaoUtils.getMetricsDoubleTypeDeviceDao().getDao().getRawRowMapper());
-                    metric = rawResult.getFirstResult();
-                    _logger.debug("Metric:[{}]", metric);
-                } catch (SQLException ex) {
-                    _logger.error("Exception,", ex);
-                }
-                metricsFinal.add(DataPointDouble.get(metric, start, tmpEnd));
-                start = tmpEnd;
-                tmpEnd += bucketDuration;
+            List<Long> boundaries = McMetricsBuckets.getBoundaries(start, end, bucketDuration);
+            String[][] buckets = McMetricsBuckets.query(DaoUtils.getMetricsDoubleTypeDeviceDao().getDao(),
+                    DB_QUERY.SELECT_METRICS_DOUBLE_BUCKETS_BY_SENSOR_VARIABLE,
+                    criteria.getResourceModel().getResourceId(), boundaries, MetricsDoubleTypeDevice.KEY_TIMESTAMP,
+                    MetricsDoubleTypeDevice.KEY_AGGREGATION_TYPE, false);
+            for (int index = 0; index < buckets.length; index++) {
+                metricsFinal.add(getDataPointDouble(buckets[index], boundaries.get(index),
+                        boundaries.get(index + 1)));
             }
         }
         return metricsFinal;
@@ -295,70 +312,22 @@ public class MetricEngineMyController implements IMetricEngine {
             }
 
         } else {
-            Calendar calendarFrom = Calendar.getInstance();
-            Calendar calendarTo = Calendar.getInstance();
-            calendarFrom.setTime(new Date(criteria.getStart()));
-            calendarTo.setTime(new Date(criteria.getEnd()));
-            String[] bucket = criteria.getBucketDuration().trim().split("(?<=\\d)(?=\\D)");
-            if (bucket.length != 2) {
-                _logger.warn("Invalid bucketDuration string: {}, result:{}", criteria.getBucketDuration(), bucket);
+            List<Long> boundaries = McMetricsBuckets.getCalendarBoundaries(criteria.getStart(), criteria.getEnd(),
+                    criteria.getBucketDuration());
+            if (boundaries == null) {
                 return metricsFinal;
             }
-            Integer increment = McUtils.getInteger(bucket[0]);
-            Integer incrementRef = null;
-            String bucketString = bucket[1].toLowerCase();
-
-            switch (bucketString) {
-                case "m":
-                    calendarFrom.set(Calendar.DAY_OF_MONTH, 1);
-                    calendarTo.set(Calendar.DAY_OF_MONTH, 1);
-                    incrementRef = Calendar.MONTH;
-                case "d":
-                    calendarFrom.set(Calendar.HOUR_OF_DAY, 0);
-                    calendarTo.set(Calendar.HOUR_OF_DAY, 0);
-                    if (incrementRef == null) {
-                        incrementRef = Calendar.DATE;
-                    }
-                case "h":
-                    calendarFrom.set(Calendar.MINUTE, 0);
-                    calendarTo.set(Calendar.MINUTE, 0);
-                    if (incrementRef == null) {
-                        incrementRef = Calendar.HOUR;
-                    }
-                case "mn":
-                    calendarFrom.set(Calendar.MILLISECOND, 0);
-                    calendarTo.set(Calendar.MILLISECOND, 0);
-                    calendarFrom.set(Calendar.SECOND, 0);
-                    calendarTo.set(Calendar.SECOND, 0);
-                    if (incrementRef == null) {
-                        incrementRef = Calendar.MINUTE;
-                    }
-            }
-            while (calendarFrom.before(calendarTo) || calendarFrom.equals(calendarTo)) {
-                long timestampTmpFrom = calendarFrom.getTimeInMillis();
-                calendarFrom.add(incrementRef, increment);
-                long endTmp = calendarFrom.getTimeInMillis();
-
-                String sqlSelectQuery = MessageFormat.format(
-                        DB_QUERY.getQuery(DB_QUERY.SELECT_METRICS_COUNTER_BY_SENSOR_VARIABLE),
-                        String.valueOf(criteria.getResourceModel().getResourceId()), String.valueOf(timestampTmpFrom),
-                        String.valueOf(endTmp));
-                _logger.debug("Sql query:[{}]", sqlSelectQuery);
-                MetricsCounterTypeDevice metric = null;
-                try {
-                    GenericRawResults<MetricsCounterTypeDevice> rawResult = DaoUtils
-                            .getMetricsCounterTypeDeviceDao().getDao().queryRaw(sqlSelectQuery,
-                                    DaoUtils.getMetricsCounterTypeDeviceDao().getDao().getRawRowMapper());
-                    metric = rawResult.getFirstResult();
-                    _logger.debug("Metric:[{}]", metric);
-                } catch (SQLException ex) {
-                    _logger.error("Exception,", ex);
-                }
-                metricsFinal.add(DataPointCounter.get(metric, timestampTmpFrom, endTmp));
-
-                if ((bucketString.equals("mn") || bucketString.equals("h"))
-                        && endTmp > System.currentTimeMillis()) {
-                    break;
+            String[][] buckets = McMetricsBuckets.query(DaoUtils.getMetricsCounterTypeDeviceDao().getDao(),
+                    DB_QUERY.SELECT_METRICS_COUNTER_BUCKETS_BY_SENSOR_VARIABLE,
+                    criteria.getResourceModel().getResourceId(), boundaries, MetricsCounterTypeDevice.KEY_TIMESTAMP,
+                    MetricsCounterTypeDevice.KEY_AGGREGATION_TYPE, true);
+            for (int index = 0; index < buckets.length; index++) {
+                String[] row = buckets[index];
+                if (row == null) {
+                    metricsFinal.add(DataPointCounter.get(null, boundaries.get(index), boundaries.get(index + 1)));
+                } else {
+                    metricsFinal.add(DataPointCounter.get(getLong(row[1]), getInteger(row[2]),
+                            boundaries.get(index + 1), null, null));
                 }
             }
         }
@@ -381,43 +350,40 @@ public class MetricEngineMyController implements IMetricEngine {
                 metricsFinal.add(DataPointDouble.get(metric, null, null));
             }
         } else {
-            Long tmpEnd = start + bucketDuration;
-            while (tmpEnd < end) {
-                start = tmpEnd;
-                if (tmpEnd > end) {
-                    break;
-                }
-                tmpEnd += bucketDuration;
-                String sqlSelectQuery = MessageFormat.format(
-                        DB_QUERY.getQuery(DB_QUERY.SELECT_METRICS_BATTERY_BY_NODE),
-                        String.valueOf(criteria.getResourceModel().getResourceId()), String.valueOf(start),
-                        String.valueOf(tmpEnd));
-                _logger.debug("Sql query:[{}]", sqlSelectQuery);
-                MetricsBatteryUsage metric = null;
-                try {
-                    GenericRawResults<MetricsBatteryUsage> rawResult = DaoUtils
-                            .getMetricsBatteryUsageDao().getDao().queryRaw(sqlSelectQuery,
-                                    DaoUtils.getMetricsBatteryUsageDao().getDao().getRawRowMapper());
-                    metric = rawResult.getFirstResult();
-                    _logger.debug("Metric:[{}]", metric);
-                } catch (SQLException ex) {
-                    _logger.error("Exception,", ex);
-                }
-
-                metricsFinal.add(DataPointDouble.get(metric, start, tmpEnd));
-
-                metricConfig.setStart(start);
-                start = tmpEnd;
-                if (tmpEnd > end) {
-                    break;
-                }
+            List<Long> boundaries = McMetricsBuckets.getBoundaries(start, end, bucketDuration);
+            String[][] buckets = McMetricsBuckets.query(DaoUtils.getMetricsBatteryUsageDao().getDao(),
+                    DB_QUERY.SELECT_METRICS_BATTERY_BUCKETS_BY_NODE,
+                    criteria.getResourceModel().getResourceId(), boundaries, MetricsBatteryUsage.KEY_TIMESTAMP,
+                    MetricsBatteryUsage.KEY_AGGREGATION_TYPE, false);
+            for (int index = 0; index < buckets.length; index++) {
+                metricsFinal.add(getDataPointDouble(buckets[index], boundaries.get(index),
+                        boundaries.get(index + 1)));
             }
         }
         return metricsFinal;
     }
 
+    // bucket row: index, min, max, avg, samples
+    private DataPointDouble getDataPointDouble(String[] row, long start, long end) {
+        if (row == null) {
+            return DataPointDouble.get((MetricsDoubleTypeDevice) null, start, end);
+        }
+        return DataPointDouble.get(McUtils.getDouble(row[1]), McUtils.getDouble(row[2]),
+                McUtils.getDouble(row[3]), getInteger(row[4]), end, null, null);
+    }
+
+    // aggregated values can be returned as decimal by some databases
+    private Integer getInteger(String value) {
+        return value != null ? new BigDecimal(value).intValue() : null;
+    }
+
+    private Long getLong(String value) {
+        return value != null ? new BigDecimal(value).longValue() : null;
+    }
+
     @Override
     public void purge(ResourceModel resourceModel, ResourcePurgeConf purgeConf) {
+        McMetricsWriteBuffer.getInstance().flush();
         switch (resourceModel.getResourceType()) {
             case NODE:
                 break;
@@ -432,6 +398,7 @@ public class MetricEngineMyController implements IMetricEngine {
                         metricBinary.setEnd(purgeConf.getEnd());
                         metricBinary.setState(McUtils.getBoolean(purgeConf.getValue()));
                         DaoUtils.getMetricsBinaryTypeDeviceDao().deletePrevious(metricBinary);
+                        McMetricsWriteBuffer.getInstance().invalidateBinaryState(sVar.getId());
                         break;
                     case COUNTER:
                         MetricsCounterTypeDevice metricCounter = new MetricsCounterTypeDevice();
@@ -441,6 +408,7 @@ public class MetricEngineMyController implements IMetricEngine {
                         metricCounter.setValue(McUtils.getLong(purgeConf.getValue()));
                         metricCounter.setAggregationType(null);
                         DaoUtils.getMetricsCounterTypeDeviceDao().deletePrevious(metricCounter, purgeConf);
+                        McMetricsRollup.getInstance().reset();
                         break;
                     case DOUBLE:
                         MetricsDoubleTypeDevice metricDouble = new MetricsDoubleTypeDevice();
@@ -449,6 +417,7 @@ public class MetricEngineMyController implements IMetricEngine {
                         metricDouble.setEnd(purgeConf.getEnd());
                         metricDouble.setAggregationType(null);
                         DaoUtils.getMetricsDoubleTypeDeviceDao().deletePrevious(metricDouble, purgeConf);
+                        McMetricsRollup.getInstance().reset();
                         break;
                     default:
                         //Nothing to do
@@ -463,16 +432,20 @@ public class MetricEngineMyController implements IMetricEngine {
 
     @Override
     public void purge(ResourceModel resourceModel) {
+        McMetricsWriteBuffer.getInstance().flush();
         SensorVariable sVar = (SensorVariable) resourceModel.getResource();
         switch (sVar.getMetricType()) {
             case DOUBLE:
                 DaoUtils.getMetricsDoubleTypeDeviceDao().deleteBySensorVariableRefId(sVar.getId());
+                McMetricsRollup.getInstance().reset();
                 break;
             case BINARY:
                 DaoUtils.getMetricsBinaryTypeDeviceDao().deleteBySensorVariableRefId(sVar.getId());
+                McMetricsWriteBuffer.getInstance().invalidateBinaryState(sVar.getId());
                 break;
             case COUNTER:
                 DaoUtils.getMetricsCounterTypeDeviceDao().deleteBySensorVariableRefId(sVar.getId());
+                McMetricsRollup.getInstance().reset();
                 break;
             default:
                 break;
@@ -481,6 +454,7 @@ public class MetricEngineMyController implements IMetricEngine {
 
     @Override
     public void purgeEverything() {
+        McMetricsWriteBuffer.getInstance().flush();
         DaoUtils.getMetricsBatteryUsageDao().deletePrevious(
                 MetricsBatteryUsage.builder().timestamp(System.currentTimeMillis()).build());
         DaoUtils.getMetricsBinaryTypeDeviceDao().deletePrevious(
@@ -491,6 +465,8 @@ public class MetricEngineMyController implements IMetricEngine {
                 MetricsDoubleTypeDevice.builder().timestamp(System.currentTimeMillis()).build());
         DaoUtils.getMetricsGPSTypeDeviceDao().deletePrevious(
                 MetricsGPSTypeDevice.builder().timestamp(System.currentTimeMillis()).build());
+        McMetricsWriteBuffer.getInstance().invalidateBinaryStates();
+        McMetricsRollup.getInstance().reset();
     }
 
     @Override
@@ -504,7 +480,12 @@ public class MetricEngineMyController implements IMetricEngine {
 
     @Override
     public void close() {
-        // nothing to do
+        // engine created for ping should not stop the buffer and rollup of the running engine
+        if (MetricsUtils.engine() == this) {
+            McMetricsRollup.getInstance().stop();
+            // writes pending points
+            McMetricsWriteBuffer.getInstance().stop();
+        }
     }
 
 }
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.metrics.engine.chunk;
+
+/**
+ * Reads values written by {@link McBitOutput}.
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+class McBitInput {
+    private final byte[] data;
+    private int index = 0;
+    private int current = 0;
+    private int position = 8;
+
+    McBitInput(byte[] data) {
+        this.data = data;
+    }
+
+    long read(int bits) {
+        long value = 0;
+        while (bits > 0) {
+            if (position == 8) {
+                current = data[index++] & 0xFF;
+                position = 0;
+            }
+            int available = 8 - position;
+            int count = Math.min(available, bits);
+            int chunk = (current >>> (available - count)) & ((1 << count) - 1);
+            value = (value << count) | chunk;
+            position += count;
+            bits -= count;
+        }
+        return value;
+    }
+
+    // reads and sign extends
+    long readSigned(int bits) {
+        return (read(bits) << (64 - bits)) >> (64 - bits);
+    }
+
+    boolean readBit() {
+        return read(1) == 1;
+    }
+}
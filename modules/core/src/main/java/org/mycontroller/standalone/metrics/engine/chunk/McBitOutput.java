@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.metrics.engine.chunk;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Writes values bit by bit, most significant bit first.
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+class McBitOutput {
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private int current = 0;
+    private int position = 0;
+
+    // writes the lowest bits of the value
+    void write(long value, int bits) {
+        while (bits > 0) {
+            int free = 8 - position;
+            int count = Math.min(free, bits);
+            int chunk = (int) ((value >>> (bits - count)) & ((1 << count) - 1));
+            current |= chunk << (free - count);
+            position += count;
+            bits -= count;
+            if (position == 8) {
+                out.write(current);
+                current = 0;
+                position = 0;
+            }
+        }
+    }
+
+    void writeBit(boolean bit) {
+        write(bit ? 1 : 0, 1);
+    }
+
+    byte[] toByteArray() {
+        if (position > 0) {
+            out.write(current);
+            current = 0;
+            position = 0;
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.metrics.engine.chunk;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Sealed chunk of a series. Header keeps time range and per column count, min, max and sum, payload
+ * keeps the points, timestamps delta-of-delta encoded and values XOR encoded (Gorilla).
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+@Getter
+@ToString
+class McChunk {
+    static final int MAGIC = 0x4D434331; // MCC1
+
+    private final long start;
+    private final long end;
+    private final McChunkAggregate aggregate;
+    private long offset;
+    private int length;
+
+    private McChunk(long start, long end, McChunkAggregate aggregate) {
+        this.start = start;
+        this.end = end;
+        this.aggregate = aggregate;
+    }
+
+    boolean isOverlap(long from, long to) {
+        return start <= to && end >= from;
+    }
+
+    // encodes the points, points should be ordered by timestamp
+    static byte[] encode(List<McChunkPoint> points, int columns) {
+        McBitOutput out = new McBitOutput();
+        // timestamps
+        long previousTimestamp = points.get(0).getTimestamp();
+        long previousDelta = 0;
+        out.write(previousTimestamp, 64);
+        for (int index = 1; index < points.size(); index++) {
+            long timestamp = points.get(index).getTimestamp();
+            long delta = timestamp - previousTimestamp;
+            long deltaOfDelta = delta - previousDelta;
+            if (deltaOfDelta == 0) {
+                out.write(0, 1);
+            } else if (deltaOfDelta >= -64 && deltaOfDelta <= 63) {
+                out.write(0x2, 2);
+                out.write(deltaOfDelta, 7);
+            } else if (deltaOfDelta >= -256 && deltaOfDelta <= 255) {
+                out.write(0x6, 3);
+                out.write(deltaOfDelta, 9);
+            } else if (deltaOfDelta >= -2048 && deltaOfDelta <= 2047) {
+                out.write(0xE, 4);
+                out.write(deltaOfDelta, 12);
+            } else if (deltaOfDelta >= Integer.MIN_VALUE && deltaOfDelta <= Integer.MAX_VALUE) {
+                out.write(0x1E, 5);
+                out.write(deltaOfDelta, 32);
+            } else {
+                out.write(0x1F, 5);
+                out.write(deltaOfDelta, 64);
+            }
+            previousTimestamp = timestamp;
+            previousDelta = delta;
+        }
+        // values, column by column
+        for (int column = 0; column < columns; column++) {
+            long previous = Double.doubleToLongBits(points.get(0).getValues()[column]);
+            out.write(previous, 64);
+            int previousLeading = -1;
+            int previousTrailing = 0;
+            for (int index = 1; index < points.size(); index++) {
+                long current = Double.doubleToLongBits(points.get(index).getValues()[column]);
+                long xor = current ^ previous;
+                if (xor == 0) {
+                    out.write(0, 1);
+                } else {
+                    int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+                    int trailing = Long.numberOfTrailingZeros(xor);
+                    out.write(1, 1);
+                    if (previousLeading != -1 && leading >= previousLeading && trailing >= previousTrailing) {
+                        // fits in to the previous meaningful bits window
+                        out.write(0, 1);
+                        out.write(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+                    } else {
+                        int significant = 64 - leading - trailing;
+                        out.write(1, 1);
+                        out.write(leading, 5);
+                        out.write(significant - 1, 6);
+                        out.write(xor >>> trailing, significant);
+                        previousLeading = leading;
+                        previousTrailing = trailing;
+                    }
+                }
+                previous = current;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    static List<McChunkPoint> decode(byte[] payload, int count, int columns) {
+        McBitInput in = new McBitInput(payload);
+        long[] timestamps = new long[count];
+        timestamps[0] = in.read(64);
+        long delta = 0;
+        for (int index = 1; index < count; index++) {
+            long deltaOfDelta;
+            if (!in.readBit()) {
+                deltaOfDelta = 0;
+            } else if (!in.readBit()) {
+                deltaOfDelta = in.readSigned(7);
+            } else if (!in.readBit()) {
+                deltaOfDelta = in.readSigned(9);
+            } else if (!in.readBit()) {
+                deltaOfDelta = in.readSigned(12);
+            } else if (!in.readBit()) {
+                deltaOfDelta = in.readSigned(32);
+            } else {
+                deltaOfDelta = in.read(64);
+            }
+            delta += deltaOfDelta;
+            timestamps[index] = timestamps[index - 1] + delta;
+        }
+        double[][] values = new double[count][columns];
+        for (int column = 0; column < columns; column++) {
+            long previous = in.read(64);
+            values[0][column] = Double.longBitsToDouble(previous);
+            int leading = 0;
+            int trailing = 0;
+            for (int index = 1; index < count; index++) {
+                if (in.readBit()) {
+                    if (in.readBit()) {
+                        leading = (int) in.read(5);
+                        int significant = (int) in.read(6) + 1;
+                        trailing = 64 - leading - significant;
+                    }
+                    long xor = in.read(64 - leading - trailing) << trailing;
+                    previous ^= xor;
+                }
+                values[index][column] = Double.longBitsToDouble(previous);
+            }
+        }
+        List<McChunkPoint> points = new ArrayList<McChunkPoint>(count);
+        for (int index = 0; index < count; index++) {
+            points.add(new McChunkPoint(timestamps[index], values[index]));
+        }
+        return points;
+    }
+
+    static McChunk create(List<McChunkPoint> points, int columns) {
+        McChunkAggregate aggregate = new McChunkAggregate(columns);
+        for (McChunkPoint point : points) {
+            aggregate.add(point.getValues());
+        }
+        return new McChunk(points.get(0).getTimestamp(), points.get(points.size() - 1).getTimestamp(),
+                aggregate);
+    }
+
+    // header, followed by the payload
+    void write(DataOutput out, byte[] payload, long offset) throws IOException {
+        int columns = aggregate.getSum().length;
+        out.writeInt(MAGIC);
+        out.writeLong(start);
+        out.writeLong(end);
+        out.writeInt(aggregate.getCount());
+        out.writeInt(columns);
+        for (int column = 0; column < columns; column++) {
+            out.writeDouble(aggregate.getMin()[column]);
+            out.writeDouble(aggregate.getMax()[column]);
+            out.writeDouble(aggregate.getSum()[column]);
+        }
+        out.writeInt(payload.length);
+        out.write(payload);
+        this.offset = offset + getHeaderSize(columns);
+        this.length = payload.length;
+    }
+
+    // reads the header and skips the payload
+    static McChunk read(DataInput in, long offset) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Invalid chunk header at " + offset);
+        }
+        long start = in.readLong();
+        long end = in.readLong();
+        int count = in.readInt();
+        int columns = in.readInt();
+        double[] min = new double[columns];
+        double[] max = new double[columns];
+        double[] sum = new double[columns];
+        for (int column = 0; column < columns; column++) {
+            min[column] = in.readDouble();
+            max[column] = in.readDouble();
+            sum[column] = in.readDouble();
+        }
+        McChunk chunk = new McChunk(start, end, new McChunkAggregate(count, min, max, sum));
+        chunk.length = in.readInt();
+        chunk.offset = offset + getHeaderSize(columns);
+        if (in.skipBytes(chunk.length) != chunk.length) {
+            throw new IOException("Incomplete chunk at " + offset);
+        }
+        return chunk;
+    }
+
+    static int getHeaderSize(int columns) {
+        return 4 + 8 + 8 + 4 + 4 + (columns * 24) + 4;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.metrics.engine.chunk;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Aggregate (count, min, max and sum per column) of a bucket or a chunk.
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+@Getter
+@ToString
+public class McChunkAggregate {
+    private int count = 0;
+    private final double[] min;
+    private final double[] max;
+    private final double[] sum;
+
+    public McChunkAggregate(int columns) {
+        min = new double[columns];
+        max = new double[columns];
+        sum = new double[columns];
+    }
+
+    McChunkAggregate(int count, double[] min, double[] max, double[] sum) {
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+    }
+
+    public void add(double[] values) {
+        for (int column = 0; column < sum.length; column++) {
+            double value = values[column];
+            if (count == 0 || value < min[column]) {
+                min[column] = value;
+            }
+            if (count == 0 || value > max[column]) {
+                max[column] = value;
+            }
+            sum[column] += value;
+        }
+        count++;
+    }
+
+    public void add(McChunkAggregate aggregate) {
+        if (aggregate.count == 0) {
+            return;
+        }
+        for (int column = 0; column < sum.length; column++) {
+            if (count == 0 || aggregate.min[column] < min[column]) {
+                min[column] = aggregate.min[column];
+            }
+            if (count == 0 || aggregate.max[column] > max[column]) {
+                max[column] = aggregate.max[column];
+            }
+            sum[column] += aggregate.sum[column];
+        }
+        count += aggregate.count;
+    }
+
+    public double getAvg(int column) {
+        return sum[column] / count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+}
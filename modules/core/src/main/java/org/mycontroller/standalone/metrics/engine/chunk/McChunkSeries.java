@@ -0,0 +1,397 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.metrics.engine.chunk;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Time-series of a resource, stored as append only file of sealed chunks. New points are kept in an open
+ * chunk and sealed when it is full or on {@link #seal()}. Chunk headers are kept in memory, payload is
+ * read from the file only when a query needs the points of a chunk.<br>
+ * Points of the open chunk are appended to a log file as well, the log is replayed on load and cleared
+ * when the open chunk is sealed. The log stays open for appends until then.
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+@Slf4j
+public class McChunkSeries {
+    public static final int MAXIMUM_POINTS = 256;
+    public static final String OPEN_LOG_EXTENSION = ".open";
+
+    // open log record types
+    private static final byte RECORD_ADD = 1;
+    private static final byte RECORD_UPDATE_LAST = 2;
+
+    private static final Comparator<McChunkPoint> TIMESTAMP_ORDER = new Comparator<McChunkPoint>() {
+        @Override
+        public int compare(McChunkPoint point1, McChunkPoint point2) {
+            return Long.compare(point1.getTimestamp(), point2.getTimestamp());
+        }
+    };
+
+    private final File file;
+    private final File openLogFile;
+    private final int columns;
+    private final List<McChunk> chunks = new ArrayList<McChunk>();
+    private final List<McChunkPoint> openPoints = new ArrayList<McChunkPoint>();
+    private long openSince = 0;
+    private DataOutputStream openLog = null;
+
+    McChunkSeries(File file, int columns) {
+        this.file = file;
+        this.openLogFile = new File(file.getAbsolutePath() + OPEN_LOG_EXTENSION);
+        this.columns = columns;
+        load();
+    }
+
+    public synchronized void add(long timestamp, double... values) {
+        if (openPoints.isEmpty()) {
+            openSince = System.currentTimeMillis();
+        }
+        openPoints.add(new McChunkPoint(timestamp, values));
+        writeOpenLog(RECORD_ADD, timestamp, values);
+        if (openPoints.size() >= MAXIMUM_POINTS) {
+            seal();
+        }
+    }
+
+    // updates the timestamp of the last point, when the last two points are in the open chunk with same value
+    public synchronized boolean updateLastIfDuplicate(long timestamp, double value) {
+        int size = openPoints.size();
+        if (size >= 2
+                && openPoints.get(size - 1).getValues()[0] == value
+                && openPoints.get(size - 2).getValues()[0] == value) {
+            openPoints.get(size - 1).setTimestamp(timestamp);
+            writeOpenLog(RECORD_UPDATE_LAST, timestamp, null);
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized boolean isOpenOlderThan(long timestamp) {
+        return !openPoints.isEmpty() && openSince < timestamp;
+    }
+
+    public synchronized void seal() {
+        if (openPoints.isEmpty()) {
+            return;
+        }
+        List<McChunkPoint> points = new ArrayList<McChunkPoint>(openPoints);
+        Collections.sort(points, TIMESTAMP_ORDER);
+        try {
+            append(points);
+            openPoints.clear();
+            closeOpenLog();
+            FileUtils.deleteQuietly(openLogFile);
+        } catch (IOException ex) {
+            _logger.error("Unable to write chunk to {}", file, ex);
+        }
+    }
+
+    // points on [start, end], ordered by timestamp
+    public synchronized List<McChunkPoint> read(long start, long end) {
+        List<McChunkPoint> points = new ArrayList<McChunkPoint>();
+        for (McChunk chunk : chunks) {
+            if (chunk.isOverlap(start, end)) {
+                for (McChunkPoint point : decode(chunk)) {
+                    if (point.getTimestamp() >= start && point.getTimestamp() <= end) {
+                        points.add(point);
+                    }
+                }
+            }
+        }
+        for (McChunkPoint point : openPoints) {
+            if (point.getTimestamp() >= start && point.getTimestamp() <= end) {
+                points.add(new McChunkPoint(point.getTimestamp(), point.getValues()));
+            }
+        }
+        Collections.sort(points, TIMESTAMP_ORDER);
+        return points;
+    }
+
+    /**
+     * Aggregates in to the buckets, bucket N covers (boundaries[N], boundaries[N+1]]. A chunk fits
+     * in to a bucket answered from the header, without decoding the payload.
+     */
+    public synchronized McChunkAggregate[] aggregate(List<Long> boundaries) {
+        McChunkAggregate[] buckets = new McChunkAggregate[Math.max(boundaries.size() - 1, 0)];
+        for (int index = 0; index < buckets.length; index++) {
+            buckets[index] = new McChunkAggregate(columns);
+        }
+        if (buckets.length == 0) {
+            return buckets;
+        }
+        long first = boundaries.get(0);
+        long last = boundaries.get(boundaries.size() - 1);
+        for (McChunk chunk : chunks) {
+            if (!chunk.isOverlap(first + 1, last)) {
+                continue;
+            }
+            int startIndex = getBucketIndex(boundaries, chunk.getStart());
+            if (startIndex != -1 && startIndex == getBucketIndex(boundaries, chunk.getEnd())) {
+                buckets[startIndex].add(chunk.getAggregate());
+                continue;
+            }
+            for (McChunkPoint point : decode(chunk)) {
+                addToBucket(buckets, boundaries, point);
+            }
+        }
+        for (McChunkPoint point : openPoints) {
+            addToBucket(buckets, boundaries, point);
+        }
+        return buckets;
+    }
+
+    /**
+     * Removes the points matched by the filter and rewrites the file.
+     */
+    public synchronized int remove(McChunkFilter filter) {
+        List<McChunkPoint> points = read(Long.MIN_VALUE, Long.MAX_VALUE);
+        List<McChunkPoint> remaining = new ArrayList<McChunkPoint>(points.size());
+        for (McChunkPoint point : points) {
+            if (!filter.matches(point)) {
+                remaining.add(point);
+            }
+        }
+        int removed = points.size() - remaining.size();
+        if (removed == 0) {
+            return 0;
+        }
+        File tmpFile = new File(file.getAbsolutePath() + ".tmp");
+        try {
+            FileUtils.deleteQuietly(tmpFile);
+            chunks.clear();
+            openPoints.clear();
+            for (int from = 0; from < remaining.size(); from += MAXIMUM_POINTS) {
+                append(tmpFile, remaining.subList(from, Math.min(from + MAXIMUM_POINTS, remaining.size())));
+            }
+            if (tmpFile.exists()) {
+                Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                FileUtils.deleteQuietly(file);
+            }
+            // open points are part of the new file
+            closeOpenLog();
+            FileUtils.deleteQuietly(openLogFile);
+        } catch (IOException ex) {
+            _logger.error("Unable to rewrite {}", file, ex);
+            FileUtils.deleteQuietly(tmpFile);
+            // reload from the files, not modified
+            chunks.clear();
+            openPoints.clear();
+            load();
+        }
+        return removed;
+    }
+
+    // seals the open chunk and releases the open log
+    public synchronized void close() {
+        seal();
+        closeOpenLog();
+    }
+
+    public synchronized void delete() {
+        chunks.clear();
+        openPoints.clear();
+        closeOpenLog();
+        FileUtils.deleteQuietly(file);
+        FileUtils.deleteQuietly(openLogFile);
+    }
+
+    public synchronized int getChunksCount() {
+        return chunks.size();
+    }
+
+    private void addToBucket(McChunkAggregate[] buckets, List<Long> boundaries, McChunkPoint point) {
+        int index = getBucketIndex(boundaries, point.getTimestamp());
+        if (index != -1) {
+            buckets[index].add(point.getValues());
+        }
+    }
+
+    // binary search, -1 if not in any bucket
+    private int getBucketIndex(List<Long> boundaries, long timestamp) {
+        if (timestamp <= boundaries.get(0) || timestamp > boundaries.get(boundaries.size() - 1)) {
+            return -1;
+        }
+        int low = 0;
+        int high = boundaries.size() - 1;
+        while (high - low > 1) {
+            int middle = (low + high) >>> 1;
+            if (timestamp <= boundaries.get(middle)) {
+                high = middle;
+            } else {
+                low = middle;
+            }
+        }
+        return low;
+    }
+
+    private List<McChunkPoint> decode(McChunk chunk) {
+        byte[] payload = new byte[chunk.getLength()];
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            randomAccessFile.seek(chunk.getOffset());
+            randomAccessFile.readFully(payload);
+        } catch (IOException ex) {
+            _logger.error("Unable to read chunk {} from {}", chunk, file, ex);
+            return new ArrayList<McChunkPoint>();
+        }
+        return McChunk.decode(payload, chunk.getAggregate().getCount(), columns);
+    }
+
+    private void append(List<McChunkPoint> points) throws IOException {
+        append(file, points);
+    }
+
+    private void append(File target, List<McChunkPoint> points) throws IOException {
+        McChunk chunk = McChunk.create(points, columns);
+        byte[] payload = McChunk.encode(points, columns);
+        long offset = target.length();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(target, true)))) {
+            chunk.write(out, payload, offset);
+        }
+        chunks.add(chunk);
+    }
+
+    private void writeOpenLog(byte type, long timestamp, double[] values) {
+        try {
+            if (openLog == null) {
+                openLog = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(openLogFile, true)));
+            }
+            openLog.writeByte(type);
+            openLog.writeLong(timestamp);
+            if (type == RECORD_ADD) {
+                for (int column = 0; column < columns; column++) {
+                    openLog.writeDouble(values[column]);
+                }
+            }
+            // record reaches the file on every point, replayed after a crash
+            openLog.flush();
+        } catch (IOException ex) {
+            _logger.error("Unable to write open point to {}", openLogFile, ex);
+            // opened again on the next point
+            closeOpenLog();
+        }
+    }
+
+    private void closeOpenLog() {
+        if (openLog == null) {
+            return;
+        }
+        try {
+            openLog.close();
+        } catch (IOException ex) {
+            _logger.error("Unable to close {}", openLogFile, ex);
+        } finally {
+            openLog = null;
+        }
+    }
+
+    // replays the points of the open chunk, an incomplete record at the end ignored
+    private void loadOpenLog() {
+        if (!openLogFile.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(openLogFile)))) {
+            while (true) {
+                byte type = in.readByte();
+                long timestamp = in.readLong();
+                if (type == RECORD_ADD) {
+                    double[] values = new double[columns];
+                    for (int column = 0; column < columns; column++) {
+                        values[column] = in.readDouble();
+                    }
+                    openPoints.add(new McChunkPoint(timestamp, values));
+                } else if (type == RECORD_UPDATE_LAST && !openPoints.isEmpty()) {
+                    openPoints.get(openPoints.size() - 1).setTimestamp(timestamp);
+                }
+            }
+        } catch (EOFException ex) {
+            // end of the log
+        } catch (IOException ex) {
+            _logger.error("Unable to load {}", openLogFile, ex);
+        }
+        if (!openPoints.isEmpty()) {
+            openSince = System.currentTimeMillis();
+            _logger.debug("Open points loaded:{}, {}", openPoints.size(), openLogFile);
+        }
+    }
+
+    // reads chunk headers, truncates incomplete chunk at the end (if any)
+    private void load() {
+        loadOpenLog();
+        if (!file.exists()) {
+            return;
+        }
+        long offset = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (offset < file.length()) {
+                McChunk chunk = McChunk.read(in, offset);
+                chunks.add(chunk);
+                offset = chunk.getOffset() + chunk.getLength();
+            }
+        } catch (EOFException ex) {
+            _logger.warn("Incomplete chunk found on {}, at {}", file, offset);
+        } catch (IOException ex) {
+            _logger.error("Unable to load {}, valid until {}", file, offset, ex);
+        }
+        if (offset < file.length()) {
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                randomAccessFile.setLength(offset);
+            } catch (IOException ex) {
+                _logger.error("Unable to truncate {}", file, ex);
+            }
+        }
+        // crashed after sealing and before clearing the open log, points are already in the last chunk
+        if (!openPoints.isEmpty() && !chunks.isEmpty() && isSealed(chunks.get(chunks.size() - 1))) {
+            openPoints.clear();
+            FileUtils.deleteQuietly(openLogFile);
+        }
+    }
+
+    private boolean isSealed(McChunk chunk) {
+        if (chunk.getAggregate().getCount() != openPoints.size()) {
+            return false;
+        }
+        List<McChunkPoint> points = new ArrayList<McChunkPoint>(openPoints);
+        Collections.sort(points, TIMESTAMP_ORDER);
+        return chunk.getStart() == points.get(0).getTimestamp()
+                && chunk.getEnd() == points.get(points.size() - 1).getTimestamp();
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.metrics.engine.chunk;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.FileUtils;
+import org.mycontroller.standalone.utils.McUtils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Series files of a directory, one file per resource and metric type. Open chunks are sealed by a
+ * background thread after {@link #MAXIMUM_OPEN_TIME}, points of an open chunk are kept in an append log
+ * until then and replayed after a crash.
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+@Slf4j
+public class McChunkStore implements Runnable {
+    public static final long MAXIMUM_OPEN_TIME = McUtils.MINUTE * 10;
+    public static final String FILE_EXTENSION = ".chunks";
+
+    public enum SERIES_TYPE {
+        DOUBLE("double", 1),
+        BINARY("binary", 1),
+        COUNTER("counter", 1),
+        GPS("gps", 3),
+        BATTERY("battery", 1);
+
+        private final String text;
+        private final int columns;
+
+        private SERIES_TYPE(String text, int columns) {
+            this.text = text;
+            this.columns = columns;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public int getColumns() {
+            return columns;
+        }
+    }
+
+    private final File directory;
+    private final Map<String, McChunkSeries> series = new ConcurrentHashMap<String, McChunkSeries>();
+    private Thread _thread = null;
+    private volatile boolean terminate = false;
+
+    public McChunkStore(String location) {
+        directory = new File(location);
+        if (!directory.exists() && !directory.mkdirs()) {
+            _logger.error("Unable to create directory {}", directory.getAbsolutePath());
+        }
+    }
+
+    public synchronized void start() {
+        if (_thread != null) {
+            return;
+        }
+        terminate = false;
+        _thread = new Thread(this, "metrics-chunks");
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    // seals all open chunks and closes their logs
+    public void stop() {
+        Thread thread = null;
+        synchronized (this) {
+            terminate = true;
+            thread = _thread;
+            _thread = null;
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+        for (McChunkSeries _series : series.values()) {
+            _series.close();
+        }
+    }
+
+    public McChunkSeries get(SERIES_TYPE type, Integer resourceId) {
+        String key = getKey(type, resourceId);
+        McChunkSeries _series = series.get(key);
+        if (_series == null) {
+            synchronized (series) {
+                _series = series.get(key);
+                if (_series == null) {
+                    _series = new McChunkSeries(new File(directory, key + FILE_EXTENSION), type.getColumns());
+                    series.put(key, _series);
+                }
+            }
+        }
+        return _series;
+    }
+
+    // series object kept in the map, any reference holder writes to the same file
+    public void delete(SERIES_TYPE type, Integer resourceId) {
+        get(type, resourceId).delete();
+    }
+
+    public void deleteAll() {
+        synchronized (series) {
+            for (McChunkSeries _series : series.values()) {
+                _series.delete();
+            }
+            try {
+                FileUtils.cleanDirectory(directory);
+            } catch (IOException ex) {
+                _logger.error("Unable to clean {}", directory.getAbsolutePath(), ex);
+            }
+        }
+    }
+
+    public boolean isWritable() {
+        return directory.isDirectory() && directory.canWrite();
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public void run() {
+        while (!terminate) {
+            try {
+                Thread.sleep(McUtils.MINUTE);
+                long openLimit = System.currentTimeMillis() - MAXIMUM_OPEN_TIME;
+                for (McChunkSeries _series : series.values()) {
+                    if (_series.isOpenOlderThan(openLimit)) {
+                        _series.seal();
+                    }
+                }
+            } catch (InterruptedException ex) {
+                break;
+            } catch (Exception ex) {
+                _logger.error("Exception,", ex);
+            }
+        }
+    }
+
+    private String getKey(SERIES_TYPE type, Integer resourceId) {
+        return type.getText() + "_" + resourceId;
+    }
+}
@@ -45,4 +45,9 @@ public class MetricEngineConfigInfluxDB extends MetricEngineConf {
     private String database;
     private String username;
     private String password;
+    // write pipeline, defaults used when not set
+    private Integer batchSize;
+    private Long batchLinger;
+    private Integer maxInFlight;
+    private Long spillLimit;
 }
@@ -16,14 +16,25 @@
  */
 package org.mycontroller.standalone.metrics.export;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.apache.commons.io.FileUtils;
 import org.mycontroller.standalone.api.MetricApi;
+import org.mycontroller.standalone.api.jaxrs.model.DataPointBase;
 import org.mycontroller.standalone.api.jaxrs.model.DataPointBinary;
 import org.mycontroller.standalone.api.jaxrs.model.DataPointCounter;
 import org.mycontroller.standalone.api.jaxrs.model.DataPointDouble;
@@ -31,12 +42,18 @@ import org.mycontroller.standalone.api.jaxrs.model.DataPointGPS;
 import org.mycontroller.standalone.api.jaxrs.model.MetricsCsv;
 import org.mycontroller.standalone.db.tables.SensorVariable;
 import org.mycontroller.standalone.exceptions.McBadRequestException;
+import org.mycontroller.standalone.metrics.MetricsUtils;
 import org.mycontroller.standalone.metrics.MetricsUtils.METRIC_TYPE;
+import org.mycontroller.standalone.metrics.model.Criteria;
 import org.mycontroller.standalone.model.ResourceModel;
+import org.mycontroller.standalone.utils.McUtils;
 
 import lombok.extern.slf4j.Slf4j;
 
 /**
+ * Writes metrics as CSV page by page, raw data pages are limited by time and bucketed data pages by number
+ * of buckets. Only one page is kept in memory, irrespective of the range.
+ *
  * @author Jeeva Kandasamy (jkandasa)
  * @since 0.0.2
  */
@@ -44,30 +61,34 @@ import lombok.extern.slf4j.Slf4j;
 public class CsvExportEngine {
 
     private static final SimpleDateFormat FILE_NAME_TIME_FORMAT = new SimpleDateFormat("yyyy-MMM-dd_hh-mm-ss");
+    private static final long PAGE_DURATION_RAW = McUtils.ONE_HOUR;
+    private static final long PAGE_BUCKETS = 1000;
 
     private MetricApi metricApi = new MetricApi();
 
     public String writeOnDisk(String uid, Long start, Long end, String duration, String bucketDuration,
             String writeOnDir) throws McBadRequestException, IOException {
-        MetricsCsv metricsCsv = getMetric(uid, start, end, duration, bucketDuration);
-        writeFileToDisk(writeOnDir, metricsCsv);
-        return metricsCsv.getFileName();
+        return writeFileToDisk(writeOnDir, metricApi.getCriteria(metricApi.getResourceModel(null, null, uid),
+                start, end, duration, bucketDuration, null));
     }
 
     public String writeOnDisk(Integer resourceId, String resourceType, Long start, Long end, String duration,
             String bucketDuration, String writeOnDir) throws McBadRequestException, IOException {
-        MetricsCsv metricsCsv = getMetric(resourceId, resourceType, start, end, duration, bucketDuration);
-        writeFileToDisk(writeOnDir, metricsCsv);
-        return metricsCsv.getFileName();
+        return writeFileToDisk(writeOnDir, metricApi.getCriteria(
+                metricApi.getResourceModel(resourceId, resourceType, null), start, end, duration, bucketDuration,
+                null));
     }
 
-    private void writeFileToDisk(String writeOnDir, MetricsCsv metricsCsv) throws IOException {
+    private String writeFileToDisk(String writeOnDir, Criteria criteria) throws IOException {
         File targetFile = FileUtils.getFile(FileUtils.getFile(writeOnDir).getCanonicalPath() + File.separator
-                + metricsCsv.getFileName());
+                + getFileName(criteria.getResourceModel()));
         _logger.debug("FileName:{}", targetFile.getCanonicalPath());
         FileUtils.getFile(targetFile.getParentFile()).mkdirs();
-        FileUtils.writeStringToFile(targetFile, metricsCsv.getData());
-        metricsCsv.setFileName(targetFile.getCanonicalPath());
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(FileUtils.openOutputStream(targetFile),
+                StandardCharsets.UTF_8))) {
+            write(criteria, writer);
+        }
+        return targetFile.getCanonicalPath();
     }
 
     public MetricsCsv getMetric(String uid, Long start, Long end, String duration, String bucketDuration)
@@ -84,8 +105,113 @@ public class CsvExportEngine {
     private MetricsCsv getMetric(ResourceModel resourceModel, Long start, Long end, String duration,
             String bucketDuration) throws McBadRequestException {
         //Update dataType when required
-        List<?> metrics = metricApi.getMetricData(resourceModel, start, end, duration, bucketDuration, null);
-        return new MetricsCsv(getFileName(resourceModel), getCsvData(resourceModel, metrics));
+        Criteria criteria = metricApi.getCriteria(resourceModel, start, end, duration, bucketDuration, null);
+        StringWriter writer = new StringWriter();
+        try {
+            write(criteria, writer);
+        } catch (IOException ex) {
+            throw new McBadRequestException(ex.getMessage());
+        }
+        return new MetricsCsv(getFileName(resourceModel), writer.toString());
+    }
+
+    // validates all the requests, before start writing
+    public List<Criteria> getCriteria(List<ResourceModel> resourceModels, Long start, Long end, String duration,
+            String bucketDuration) throws McBadRequestException {
+        List<Criteria> criteriaList = new ArrayList<Criteria>();
+        for (ResourceModel resourceModel : resourceModels) {
+            criteriaList.add(metricApi.getCriteria(resourceModel, start, end, duration, bucketDuration, null));
+        }
+        return criteriaList;
+    }
+
+    public String getFileName(List<Criteria> criteriaList, boolean gzip) {
+        if (criteriaList.size() == 1) {
+            return getFileName(criteriaList.get(0).getResourceModel()) + (gzip ? ".gz" : "");
+        }
+        return "mc_metric_csv_" + FILE_NAME_TIME_FORMAT.format(new Date()) + ".zip";
+    }
+
+    // single resource as csv (gzip optional), multiple resources as zip with a csv file per resource
+    public void write(List<Criteria> criteriaList, OutputStream output, boolean gzip) throws IOException {
+        if (criteriaList.size() == 1) {
+            OutputStream stream = gzip ? new GZIPOutputStream(output) : output;
+            Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+            write(criteriaList.get(0), writer);
+            writer.flush();
+            if (gzip) {
+                ((GZIPOutputStream) stream).finish();
+            }
+        } else {
+            ZipOutputStream zip = new ZipOutputStream(output);
+            Writer writer = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8));
+            for (Criteria criteria : criteriaList) {
+                zip.putNextEntry(new ZipEntry(getFileName(criteria.getResourceModel())));
+                write(criteria, writer);
+                writer.flush();
+                zip.closeEntry();
+            }
+            zip.finish();
+        }
+        output.flush();
+    }
+
+    private void write(Criteria criteria, Writer writer) throws IOException {
+        METRIC_TYPE metricType = getMetricType(criteria.getResourceModel());
+        if (metricType == null) {
+            return;
+        }
+        long start = criteria.getStart();
+        long end = criteria.getEnd();
+        long bucketDuration = criteria.getBucketDurationLong();
+        boolean raw = bucketDuration == -1 || metricType == METRIC_TYPE.BINARY;
+        long pageDuration;
+        if (raw) {
+            pageDuration = PAGE_DURATION_RAW;
+        } else if (metricType == METRIC_TYPE.COUNTER) {
+            // calendar buckets, not split
+            pageDuration = end - start;
+        } else {
+            pageDuration = bucketDuration * PAGE_BUCKETS;
+        }
+        Boolean isStartSet = null;
+        for (long pageStart = start; pageStart < end; pageStart += pageDuration) {
+            long pageEnd = Math.min(pageStart + pageDuration, end);
+            // bucket boundaries are less than the end, include the last bucket of the page
+            List<?> metrics = MetricsUtils.engine().list(Criteria.builder()
+                    .resourceModel(criteria.getResourceModel())
+                    .start(pageStart)
+                    .end(!raw && pageEnd < end ? pageEnd + 1 : pageEnd)
+                    .bucketDuration(criteria.getBucketDuration())
+                    .dataType(criteria.getDataType())
+                    .build());
+            if (raw && pageStart > start) {
+                metrics = skipPageStart(metrics, pageStart);
+            }
+            if (metrics.isEmpty()) {
+                continue;
+            }
+            if (isStartSet == null) {
+                isStartSet = writeHeader(writer, metricType, metrics.get(0));
+            }
+            writeRows(writer, metricType, metrics, isStartSet);
+        }
+        if (isStartSet == null) {
+            writeHeader(writer, metricType, null);
+        }
+    }
+
+    // lower bound of raw pages is exclusive, points on the page start are already on the previous page.
+    // Some metric engines include the start on raw queries
+    private List<?> skipPageStart(List<?> metrics, long pageStart) {
+        List<Object> filtered = new ArrayList<Object>(metrics.size());
+        for (Object metric : metrics) {
+            Long timestamp = ((DataPointBase) metric).getTimestamp();
+            if (timestamp == null || timestamp > pageStart) {
+                filtered.add(metric);
+            }
+        }
+        return filtered;
     }
 
     private String getFileName(ResourceModel resourceModel) {
@@ -98,145 +224,138 @@ public class CsvExportEngine {
         return builder.toString().replaceAll(" ", "_");
     }
 
-    @SuppressWarnings("unchecked")
-    private String getCsvData(ResourceModel resourceModel, List<?> metrics) {
-        _logger.debug("{}", metrics);
-        StringBuilder builder = new StringBuilder();
-        boolean isStartSet = false;
-        METRIC_TYPE metrictType = null;
+    private METRIC_TYPE getMetricType(ResourceModel resourceModel) {
         switch (resourceModel.getResourceType()) {
             case NODE:
-                metrictType = METRIC_TYPE.DOUBLE;
-                break;
+                return METRIC_TYPE.DOUBLE;
             case SENSOR_VARIABLE:
-                metrictType = ((SensorVariable) resourceModel.getResource()).getMetricType();
-                break;
+                return ((SensorVariable) resourceModel.getResource()).getMetricType();
             default:
                 return null;
         }
-        //Headers
+    }
+
+    // returns true, if the rows has start and end
+    private boolean writeHeader(Writer writer, METRIC_TYPE metrictType, Object firstMetric) throws IOException {
+        boolean isStartSet = false;
         switch (metrictType) {
             case BINARY:
-                builder.append("timestamp").append(",");
-                builder.append("state");
+                writer.append("timestamp").append(",");
+                writer.append("state");
                 break;
             case DOUBLE:
-                DataPointDouble doubleMetric = (DataPointDouble) metrics.get(0);
-                if (doubleMetric.getStart() != null) {
+                if (firstMetric != null && ((DataPointDouble) firstMetric).getStart() != null) {
                     isStartSet = true;
-                    builder.append("start").append(",");
-                    builder.append("end").append(",");
+                    writer.append("start").append(",");
+                    writer.append("end").append(",");
                 } else {
-                    builder.append("timestamp").append(",");
+                    writer.append("timestamp").append(",");
                 }
-                builder.append("empty").append(",");
-                builder.append("samples").append(",");
-                builder.append("minimum").append(",");
-                builder.append("maximum").append(",");
-                builder.append("average");
+                writer.append("empty").append(",");
+                writer.append("samples").append(",");
+                writer.append("minimum").append(",");
+                writer.append("maximum").append(",");
+                writer.append("average");
                 break;
             case COUNTER:
-                DataPointCounter counterMetric = (DataPointCounter) metrics.get(0);
-                if (counterMetric.getStart() != null) {
+                if (firstMetric != null && ((DataPointCounter) firstMetric).getStart() != null) {
                     isStartSet = true;
-                    builder.append("start").append(",");
-                    builder.append("end").append(",");
+                    writer.append("start").append(",");
+                    writer.append("end").append(",");
                 } else {
-                    builder.append("timestamp").append(",");
+                    writer.append("timestamp").append(",");
                 }
-                builder.append("empty").append(",");
-                builder.append("samples").append(",");
-                builder.append("value");
+                writer.append("empty").append(",");
+                writer.append("samples").append(",");
+                writer.append("value");
                 break;
             case GPS:
-                DataPointGPS gpsMetric = (DataPointGPS) metrics.get(0);
-                if (gpsMetric.getStart() != null) {
+                if (firstMetric != null && ((DataPointGPS) firstMetric).getStart() != null) {
                     isStartSet = true;
-                    builder.append("start").append(",");
-                    builder.append("end").append(",");
+                    writer.append("start").append(",");
+                    writer.append("end").append(",");
                 } else {
-                    builder.append("timestamp").append(",");
+                    writer.append("timestamp").append(",");
                 }
-                builder.append("empty").append(",");
-                builder.append("samples").append(",");
-                builder.append("lantitude").append(",");
-                builder.append("longitude").append(",");
-                builder.append("altitude");
+                writer.append("empty").append(",");
+                writer.append("samples").append(",");
+                writer.append("lantitude").append(",");
+                writer.append("longitude").append(",");
+                writer.append("altitude");
                 break;
             default:
                 break;
         }
+        return isStartSet;
+    }
 
-        if (metrics.isEmpty()) {
-            return builder.toString();
-        }
-
-        //Update data
+    @SuppressWarnings("unchecked")
+    private void writeRows(Writer writer, METRIC_TYPE metrictType, List<?> metrics, boolean isStartSet)
+            throws IOException {
         switch (metrictType) {
             case BINARY:
                 for (DataPointBinary metric : (List<DataPointBinary>) metrics) {
-                    builder.append("\n");
-                    builder.append(metric.getTimestamp()).append(",");
-                    builder.append(getValue(metric.getState()));
+                    writer.append("\n");
+                    writer.append(String.valueOf(metric.getTimestamp())).append(",");
+                    writer.append(getValue(metric.getState()));
                 }
                 break;
             case DOUBLE:
                 for (DataPointDouble metric : (List<DataPointDouble>) metrics) {
-                    builder.append("\n");
+                    writer.append("\n");
                     if (isStartSet) {
-                        builder.append(metric.getStart()).append(",");
-                        builder.append(metric.getEnd()).append(",");
+                        writer.append(String.valueOf(metric.getStart())).append(",");
+                        writer.append(String.valueOf(metric.getEnd())).append(",");
                     } else {
-                        builder.append(metric.getTimestamp()).append(",");
+                        writer.append(String.valueOf(metric.getTimestamp())).append(",");
                     }
-                    builder.append(metric.isEmpty()).append(",");
-                    builder.append(getValue(metric.getSamples())).append(",");
-                    builder.append(getValue(metric.getMin())).append(",");
-                    builder.append(getValue(metric.getMax())).append(",");
-                    builder.append(getValue(metric.getAvg()));
+                    writer.append(String.valueOf(metric.isEmpty())).append(",");
+                    writer.append(getValue(metric.getSamples())).append(",");
+                    writer.append(getValue(metric.getMin())).append(",");
+                    writer.append(getValue(metric.getMax())).append(",");
+                    writer.append(getValue(metric.getAvg()));
                 }
                 break;
             case COUNTER:
                 for (DataPointCounter metric : (List<DataPointCounter>) metrics) {
-                    builder.append("\n");
+                    writer.append("\n");
                     if (isStartSet) {
-                        builder.append(metric.getStart()).append(",");
-                        builder.append(metric.getEnd()).append(",");
+                        writer.append(String.valueOf(metric.getStart())).append(",");
+                        writer.append(String.valueOf(metric.getEnd())).append(",");
                     } else {
-                        builder.append(metric.getTimestamp()).append(",");
+                        writer.append(String.valueOf(metric.getTimestamp())).append(",");
                     }
-                    builder.append(metric.isEmpty()).append(",");
-                    builder.append(getValue(metric.getSamples())).append(",");
-                    builder.append(getValue(metric.getValue()));
+                    writer.append(String.valueOf(metric.isEmpty())).append(",");
+                    writer.append(getValue(metric.getSamples())).append(",");
+                    writer.append(getValue(metric.getValue()));
                 }
                 break;
             case GPS:
                 for (DataPointGPS metric : (List<DataPointGPS>) metrics) {
-                    builder.append("\n");
+                    writer.append("\n");
                     if (isStartSet) {
-                        builder.append(metric.getStart()).append(",");
-                        builder.append(metric.getEnd()).append(",");
+                        writer.append(String.valueOf(metric.getStart())).append(",");
+                        writer.append(String.valueOf(metric.getEnd())).append(",");
                     } else {
-                        builder.append(metric.getTimestamp()).append(",");
+                        writer.append(String.valueOf(metric.getTimestamp())).append(",");
                     }
-                    builder.append(metric.isEmpty()).append(",");
-                    builder.append(getValue(metric.getSamples())).append(",");
-                    builder.append(getValue(metric.getLantitude())).append(",");
-                    builder.append(getValue(metric.getLongitude())).append(",");
-                    builder.append(getValue(metric.getAltitude()));
+                    writer.append(String.valueOf(metric.isEmpty())).append(",");
+                    writer.append(getValue(metric.getSamples())).append(",");
+                    writer.append(getValue(metric.getLantitude())).append(",");
+                    writer.append(getValue(metric.getLongitude())).append(",");
+                    writer.append(getValue(metric.getAltitude()));
                 }
                 break;
             default:
                 break;
         }
-        return builder.toString();
     }
 
-    private Object getValue(Object value) {
+    private String getValue(Object value) {
         if (value == null) {
             return "";
         }
-        return value;
+        return String.valueOf(value);
     }
 
 }
@@ -27,6 +27,7 @@ import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.metrics.METRIC_ENGINE;
 import org.mycontroller.standalone.metrics.MetricsUtils;
 import org.mycontroller.standalone.metrics.engine.McMetricsAggregationBase;
+import org.mycontroller.standalone.metrics.engine.McMetricsWriteBuffer;
 import org.mycontroller.standalone.settings.MetricsDataRetentionSettings;
 
 import lombok.extern.slf4j.Slf4j;
@@ -56,6 +57,8 @@ public class MetricsAggregationJob extends Job {
             return;
         }
         _logger.debug("Metrics aggregation job triggered");
+        //Write buffered points before aggregation
+        McMetricsWriteBuffer.getInstance().flush();
         new McMetricsAggregationBase().runAggregation();
 
         _logger.debug("Executing purge of binary and GPS data.");
@@ -72,6 +75,7 @@ public class MetricsAggregationJob extends Job {
                         retentionSettings.getLastAggregationBinary() : lowestTimestamp),
                 String.valueOf(currentTimestamp - retentionSettings.getRetentionBinary()));
         executeSqlQuery(sqlDeleteQueryBinary);
+        McMetricsWriteBuffer.getInstance().invalidateBinaryStates();
         //Update last aggregation status
         retentionSettings.setLastAggregationBinary(currentTimestamp - retentionSettings.getRetentionBinary());
         retentionSettings.updateInternal();
@@ -32,7 +32,16 @@ public interface IQueue<T> {
 
     boolean isEmpty();
 
+    // waits till a message available or timeout(in milliseconds) elapsed, returns true if queue is not empty
+    boolean await(long timeout);
+
+    // releases all the threads waiting on await
+    void wakeUp();
+
     void clear();
 
+    // releases the resources, messages not taken yet are kept for the next start
+    void close();
+
     void delete();
 }
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.offheap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Memory mapped, fixed size journal file. Record layout: length(int), crc32(int), state(byte), data.
+ * A record is visible to the reader only after writer publishes the limit.
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+@Slf4j
+public class JournalSegment {
+    public static final int HEADER_SIZE = 9;
+    public static final byte STATE_NEW = 1;
+    public static final byte STATE_CONSUMED = 2;
+    // written after the last record, when the next record does not fit in this segment
+    public static final int END_OF_SEGMENT = -1;
+
+    private final long id;
+    private final File file;
+    private final MappedByteBuffer buffer;
+    // separate views, position of a buffer is not thread safe
+    private final ByteBuffer writeBuffer;
+    private final ByteBuffer readBuffer;
+    private final int size;
+
+    // writer side, used only by the writer
+    private int writePosition = 0;
+    // end of the published records, written by writer and read by reader
+    private volatile int limit = 0;
+    // next segment, set by writer after the last record of this segment is published
+    private volatile JournalSegment next = null;
+
+    public JournalSegment(File file, long id, int size) throws IOException {
+        this.id = id;
+        this.file = file;
+        this.size = size;
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(size);
+            buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            // mapping is valid after the channel closed
+            randomAccessFile.close();
+        }
+        writeBuffer = buffer.duplicate();
+        readBuffer = buffer.duplicate();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public JournalSegment getNext() {
+        return next;
+    }
+
+    public void setNext(JournalSegment next) {
+        this.next = next;
+    }
+
+    public boolean canWrite(int length) {
+        // always keep space for end of segment mark
+        return writePosition + HEADER_SIZE + length + 4 <= size;
+    }
+
+    public void write(byte[] data) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(data);
+        writeBuffer.put(writePosition + HEADER_SIZE - 1, STATE_NEW);
+        writeBuffer.position(writePosition + HEADER_SIZE);
+        writeBuffer.put(data);
+        writeBuffer.putInt(writePosition + 4, (int) crc32.getValue());
+        // length written at the end, a record without length is ignored on recovery
+        writeBuffer.putInt(writePosition, data.length);
+        writePosition += HEADER_SIZE + data.length;
+        // publish
+        limit = writePosition;
+    }
+
+    public void writeEnd() {
+        writeBuffer.putInt(writePosition, END_OF_SEGMENT);
+    }
+
+    public int getLength(int position) {
+        return readBuffer.getInt(position);
+    }
+
+    public byte[] read(int position) {
+        byte[] data = new byte[readBuffer.getInt(position)];
+        readBuffer.position(position + HEADER_SIZE);
+        readBuffer.get(data);
+        return data;
+    }
+
+    public void markConsumed(int position) {
+        readBuffer.put(position + HEADER_SIZE - 1, STATE_CONSUMED);
+    }
+
+    public boolean isConsumed(int position) {
+        return readBuffer.get(position + HEADER_SIZE - 1) == STATE_CONSUMED;
+    }
+
+    // scans records from the beginning, stops on the first incomplete or corrupted record.
+    // returns number of records not consumed yet and updates write position
+    public int recover() {
+        int position = 0;
+        int available = 0;
+        while (position + HEADER_SIZE <= size) {
+            int length = readBuffer.getInt(position);
+            if (length <= 0 || position + HEADER_SIZE + length > size) {
+                break;
+            }
+            byte state = readBuffer.get(position + HEADER_SIZE - 1);
+            if (state != STATE_NEW && state != STATE_CONSUMED) {
+                break;
+            }
+            CRC32 crc32 = new CRC32();
+            crc32.update(read(position));
+            if (readBuffer.getInt(position + 4) != (int) crc32.getValue()) {
+                _logger.warn("Corrupted record found in the journal[{}] at {}, ignored rest of the segment",
+                        file.getName(), position);
+                break;
+            }
+            if (state == STATE_NEW) {
+                available++;
+            }
+            position += HEADER_SIZE + length;
+        }
+        writePosition = position;
+        limit = position;
+        return available;
+    }
+
+    // position of the first record not consumed, or limit if all records consumed
+    public int firstAvailable() {
+        int position = 0;
+        while (position < limit && isConsumed(position)) {
+            position += HEADER_SIZE + getLength(position);
+        }
+        return position;
+    }
+
+    public void force() {
+        buffer.force();
+    }
+
+    public void delete() {
+        if (!file.delete()) {
+            _logger.debug("Unable to delete journal segment:{}", file.getAbsolutePath());
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.offheap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+import org.mycontroller.standalone.message.IMessage;
+
+/**
+ * Compact binary encoding of {@link IMessage}, used by journal queue.
+ * Layout: version, null fields mask, then the fields which are not null in a fixed order.
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+public class MessageCodec {
+    private static final byte VERSION = 1;
+
+    private static final int F_GATEWAY_ID = 1;
+    private static final int F_NODE_EUI = 1 << 1;
+    private static final int F_SENSOR_ID = 1 << 2;
+    private static final int F_TYPE = 1 << 3;
+    private static final int F_SUB_TYPE = 1 << 4;
+    private static final int F_ACK = 1 << 5;
+    private static final int F_PAYLOAD = 1 << 6;
+    private static final int F_TX_MESSAGE = 1 << 7;
+    private static final int F_TIMESTAMP = 1 << 8;
+    private static final int F_PROPERTIES = 1 << 9;
+
+    private MessageCodec() {
+
+    }
+
+    public static byte[] encode(IMessage message) throws IOException {
+        int fields = 0;
+        fields |= message.getGatewayId() != null ? F_GATEWAY_ID : 0;
+        fields |= message.getNodeEui() != null ? F_NODE_EUI : 0;
+        fields |= message.getSensorId() != null ? F_SENSOR_ID : 0;
+        fields |= message.getType() != null ? F_TYPE : 0;
+        fields |= message.getSubType() != null ? F_SUB_TYPE : 0;
+        fields |= message.getAck() != null ? F_ACK : 0;
+        fields |= message.getPayload() != null ? F_PAYLOAD : 0;
+        fields |= message.isTxMessage() != null ? F_TX_MESSAGE : 0;
+        fields |= F_TIMESTAMP;
+        fields |= message.getProperties() != null && !message.getProperties().isEmpty() ? F_PROPERTIES : 0;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(VERSION);
+        out.writeShort(fields);
+        if ((fields & F_GATEWAY_ID) != 0) {
+            out.writeInt(message.getGatewayId());
+        }
+        if ((fields & F_NODE_EUI) != 0) {
+            writeString(out, message.getNodeEui());
+        }
+        if ((fields & F_SENSOR_ID) != 0) {
+            writeString(out, message.getSensorId());
+        }
+        if ((fields & F_TYPE) != 0) {
+            writeString(out, message.getType());
+        }
+        if ((fields & F_SUB_TYPE) != 0) {
+            writeString(out, message.getSubType());
+        }
+        if ((fields & F_ACK) != 0) {
+            out.writeByte(message.getAck());
+        }
+        if ((fields & F_PAYLOAD) != 0) {
+            writeString(out, message.getPayload());
+        }
+        if ((fields & F_TX_MESSAGE) != 0) {
+            out.writeBoolean(message.isTxMessage());
+        }
+        out.writeLong(message.getTimestamp());
+        if ((fields & F_PROPERTIES) != 0) {
+            // properties are rare and can hold any serializable value
+            ByteArrayOutputStream propertiesBytes = new ByteArrayOutputStream();
+            ObjectOutputStream objectOut = new ObjectOutputStream(propertiesBytes);
+            objectOut.writeObject(message.getProperties());
+            objectOut.close();
+            out.writeInt(propertiesBytes.size());
+            propertiesBytes.writeTo(out);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    public static IMessage decode(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported message encoding version:" + version);
+        }
+        int fields = in.readShort();
+        IMessage message = IMessage.getInstance();
+        if ((fields & F_GATEWAY_ID) != 0) {
+            message.setGatewayId(in.readInt());
+        }
+        if ((fields & F_NODE_EUI) != 0) {
+            message.setNodeEui(readString(in));
+        }
+        if ((fields & F_SENSOR_ID) != 0) {
+            message.setSensorId(readString(in));
+        }
+        if ((fields & F_TYPE) != 0) {
+            message.setType(readString(in));
+        }
+        if ((fields & F_SUB_TYPE) != 0) {
+            message.setSubType(readString(in));
+        }
+        if ((fields & F_ACK) != 0) {
+            message.setAck((int) in.readByte());
+        }
+        if ((fields & F_PAYLOAD) != 0) {
+            message.setPayload(readString(in));
+        }
+        if ((fields & F_TX_MESSAGE) != 0) {
+            message.setTxMessage(in.readBoolean());
+        }
+        message.setTimestamp(in.readLong());
+        if ((fields & F_PROPERTIES) != 0) {
+            byte[] propertiesBytes = new byte[in.readInt()];
+            in.readFully(propertiesBytes);
+            ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(propertiesBytes));
+            try {
+                message.setProperties((HashMap<String, Object>) objectIn.readObject());
+            } catch (ClassNotFoundException ex) {
+                throw new IOException(ex);
+            } finally {
+                objectIn.close();
+            }
+        }
+        return message;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
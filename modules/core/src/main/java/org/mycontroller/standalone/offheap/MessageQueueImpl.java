@@ -59,6 +59,7 @@ public class MessageQueueImpl implements IQueue<IMessage> {
         if (message != null) {
             queue.add(message);
             counter.incrementAndGet();
+            notifyAll();
             _logger.debug("Added[Queue:{}, size:{}, Message:{}]", nameQueue, counter.get(), message);
         } else {
             _logger.debug("Received NULL message. Queue name:{}", nameQueue);
@@ -93,11 +94,33 @@ public class MessageQueueImpl implements IQueue<IMessage> {
         return queue.isEmpty();
     }
 
+    @Override
+    public synchronized boolean await(long timeout) {
+        if (queue.isEmpty() && timeout > 0) {
+            try {
+                wait(timeout);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return !queue.isEmpty();
+    }
+
+    @Override
+    public synchronized void wakeUp() {
+        notifyAll();
+    }
+
     @Override
     public synchronized void clear() {
         queue.clear();
     }
 
+    @Override
+    public void close() {
+        // MapDB store is committed and closed by OffHeapFactory
+    }
+
     @Override
     public synchronized void delete() {
         OffHeapFactory.store().delete(nameCounter);
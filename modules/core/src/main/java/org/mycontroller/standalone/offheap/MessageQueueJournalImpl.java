@@ -0,0 +1,311 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.offheap;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.mycontroller.standalone.AppProperties;
+import org.mycontroller.standalone.message.IMessage;
+import org.mycontroller.standalone.utils.McUtils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Message queue on memory mapped, segmented journal files. Messages are appended to the last segment and
+ * taken from the first one, a segment file removed when all the messages in it are taken.
+ * Writers are serialized on a write lock, reader never waits for writers. Written messages are on the
+ * page cache immediately, sync interval controls how often it forced to the disk.
+ * On start, segments are scanned and messages not taken yet are recovered.
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+@Slf4j
+public class MessageQueueJournalImpl implements IQueue<IMessage> {
+    public static final int SEGMENT_SIZE = 4 * 1024 * 1024;
+    private static final String SEGMENT_EXTENSION = ".journal";
+
+    private final File location;
+    private final long syncInterval;
+    private final AtomicInteger counter = new AtomicInteger();
+    private final Object _writeLock = new Object();
+    private final Object _readLock = new Object();
+    private final Object _signal = new Object();
+
+    // guarded by _writeLock
+    private JournalSegment writeSegment;
+    private long lastSyncTime = 0;
+    // guarded by _readLock
+    private JournalSegment readSegment;
+    private int readPosition = 0;
+
+    private volatile boolean syncRequired = false;
+    private volatile boolean waiting = false;
+    private volatile boolean closed = false;
+
+    public MessageQueueJournalImpl(String name, long syncInterval) {
+        this.location = FileUtils.getFile(OffHeapFactory.getJournalLocation(QUEUE_PREFIX + "_msg_" + name));
+        this.syncInterval = syncInterval;
+        if (AppProperties.getInstance().getClearMessagesQueueOnStart()) {
+            deleteLocation();
+        }
+        try {
+            open();
+        } catch (IOException ex) {
+            _logger.error("Unable to open journal[{}]", location.getAbsolutePath(), ex);
+            throw new RuntimeException(ex);
+        }
+        _logger.debug("Journal queue[{}] opened with offline messages[{}]", location.getAbsolutePath(),
+                counter.get());
+    }
+
+    private void open() throws IOException {
+        AppProperties.getInstance().createDirectoryLocation(location.getAbsolutePath());
+        File[] files = location.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isFile() && file.getName().endsWith(SEGMENT_EXTENSION);
+            }
+        });
+        if (files == null) {
+            files = new File[0];
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File file1, File file2) {
+                return Long.compare(getSegmentId(file1), getSegmentId(file2));
+            }
+        });
+        List<JournalSegment> segments = new ArrayList<JournalSegment>();
+        int available = 0;
+        for (int index = 0; index < files.length; index++) {
+            JournalSegment segment = new JournalSegment(files[index], getSegmentId(files[index]), SEGMENT_SIZE);
+            int segmentAvailable = segment.recover();
+            // remove the segments which are taken completely, except the last one
+            if (segments.isEmpty() && segmentAvailable == 0 && index < files.length - 1) {
+                segment.delete();
+                continue;
+            }
+            if (!segments.isEmpty()) {
+                segments.get(segments.size() - 1).setNext(segment);
+            }
+            segments.add(segment);
+            available += segmentAvailable;
+        }
+        if (segments.isEmpty()) {
+            segments.add(newSegment(0));
+        }
+        readSegment = segments.get(0);
+        readPosition = readSegment.firstAvailable();
+        writeSegment = segments.get(segments.size() - 1);
+        counter.set(available);
+    }
+
+    private long getSegmentId(File file) {
+        return McUtils.getLong(file.getName().substring(0, file.getName().length() - SEGMENT_EXTENSION.length()));
+    }
+
+    private JournalSegment newSegment(long id) throws IOException {
+        File file = FileUtils.getFile(location, String.format("%019d%s", id, SEGMENT_EXTENSION));
+        return new JournalSegment(file, id, SEGMENT_SIZE);
+    }
+
+    @Override
+    public void add(IMessage message) {
+        if (message == null) {
+            _logger.debug("Received NULL message. Queue name:{}", location.getName());
+            return;
+        }
+        if (closed) {
+            _logger.warn("Journal queue[{}] closed, dropped the message:{}", location.getName(), message);
+            return;
+        }
+        byte[] data = null;
+        try {
+            data = MessageCodec.encode(message);
+        } catch (IOException ex) {
+            _logger.error("Unable to encode the message:{}", message, ex);
+            return;
+        }
+        if (JournalSegment.HEADER_SIZE + data.length + 4 > SEGMENT_SIZE) {
+            _logger.error("Message too large[size:{}], dropped:{}", data.length, message);
+            return;
+        }
+        synchronized (_writeLock) {
+            try {
+                if (!writeSegment.canWrite(data.length)) {
+                    JournalSegment segment = newSegment(writeSegment.getId() + 1);
+                    writeSegment.writeEnd();
+                    writeSegment.force();
+                    writeSegment.setNext(segment);
+                    writeSegment = segment;
+                }
+            } catch (IOException ex) {
+                _logger.error("Unable to create new journal segment, dropped the message:{}", message, ex);
+                return;
+            }
+            writeSegment.write(data);
+            counter.incrementAndGet();
+            long now = System.currentTimeMillis();
+            if (syncInterval <= 0 || now - lastSyncTime >= syncInterval) {
+                writeSegment.force();
+                lastSyncTime = now;
+                syncRequired = false;
+            } else {
+                syncRequired = true;
+            }
+        }
+        _logger.debug("Added[Queue:{}, size:{}, Message:{}]", location.getName(), counter.get(), message);
+        if (waiting) {
+            wakeUp();
+        }
+    }
+
+    @Override
+    public IMessage take() {
+        synchronized (_readLock) {
+            while (true) {
+                if (readPosition < readSegment.getLimit()) {
+                    int position = readPosition;
+                    readPosition += JournalSegment.HEADER_SIZE + readSegment.getLength(position);
+                    if (readSegment.isConsumed(position)) {
+                        continue;
+                    }
+                    byte[] data = readSegment.read(position);
+                    readSegment.markConsumed(position);
+                    counter.decrementAndGet();
+                    try {
+                        IMessage message = MessageCodec.decode(data);
+                        _logger.debug("Removed[Queue:{}, size:{}, Message:{}]", location.getName(), counter.get(),
+                                message);
+                        return message;
+                    } catch (IOException ex) {
+                        _logger.error("Unable to decode a message from the journal[{}], ignored", location.getName(),
+                                ex);
+                        continue;
+                    }
+                }
+                // limit is final, when the next segment is available
+                JournalSegment next = readSegment.getNext();
+                if (next == null) {
+                    _logger.debug("There is no message in the queue, returning null");
+                    return null;
+                }
+                if (readPosition < readSegment.getLimit()) {
+                    continue;
+                }
+                readSegment.delete();
+                readSegment = next;
+                readPosition = 0;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return counter.get();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return counter.get() == 0;
+    }
+
+    @Override
+    public boolean await(long timeout) {
+        if (!isEmpty()) {
+            return true;
+        }
+        // queue is idle, force the pending writes
+        if (syncRequired) {
+            sync();
+        }
+        synchronized (_signal) {
+            waiting = true;
+            try {
+                if (isEmpty() && timeout > 0) {
+                    _signal.wait(timeout);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                waiting = false;
+            }
+        }
+        return !isEmpty();
+    }
+
+    @Override
+    public void wakeUp() {
+        synchronized (_signal) {
+            _signal.notifyAll();
+        }
+    }
+
+    private void sync() {
+        synchronized (_writeLock) {
+            writeSegment.force();
+            lastSyncTime = System.currentTimeMillis();
+            syncRequired = false;
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (_readLock) {
+            int count = 0;
+            while (take() != null) {
+                count++;
+            }
+            _logger.debug("Cleared messages[{}] from the queue[{}]", count, location.getName());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        sync();
+        _logger.debug("Journal queue[{}] closed, offline messages[{}]", location.getName(), counter.get());
+    }
+
+    @Override
+    public void delete() {
+        close();
+        deleteLocation();
+    }
+
+    private void deleteLocation() {
+        try {
+            if (location.exists()) {
+                FileUtils.deleteDirectory(location);
+            }
+        } catch (IOException ex) {
+            _logger.error("Unable to delete journal location[{}]", location.getAbsolutePath(), ex);
+        }
+    }
+}
@@ -17,73 +17,202 @@
 package org.mycontroller.standalone.offheap;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.mapdb.HTreeMap;
 import org.mycontroller.standalone.AppProperties;
 import org.mycontroller.standalone.message.IMessage;
+import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE;
 
 import lombok.extern.slf4j.Slf4j;
 
 /**
+ * Smart sleep messages store. Every message is kept as an individual entry (key: nodeEui#sequence),
+ * order of the entries per node is tracked on the heap. Enqueue writes only the new message and
+ * drain removes only the node entries. Nodes are locked on stripes, not on a global lock.
+ *
  * @author Jeeva Kandasamy (jkandasa)
  * @since 1.2.0
  */
 @Slf4j
 public class MessageQueueSleepImpl {
+    private static final String KEY_SEPARATOR = "#";
+    private static final int LOCK_STRIPES = 32;
 
     private String _nameMap;
-    HTreeMap<String, ArrayList<IMessage>> _map;
+    private HTreeMap<String, IMessage> _map;
+    // nodeEui, messages order
+    private final ConcurrentHashMap<String, NodeLog> _index = new ConcurrentHashMap<String, NodeLog>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Object[] _locks = new Object[LOCK_STRIPES];
+    private final boolean dedupSetMessages;
 
-    public MessageQueueSleepImpl(String name) {
-        _nameMap = IMap.MAP_PREFIX + "_msg_sleep_" + name;
+    // sequences of a node, and the latest C_SET sequence for each sensor variable
+    private static class NodeLog {
+        private final LinkedHashMap<Long, String> sequences = new LinkedHashMap<Long, String>();
+        private final HashMap<String, Long> setMessages = new HashMap<String, Long>();
+    }
 
+    public MessageQueueSleepImpl(String name) {
+        _nameMap = IMap.MAP_PREFIX + "_msg_sleep_log_" + name;
+        for (int index = 0; index < LOCK_STRIPES; index++) {
+            _locks[index] = new Object();
+        }
+        dedupSetMessages = AppProperties.getInstance().getSmartSleepDedupSetMessages();
         _map = OffHeapFactory.store().getHashMap(_nameMap);
-        if (AppProperties.getInstance().getClearMessagesQueueOnStart()) {
+        if (AppProperties.getInstance().getClearSmartSleppMsgQueueOnStart()) {
             _map.clear();
         } else {
             _logger.debug("Continuing with offline messages in the map:[{}]", _nameMap);
         }
+        migrate(IMap.MAP_PREFIX + "_msg_sleep_" + name);
+        loadIndex();
+    }
+
+    // moves the messages from the list based store of the previous versions
+    private void migrate(String oldNameMap) {
+        if (!OffHeapFactory.store().exists(oldNameMap)) {
+            return;
+        }
+        if (!AppProperties.getInstance().getClearSmartSleppMsgQueueOnStart()) {
+            HTreeMap<String, ArrayList<IMessage>> _oldMap = OffHeapFactory.store().getHashMap(oldNameMap);
+            for (ArrayList<IMessage> _messages : _oldMap.values()) {
+                for (IMessage _message : _messages) {
+                    _map.put(getKey(_message.getNodeEui(), sequence.getAndIncrement()), _message);
+                }
+            }
+        }
+        OffHeapFactory.store().delete(oldNameMap);
+    }
+
+    private void loadIndex() {
+        HashMap<String, TreeMap<Long, IMessage>> _nodes = new HashMap<String, TreeMap<Long, IMessage>>();
+        long maxSequence = -1;
+        for (Entry<String, IMessage> _entry : _map.entrySet()) {
+            int separator = _entry.getKey().lastIndexOf(KEY_SEPARATOR);
+            String nodeEui = _entry.getKey().substring(0, separator);
+            long _sequence = Long.parseLong(_entry.getKey().substring(separator + 1));
+            if (_nodes.get(nodeEui) == null) {
+                _nodes.put(nodeEui, new TreeMap<Long, IMessage>());
+            }
+            _nodes.get(nodeEui).put(_sequence, _entry.getValue());
+            maxSequence = Math.max(maxSequence, _sequence);
+        }
+        sequence.set(maxSequence + 1);
+        for (Entry<String, TreeMap<Long, IMessage>> _node : _nodes.entrySet()) {
+            for (Entry<Long, IMessage> _entry : _node.getValue().entrySet()) {
+                append(_node.getKey(), _entry.getKey(), _entry.getValue());
+            }
+        }
+    }
+
+    private Object getLock(String nodeEui) {
+        return _locks[(nodeEui.hashCode() & 0x7fffffff) % LOCK_STRIPES];
+    }
+
+    private String getKey(String nodeEui, long _sequence) {
+        return nodeEui + KEY_SEPARATOR + _sequence;
+    }
+
+    private String getSetMessageKey(IMessage message) {
+        if (dedupSetMessages && MESSAGE_TYPE.C_SET.getText().equals(message.getType())) {
+            return message.getSensorId() + KEY_SEPARATOR + message.getSubType();
+        }
+        return null;
+    }
+
+    // caller should hold the node lock
+    private void append(String nodeEui, long _sequence, IMessage message) {
+        NodeLog _log = _index.get(nodeEui);
+        if (_log == null) {
+            _log = new NodeLog();
+            _index.put(nodeEui, _log);
+        }
+        String setKey = getSetMessageKey(message);
+        if (setKey != null) {
+            // new value supersedes the value waiting on the queue
+            Long _superseded = _log.setMessages.put(setKey, _sequence);
+            if (_superseded != null) {
+                _log.sequences.remove(_superseded);
+                _map.remove(getKey(nodeEui, _superseded));
+                _logger.debug("Superseded [key:{}, sequence:{}] by {}", nodeEui, _superseded, message);
+            }
+        }
+        _log.sequences.put(_sequence, setKey);
     }
 
-    public synchronized void clear() {
-        _map.clear();
+    public void clear() {
+        for (String nodeEui : _index.keySet()) {
+            remove(nodeEui);
+        }
     }
 
-    public synchronized void delete() {
+    public void delete() {
+        _index.clear();
         OffHeapFactory.store().delete(_nameMap);
     }
 
-    public synchronized void put(IMessage message) {
+    public void put(IMessage message) {
         // no need to handle broadcast messages
         if (message.getNodeEui().equalsIgnoreCase(IMessage.NODE_BROADCAST_ID)) {
             return;
         }
-        updateEmpty(message.getNodeEui());
-        ArrayList<IMessage> _queue = _map.get(message.getNodeEui());
-        _queue.add(message);
-        _logger.debug("Adding [key:{}, size:{}, {}] in to the map", message.getNodeEui(), _queue.size(), message);
-    }
-
-    public synchronized ArrayList<IMessage> get(String key) {
-        updateEmpty(key);
-        return _map.get(key);
+        synchronized (getLock(message.getNodeEui())) {
+            long _sequence = sequence.getAndIncrement();
+            _map.put(getKey(message.getNodeEui(), _sequence), message);
+            append(message.getNodeEui(), _sequence, message);
+            _logger.debug("Adding [key:{}, size:{}, {}] in to the map", message.getNodeEui(),
+                    _index.get(message.getNodeEui()).sequences.size(), message);
+        }
     }
 
-    public synchronized ArrayList<IMessage> remove(String key) {
-        updateEmpty(key);
-        ArrayList<IMessage> _queue = _map.remove(key);
-        _logger.debug("Removing[key:{}, size:{}] in to the map", key, _queue.size());
-        return _queue;
+    public ArrayList<IMessage> get(String key) {
+        ArrayList<IMessage> _messages = new ArrayList<IMessage>();
+        synchronized (getLock(key)) {
+            NodeLog _log = _index.get(key);
+            if (_log != null) {
+                for (Long _sequence : _log.sequences.keySet()) {
+                    IMessage _message = _map.get(getKey(key, _sequence));
+                    if (_message != null) {
+                        _messages.add(_message);
+                    }
+                }
+            }
+        }
+        return _messages;
     }
 
-    public synchronized boolean isEmpty(String key) {
-        updateEmpty(key);
-        return _map.get(key).isEmpty();
+    public ArrayList<IMessage> remove(String key) {
+        ArrayList<IMessage> _messages = new ArrayList<IMessage>();
+        synchronized (getLock(key)) {
+            NodeLog _log = _index.remove(key);
+            if (_log != null) {
+                Iterator<Long> _sequences = _log.sequences.keySet().iterator();
+                while (_sequences.hasNext()) {
+                    IMessage _message = _map.remove(getKey(key, _sequences.next()));
+                    if (_message != null) {
+                        _messages.add(_message);
+                    }
+                }
+            }
+        }
+        _logger.debug("Removing[key:{}, size:{}] in to the map", key, _messages.size());
+        return _messages;
     }
 
-    private synchronized void updateEmpty(String key) {
-        if (_map.get(key) == null) {
-            _map.put(key, new ArrayList<IMessage>());
+    public boolean isEmpty(String key) {
+        NodeLog _log = _index.get(key);
+        if (_log == null) {
+            return true;
+        }
+        synchronized (getLock(key)) {
+            return _log.sequences.isEmpty();
         }
     }
 }
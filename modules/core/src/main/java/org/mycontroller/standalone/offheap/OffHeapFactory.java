@@ -38,6 +38,7 @@ import lombok.extern.slf4j.Slf4j;
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class OffHeapFactory {
     private static final String MC_PERSISTENT_DIR = "mc/";
+    private static final String JOURNAL_DIR = "journal/";
     private static DB database = null;
     private static final ScheduledExecutorService COMMIT_SCHEDULER = Executors.newScheduledThreadPool(1);
     private static final long COMMIT_FREQUENCY = 30;
@@ -67,10 +68,42 @@ public class OffHeapFactory {
         }, COMMIT_FREQUENCY, COMMIT_FREQUENCY, TimeUnit.SECONDS);
     }
 
+    public enum QUEUE_TYPE {
+        MAPDB("MapDB"),
+        JOURNAL("Journal");
+
+        private String value;
+
+        private QUEUE_TYPE(String value) {
+            this.value = value;
+        }
+
+        public String getText() {
+            return this.value;
+        }
+
+        public static QUEUE_TYPE fromString(String text) {
+            if (text != null) {
+                for (QUEUE_TYPE type : QUEUE_TYPE.values()) {
+                    if (text.equalsIgnoreCase(type.getText())) {
+                        return type;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
     public static DB store() {
         return database;
     }
 
+    // journal queues are kept under MC_PERSISTENT_DIR, reset clears those too
+    public static String getJournalLocation(String name) {
+        return AppProperties.getInstance().getMcPersistentStoresLocation() + MC_PERSISTENT_DIR + JOURNAL_DIR
+                + name + "/";
+    }
+
     public static void close() {
         if (database == null) {
             _logger.info("Not initialized yet!");
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.operation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mycontroller.standalone.AppProperties;
+import org.mycontroller.standalone.operation.OperationUtils.OPERATION_TYPE;
+import org.mycontroller.standalone.operation.model.Operation;
+import org.mycontroller.standalone.rule.McRuleStateStore;
+import org.mycontroller.standalone.rule.RuleUtils;
+import org.mycontroller.standalone.rule.model.RuleDefinitionAbstract;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Executes the operations of triggered rules out of the rule evaluation thread. Each operation type has
+ * own executor and bounded queue, a slow email server does not hold the payload and script operations.
+ * An attempt is cancelled on timeout and retried with backoff, as well as an attempt failed with an exception.
+ * A timed out attempt which does not stop on cancel is not retried, it can still complete the send.
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+@Slf4j
+public class McOperationDispatcher {
+    private static final McOperationDispatcher _instance = new McOperationDispatcher();
+
+    private final HashMap<OPERATION_TYPE, ThreadPoolExecutor> executors =
+            new HashMap<OPERATION_TYPE, ThreadPoolExecutor>();
+    private final HashMap<OPERATION_TYPE, Counters> counters = new HashMap<OPERATION_TYPE, Counters>();
+    // runs the attempts, dispatcher thread waits with timeout
+    private ThreadPoolExecutor attemptExecutor = null;
+
+    private McOperationDispatcher() {
+        for (OPERATION_TYPE type : OPERATION_TYPE.values()) {
+            counters.put(type, new Counters());
+        }
+    }
+
+    public static McOperationDispatcher getInstance() {
+        return _instance;
+    }
+
+    static class Counters {
+        private final AtomicLong queued = new AtomicLong();
+        private final AtomicLong executed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong retried = new AtomicLong();
+        private final AtomicLong timedOut = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong latencyTotal = new AtomicLong();
+        private final AtomicLong latencyMax = new AtomicLong();
+    }
+
+    static class McThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        McThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    private synchronized ThreadPoolExecutor getExecutor(OPERATION_TYPE type) {
+        ThreadPoolExecutor executor = executors.get(type);
+        if (executor == null || executor.isShutdown()) {
+            int threads = AppProperties.getInstance().getOperationThreads();
+            executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<Runnable>(AppProperties.getInstance().getOperationQueueSize()),
+                    new McThreadFactory("operation-" + type.name().toLowerCase()),
+                    new ThreadPoolExecutor.AbortPolicy());
+            executor.allowCoreThreadTimeOut(true);
+            executors.put(type, executor);
+        }
+        return executor;
+    }
+
+    // one attempt thread for each dispatcher thread, rejects when the attempts are stuck
+    private synchronized ThreadPoolExecutor getAttemptExecutor() {
+        if (attemptExecutor == null || attemptExecutor.isShutdown()) {
+            int threads = AppProperties.getInstance().getOperationThreads() * OPERATION_TYPE.values().length;
+            attemptExecutor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                    new SynchronousQueue<Runnable>(),
+                    new McThreadFactory("operation-attempt"),
+                    new ThreadPoolExecutor.AbortPolicy());
+            attemptExecutor.allowCoreThreadTimeOut(true);
+        }
+        return attemptExecutor;
+    }
+
+    // returns as soon as the operations are queued
+    public void dispatch(RuleDefinitionAbstract ruleDefinition, List<Operation> operations) {
+        if (operations.isEmpty()) {
+            return;
+        }
+        // operations see the rule as it was on trigger
+        final RuleDefinitionAbstract snapshot = RuleUtils.getRuleDefinition(ruleDefinition.getRuleDefinitionTable());
+        snapshot.setActualValue(ruleDefinition.getActualValue());
+        snapshot.setActualUnit(ruleDefinition.getActualUnit());
+        for (final Operation operation : operations) {
+            final Counters _counters = counters.get(operation.getType());
+            try {
+                getExecutor(operation.getType()).execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        execute(snapshot, operation, _counters);
+                    }
+                });
+                _counters.queued.incrementAndGet();
+            } catch (RejectedExecutionException ex) {
+                _counters.rejected.incrementAndGet();
+                _logger.warn("Operation queue is full, dropped the operation:{} of the rule:{}",
+                        operation.getName(), ruleDefinition.getName());
+            }
+        }
+    }
+
+    private void execute(final RuleDefinitionAbstract ruleDefinition, final Operation operation,
+            Counters _counters) {
+        AppProperties properties = AppProperties.getInstance();
+        long backoff = properties.getOperationRetryBackoff();
+        int retryMax = properties.getOperationRetryMax();
+        // finished when the previous attempt returns, even after cancel
+        CountDownLatch previous = null;
+        for (int attempt = 0; attempt <= retryMax; attempt++) {
+            if (attempt > 0) {
+                try {
+                    long backoffEnd = System.currentTimeMillis() + backoff;
+                    if (!previous.await(backoff, TimeUnit.MILLISECONDS)) {
+                        // still running on blocking I/O, a retry can send twice
+                        _logger.warn("Operation:{} did not stop on timeout, not retried", operation.getName());
+                        break;
+                    }
+                    long wait = backoffEnd - System.currentTimeMillis();
+                    if (wait > 0) {
+                        Thread.sleep(wait);
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                _counters.retried.incrementAndGet();
+                backoff *= 2;
+            }
+            final CountDownLatch finished = new CountDownLatch(1);
+            previous = finished;
+            long start = System.currentTimeMillis();
+            Future<?> future = null;
+            try {
+                future = getAttemptExecutor().submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            // an operation instance is not executed concurrently
+                            synchronized (operation) {
+                                operation.execute(ruleDefinition);
+                            }
+                        } finally {
+                            finished.countDown();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                _logger.warn("Operation:{} not executed, all the attempt threads are busy", operation.getName());
+                break;
+            }
+            try {
+                future.get(properties.getOperationTimeout(), TimeUnit.MILLISECONDS);
+                long latency = System.currentTimeMillis() - start;
+                _counters.executed.incrementAndGet();
+                _counters.latencyTotal.addAndGet(latency);
+                long max = _counters.latencyMax.get();
+                while (latency > max && !_counters.latencyMax.compareAndSet(max, latency)) {
+                    max = _counters.latencyMax.get();
+                }
+                operation.setLastExecution(System.currentTimeMillis());
+                McRuleStateStore.getInstance().updateOperation(operation.getOperationTable());
+                return;
+            } catch (TimeoutException ex) {
+                future.cancel(true);
+                _counters.timedOut.incrementAndGet();
+                _logger.warn("Operation:{} timed out, attempt:{}", operation.getName(), attempt + 1);
+            } catch (InterruptedException ex) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException ex) {
+                _logger.error("Operation:{} failed, attempt:{}", operation.getName(), attempt + 1, ex.getCause());
+            }
+        }
+        _counters.failed.incrementAndGet();
+    }
+
+    public synchronized List<McOperationStatistics> getStatistics() {
+        List<McOperationStatistics> statistics = new ArrayList<McOperationStatistics>();
+        for (OPERATION_TYPE type : OPERATION_TYPE.values()) {
+            Counters _counters = counters.get(type);
+            ThreadPoolExecutor executor = executors.get(type);
+            long executed = _counters.executed.get();
+            statistics.add(McOperationStatistics.builder()
+                    .type(type.getText())
+                    .sizeQueue(executor != null ? executor.getQueue().size() : 0)
+                    .countQueued(_counters.queued.get())
+                    .countExecuted(executed)
+                    .countFailed(_counters.failed.get())
+                    .countRetried(_counters.retried.get())
+                    .countTimedOut(_counters.timedOut.get())
+                    .countRejected(_counters.rejected.get())
+                    .timeLatencyAverage(executed > 0 ? _counters.latencyTotal.get() / (double) executed : 0)
+                    .timeLatencyMax(_counters.latencyMax.get())
+                    .build());
+        }
+        return statistics;
+    }
+
+    // queued operations are executed before stop, up to the timeout
+    public void stop() {
+        List<ThreadPoolExecutor> _executors = null;
+        synchronized (this) {
+            _executors = new ArrayList<ThreadPoolExecutor>(executors.values());
+            executors.clear();
+        }
+        for (ThreadPoolExecutor executor : _executors) {
+            executor.shutdown();
+        }
+        try {
+            for (ThreadPoolExecutor executor : _executors) {
+                executor.awaitTermination(AppProperties.getInstance().getOperationTimeout(), TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException ex) {
+            _logger.error("Exception,", ex);
+        }
+        synchronized (this) {
+            if (attemptExecutor != null) {
+                attemptExecutor.shutdownNow();
+                attemptExecutor = null;
+            }
+        }
+        _logger.debug("Operation dispatcher stopped");
+    }
+}
@@ -29,6 +29,7 @@ import org.mycontroller.standalone.operation.model.OperationSendPayload;
 import org.mycontroller.standalone.operation.model.OperationSendPushbulletNote;
 import org.mycontroller.standalone.operation.model.OperationSendSMS;
 import org.mycontroller.standalone.operation.model.OperationSendTelegramBotMessage;
+import org.mycontroller.standalone.rule.McRuleRegistry;
 import org.mycontroller.standalone.rule.model.RuleDefinitionAbstract;
 import org.mycontroller.standalone.scheduler.SchedulerUtils;
 
@@ -146,6 +147,7 @@ public class OperationUtils {
         //Disable
         ruleDefinition.setEnabled(false);
         DaoUtils.getRuleDefinitionDao().update(ruleDefinition.getRuleDefinitionTable());
+        McRuleRegistry.getInstance().invalidate(ruleDefinition.getId());
     }
 
     public static void unloadOperationTimerJobs(Timer timer) {
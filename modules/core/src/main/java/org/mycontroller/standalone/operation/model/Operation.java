@@ -16,25 +16,22 @@
  */
 package org.mycontroller.standalone.operation.model;
 
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.HashMap;
 
-import javax.script.ScriptException;
-
 import org.mycontroller.standalone.db.tables.OperationTable;
 import org.mycontroller.standalone.db.tables.User;
 import org.mycontroller.standalone.operation.IOperationEngine;
 import org.mycontroller.standalone.operation.OperationUtils.OPERATION_TYPE;
-import org.mycontroller.standalone.scripts.McScript;
-import org.mycontroller.standalone.scripts.McScriptEngine;
-import org.mycontroller.standalone.scripts.McScriptEngineUtils;
-import org.mycontroller.standalone.scripts.McScriptEngineUtils.SCRIPT_TYPE;
-import org.mycontroller.standalone.scripts.McScriptException;
+import org.mycontroller.standalone.utils.McTemplateCache;
 
 import com.fasterxml.jackson.annotation.JsonGetter;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
+import freemarker.template.TemplateException;
+
 import lombok.Data;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
@@ -91,17 +88,12 @@ public abstract class Operation implements IOperationEngine {
     }
 
     public static String updateTemplate(String source, HashMap<String, Object> bindings) {
-        McScript mcTemplateScript = McScript.builder()
-                .type(SCRIPT_TYPE.OPERATION)
-                .engineName(McScriptEngineUtils.MC_TEMPLATE_ENGINE)
-                .data(source)
-                .bindings(bindings)
-                .build();
-        McScriptEngine templateEngine = new McScriptEngine(mcTemplateScript);
+        StringWriter writer = new StringWriter();
         try {
-            return (String) templateEngine.executeScript();
-        } catch (FileNotFoundException | McScriptException | ScriptException ex) {
-            _logger.error("Exception: {}", mcTemplateScript, ex);
+            McTemplateCache.getInstance().render(source, bindings, writer);
+            return writer.toString();
+        } catch (IOException | TemplateException ex) {
+            _logger.error("Exception: {}", source, ex);
             return "<pre>Exception: " + ex.getMessage() + "</pre>";
         }
     }
@@ -22,7 +22,6 @@ import java.util.HashMap;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.mycontroller.standalone.AppProperties;
-import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.db.tables.OperationTable;
 import org.mycontroller.standalone.db.tables.Timer;
 import org.mycontroller.standalone.operation.Notification;
@@ -136,9 +135,6 @@ public class OperationExecuteScript extends Operation {
         } catch (Exception ex) {
             _logger.error("Exception on {}", mcScript, ex);
         }
-        //Update last execution
-        setLastExecution(System.currentTimeMillis());
-        DaoUtils.getOperationDao().update(this.getOperationTable());
     }
 
 }
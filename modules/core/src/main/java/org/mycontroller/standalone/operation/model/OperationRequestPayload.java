@@ -20,7 +20,6 @@ import java.util.HashMap;
 
 import org.mycontroller.standalone.AppProperties.RESOURCE_TYPE;
 import org.mycontroller.standalone.McObjectManager;
-import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.db.tables.OperationTable;
 import org.mycontroller.standalone.db.tables.Timer;
 import org.mycontroller.standalone.model.ResourceModel;
@@ -104,10 +103,5 @@ public class OperationRequestPayload extends Operation {
         }
         ResourceModel resourceModel = new ResourceModel(resourceType, resourceId);
         McObjectManager.getMcActionEngine().executeRequestPayload(resourceModel);
-
-        //Update last execution
-        setLastExecution(System.currentTimeMillis());
-        DaoUtils.getOperationDao().update(this.getOperationTable());
-
     }
 }
@@ -23,7 +23,6 @@ import java.nio.file.Paths;
 import java.util.HashMap;
 
 import org.apache.commons.mail.EmailException;
-import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.db.tables.OperationTable;
 import org.mycontroller.standalone.db.tables.Timer;
 import org.mycontroller.standalone.email.EmailUtils;
@@ -144,9 +143,6 @@ public class OperationSendEmail extends Operation {
         HashMap<String, Object> bindings = (HashMap<String, Object>) getTemplateBindings().clone();
         bindings.put("notification", notification);
         sendEmail(emailBody, bindings);
-        //Update last execution
-        setLastExecution(System.currentTimeMillis());
-        DaoUtils.getOperationDao().update(this.getOperationTable());
     }
 
     @SuppressWarnings("unchecked")
@@ -182,7 +178,8 @@ public class OperationSendEmail extends Operation {
                     updateTemplate(emailSubject, bindings),
                     updateTemplate(emailBody, bindings));
         } catch (EmailException ex) {
-            _logger.error("Error on sending email, ", ex);
+            // failed attempt is retried by the operation dispatcher
+            throw new RuntimeException("Error on sending email", ex);
         }
     }
 
@@ -23,7 +23,6 @@ import org.mycontroller.standalone.AppProperties.RESOURCE_TYPE;
 import org.mycontroller.standalone.MC_LOCALE;
 import org.mycontroller.standalone.McObjectManager;
 import org.mycontroller.standalone.api.ForwardPayloadApi;
-import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.db.ResourceOperation;
 import org.mycontroller.standalone.db.ResourceOperationUtils.SEND_PAYLOAD_OPERATIONS;
 import org.mycontroller.standalone.db.tables.ForwardPayload;
@@ -163,10 +162,6 @@ public class OperationSendPayload extends Operation {
             //Adding a job to send payload with specified delay
             SchedulerUtils.loadTimerJob(timerSimple.getTimer(), properties);
         }
-        //Update last execution
-        setLastExecution(System.currentTimeMillis());
-        DaoUtils.getOperationDao().update(this.getOperationTable());
-
     }
 
     public void sendPayload(RESOURCE_TYPE resourceType, Integer resourceId, String payload) {
@@ -18,7 +18,6 @@ package org.mycontroller.standalone.operation.model;
 
 import java.util.HashMap;
 
-import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.db.tables.OperationTable;
 import org.mycontroller.standalone.db.tables.Timer;
 import org.mycontroller.standalone.operation.Notification;
@@ -30,7 +29,6 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
-import lombok.extern.slf4j.Slf4j;
 
 /**
  * @author Jeeva Kandasamy (jkandasa)
@@ -39,7 +37,6 @@ import lombok.extern.slf4j.Slf4j;
 @Data
 @EqualsAndHashCode(callSuper = true)
 @ToString
-@Slf4j
 public class OperationSendPushbulletNote extends Operation {
 
     public static final String KEY_TITLE = "title";
@@ -101,28 +98,20 @@ public class OperationSendPushbulletNote extends Operation {
             //This operation disabled, nothing to do.
             return;
         }
-        try {
-            Notification notification = new Notification(ruleDefinition, this);
-            HashMap<String, Object> bindings = new HashMap<String, Object>();
-            bindings.put("notification", notification);
-            if (body != null && body.trim().length() > 0) {
-                PushbulletUtils.sendNote(
-                        idens, emails, channelTags,
-                        updateTemplate(title, bindings),
-                        updateTemplate(body, bindings));
-            } else {
-                PushbulletUtils.sendNote(
-                        idens, emails, channelTags,
-                        updateTemplate(title, bindings),
-                        notification.toString());
-            }
-        } catch (Exception ex) {
-            _logger.error("Exception,", ex);
+        Notification notification = new Notification(ruleDefinition, this);
+        HashMap<String, Object> bindings = new HashMap<String, Object>();
+        bindings.put("notification", notification);
+        if (body != null && body.trim().length() > 0) {
+            PushbulletUtils.sendNote(
+                    idens, emails, channelTags,
+                    updateTemplate(title, bindings),
+                    updateTemplate(body, bindings));
+        } else {
+            PushbulletUtils.sendNote(
+                    idens, emails, channelTags,
+                    updateTemplate(title, bindings),
+                    notification.toString());
         }
-
-        //Update last execution
-        setLastExecution(System.currentTimeMillis());
-        DaoUtils.getOperationDao().update(this.getOperationTable());
     }
 
     @Override
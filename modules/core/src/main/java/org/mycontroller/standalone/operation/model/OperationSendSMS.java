@@ -18,7 +18,6 @@ package org.mycontroller.standalone.operation.model;
 
 import java.util.HashMap;
 
-import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.db.tables.OperationTable;
 import org.mycontroller.standalone.db.tables.Timer;
 import org.mycontroller.standalone.operation.Notification;
@@ -31,7 +30,6 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
-import lombok.extern.slf4j.Slf4j;
 
 /**
  * @author Jeeva Kandasamy (jkandasa)
@@ -40,7 +38,6 @@ import lombok.extern.slf4j.Slf4j;
 @Data
 @EqualsAndHashCode(callSuper = true)
 @ToString
-@Slf4j
 @NoArgsConstructor
 public class OperationSendSMS extends Operation {
 
@@ -91,21 +88,14 @@ public class OperationSendSMS extends Operation {
             throw new RuntimeException("Cannot execute send SMS without phone number! AlarmDefination name: "
                     + ruleDefinition.getName());
         }
-        try {
-            Notification notification = new Notification(ruleDefinition, this);
-            HashMap<String, Object> bindings = new HashMap<String, Object>();
-            bindings.put("notification", notification);
-            if (customMessage != null && customMessage.trim().length() > 0) {
-                SMSUtils.sendSMS(toPhoneNumbers, updateTemplate(customMessage, bindings));
-            } else {
-                SMSUtils.sendSMS(toPhoneNumbers, notification.toString());
-            }
-        } catch (Exception ex) {
-            _logger.error("Exception,", ex);
+        Notification notification = new Notification(ruleDefinition, this);
+        HashMap<String, Object> bindings = new HashMap<String, Object>();
+        bindings.put("notification", notification);
+        if (customMessage != null && customMessage.trim().length() > 0) {
+            SMSUtils.sendSMS(toPhoneNumbers, updateTemplate(customMessage, bindings));
+        } else {
+            SMSUtils.sendSMS(toPhoneNumbers, notification.toString());
         }
-        //Update last execution
-        setLastExecution(System.currentTimeMillis());
-        DaoUtils.getOperationDao().update(this.getOperationTable());
     }
 
     @Override
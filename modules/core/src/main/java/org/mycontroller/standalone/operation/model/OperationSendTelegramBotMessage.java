@@ -18,7 +18,6 @@ package org.mycontroller.standalone.operation.model;
 
 import java.util.HashMap;
 
-import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.db.tables.OperationTable;
 import org.mycontroller.standalone.db.tables.Timer;
 import org.mycontroller.standalone.operation.Notification;
@@ -31,7 +30,6 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
-import lombok.extern.slf4j.Slf4j;
 
 /**
  * @author Jeeva Kandasamy (jkandasa)
@@ -40,7 +38,6 @@ import lombok.extern.slf4j.Slf4j;
 @Data
 @EqualsAndHashCode(callSuper = true)
 @ToString
-@Slf4j
 @NoArgsConstructor
 public class OperationSendTelegramBotMessage extends Operation {
 
@@ -96,23 +93,16 @@ public class OperationSendTelegramBotMessage extends Operation {
                     "Cannot execute send telegram bot message without channelusername! RuleDefination name: "
                             + ruleDefinition.getName());
         }
-        try {
-            Notification notification = new Notification(ruleDefinition, this);
-            HashMap<String, Object> bindings = new HashMap<String, Object>();
-            bindings.put("notification", notification);
-            String textRaw = null;
-            if (customMessage != null && customMessage.trim().length() > 0) {
-                textRaw = updateTemplate(customMessage, bindings);
-            } else {
-                textRaw = notification.toString();
-            }
-            TelegramBotUtils.sendMessage(chatId, parseMode, textRaw);
-        } catch (Exception ex) {
-            _logger.error("Exception,", ex);
+        Notification notification = new Notification(ruleDefinition, this);
+        HashMap<String, Object> bindings = new HashMap<String, Object>();
+        bindings.put("notification", notification);
+        String textRaw = null;
+        if (customMessage != null && customMessage.trim().length() > 0) {
+            textRaw = updateTemplate(customMessage, bindings);
+        } else {
+            textRaw = notification.toString();
         }
-        //Update last execution
-        setLastExecution(System.currentTimeMillis());
-        DaoUtils.getOperationDao().update(this.getOperationTable());
+        TelegramBotUtils.sendMessage(chatId, parseMode, textRaw);
     }
 
     @Override
@@ -16,20 +16,32 @@
  */
 package org.mycontroller.standalone.provider;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
 import org.mycontroller.standalone.McThreadPoolFactory;
+import org.mycontroller.standalone.McThreadPoolFactory.POOL_TYPE;
 import org.mycontroller.standalone.eventbus.McEventBus;
 import org.mycontroller.standalone.eventbus.MessageStatus;
-import org.mycontroller.standalone.eventbus.MessageStatusHandler;
 import org.mycontroller.standalone.exceptions.NotSupportedException;
 import org.mycontroller.standalone.gateway.IGateway;
 import org.mycontroller.standalone.gateway.config.GatewayConfig;
 import org.mycontroller.standalone.message.IMessage;
 import org.mycontroller.standalone.message.McMessageUtils;
 import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_STATUS;
+import org.mycontroller.standalone.offheap.IQueue;
 import org.mycontroller.standalone.offheap.MessageQueueImpl;
+import org.mycontroller.standalone.offheap.MessageQueueJournalImpl;
+import org.mycontroller.standalone.offheap.OffHeapFactory.QUEUE_TYPE;
 import org.mycontroller.standalone.offheap.MessageQueueSleepImpl;
 
-import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.Handler;
+import io.vertx.core.eventbus.Message;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -40,26 +52,54 @@ import lombok.extern.slf4j.Slf4j;
 public abstract class EngineAbstract implements IEngine {
     private volatile boolean exit = false;
     private volatile boolean stopped = true;
-    protected MessageQueueImpl _queue;
+    protected IQueue<IMessage> _queue;
     protected MessageQueueSleepImpl _queueSleep;
     protected IGateway _gateway;
     protected IExecutor _executor;
+    private volatile ExecutorLanes _executorLanes;
     private long auditStartTime = 0;
     private long gatewayAuditTime = 0;
     private EngineStatistics _statistics = new EngineStatistics();
     private static final String STREAM_MESSAGE = McMessageUtils.MESSAGE_TYPE.C_STREAM.getText();
+    // maximum time engine thread parks when there is no event, routine tasks executed at least this frequency
+    private static final long MAXIMUM_IDLE_WAIT = 1000L;
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+    private static final long TX_TIMER_TICK = 10L;
+    private static final int TX_TIMER_WHEEL_SIZE = 512;
+
+    // Tx messages waiting for ack, key: event topic
+    private final HashMap<String, TxInFlightMessage> _txInFlight = new HashMap<String, TxInFlightMessage>();
+    // Tx messages waiting for a free slot in the window or for the ack of a message with the same topic
+    private final LinkedList<IMessage> _txDeferred = new LinkedList<IMessage>();
+    // topics of the acknowledged messages, updated from event bus thread
+    private final ConcurrentLinkedQueue<String> _txAcknowledged = new ConcurrentLinkedQueue<String>();
+    private final TimerWheel<TxInFlightMessage> _txTimer = new TimerWheel<TxInFlightMessage>(
+            TX_TIMER_TICK, TX_TIMER_WHEEL_SIZE);
+    private final Object _txSignal = new Object();
 
     public EngineAbstract(GatewayConfig _config) {
         if (_queue == null) {
-            _queue = new MessageQueueImpl(String.valueOf(_config.getId()));
+            if (_config.getQueueType() == QUEUE_TYPE.JOURNAL) {
+                _queue = new MessageQueueJournalImpl(String.valueOf(_config.getId()), _config.getQueueSyncInterval());
+            } else {
+                _queue = new MessageQueueImpl(String.valueOf(_config.getId()));
+            }
             _queueSleep = new MessageQueueSleepImpl(String.valueOf(_config.getId()));
         }
     }
 
     public EngineStatistics processingRate() {
-        return _statistics.clone();
+        EngineStatistics statistics = _statistics.clone();
+        ExecutorLanes executorLanes = _executorLanes;
+        if (executorLanes != null) {
+            statistics.setLanes(executorLanes.statistics());
+        }
+        return statistics;
     }
 
+    // returns new executor instance, used for executor lanes
+    protected abstract IExecutor newExecutor();
+
     public void routineTasks() {
         // override this and do not block!
     }
@@ -67,7 +107,7 @@ public abstract class EngineAbstract implements IEngine {
     @Override
     public void start() {
         // Add it in to thread pool
-        McThreadPoolFactory.execute(this);
+        McThreadPoolFactory.execute(POOL_TYPE.IO_LISTENER, this);
         _logger.debug("{}", _gateway.config());
     }
 
@@ -126,25 +166,135 @@ public abstract class EngineAbstract implements IEngine {
         // start the gateway
         _gateway.connect();
         _logger.debug("Gateway started successfully. {}", _gateway.config());
+        startExecutorLanes();
 
         while (!exit) {
             try {
+                long cpuTime = getCurrentThreadCpuTime();
+                boolean idle = _queue.isEmpty() && _txAcknowledged.isEmpty();
                 auditGateway();
                 auditQueue();
                 routineTasks();
                 _statistics.updateLastMinuteStatus();
+                waitForEvent();
+                if (idle) {
+                    _statistics.updateIdleCpuTime(getCurrentThreadCpuTime() - cpuTime);
+                }
             } catch (Exception ex) {
                 _logger.error("Exception,", ex);
             }
         }
+        clearTxInFlight();
+        stopExecutorLanes();
+        _queue.close();
         _gateway.disconnect();
         _logger.debug("Terminatted... ");
         stopped = true;
     }
 
+    private void startExecutorLanes() {
+        Integer lanes = _gateway.config().getExecutorLanes();
+        if (lanes == null || lanes < 1) {
+            return;
+        }
+        ArrayList<IExecutor> executors = new ArrayList<IExecutor>();
+        for (int index = 0; index < lanes; index++) {
+            executors.add(newExecutor());
+        }
+        _executorLanes = new ExecutorLanes("mc-gw-" + _gateway.config().getId(), executors);
+    }
+
+    // messages not executed on the lanes go back to the queue, ahead of the messages still in the queue
+    private void stopExecutorLanes() {
+        if (_executorLanes != null) {
+            List<IMessage> messages = _executorLanes.shutdown();
+            _executorLanes = null;
+            if (!messages.isEmpty()) {
+                while (!_queue.isEmpty()) {
+                    messages.add(_queue.take());
+                }
+                for (IMessage message : messages) {
+                    _queue.add(message);
+                }
+            }
+        }
+    }
+
+    // executes the message on a lane, if lanes are enabled. Otherwise on the engine thread
+    private void execute(IMessage message) {
+        if (_executorLanes != null) {
+            _executorLanes.execute(message);
+        } else {
+            _executor.execute(message);
+        }
+    }
+
     @Override
     public void stop() {
         exit = true;
+        // engine thread closes the queue on exit, close it here if the engine never started
+        if (stopped) {
+            _queue.close();
+        }
+        // release engine thread, if it is waiting for an event
+        signal();
+    }
+
+    // wakes up engine thread, if it is waiting for an event
+    private void signal() {
+        synchronized (_txSignal) {
+            _txSignal.notifyAll();
+        }
+        _queue.wakeUp();
+    }
+
+    // parks engine thread till a message or an ack arrives, reconnect or retry is due or idle wait time elapsed
+    private void waitForEvent() {
+        if (exit || !_txAcknowledged.isEmpty() || getTxDeferredReadyIndex() != -1) {
+            return;
+        }
+        boolean canTake = _txDeferred.size() < getTxWindowSize();
+        if (canTake && !_queue.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long waitTime = MAXIMUM_IDLE_WAIT;
+        if (!_gateway.isUp()) {
+            long reconnectIn = gatewayAuditTime + (_gateway.config().getReconnectDelay() * 1000L) - now;
+            if (reconnectIn <= 0) {
+                return;
+            }
+            waitTime = Math.min(waitTime, reconnectIn);
+        }
+        for (TxInFlightMessage inFlight : _txInFlight.values()) {
+            // timer wheel releases the deadlines on tick boundary
+            long expiresAt = ((inFlight.getDeadline() + TX_TIMER_TICK - 1) / TX_TIMER_TICK) * TX_TIMER_TICK;
+            waitTime = Math.min(waitTime, Math.max(expiresAt - now, 1L));
+        }
+        boolean eventAvailable;
+        if (canTake) {
+            eventAvailable = _queue.await(waitTime);
+        } else {
+            // deferred list is full, new messages can not be taken. wait for an ack or a retry deadline
+            synchronized (_txSignal) {
+                if (_txAcknowledged.isEmpty() && !exit) {
+                    try {
+                        _txSignal.wait(waitTime);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+            eventAvailable = !_txAcknowledged.isEmpty();
+        }
+        _statistics.incrementWakeupCount(eventAvailable);
+    }
+
+    private long getCurrentThreadCpuTime() {
+        if (THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() && THREAD_MX_BEAN.isThreadCpuTimeEnabled()) {
+            return THREAD_MX_BEAN.getCurrentThreadCpuTime();
+        }
+        return 0L;
     }
 
     //  checks gateway status, if it is not running make it UP
@@ -161,10 +311,6 @@ public abstract class EngineAbstract implements IEngine {
     }
 
     private void sleep(long sleepDuration) {
-        sleep(sleepDuration, null);
-    }
-
-    private void sleep(long sleepDuration, MessageStatusHandler handler) {
         try {
             while (sleepDuration > 0) {
                 sleepDuration -= 10L;
@@ -172,122 +318,218 @@ public abstract class EngineAbstract implements IEngine {
                 if (exit) {
                     return;
                 }
-                if (handler != null && handler.getStatusMessage() != null) {
-                    return;
-                }
             }
         } catch (InterruptedException ex) {
             _logger.warn("Sleep interrupted", ex);
         }
     }
 
+    private int getTxWindowSize() {
+        Integer windowSize = _gateway.config().getTxWindowSize();
+        if (windowSize == null || windowSize < 1) {
+            return 1;
+        }
+        return windowSize;
+    }
+
+    private boolean isAckRequired(IMessage message) {
+        if (!_gateway.config().getAckEnabled()) {
+            return false;
+        }
+        // check ack enabled and if it is node broadcast message we will not get ack
+        if (message.getNodeEui().equalsIgnoreCase(IMessage.NODE_BROADCAST_ID)) {
+            return false;
+        } else if (STREAM_MESSAGE.equalsIgnoreCase(message.getType())) {
+            return _gateway.config().getStreamAckEnabled();
+        }
+        return true;
+    }
+
+    // returns index of the first deferred message can be sent now, otherwise -1
+    private int getTxDeferredReadyIndex() {
+        if (_txDeferred.isEmpty() || _txInFlight.size() >= getTxWindowSize()) {
+            return -1;
+        }
+        int index = 0;
+        for (IMessage message : _txDeferred) {
+            if (!_txInFlight.containsKey(message.getEventTopic())) {
+                return index;
+            }
+            index++;
+        }
+        return -1;
+    }
+
+    private void sendWithAck(IMessage message) {
+        final String topic = message.getEventTopic();
+        // set acknowledgement request
+        message.setAck(IMessage.ACK_REQUEST);
+        TxInFlightMessage inFlight = TxInFlightMessage.builder()
+                .message(message)
+                .retry(1)
+                .startTime(auditStartTime)
+                .build();
+        inFlight.setConsumer(McEventBus.getInstance().registerConsumer(topic,
+                new Handler<Message<MessageStatus>>() {
+                    @Override
+                    public void handle(Message<MessageStatus> event) {
+                        if (event.body().getStatus() == MESSAGE_STATUS.ACK_RECEIVED) {
+                            _txAcknowledged.add(topic);
+                            signal();
+                        }
+                    }
+                }));
+        _txInFlight.put(topic, inFlight);
+        writeTxInFlight(inFlight);
+    }
+
+    private void writeTxInFlight(TxInFlightMessage inFlight) {
+        _logger.debug("Retry count {} of {}, {}",
+                inFlight.getRetry(), _gateway.config().getFailedRetryCount(), inFlight.getMessage());
+        // schedule the retry deadline first, failed write will be retried on expire
+        inFlight.setDeadline(System.currentTimeMillis() + _gateway.config().getAckWaitTime());
+        _txTimer.schedule(inFlight, inFlight.getDeadline());
+        _gateway.write(inFlight.getMessage()); // send to _gateway
+        // A delay to avoid collisions on any networks with continues messages. Only for Tx message
+        sleep(_gateway.config().getTxDelay());
+    }
+
+    // completes acknowledged messages, resends or fails the messages reached retry deadline
+    private void auditTxInFlight() {
+        String topic;
+        while ((topic = _txAcknowledged.poll()) != null) {
+            TxInFlightMessage inFlight = _txInFlight.remove(topic);
+            if (inFlight == null) {
+                continue;
+            }
+            inFlight.getConsumer().unregister();
+            try {
+                execute(inFlight.getMessage());
+            } catch (NotSupportedException ex) {
+                _logger.error("NotSupported: {}. Dropping {}", ex.getMessage(), inFlight.getMessage());
+            } catch (Exception ex) {
+                _logger.error("Throws exception while processing!, [{}]", inFlight.getMessage(), ex);
+            }
+            McEventBus.getInstance().publish(
+                    topic,
+                    MessageStatus.builder()
+                            .status(MESSAGE_STATUS.SUCCESS).message("Retry count: " + inFlight.getRetry())
+                            .build());
+            _statistics.update(System.currentTimeMillis() - inFlight.getStartTime(), true);
+        }
+        if (_txTimer.size() == 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (TxInFlightMessage inFlight : _txTimer.expire(now)) {
+            String inFlightTopic = inFlight.getMessage().getEventTopic();
+            // skip, if it is already completed or rescheduled
+            if (_txInFlight.get(inFlightTopic) != inFlight || inFlight.getDeadline() > now) {
+                continue;
+            }
+            if (inFlight.getRetry() < _gateway.config().getFailedRetryCount() && _gateway.isUp()) {
+                inFlight.setRetry(inFlight.getRetry() + 1);
+                try {
+                    writeTxInFlight(inFlight);
+                    continue;
+                } catch (Exception ex) {
+                    _logger.error("Throws exception while processing!, [{}]", inFlight.getMessage(), ex);
+                }
+            }
+            _txInFlight.remove(inFlightTopic);
+            inFlight.getConsumer().unregister();
+            _logger.info("Seems like failed to send this message. "
+                    + "There is no ACK received! Retried {} time(s). {}",
+                    inFlight.getRetry(), inFlight.getMessage());
+            _statistics.incrementFailureCount();
+            // notify it is failed, "ack not received"
+            McEventBus.getInstance().publish(
+                    inFlightTopic,
+                    MessageStatus.builder().status(MESSAGE_STATUS.NO_ACK_RECEIVED)
+                            .message("Failed retry count:" + inFlight.getRetry()).build()
+                    );
+            _statistics.update(System.currentTimeMillis() - inFlight.getStartTime(), true);
+        }
+    }
+
+    private void clearTxInFlight() {
+        for (TxInFlightMessage inFlight : _txInFlight.values()) {
+            inFlight.getConsumer().unregister();
+        }
+        _txInFlight.clear();
+        _txDeferred.clear();
+        _txAcknowledged.clear();
+        _txTimer.clear();
+    }
+
     public void auditQueue() {
         // Update queue size
         _statistics.setSizeQueue(_queue.size());
-        if (_statistics.getSizeQueue() > 0) {
-            IMessage message = _queue.take();
-            // if null message return it.
-            if (message == null) {
+        auditTxInFlight();
+        _statistics.setSizeTxInFlight(_txInFlight.size());
+
+        IMessage message = null;
+        int deferredIndex = getTxDeferredReadyIndex();
+        if (deferredIndex != -1) {
+            message = _txDeferred.remove(deferredIndex);
+        } else {
+            // do not take new messages, when deferred list is full
+            if (_queue.isEmpty() || _txDeferred.size() >= getTxWindowSize()) {
                 return;
             }
-            if (!_gateway.isUp()) {
-                // TODO: notify it is failed, "Gateway not ready"
-                McEventBus.getInstance().publish(
-                        message.getEventTopic(),
-                        MessageStatus.builder()
-                                .status(MESSAGE_STATUS.GATEWAY_NOT_AVAILABLE).message("Gateway not available")
-                                .build());
+            message = _queue.take();
+            // if null message return it.
+            if (message == null) {
                 return;
             }
-            auditStartTime = System.currentTimeMillis();
-            _logger.debug("Processing:[{}]", message);
-            try {
-                if (message.isTxMessage()) {
-
-                    boolean ackEnabled = false;
-                    if (_gateway.config().getAckEnabled()) {
-                        // check ack enabled and if it is node broadcast message we will not get ack
-                        if (message.getNodeEui().equalsIgnoreCase(IMessage.NODE_BROADCAST_ID)) {
-                            ackEnabled = false;
-                        } else if (STREAM_MESSAGE.equalsIgnoreCase(message.getType())) {
-                            ackEnabled = _gateway.config().getStreamAckEnabled();
-                        } else {
-                            ackEnabled = true;
-                        }
-                    }
-
-                    if (ackEnabled) {
-                        // set acknowledgement request
-                        message.setAck(IMessage.ACK_REQUEST);
-                        MessageConsumer<MessageStatus> _consumer = null;
-                        try {
-                            MessageStatusHandler _handler = new MessageStatusHandler();
-                            _consumer = McEventBus.getInstance().registerConsumer(message.getEventTopic(), _handler);
-                            for (int retry = 1; retry <= _gateway.config().getFailedRetryCount(); retry++) {
-                                _logger.debug("Retry count {} of {}, {}",
-                                        retry, _gateway.config().getFailedRetryCount(), message);
-                                _gateway.write(message); // send to _gateway
-                                sleep(_gateway.config().getAckWaitTime()); // wait for ack delay
-                                if (exit) {
-                                    return;
-                                }
-                                // if we received ack send it to next process
-                                if (_handler.getStatusMessage() != null
-                                        && _handler.getStatusMessage().getStatus() == MESSAGE_STATUS.ACK_RECEIVED) {
-                                    _executor.execute(message);
-                                    McEventBus.getInstance().publish(
-                                            message.getEventTopic(),
-                                            MessageStatus.builder()
-                                                    .status(MESSAGE_STATUS.SUCCESS).message("Retry count: " + retry)
-                                                    .build());
-                                    break;
-                                }
-                                if (retry == _gateway.config().getFailedRetryCount()) {
-                                    _logger.info("Seems like failed to send this message. "
-                                            + "There is no ACK received! Retried {} time(s). {}",
-                                            _gateway.config().getFailedRetryCount(), message);
-                                    _statistics.incrementFailureCount();
-                                    // notify it is failed, "ack not received"
-                                    McEventBus.getInstance().publish(
-                                            message.getEventTopic(),
-                                            MessageStatus.builder().status(MESSAGE_STATUS.NO_ACK_RECEIVED)
-                                                    .message("Failed retry count:" + retry).build()
-                                            );
-                                }
-                            }
-                        } finally {
-                            if (_consumer != null) {
-                                _consumer.unregister();
-                            }
-                        }
+        }
+        if (!_gateway.isUp()) {
+            // TODO: notify it is failed, "Gateway not ready"
+            McEventBus.getInstance().publish(
+                    message.getEventTopic(),
+                    MessageStatus.builder()
+                            .status(MESSAGE_STATUS.GATEWAY_NOT_AVAILABLE).message("Gateway not available")
+                            .build());
+            return;
+        }
+        auditStartTime = System.currentTimeMillis();
+        _logger.debug("Processing:[{}]", message);
+        boolean completed = true;
+        try {
+            if (message.isTxMessage()) {
+                if (isAckRequired(message)) {
+                    // one message per topic can wait for ack, acks are identified only by topic
+                    if (_txInFlight.size() >= getTxWindowSize()
+                            || _txInFlight.containsKey(message.getEventTopic())) {
+                        _txDeferred.add(message);
                     } else {
-                        _gateway.write(message); // send to _gateway
-                        _executor.execute(message);
-                        McEventBus.getInstance().publish(
-                                message.getEventTopic(),
-                                MessageStatus.builder()
-                                        .status(MESSAGE_STATUS.SUCCESS).message("Retry count: 0").build());
+                        sendWithAck(message);
                     }
+                    // statistics will be updated on ack received or on failure
+                    completed = false;
+                } else {
+                    _gateway.write(message); // send to _gateway
+                    execute(message);
+                    McEventBus.getInstance().publish(
+                            message.getEventTopic(),
+                            MessageStatus.builder()
+                                    .status(MESSAGE_STATUS.SUCCESS).message("Retry count: 0").build());
                     // A delay to avoid collisions on any networks with continues messages. Only for Tx message
                     sleep(_gateway.config().getTxDelay());
-                } else {
-                    _executor.execute(message);
                 }
-            } catch (NotSupportedException ex) {
-                _logger.error("NotSupported: {}. Dropping {}", ex.getMessage(), message);
-            } catch (Exception ex) {
-                _logger.error("Throws exception while processing!, [{}]", message, ex);
-            } finally {
+            } else {
+                execute(message);
+            }
+        } catch (NotSupportedException ex) {
+            _logger.error("NotSupported: {}. Dropping {}", ex.getMessage(), message);
+        } catch (Exception ex) {
+            _logger.error("Throws exception while processing!, [{}]", message, ex);
+        } finally {
+            if (completed) {
                 // update last message time to processing rate table
                 _statistics.update(System.currentTimeMillis() - auditStartTime, message.isTxMessage());
                 _logger.debug("{}", _statistics);
             }
         }
-        // sleep here to reduce CPU load, in nanoseconds
-        try {
-            Thread.sleep(0, 333333);
-        } catch (InterruptedException ex) {
-            _logger.error("Exception, ", ex);
-        }
     }
 }
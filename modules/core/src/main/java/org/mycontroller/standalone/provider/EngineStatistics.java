@@ -16,6 +16,8 @@
  */
 package org.mycontroller.standalone.provider;
 
+import java.util.List;
+
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -44,9 +46,22 @@ public class EngineStatistics implements Cloneable {
     private long countFailure;
 
     private long sizeQueue;
+    private long sizeTxInFlight;
     private long timestamp;
     private long timestampCurrentMinute;
 
+    // engine thread wakeups and CPU time(in milliseconds) spent on the iterations without any message
+    private long countWakeup;
+    private long countWakeupIdle;
+    private long countWakeupLastMinute;
+    private long countWakeupCurrentMinute;
+    private double timeCpuIdle;
+    private double timeCpuIdleLastMinute;
+    private double timeCpuIdleCurrentMinute;
+
+    // available only when the messages are executed on lanes
+    private List<ExecutorLaneStatistics> lanes;
+
     public EngineStatistics() {
         clear();
     }
@@ -65,14 +80,43 @@ public class EngineStatistics implements Cloneable {
         countCurrentMinute = 0;
 
         sizeQueue = 0;
+        sizeTxInFlight = 0;
         timestamp = 0;
         timestampCurrentMinute = 0;
+
+        countWakeup = 0;
+        countWakeupIdle = 0;
+        countWakeupLastMinute = 0;
+        countWakeupCurrentMinute = 0;
+        timeCpuIdle = 0;
+        timeCpuIdleLastMinute = 0;
+        timeCpuIdleCurrentMinute = 0;
+
+        lanes = null;
     }
 
     public void incrementFailureCount() {
         countFailure++;
     }
 
+    public void incrementWakeupCount(boolean messageAvailable) {
+        countWakeup++;
+        countWakeupCurrentMinute++;
+        if (!messageAvailable) {
+            countWakeupIdle++;
+        }
+    }
+
+    // cpu time in nanoseconds
+    public void updateIdleCpuTime(long cpuTime) {
+        if (cpuTime <= 0) {
+            return;
+        }
+        double cpuTimeMillis = cpuTime / 1000000.0;
+        timeCpuIdle += cpuTimeMillis;
+        timeCpuIdleCurrentMinute += cpuTimeMillis;
+    }
+
     public void update(long timeTaken, boolean isTxMessage) {
         timeLastMessage = timeTaken;
         //if sample goes beyond MAXIMUM_SAMPLES, reset it to avoid big calculations.
@@ -115,6 +159,10 @@ public class EngineStatistics implements Cloneable {
             countLastMinute = countCurrentMinute;
             timeAverageCurrentMinute = 0;
             countCurrentMinute = 0;
+            countWakeupLastMinute = countWakeupCurrentMinute;
+            countWakeupCurrentMinute = 0;
+            timeCpuIdleLastMinute = timeCpuIdleCurrentMinute;
+            timeCpuIdleCurrentMinute = 0;
         }
     }
 
@@ -130,8 +178,16 @@ public class EngineStatistics implements Cloneable {
                 .countLastMinute(countLastMinute)
                 .countFailure(countFailure)
                 .sizeQueue(sizeQueue)
+                .sizeTxInFlight(sizeTxInFlight)
                 .timestamp(timestamp)
                 .timestampCurrentMinute(timestampCurrentMinute)
+                .countWakeup(countWakeup)
+                .countWakeupIdle(countWakeupIdle)
+                .countWakeupLastMinute(countWakeupLastMinute)
+                .countWakeupCurrentMinute(countWakeupCurrentMinute)
+                .timeCpuIdle(timeCpuIdle)
+                .timeCpuIdleLastMinute(timeCpuIdleLastMinute)
+                .timeCpuIdleCurrentMinute(timeCpuIdleCurrentMinute)
                 .build();
     }
 }
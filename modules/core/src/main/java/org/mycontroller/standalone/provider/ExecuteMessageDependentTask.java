@@ -20,12 +20,14 @@ import java.util.List;
 
 import org.mycontroller.standalone.AppProperties.RESOURCE_TYPE;
 import org.mycontroller.standalone.McThreadPoolFactory;
+import org.mycontroller.standalone.McThreadPoolFactory.POOL_TYPE;
 import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.db.tables.ForwardPayload;
 import org.mycontroller.standalone.db.tables.SensorVariable;
 import org.mycontroller.standalone.externalserver.ExternalServerExecuter;
 import org.mycontroller.standalone.fwpayload.ExecuteForwardPayload;
 import org.mycontroller.standalone.metrics.DATA_TYPE;
+import org.mycontroller.standalone.metrics.McMetricsHotCache;
 import org.mycontroller.standalone.metrics.MetricsUtils;
 import org.mycontroller.standalone.metrics.model.DataPointer;
 import org.mycontroller.standalone.model.ResourceModel;
@@ -49,14 +51,15 @@ public class ExecuteMessageDependentTask implements Runnable {
         // forward payload to another sensor variable
         List<ForwardPayload> _frwPls = DaoUtils.getForwardPayloadDao().getAllEnabled(_sv.getId());
         if (_frwPls != null && !_frwPls.isEmpty()) {
-            McThreadPoolFactory.execute(new ExecuteForwardPayload(_frwPls, _sv));
+            McThreadPoolFactory.execute(POOL_TYPE.DEPENDENT_TASK, new ExecuteForwardPayload(_frwPls, _sv));
         }
 
         // Send Payload to external server
-        McThreadPoolFactory.execute(new ExternalServerExecuter(_sv));
+        McThreadPoolFactory.execute(POOL_TYPE.OUTBOUND, new ExternalServerExecuter(_sv));
 
         // update metric data to metric engine
         try {
+            McMetricsHotCache.getInstance().add(_sv);
             MetricsUtils.engine().post(DataPointer.builder()
                     .payload(_sv.getValue())
                     .timestamp(_sv.getTimestamp())
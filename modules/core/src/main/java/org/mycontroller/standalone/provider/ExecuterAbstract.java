@@ -23,9 +23,11 @@ import org.mycontroller.standalone.AppProperties;
 import org.mycontroller.standalone.AppProperties.RESOURCE_TYPE;
 import org.mycontroller.standalone.AppProperties.STATE;
 import org.mycontroller.standalone.McThreadPoolFactory;
+import org.mycontroller.standalone.McThreadPoolFactory.POOL_TYPE;
 import org.mycontroller.standalone.api.GoogleAnalyticsApi;
 import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.db.NodeUtils.NODE_REGISTRATION_STATE;
+import org.mycontroller.standalone.db.ResourcesRegistry;
 import org.mycontroller.standalone.db.tables.GatewayTable;
 import org.mycontroller.standalone.db.tables.MetricsGPSTypeDevice;
 import org.mycontroller.standalone.db.tables.Node;
@@ -45,8 +47,9 @@ import org.mycontroller.standalone.metrics.MetricsUtils;
 import org.mycontroller.standalone.metrics.MetricsUtils.METRIC_TYPE;
 import org.mycontroller.standalone.metrics.model.DataPointer;
 import org.mycontroller.standalone.model.ResourceModel;
-import org.mycontroller.standalone.offheap.MessageQueueImpl;
+import org.mycontroller.standalone.offheap.IQueue;
 import org.mycontroller.standalone.offheap.MessageQueueSleepImpl;
+import org.mycontroller.standalone.rule.McRuleEventBus;
 import org.mycontroller.standalone.utils.McUtils;
 
 import lombok.extern.slf4j.Slf4j;
@@ -59,11 +62,15 @@ import lombok.extern.slf4j.Slf4j;
 public abstract class ExecuterAbstract implements IExecutor {
     protected IMessage _message;
     private long startTime = 0;
+    // resources resolved while executing the message, used on resources log
+    private Integer _nodeId = null;
+    private Integer _sensorId = null;
+    private Integer _sensorVariableId = null;
 
-    protected MessageQueueImpl _queue;
+    protected IQueue<IMessage> _queue;
     protected MessageQueueSleepImpl _queueSleep;
 
-    public ExecuterAbstract(MessageQueueImpl _queue, MessageQueueSleepImpl _queueSleep) {
+    public ExecuterAbstract(IQueue<IMessage> _queue, MessageQueueSleepImpl _queueSleep) {
         this._queue = _queue;
         this._queueSleep = _queueSleep;
     }
@@ -80,6 +87,9 @@ public abstract class ExecuterAbstract implements IExecutor {
 
         // clone the message and do process
         this._message = _message.clone();
+        _nodeId = null;
+        _sensorId = null;
+        _sensorVariableId = null;
 
         try {
             _logger.debug("Processing {}", _message);
@@ -118,9 +128,7 @@ public abstract class ExecuterAbstract implements IExecutor {
             //update node last seen and status as UP
             if (!_message.isTxMessage()) {
                 if (!_message.getNodeEui().equalsIgnoreCase(IMessage.NODE_BROADCAST_ID)) {
-                    Node node = getNode();
-                    node.setState(STATE.UP);
-                    updateNode(node);
+                    updateNodeStateUp(getNode());
                 }
             }
         } finally {
@@ -131,7 +139,8 @@ public abstract class ExecuterAbstract implements IExecutor {
             _message = null;
         }
         // do log on database
-        McThreadPoolFactory.execute(new ResourcesLogger(_message_for_resources_log));
+        ResourcesLogsPipeline.getInstance().add(
+                new ResourcesLogger(_message_for_resources_log, _nodeId, _sensorId, _sensorVariableId));
     }
 
     public void executeInternal() {
@@ -146,7 +155,7 @@ public abstract class ExecuterAbstract implements IExecutor {
                     return;
                 }
                 node.setBatteryLevel(_message.getPayload());
-                updateNode(node);
+                updateNodeState(node);
                 //Update battery level in to metrics table
                 MetricsUtils.engine().post(DataPointer.builder()
                         .payload(_message.getPayload())
@@ -248,9 +257,7 @@ public abstract class ExecuterAbstract implements IExecutor {
                 if (_message.isTxMessage()) {
                     return;
                 }
-                node = getNode();
-                node.setState(STATE.UP);
-                updateNode(node);
+                updateNodeStateUp(getNode());
                 moveSleepQueueToNormalQueue();
                 break;
             case I_DISCOVER:
@@ -296,7 +303,7 @@ public abstract class ExecuterAbstract implements IExecutor {
                 }
                 node = getNode();
                 node.setRssi(_message.getPayload());
-                updateNode(node);
+                updateNodeState(node);
                 return;
             case I_PROPERTIES:
                 if (_message.isTxMessage()) {
@@ -338,6 +345,7 @@ public abstract class ExecuterAbstract implements IExecutor {
                 }
                 DaoUtils.getSensorDao().update(sensor);
             }
+            _sensorId = sensor.getId();
         }
         _logger.debug("Presentation Message[type:{},payload:{}]",
                 MESSAGE_TYPE_PRESENTATION.fromString(_message.getSubType()),
@@ -371,7 +379,7 @@ public abstract class ExecuterAbstract implements IExecutor {
             return;
         }
         sensor.setLastSeen(System.currentTimeMillis());
-        DaoUtils.getSensorDao().update(sensor);
+        ResourcesRegistry.getInstance().updateSensorLastSeen(sensor);
 
         // execute other tasks like, log in metric table, rule engine, forward payload,etc...
         executeDependentTask(_sv);
@@ -379,8 +387,11 @@ public abstract class ExecuterAbstract implements IExecutor {
 
     public void executeRequest() {
         Sensor sensor = getSensor();
-        SensorVariable sensorVariable = DaoUtils.getSensorVariableDao().get(sensor.getId(),
+        SensorVariable sensorVariable = ResourcesRegistry.getInstance().getSensorVariable(sensor.getId(),
                 MESSAGE_TYPE_SET_REQ.fromString(_message.getSubType()));
+        if (sensorVariable != null) {
+            _sensorVariableId = sensorVariable.getId();
+        }
         if (_message.isTxMessage()) {
             if (sensorVariable == null) {
                 //throw new McBadRequestException("Selected sensor variable is not available!");
@@ -437,9 +448,13 @@ public abstract class ExecuterAbstract implements IExecutor {
         if (!node.getSmartSleepEnabled()) {
             node.setSmartSleepEnabled(true);
         }
+        boolean stateChanged = node.getState() != STATE.UP;
         node.setState(STATE.UP);
         node.setProperty(propertyKey, sleepDuration);
         updateNode(node);
+        if (stateChanged) {
+            McRuleEventBus.getInstance().publishStateChange(RESOURCE_TYPE.NODE, node.getId());
+        }
     }
 
     // move sleep queue messages to actual queue
@@ -477,7 +492,7 @@ public abstract class ExecuterAbstract implements IExecutor {
         if (_message.getNodeEui().equalsIgnoreCase(IMessage.NODE_BROADCAST_ID)) {
             return null;
         }
-        Node node = DaoUtils.getNodeDao().get(_message.getGatewayId(), _message.getNodeEui());
+        Node node = ResourcesRegistry.getInstance().getNode(_message.getGatewayId(), _message.getNodeEui());
         if (node == null) {
             _logger.debug("This Node[{}] not available in our DB, Adding...", _message.getNodeEui());
             node = Node
@@ -492,9 +507,12 @@ public abstract class ExecuterAbstract implements IExecutor {
             node.setLastSeen(System.currentTimeMillis());
             DaoUtils.getNodeDao().create(node);
             GoogleAnalyticsApi.instance().trackNodeCreation("auto");
-            node = DaoUtils.getNodeDao().get(_message.getGatewayId(), _message.getNodeEui());
+            node = ResourcesRegistry.getInstance().getNode(_message.getGatewayId(), _message.getNodeEui());
         }
         _logger.debug("Node:[{}], _message:[{}]", node, _message);
+        if (node != null) {
+            _nodeId = node.getId();
+        }
         return node;
     }
 
@@ -503,8 +521,26 @@ public abstract class ExecuterAbstract implements IExecutor {
         DaoUtils.getNodeDao().update(node);
     }
 
+    // last seen, state, rssi and battery level are written to database on next registry flush
+    private void updateNodeState(Node node) {
+        node.setLastSeen(System.currentTimeMillis());
+        ResourcesRegistry.getInstance().updateNodeState(node);
+    }
+
+    // rules of the node are evaluated, when it comes up
+    private void updateNodeStateUp(Node node) {
+        boolean stateChanged = node.getState() != STATE.UP;
+        node.setState(STATE.UP);
+        updateNodeState(node);
+        if (stateChanged) {
+            // rules read the state from database
+            ResourcesRegistry.getInstance().flush(RESOURCE_TYPE.NODE);
+            McRuleEventBus.getInstance().publishStateChange(RESOURCE_TYPE.NODE, node.getId());
+        }
+    }
+
     private Sensor getSensor() {
-        Sensor sensor = DaoUtils.getSensorDao().get(
+        Sensor sensor = ResourcesRegistry.getInstance().getSensor(
                 _message.getGatewayId(),
                 _message.getNodeEui(),
                 _message.getSensorId());
@@ -516,17 +552,20 @@ public abstract class ExecuterAbstract implements IExecutor {
             sensor.setNode(getNode());
             DaoUtils.getSensorDao().create(sensor);
             GoogleAnalyticsApi.instance().trackSensorCreation("auto");
-            sensor = DaoUtils.getSensorDao().get(
+            sensor = ResourcesRegistry.getInstance().getSensor(
                     _message.getGatewayId(),
                     _message.getNodeEui(),
                     _message.getSensorId());
         }
+        if (sensor != null) {
+            _sensorId = sensor.getId();
+        }
         return sensor;
     }
 
     private SensorVariable updateSensorVariable(IMessage _message, Sensor sensor,
             PAYLOAD_TYPE payloadType) {
-        SensorVariable sensorVariable = DaoUtils.getSensorVariableDao().get(sensor.getId(),
+        SensorVariable sensorVariable = ResourcesRegistry.getInstance().getSensorVariable(sensor.getId(),
                 MESSAGE_TYPE_SET_REQ.fromString(_message.getSubType()));
         METRIC_TYPE metricType = McMessageUtils.getMetricType(payloadType);
         if (sensorVariable == null) {
@@ -564,7 +603,8 @@ public abstract class ExecuterAbstract implements IExecutor {
 
             DaoUtils.getSensorVariableDao().create(sensorVariable);
             GoogleAnalyticsApi.instance().trackSensorVariableCreation(sensorVariable.getVariableType().getText());
-            sensorVariable = DaoUtils.getSensorVariableDao().get(sensorVariable);
+            sensorVariable = ResourcesRegistry.getInstance().getSensorVariable(sensor.getId(),
+                    sensorVariable.getVariableType());
         } else {
             if (_message.getPayload() != null && _message.getPayload().length() > 0) {
                 switch (sensorVariable.getMetricType()) {
@@ -604,7 +644,10 @@ public abstract class ExecuterAbstract implements IExecutor {
                 sensorVariable.setValue(_message.getPayload());
             }
             sensorVariable.setTimestamp(_message.getTimestamp());
-            DaoUtils.getSensorVariableDao().update(sensorVariable);
+            ResourcesRegistry.getInstance().updateSensorVariableValue(sensorVariable);
+        }
+        if (sensorVariable != null) {
+            _sensorVariableId = sensorVariable.getId();
         }
         return sensorVariable;
     }
@@ -637,7 +680,7 @@ public abstract class ExecuterAbstract implements IExecutor {
     }
 
     private void executeDependentTask(SensorVariable _sv) {
-        McThreadPoolFactory.execute(new ExecuteMessageDependentTask(_sv));
+        McThreadPoolFactory.execute(POOL_TYPE.DEPENDENT_TASK, new ExecuteMessageDependentTask(_sv));
     }
 
     @Override
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.provider;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mycontroller.standalone.exceptions.NotSupportedException;
+import org.mycontroller.standalone.message.IMessage;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Executes messages on a set of worker lanes. Messages are assigned to a lane by (gatewayId, nodeEui),
+ * messages from a node always executed in order on the same lane.
+ * Each lane has it's own executor instance, executors keep the message under process as state.
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+@Slf4j
+public class ExecutorLanes {
+    private static final int LANE_QUEUE_SIZE = 1000;
+    // should be well inside of the engine unload wait time
+    private static final long SHUTDOWN_WAIT_TIME = 3 * 1000L;
+
+    private final ArrayList<Lane> lanes = new ArrayList<Lane>();
+
+    public ExecutorLanes(String name, List<IExecutor> executors) {
+        for (int index = 0; index < executors.size(); index++) {
+            Lane lane = new Lane(index, executors.get(index));
+            Thread thread = new Thread(lane, name + "-lane-" + index);
+            thread.setDaemon(true);
+            lanes.add(lane);
+            thread.start();
+        }
+        _logger.debug("Executor lanes started. [name:{}, lanes:{}]", name, lanes.size());
+    }
+
+    // blocks, when queue of the lane is full
+    public void execute(IMessage message) {
+        int hash = (message.getGatewayId() + "_" + message.getNodeEui()).hashCode();
+        lanes.get((hash & Integer.MAX_VALUE) % lanes.size()).put(message);
+    }
+
+    public List<ExecutorLaneStatistics> statistics() {
+        List<ExecutorLaneStatistics> statistics = new ArrayList<ExecutorLaneStatistics>();
+        for (Lane lane : lanes) {
+            statistics.add(lane.statistics());
+        }
+        return statistics;
+    }
+
+    // stops all the lanes after the message under process, returns messages not executed in the queued order
+    public List<IMessage> shutdown() {
+        for (Lane lane : lanes) {
+            lane.terminate = true;
+        }
+        long waitUntil = System.currentTimeMillis() + SHUTDOWN_WAIT_TIME;
+        for (Lane lane : lanes) {
+            while (!lane.terminated && System.currentTimeMillis() < waitUntil) {
+                try {
+                    Thread.sleep(10L);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if (!lane.terminated) {
+                _logger.warn("Lane[{}] not terminated in {} ms", lane.index, SHUTDOWN_WAIT_TIME);
+            }
+        }
+        ArrayList<LaneTask> tasks = new ArrayList<LaneTask>();
+        for (Lane lane : lanes) {
+            lane.queue.drainTo(tasks);
+        }
+        Collections.sort(tasks, new Comparator<LaneTask>() {
+            @Override
+            public int compare(LaneTask task1, LaneTask task2) {
+                return Long.compare(task1.sequence, task2.sequence);
+            }
+        });
+        List<IMessage> messages = new ArrayList<IMessage>();
+        for (LaneTask task : tasks) {
+            messages.add(task.message);
+        }
+        if (!messages.isEmpty()) {
+            _logger.debug("Messages not executed on lanes:{}", messages.size());
+        }
+        return messages;
+    }
+
+    private static class LaneTask {
+        private static final AtomicLong SEQUENCE = new AtomicLong(0);
+
+        private final IMessage message;
+        private final long queuedTime;
+        private final long sequence;
+
+        private LaneTask(IMessage message) {
+            this.message = message;
+            this.queuedTime = System.currentTimeMillis();
+            this.sequence = SEQUENCE.incrementAndGet();
+        }
+    }
+
+    private static class Lane implements Runnable {
+        private static final int MAXIMUM_SAMPLES = 10000;
+
+        private final int index;
+        private final IExecutor executor;
+        private final BlockingQueue<LaneTask> queue = new LinkedBlockingQueue<LaneTask>(LANE_QUEUE_SIZE);
+        private volatile boolean terminate = false;
+        private volatile boolean terminated = false;
+
+        private long count = 0;
+        private double timeAverage = 0;
+        private long timeMaximum = 0;
+        private long timeLastMessage = 0;
+
+        private Lane(int index, IExecutor executor) {
+            this.index = index;
+            this.executor = executor;
+        }
+
+        private void put(IMessage message) {
+            try {
+                queue.put(new LaneTask(message));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                _logger.warn("Interrupted, message not added in to the lane[{}], {}", index, message);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (!terminate) {
+                LaneTask task = null;
+                try {
+                    task = queue.poll(1, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    _logger.warn("Lane[{}] interrupted", index, ex);
+                    break;
+                }
+                if (task == null) {
+                    continue;
+                }
+                try {
+                    executor.execute(task.message);
+                } catch (NotSupportedException ex) {
+                    _logger.error("NotSupported: {}. Dropping {}", ex.getMessage(), task.message);
+                } catch (Exception ex) {
+                    _logger.error("Throws exception while processing!, [{}]", task.message, ex);
+                } finally {
+                    update(System.currentTimeMillis() - task.queuedTime);
+                }
+            }
+            terminated = true;
+            _logger.debug("Lane[{}] terminated", index);
+        }
+
+        private synchronized void update(long timeTaken) {
+            timeLastMessage = timeTaken;
+            //if sample goes beyond MAXIMUM_SAMPLES, reset it to avoid big calculations.
+            if (count > MAXIMUM_SAMPLES) {
+                count = 0;
+                timeAverage = 0;
+                timeMaximum = 0;
+            }
+            timeAverage = ((timeAverage * count) + timeTaken) / (count + 1);
+            count++;
+            if (timeTaken > timeMaximum) {
+                timeMaximum = timeTaken;
+            }
+        }
+
+        private synchronized ExecutorLaneStatistics statistics() {
+            return ExecutorLaneStatistics.builder()
+                    .lane(index)
+                    .sizeQueue(queue.size())
+                    .count(count)
+                    .timeAverage(timeAverage)
+                    .timeMaximum(timeMaximum)
+                    .timeLastMessage(timeLastMessage)
+                    .build();
+        }
+    }
+}
@@ -18,38 +18,50 @@ package org.mycontroller.standalone.provider;
 
 import org.mycontroller.standalone.AppProperties;
 import org.mycontroller.standalone.AppProperties.RESOURCE_TYPE;
-import org.mycontroller.standalone.db.DaoUtils;
 import org.mycontroller.standalone.db.ResourcesLogsUtils.LOG_DIRECTION;
 import org.mycontroller.standalone.db.ResourcesLogsUtils.LOG_LEVEL;
-import org.mycontroller.standalone.db.tables.Node;
 import org.mycontroller.standalone.db.tables.ResourcesLogs;
-import org.mycontroller.standalone.db.tables.Sensor;
-import org.mycontroller.standalone.db.tables.SensorVariable;
 import org.mycontroller.standalone.message.IMessage;
 import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE;
-import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE_SET_REQ;
 import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE_STREAM;
 
 import lombok.extern.slf4j.Slf4j;
 
 /**
+ * Converts a message to resources log entry, entries are written by {@link ResourcesLogsPipeline}
+ *
  * @author Jeeva Kandasamy (jkandasa)
  * @since 1.2.0
  */
 @Slf4j
-public class ResourcesLogger implements Runnable {
+public class ResourcesLogger {
 
     private static final int MAXIMUN_PAYLOAD_SIZE = 220;
     private static final int MAXIMUN_PAYLOAD_SIZE_FIRMWARE = 20;
     private IMessage _message = null;
     private RESOURCE_TYPE rType = null;
     private LOG_DIRECTION logDirection = null;
+    // ids resolved by the executor, null when not resolved
+    private Integer nodeId = null;
+    private Integer sensorId = null;
+    private Integer sensorVariableId = null;
 
-    public ResourcesLogger(IMessage _message) {
+    public ResourcesLogger(IMessage _message, Integer nodeId, Integer sensorId, Integer sensorVariableId) {
         this._message = _message;
+        this.nodeId = nodeId;
+        this.sensorId = sensorId;
+        this.sensorVariableId = sensorVariableId;
+    }
+
+    public IMessage getMessage() {
+        return _message;
     }
 
-    private boolean isInPermittedLogLevel(LOG_LEVEL logLevel) {
+    public static boolean isEnabled() {
+        return isInPermittedLogLevel(LOG_LEVEL.INFO);
+    }
+
+    private static boolean isInPermittedLogLevel(LOG_LEVEL logLevel) {
         if (LOG_LEVEL.fromString(AppProperties.getInstance().getControllerSettings().getResourcesLogLevel())
                 .ordinal() <= logLevel.ordinal()) {
             return true;
@@ -57,32 +69,27 @@ public class ResourcesLogger implements Runnable {
         return false;
     }
 
+    // resources are already resolved by the executor
     private Integer getResourceId() {
         switch (rType) {
             case GATEWAY:
                 return _message.getGatewayId();
             case NODE:
-                Node _node = DaoUtils.getNodeDao().get(_message.getGatewayId(), _message.getNodeEui());
-                return _node.getId();
+                return nodeId;
             case SENSOR:
-                _node = DaoUtils.getNodeDao().get(_message.getGatewayId(), _message.getNodeEui());
-                Sensor _s = DaoUtils.getSensorDao().get(_node.getId(), _message.getSensorId());
-                return _s.getId();
+                return sensorId;
             case SENSOR_VARIABLE:
-                _node = DaoUtils.getNodeDao().get(_message.getGatewayId(), _message.getNodeEui());
-                _s = DaoUtils.getSensorDao().get(_node.getId(), _message.getSensorId());
-                SensorVariable _sv = DaoUtils.getSensorVariableDao().get(_s.getId(),
-                        MESSAGE_TYPE_SET_REQ.fromString(_message.getSubType()));
-                return _sv.getId();
+                return sensorVariableId;
             default:
                 return null;
 
         }
     }
 
-    private void log() {
+    // returns null, if this message not required to log
+    public ResourcesLogs getResourcesLogs() {
         if (!isInPermittedLogLevel(LOG_LEVEL.INFO)) {
-            return;
+            return null;
         }
         // update resource type
         if (_message.getSensorId().equalsIgnoreCase(IMessage.SENSOR_BROADCAST_ID)) {
@@ -100,79 +107,72 @@ public class ResourcesLogger implements Runnable {
         switch (MESSAGE_TYPE.fromString(_message.getType())) {
             case C_INTERNAL:
                 if (!isInPermittedLogLevel(LOG_LEVEL.NOTICE)) {
-                    return;
+                    return null;
                 }
-                internal();
-                break;
+                return internal();
             case C_PRESENTATION:
                 if (!isInPermittedLogLevel(LOG_LEVEL.NOTICE)) {
-                    return;
+                    return null;
                 }
-                presentation();
-                break;
+                return presentation();
             case C_REQ:
                 if (!isInPermittedLogLevel(LOG_LEVEL.INFO)) {
-                    return;
+                    return null;
                 }
-                request();
-                break;
+                return request();
             case C_SET:
                 if (!isInPermittedLogLevel(LOG_LEVEL.INFO)) {
-                    return;
+                    return null;
                 }
-                set();
-                break;
+                return set();
             case C_STREAM:
                 if (!isInPermittedLogLevel(LOG_LEVEL.NOTICE)) {
-                    return;
+                    return null;
                 }
-                stream();
-                break;
+                return stream();
             default:
-                break;
+                return null;
         }
     }
 
-    private void internal() {
-        doLog(MESSAGE_TYPE.C_INTERNAL, LOG_LEVEL.NOTICE);
+    private ResourcesLogs internal() {
+        return doLog(MESSAGE_TYPE.C_INTERNAL, LOG_LEVEL.NOTICE);
     }
 
-    private void presentation() {
-        doLog(MESSAGE_TYPE.C_PRESENTATION, LOG_LEVEL.NOTICE);
+    private ResourcesLogs presentation() {
+        return doLog(MESSAGE_TYPE.C_PRESENTATION, LOG_LEVEL.NOTICE);
     }
 
-    private void request() {
-        doLog(MESSAGE_TYPE.C_REQ, LOG_LEVEL.INFO);
+    private ResourcesLogs request() {
+        return doLog(MESSAGE_TYPE.C_REQ, LOG_LEVEL.INFO);
     }
 
-    private void set() {
-        doLog(MESSAGE_TYPE.C_SET, LOG_LEVEL.INFO);
+    private ResourcesLogs set() {
+        return doLog(MESSAGE_TYPE.C_SET, LOG_LEVEL.INFO);
     }
 
-    private void stream() {
+    private ResourcesLogs stream() {
         switch (MESSAGE_TYPE_STREAM.fromString(_message.getSubType())) {
             case ST_FIRMWARE_CONFIG_REQUEST:
             case ST_FIRMWARE_CONFIG_RESPONSE:
-                doLog(MESSAGE_TYPE.C_STREAM, LOG_LEVEL.NOTICE);
-                break;
+                return doLog(MESSAGE_TYPE.C_STREAM, LOG_LEVEL.NOTICE);
             case ST_FIRMWARE_REQUEST:
             case ST_FIRMWARE_RESPONSE:
                 if (!isInPermittedLogLevel(LOG_LEVEL.TRACE)) {
-                    return;
+                    return null;
                 }
-                doLog(MESSAGE_TYPE.C_STREAM, LOG_LEVEL.TRACE);
-                break;
+                return doLog(MESSAGE_TYPE.C_STREAM, LOG_LEVEL.TRACE);
             case ST_IMAGE:
             case ST_SOUND:
                 // not supported at this moment
-                return;
+                return null;
             default:
-                break;
+                return null;
 
         }
     }
 
-    private void doLog(MESSAGE_TYPE type, LOG_LEVEL logLevel) {
+    private ResourcesLogs doLog(MESSAGE_TYPE type, LOG_LEVEL logLevel) {
         StringBuilder _builder = new StringBuilder();
         _builder.append("[").append(_message.getSubType()).append("] ");
         if (type == MESSAGE_TYPE.C_STREAM
@@ -188,9 +188,14 @@ public class ResourcesLogger implements Runnable {
             _builder.append(_message.getPayload());
         }
 
-        ResourcesLogs resLog = ResourcesLogs.builder()
+        Integer resourceId = getResourceId();
+        if (resourceId == null) {
+            _logger.debug("Resource not available, skipped to log {}", _message);
+            return null;
+        }
+        return ResourcesLogs.builder()
                 .resourceType(rType)
-                .resourceId(getResourceId())
+                .resourceId(resourceId)
                 .logDirection(logDirection)
                 .logLevel(logLevel)
                 .messageType(type)
@@ -198,16 +203,6 @@ public class ResourcesLogger implements Runnable {
                 .timestamp(_message.getTimestamp())
                 .logDirection(_message.isTxMessage() ? LOG_DIRECTION.SENT : LOG_DIRECTION.RECEIVED)
                 .build();
-        DaoUtils.getResourcesLogsDao().add(resLog);
-    }
-
-    @Override
-    public void run() {
-        try {
-            log();
-        } catch (Exception ex) {
-            _logger.error("Error on {},", _message, ex);
-        }
     }
 
 }
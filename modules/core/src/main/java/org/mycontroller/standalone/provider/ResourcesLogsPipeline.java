@@ -0,0 +1,190 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.provider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mycontroller.standalone.AppProperties;
+import org.mycontroller.standalone.db.DaoUtils;
+import org.mycontroller.standalone.db.tables.ResourcesLogs;
+import org.mycontroller.standalone.utils.McUtils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Collects messages from all the gateways in a bounded queue and writes resources logs in batches
+ * from a single thread. When the queue is full, new messages are dropped (default) or the caller waits
+ * for a while and drops it, if the queue still full.
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+@Slf4j
+public class ResourcesLogsPipeline implements Runnable {
+    public static final int MAXIMUM_BATCH_SIZE = 500;
+    public static final long MAXIMUM_WAIT_ON_FULL = McUtils.SECOND * 5;
+
+    private static final ResourcesLogsPipeline _instance = new ResourcesLogsPipeline();
+
+    private ArrayBlockingQueue<ResourcesLogger> _queue = null;
+    private boolean dropOnFull = true;
+    private Thread _thread = null;
+    private volatile boolean terminate = false;
+
+    private final AtomicLong countAdded = new AtomicLong();
+    private final AtomicLong countDropped = new AtomicLong();
+    private final AtomicLong countWritten = new AtomicLong();
+    private final AtomicLong countFailed = new AtomicLong();
+    private final AtomicLong countBatches = new AtomicLong();
+    private volatile int sizeLastBatch = 0;
+    private volatile long timeLastBatch = 0;
+
+    private ResourcesLogsPipeline() {
+    }
+
+    public static ResourcesLogsPipeline getInstance() {
+        return _instance;
+    }
+
+    public synchronized void start() {
+        if (_thread != null) {
+            return;
+        }
+        int queueSize = AppProperties.getInstance().getResourcesLogsQueueSize();
+        if (_queue == null || _queue.remainingCapacity() + _queue.size() != queueSize) {
+            _queue = new ArrayBlockingQueue<ResourcesLogger>(queueSize);
+        }
+        dropOnFull = AppProperties.getInstance().getResourcesLogsDropOnFull();
+        terminate = false;
+        _thread = new Thread(this, "resources-logs");
+        _thread.setDaemon(true);
+        _thread.start();
+        _logger.debug("Resources logs pipeline started, queue size:{}, drop on full:{}", queueSize, dropOnFull);
+    }
+
+    public void stop() {
+        Thread thread = null;
+        synchronized (this) {
+            terminate = true;
+            thread = _thread;
+            _thread = null;
+        }
+        if (thread != null) {
+            try {
+                // drainer writes remaining messages from the queue before exit
+                thread.join(McUtils.SECOND * 10);
+            } catch (InterruptedException ex) {
+                _logger.error("Exception,", ex);
+            }
+        }
+        _logger.debug("Resources logs pipeline stopped, {}", getStatistics());
+    }
+
+    public void add(ResourcesLogger resourcesLogger) {
+        if (_queue == null || terminate || !ResourcesLogger.isEnabled()) {
+            return;
+        }
+        countAdded.incrementAndGet();
+        boolean added = false;
+        if (dropOnFull) {
+            added = _queue.offer(resourcesLogger);
+        } else {
+            try {
+                added = _queue.offer(resourcesLogger, MAXIMUM_WAIT_ON_FULL, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (!added) {
+            // do not flood the log file, report on first drop and then on every thousand drops
+            if (countDropped.incrementAndGet() % 1000 == 1) {
+                _logger.warn("Resources logs queue is full, dropped messages count:{}", countDropped.get());
+            }
+        }
+    }
+
+    public ResourcesLogsStatistics getStatistics() {
+        return ResourcesLogsStatistics.builder()
+                .dropOnFull(dropOnFull)
+                .sizeQueue(_queue != null ? _queue.size() : 0)
+                .sizeQueueMaximum(_queue != null ? _queue.size() + _queue.remainingCapacity() : 0)
+                .countAdded(countAdded.get())
+                .countWritten(countWritten.get())
+                .countDropped(countDropped.get())
+                .countFailed(countFailed.get())
+                .countBatches(countBatches.get())
+                .sizeLastBatch(sizeLastBatch)
+                .timeLastBatch(timeLastBatch)
+                .build();
+    }
+
+    @Override
+    public void run() {
+        List<ResourcesLogger> _loggers = new ArrayList<ResourcesLogger>(MAXIMUM_BATCH_SIZE);
+        while (!terminate || !_queue.isEmpty()) {
+            try {
+                ResourcesLogger resourcesLogger = _queue.poll(McUtils.ONE_SECOND, TimeUnit.MILLISECONDS);
+                if (resourcesLogger == null) {
+                    continue;
+                }
+                _loggers.add(resourcesLogger);
+                _queue.drainTo(_loggers, MAXIMUM_BATCH_SIZE - 1);
+                write(_loggers);
+            } catch (InterruptedException ex) {
+                _logger.error("Exception,", ex);
+                break;
+            } catch (Exception ex) {
+                _logger.error("Exception,", ex);
+            } finally {
+                _loggers.clear();
+            }
+        }
+    }
+
+    private void write(List<ResourcesLogger> _loggers) {
+        long startTime = System.currentTimeMillis();
+        List<ResourcesLogs> logs = new ArrayList<ResourcesLogs>(_loggers.size());
+        for (ResourcesLogger resourcesLogger : _loggers) {
+            try {
+                ResourcesLogs resourcesLogs = resourcesLogger.getResourcesLogs();
+                if (resourcesLogs != null) {
+                    logs.add(resourcesLogs);
+                }
+            } catch (Exception ex) {
+                countFailed.incrementAndGet();
+                _logger.error("Error on {},", resourcesLogger.getMessage(), ex);
+            }
+        }
+        if (logs.isEmpty()) {
+            return;
+        }
+        // inserts all the logs in a single batch, returns 0 on failure
+        int count = DaoUtils.getResourcesLogsDao().createBulk(logs);
+        countWritten.addAndGet(count);
+        if (count < logs.size()) {
+            countFailed.addAndGet(logs.size() - count);
+            _logger.error("Unable to write resources logs, count:{}, written:{}", logs.size(), count);
+        }
+        countBatches.incrementAndGet();
+        sizeLastBatch = logs.size();
+        timeLastBatch = System.currentTimeMillis() - startTime;
+    }
+}
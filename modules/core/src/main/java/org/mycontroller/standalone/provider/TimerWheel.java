@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.provider;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Hashed timer wheel, keeps deadlines in slots of tickDuration(milliseconds).
+ * Not thread safe, should be accessed only from the owner thread.
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+public class TimerWheel<T> {
+    private final long tickDuration;
+    private final ArrayList<LinkedList<Timeout<T>>> slots;
+    private long lastTick;
+    private int size = 0;
+
+    public TimerWheel(long tickDuration, int wheelSize) {
+        this.tickDuration = tickDuration;
+        this.slots = new ArrayList<LinkedList<Timeout<T>>>(wheelSize);
+        for (int index = 0; index < wheelSize; index++) {
+            slots.add(new LinkedList<Timeout<T>>());
+        }
+        this.lastTick = System.currentTimeMillis() / tickDuration;
+    }
+
+    public void schedule(T item, long deadline) {
+        // round up to the next tick, already expired deadlines will be returned on next expire call
+        long tick = Math.max((deadline + tickDuration - 1) / tickDuration, lastTick + 1);
+        slots.get((int) (tick % slots.size())).add(new Timeout<T>(item, tick));
+        size++;
+    }
+
+    // returns all the items reached the deadline
+    public List<T> expire(long now) {
+        List<T> expired = new ArrayList<T>();
+        long currentTick = now / tickDuration;
+        if (currentTick <= lastTick) {
+            return expired;
+        }
+        // scan only the slots passed after last call, maximum one round
+        long ticks = Math.min(currentTick - lastTick, slots.size());
+        for (long tick = currentTick - ticks + 1; tick <= currentTick; tick++) {
+            Iterator<Timeout<T>> iterator = slots.get((int) (tick % slots.size())).iterator();
+            while (iterator.hasNext()) {
+                Timeout<T> timeout = iterator.next();
+                if (timeout.tick <= currentTick) {
+                    iterator.remove();
+                    expired.add(timeout.item);
+                    size--;
+                }
+            }
+        }
+        lastTick = currentTick;
+        return expired;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        for (LinkedList<Timeout<T>> slot : slots) {
+            slot.clear();
+        }
+        size = 0;
+    }
+
+    private static class Timeout<T> {
+        private final T item;
+        private final long tick;
+
+        private Timeout(T item, long tick) {
+            this.item = item;
+            this.tick = tick;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.provider;
+
+import org.mycontroller.standalone.eventbus.MessageStatus;
+import org.mycontroller.standalone.message.IMessage;
+
+import io.vertx.core.eventbus.MessageConsumer;
+import lombok.Builder;
+import lombok.Data;
+import lombok.ToString;
+
+/**
+ * Tx message sent to the gateway and waiting for an acknowledgement
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+@Data
+@Builder
+@ToString(exclude = { "consumer" })
+public class TxInFlightMessage {
+    private IMessage message;
+    private MessageConsumer<MessageStatus> consumer;
+    private int retry;
+    private long deadline;
+    private long startTime;
+}
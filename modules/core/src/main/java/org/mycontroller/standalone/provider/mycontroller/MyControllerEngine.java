@@ -21,6 +21,7 @@ import org.mycontroller.standalone.db.tables.Sensor;
 import org.mycontroller.standalone.gateway.config.GatewayConfig;
 import org.mycontroller.standalone.gateway.mqtt.GatewayMQTT;
 import org.mycontroller.standalone.provider.EngineAbstract;
+import org.mycontroller.standalone.provider.IExecutor;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -41,7 +42,12 @@ public class MyControllerEngine extends EngineAbstract {
                 _logger.warn("not implemented! {}", _config);
                 return;
         }
-        _executor = new MyControllerExecutor(_queue, _queueSleep);
+        _executor = newExecutor();
+    }
+
+    @Override
+    protected IExecutor newExecutor() {
+        return new MyControllerExecutor(_queue, _queueSleep);
     }
 
     @Override
@@ -27,8 +27,9 @@ import org.mycontroller.standalone.db.tables.Firmware;
 import org.mycontroller.standalone.db.tables.FirmwareData;
 import org.mycontroller.standalone.db.tables.Node;
 import org.mycontroller.standalone.firmware.FirmwareUtils;
+import org.mycontroller.standalone.message.IMessage;
 import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE_STREAM;
-import org.mycontroller.standalone.offheap.MessageQueueImpl;
+import org.mycontroller.standalone.offheap.IQueue;
 import org.mycontroller.standalone.offheap.MessageQueueSleepImpl;
 import org.mycontroller.standalone.provider.ExecuterAbstract;
 import org.mycontroller.standalone.provider.mycontroller.structs.McFirmwareConfig;
@@ -44,7 +45,7 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class MyControllerExecutor extends ExecuterAbstract {
 
-    public MyControllerExecutor(MessageQueueImpl _queue, MessageQueueSleepImpl _queueSleep) {
+    public MyControllerExecutor(IQueue<IMessage> _queue, MessageQueueSleepImpl _queueSleep) {
         super(_queue, _queueSleep);
     }
 
@@ -27,6 +27,7 @@ import org.mycontroller.standalone.message.IMessage;
 import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE;
 import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE_INTERNAL;
 import org.mycontroller.standalone.provider.EngineAbstract;
+import org.mycontroller.standalone.provider.IExecutor;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -61,7 +62,12 @@ public class MySensorsEngine extends EngineAbstract {
                 _logger.warn("not implemented! {}", _config);
                 return;
         }
-        _executor = new MySensorsExecutor(_queue, _queueSleep, _gateway);
+        _executor = newExecutor();
+    }
+
+    @Override
+    protected IExecutor newExecutor() {
+        return new MySensorsExecutor(_queue, _queueSleep, _gateway);
     }
 
     @Override
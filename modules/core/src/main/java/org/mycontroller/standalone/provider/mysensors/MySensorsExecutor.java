@@ -33,7 +33,7 @@ import org.mycontroller.standalone.message.IMessage;
 import org.mycontroller.standalone.message.McMessageUtils;
 import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE_INTERNAL;
 import org.mycontroller.standalone.message.McMessageUtils.MESSAGE_TYPE_STREAM;
-import org.mycontroller.standalone.offheap.MessageQueueImpl;
+import org.mycontroller.standalone.offheap.IQueue;
 import org.mycontroller.standalone.offheap.MessageQueueSleepImpl;
 import org.mycontroller.standalone.provider.ExecuterAbstract;
 import org.mycontroller.standalone.provider.mysensors.structs.FirmwareConfigRequest;
@@ -51,7 +51,7 @@ import lombok.extern.slf4j.Slf4j;
 public class MySensorsExecutor extends ExecuterAbstract {
     private IGateway _gateway;
 
-    public MySensorsExecutor(MessageQueueImpl qq, MessageQueueSleepImpl _queueSleep, IGateway _gateway) {
+    public MySensorsExecutor(IQueue<IMessage> qq, MessageQueueSleepImpl _queueSleep, IGateway _gateway) {
         super(qq, _queueSleep);
         this._gateway = _gateway;
     }
@@ -21,6 +21,7 @@ import org.mycontroller.standalone.db.tables.Sensor;
 import org.mycontroller.standalone.gateway.config.GatewayConfig;
 import org.mycontroller.standalone.gateway.phantio.GatewayPhantIO;
 import org.mycontroller.standalone.provider.EngineAbstract;
+import org.mycontroller.standalone.provider.IExecutor;
 
 /**
  * @author Jeeva Kandasamy (jkandasa)
@@ -31,7 +32,12 @@ public class PhantIOEngine extends EngineAbstract {
     public PhantIOEngine(GatewayConfig _config) {
         super(_config);
         _gateway = new GatewayPhantIO(_config.getGatewayTable(), new MessageParserPhantIO(), _queue);
-        _executor = new PhantIOExecutor(_queue, _queueSleep);
+        _executor = newExecutor();
+    }
+
+    @Override
+    protected IExecutor newExecutor() {
+        return new PhantIOExecutor(_queue, _queueSleep);
     }
 
     @Override
@@ -21,6 +21,7 @@ import org.mycontroller.standalone.db.tables.Sensor;
 import org.mycontroller.standalone.gateway.config.GatewayConfig;
 import org.mycontroller.standalone.gateway.philipshue.GatewayPhilipsHue;
 import org.mycontroller.standalone.provider.EngineAbstract;
+import org.mycontroller.standalone.provider.IExecutor;
 
 /**
  * @author Jeeva Kandasamy (jkandasa)
@@ -31,7 +32,12 @@ public class PhilipsHueEngine extends EngineAbstract {
     public PhilipsHueEngine(GatewayConfig _config) {
         super(_config);
         _gateway = new GatewayPhilipsHue(_config.getGatewayTable(), new MessageParserPhilipsHue(), _queue);
-        _executor = new PhilipsHueExecutor(_queue, _queueSleep);
+        _executor = newExecutor();
+    }
+
+    @Override
+    protected IExecutor newExecutor() {
+        return new PhilipsHueExecutor(_queue, _queueSleep);
     }
 
     @Override
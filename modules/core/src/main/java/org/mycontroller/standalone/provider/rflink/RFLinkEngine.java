@@ -21,6 +21,7 @@ import org.mycontroller.standalone.db.tables.Sensor;
 import org.mycontroller.standalone.gateway.config.GatewayConfig;
 import org.mycontroller.standalone.gateway.serial.GatewaySerial;
 import org.mycontroller.standalone.provider.EngineAbstract;
+import org.mycontroller.standalone.provider.IExecutor;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -42,7 +43,12 @@ public class RFLinkEngine extends EngineAbstract {
                 _logger.warn("not implemented! {}", _config);
                 return;
         }
-        _executor = new RFLinkExecutor(_queue, _queueSleep);
+        _executor = newExecutor();
+    }
+
+    @Override
+    protected IExecutor newExecutor() {
+        return new RFLinkExecutor(_queue, _queueSleep);
     }
 
     @Override
@@ -16,7 +16,8 @@
  */
 package org.mycontroller.standalone.provider.rflink;
 
-import org.mycontroller.standalone.offheap.MessageQueueImpl;
+import org.mycontroller.standalone.message.IMessage;
+import org.mycontroller.standalone.offheap.IQueue;
 import org.mycontroller.standalone.offheap.MessageQueueSleepImpl;
 import org.mycontroller.standalone.provider.ExecuterAbstract;
 
@@ -26,7 +27,7 @@ import org.mycontroller.standalone.provider.ExecuterAbstract;
  */
 public class RFLinkExecutor extends ExecuterAbstract {
 
-    public RFLinkExecutor(MessageQueueImpl _queue, MessageQueueSleepImpl _queueSleep) {
+    public RFLinkExecutor(IQueue<IMessage> _queue, MessageQueueSleepImpl _queueSleep) {
         super(_queue, _queueSleep);
     }
 
@@ -21,6 +21,7 @@ import org.mycontroller.standalone.db.tables.Sensor;
 import org.mycontroller.standalone.gateway.config.GatewayConfig;
 import org.mycontroller.standalone.gateway.wunderground.GatewayWunderground;
 import org.mycontroller.standalone.provider.EngineAbstract;
+import org.mycontroller.standalone.provider.IExecutor;
 
 /**
  * @author Jeeva Kandasamy (jkandasa)
@@ -31,7 +32,12 @@ public class WundergroundEngine extends EngineAbstract {
     public WundergroundEngine(GatewayConfig _config) {
         super(_config);
         _gateway = new GatewayWunderground(_config.getGatewayTable(), _queue);
-        _executor = new WundergroundExecutor(_queue, _queueSleep);
+        _executor = newExecutor();
+    }
+
+    @Override
+    protected IExecutor newExecutor() {
+        return new WundergroundExecutor(_queue, _queueSleep);
     }
 
     @Override
@@ -19,7 +19,9 @@ package org.mycontroller.standalone.rule;
 import org.easyrules.core.BasicRule;
 import org.mycontroller.standalone.AppProperties.RESOURCE_TYPE;
 import org.mycontroller.standalone.db.DaoUtils;
-import org.mycontroller.standalone.operation.model.Operation;
+import org.mycontroller.standalone.db.tables.RuleDefinitionTable;
+import org.mycontroller.standalone.metrics.McMetricsHotCache;
+import org.mycontroller.standalone.operation.McOperationDispatcher;
 import org.mycontroller.standalone.rule.model.DampeningActiveTime;
 import org.mycontroller.standalone.rule.model.DampeningConsecutive;
 import org.mycontroller.standalone.rule.model.DampeningLastNEvaluations;
@@ -70,7 +72,10 @@ public abstract class McRuleAbstract extends BasicRule {
         //Get value to compare
         switch (resourceType) {
             case SENSOR_VARIABLE:
-                value = DaoUtils.getSensorVariableDao().get(resourceId).getValue();
+                value = McMetricsHotCache.getInstance().getValue(resourceId);
+                if (value == null) {
+                    value = DaoUtils.getSensorVariableDao().get(resourceId).getValue();
+                }
                 break;
             case NODE:
                 value = DaoUtils.getNodeDao().getById(resourceId)
@@ -100,6 +105,7 @@ public abstract class McRuleAbstract extends BasicRule {
     }
 
     protected boolean executeDampening(boolean triggerOperations) {
+        RuleDefinitionTable ruleDefinitionTableOld = ruleDefinition.getRuleDefinitionTable();
         //Ignore dampening check if already triggered and if ignore duplicate enabled
         if (!ruleDefinition.isTriggered() || !ruleDefinition.isIgnoreDuplicate()) {
             switch (ruleDefinition.getDampeningType()) {
@@ -192,24 +198,23 @@ public abstract class McRuleAbstract extends BasicRule {
             _logger.debug("Dampening evaluate result:{}", triggerOperations);
             _logger.debug("Rule definition details:{}", ruleDefinition);
         }
-        //Update changes in to database
-        DaoUtils.getRuleDefinitionDao().update(ruleDefinition.getRuleDefinitionTable());
+        //Update changes in to database, only when something changed
+        RuleDefinitionTable ruleDefinitionTable = ruleDefinition.getRuleDefinitionTable();
+        if (!ruleDefinitionTable.equals(ruleDefinitionTableOld)) {
+            if (!ruleDefinitionTable.getEnabled().equals(ruleDefinitionTableOld.getEnabled())) {
+                // disabled on trigger, write immediately
+                McRuleStateStore.getInstance().disableRuleDefinition(ruleDefinitionTable);
+            } else {
+                McRuleStateStore.getInstance().updateRuleDefinition(ruleDefinitionTable);
+            }
+        }
         return triggerOperations;
     }
 
-    //Execute operations
+    //Execute operations, queued to the operation dispatcher
     @Override
     public void execute() throws Exception {
         _logger.debug("Operations going to execute:{}", ruleDefinition.getOperations());
-        for (Operation operation : ruleDefinition.getOperations()) {
-            try {
-                operation.execute(ruleDefinition);
-                operation.setLastExecution(System.currentTimeMillis());
-                DaoUtils.getOperationDao().update(operation.getOperationTable());
-            } catch (Exception ex) {
-                _logger.error("Exception,", ex);
-            }
-
-        }
+        McOperationDispatcher.getInstance().dispatch(ruleDefinition, ruleDefinition.getOperations());
     }
 }
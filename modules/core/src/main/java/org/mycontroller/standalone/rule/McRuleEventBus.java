@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.rule;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.mycontroller.standalone.AppProperties.RESOURCE_TYPE;
+import org.mycontroller.standalone.McThreadPool;
+import org.mycontroller.standalone.McThreadPoolFactory;
+import org.mycontroller.standalone.McThreadPoolFactory.POOL_TYPE;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * State change events of gateways, nodes and resources groups. The rules indexed for the changed resource
+ * are evaluated immediately, instead of waiting for the scheduled rules engine.<br>
+ * Events of the same resource are coalesced while an evaluation is queued, it reads the latest state.
+ * A saturated dependent task pool applies its rejection policy. An evaluation which is rejected or dropped
+ * releases the resource, the next state change of it is queued again.
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+@Slf4j
+public class McRuleEventBus {
+    private static final McRuleEventBus _instance = new McRuleEventBus();
+
+    private final Set<String> pending = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private McRuleEventBus() {
+    }
+
+    public static McRuleEventBus getInstance() {
+        return _instance;
+    }
+
+    public void publishStateChange(final RESOURCE_TYPE resourceType, final Integer resourceId) {
+        if (resourceType == null || resourceId == null) {
+            return;
+        }
+        final String key = resourceType + "_" + resourceId;
+        if (!pending.add(key)) {
+            // already queued
+            return;
+        }
+        try {
+            McThreadPoolFactory.execute(POOL_TYPE.DEPENDENT_TASK, new StateChangeTask(key, resourceType, resourceId));
+            _logger.debug("State changed, rules queued for {}:{}", resourceType, resourceId);
+        } catch (RejectedExecutionException ex) {
+            pending.remove(key);
+            _logger.warn("Unable to queue rules for {}:{}, {}", resourceType, resourceId, ex.getMessage());
+        }
+    }
+
+    private class StateChangeTask implements Runnable, McThreadPool.DiscardAware {
+        private final String key;
+        private final RESOURCE_TYPE resourceType;
+        private final Integer resourceId;
+
+        private StateChangeTask(String key, RESOURCE_TYPE resourceType, Integer resourceId) {
+            this.key = key;
+            this.resourceType = resourceType;
+            this.resourceId = resourceId;
+        }
+
+        @Override
+        public void run() {
+            pending.remove(key);
+            new McRuleEngine(resourceType, resourceId).run();
+        }
+
+        @Override
+        public void discarded() {
+            pending.remove(key);
+            _logger.warn("Rules of {}:{} not evaluated, dropped by the thread pool", resourceType, resourceId);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.rule;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * Serializes the evaluations of a rule, different rules are evaluated concurrently.
+ * Evaluations of a busy rule wait in order (fair lock), none of them skipped.
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class McRuleLocks {
+    private static final ConcurrentHashMap<Integer, RuleLock> LOCKS = new ConcurrentHashMap<Integer, RuleLock>();
+    private static final AtomicLong COUNT_EVALUATIONS = new AtomicLong();
+    private static final AtomicLong COUNT_QUEUED = new AtomicLong();
+    private static final AtomicLong COUNT_FAILED = new AtomicLong();
+    private static final AtomicInteger SIZE_WAITING = new AtomicInteger();
+    private static final AtomicLong TIME_WAIT_TOTAL = new AtomicLong();
+    private static final AtomicLong TIME_WAIT_MAX = new AtomicLong();
+    private static final AtomicLong TIME_EVALUATION_TOTAL = new AtomicLong();
+
+    static class RuleLock {
+        private final ReentrantLock lock = new ReentrantLock(true);
+        private long timeLocked;
+    }
+
+    private static RuleLock getRuleLock(Integer ruleId) {
+        RuleLock ruleLock = LOCKS.get(ruleId);
+        if (ruleLock == null) {
+            RuleLock _new = new RuleLock();
+            ruleLock = LOCKS.putIfAbsent(ruleId, _new);
+            if (ruleLock == null) {
+                ruleLock = _new;
+            }
+        }
+        return ruleLock;
+    }
+
+    static RuleLock acquire(Integer ruleId) {
+        RuleLock ruleLock = getRuleLock(ruleId);
+        if (!ruleLock.lock.tryLock()) {
+            COUNT_QUEUED.incrementAndGet();
+            SIZE_WAITING.incrementAndGet();
+            long waitStart = System.nanoTime();
+            try {
+                ruleLock.lock.lock();
+            } finally {
+                SIZE_WAITING.decrementAndGet();
+            }
+            long waitTime = System.nanoTime() - waitStart;
+            TIME_WAIT_TOTAL.addAndGet(waitTime);
+            long max = TIME_WAIT_MAX.get();
+            while (waitTime > max && !TIME_WAIT_MAX.compareAndSet(max, waitTime)) {
+                max = TIME_WAIT_MAX.get();
+            }
+        }
+        ruleLock = current(ruleId, ruleLock);
+        ruleLock.timeLocked = System.nanoTime();
+        return ruleLock;
+    }
+
+    static void release(RuleLock ruleLock, boolean failed) {
+        TIME_EVALUATION_TOTAL.addAndGet(System.nanoTime() - ruleLock.timeLocked);
+        COUNT_EVALUATIONS.incrementAndGet();
+        if (failed) {
+            COUNT_FAILED.incrementAndGet();
+        }
+        ruleLock.lock.unlock();
+    }
+
+    // not an evaluation, used to change the rule between the evaluations
+    static RuleLock lock(Integer ruleId) {
+        RuleLock ruleLock = getRuleLock(ruleId);
+        ruleLock.lock.lock();
+        return current(ruleId, ruleLock);
+    }
+
+    // the entry may be removed while waiting for it, moves to the entry in the map
+    private static RuleLock current(Integer ruleId, RuleLock ruleLock) {
+        while (LOCKS.get(ruleId) != ruleLock) {
+            ruleLock.lock.unlock();
+            ruleLock = getRuleLock(ruleId);
+            ruleLock.lock.lock();
+        }
+        return ruleLock;
+    }
+
+    static void unlock(RuleLock ruleLock) {
+        ruleLock.lock.unlock();
+    }
+
+    // a held lock is kept, the running evaluation skips the deleted rule
+    public static void remove(Integer ruleId) {
+        RuleLock ruleLock = LOCKS.get(ruleId);
+        if (ruleLock != null && ruleLock.lock.tryLock()) {
+            try {
+                LOCKS.remove(ruleId, ruleLock);
+            } finally {
+                ruleLock.lock.unlock();
+            }
+        }
+    }
+
+    public static McRuleEngineStatistics getStatistics() {
+        long evaluations = COUNT_EVALUATIONS.get();
+        long queued = COUNT_QUEUED.get();
+        return McRuleEngineStatistics.builder()
+                .sizeRules(LOCKS.size())
+                .countEvaluations(evaluations)
+                .countQueued(queued)
+                .countFailed(COUNT_FAILED.get())
+                .sizeWaiting(SIZE_WAITING.get())
+                .timeWaitAverage(queued > 0 ? toMilliseconds(TIME_WAIT_TOTAL.get() / queued) : 0)
+                .timeWaitMax(toMilliseconds(TIME_WAIT_MAX.get()))
+                .timeEvaluationAverage(evaluations > 0 ? toMilliseconds(TIME_EVALUATION_TOTAL.get() / evaluations) : 0)
+                .build();
+    }
+
+    private static double toMilliseconds(long nanoseconds) {
+        return nanoseconds / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
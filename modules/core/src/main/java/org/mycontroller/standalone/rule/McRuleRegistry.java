@@ -0,0 +1,221 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.rule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mycontroller.standalone.AppProperties.RESOURCE_TYPE;
+import org.mycontroller.standalone.db.DaoUtils;
+import org.mycontroller.standalone.db.tables.RuleDefinitionTable;
+import org.mycontroller.standalone.rule.RuleUtils.DAMPENING_TYPE;
+import org.mycontroller.standalone.rule.RuleUtils.DATA_TYPE;
+import org.mycontroller.standalone.rule.model.RuleDefinitionCompare;
+import org.mycontroller.standalone.rule.model.RuleDefinitionThreshold;
+import org.mycontroller.standalone.utils.McUtils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Rules indexed by the resources they depend on (rule resource, threshold data sensor variable and
+ * compare data2 resource) and the rules built from the database. Gateway and node rules without dampening
+ * are evaluated only on state change events, see {@link McRuleEventBus}. Built rules keep the dampening state,
+ * they are built, used and dropped only with the rule lock held. Invalidated on rule and operation changes.
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+@Slf4j
+public class McRuleRegistry {
+    private static final McRuleRegistry _instance = new McRuleRegistry();
+
+    private final ConcurrentHashMap<Integer, McRuleAbstract> rules = new ConcurrentHashMap<Integer, McRuleAbstract>();
+    private final AtomicLong version = new AtomicLong();
+    // resource key, rule ids
+    private volatile HashMap<String, List<Integer>> index = null;
+    // gateway, node, script and active time dampening rules, executed by the scheduled job
+    private volatile List<Integer> scheduledRules = null;
+
+    private McRuleRegistry() {
+    }
+
+    public static McRuleRegistry getInstance() {
+        return _instance;
+    }
+
+    private String getKey(RESOURCE_TYPE resourceType, Integer resourceId) {
+        return resourceType + "_" + resourceId;
+    }
+
+    private void addIndex(HashMap<String, LinkedHashSet<Integer>> _index, RESOURCE_TYPE resourceType,
+            Integer resourceId, Integer ruleId) {
+        if (resourceType == null || resourceId == null) {
+            return;
+        }
+        String key = getKey(resourceType, resourceId);
+        if (_index.get(key) == null) {
+            _index.put(key, new LinkedHashSet<Integer>());
+        }
+        _index.get(key).add(ruleId);
+    }
+
+    private synchronized void loadIndex() {
+        if (index != null) {
+            return;
+        }
+        long _version = version.get();
+        HashMap<String, LinkedHashSet<Integer>> _index = new HashMap<String, LinkedHashSet<Integer>>();
+        List<Integer> _scheduledRules = new ArrayList<Integer>();
+        for (RuleDefinitionTable ruleDefinitionDb : DaoUtils.getRuleDefinitionDao().getAll()) {
+            Integer ruleId = ruleDefinitionDb.getId();
+            addIndex(_index, ruleDefinitionDb.getResourceType(), ruleDefinitionDb.getResourceId(), ruleId);
+            switch (ruleDefinitionDb.getConditionType()) {
+                case THRESHOLD:
+                    RuleDefinitionThreshold thresholdRule = new RuleDefinitionThreshold(ruleDefinitionDb);
+                    if (thresholdRule.getDataType() == DATA_TYPE.SENSOR_VARIABLE) {
+                        addIndex(_index, RESOURCE_TYPE.SENSOR_VARIABLE, McUtils.getInteger(thresholdRule.getData()),
+                                ruleId);
+                    }
+                    break;
+                case COMPARE:
+                    RuleDefinitionCompare compareRule = new RuleDefinitionCompare(ruleDefinitionDb);
+                    addIndex(_index, compareRule.getData2ResourceType(), compareRule.getData2ResourceId(), ruleId);
+                    break;
+                default:
+                    break;
+            }
+            switch (ruleDefinitionDb.getResourceType()) {
+                case SCRIPT:
+                    _scheduledRules.add(ruleId);
+                    break;
+                case GATEWAY:
+                case NODE:
+                    // state changes are evaluated on event, dampening counts on every scheduled evaluation
+                    if (ruleDefinitionDb.getDampeningType() != DAMPENING_TYPE.NONE) {
+                        _scheduledRules.add(ruleId);
+                    }
+                    break;
+                default:
+                    if (ruleDefinitionDb.getDampeningType() == DAMPENING_TYPE.ACTIVE_TIME) {
+                        _scheduledRules.add(ruleId);
+                    }
+                    break;
+            }
+        }
+        HashMap<String, List<Integer>> _indexFinal = new HashMap<String, List<Integer>>();
+        for (Entry<String, LinkedHashSet<Integer>> _entry : _index.entrySet()) {
+            _indexFinal.put(_entry.getKey(), Collections.unmodifiableList(new ArrayList<Integer>(_entry.getValue())));
+        }
+        // invalidated while loading, next call loads again
+        if (_version == version.get()) {
+            scheduledRules = Collections.unmodifiableList(_scheduledRules);
+            index = _indexFinal;
+            _logger.debug("Rules index loaded. [resources:{}, scheduled rules:{}]", _indexFinal.size(),
+                    _scheduledRules.size());
+        }
+    }
+
+    public List<Integer> getRuleIds(RESOURCE_TYPE resourceType, Integer resourceId) {
+        HashMap<String, List<Integer>> _index = index;
+        if (_index == null) {
+            loadIndex();
+            _index = index;
+        }
+        if (_index == null) {
+            return Collections.emptyList();
+        }
+        List<Integer> ruleIds = _index.get(getKey(resourceType, resourceId));
+        return ruleIds != null ? ruleIds : Collections.<Integer> emptyList();
+    }
+
+    public List<Integer> getScheduledRuleIds() {
+        List<Integer> _scheduledRules = scheduledRules;
+        if (_scheduledRules == null || index == null) {
+            loadIndex();
+            _scheduledRules = scheduledRules;
+        }
+        return _scheduledRules != null ? _scheduledRules : Collections.<Integer> emptyList();
+    }
+
+    // should be called with the rule lock held
+    McRuleAbstract getRule(Integer ruleId) {
+        McRuleAbstract mcRule = rules.get(ruleId);
+        if (mcRule == null) {
+            RuleDefinitionTable ruleDefinitionDb = DaoUtils.getRuleDefinitionDao().getById(ruleId);
+            if (ruleDefinitionDb == null) {
+                return null;
+            }
+            mcRule = getMcRule(ruleDefinitionDb);
+            if (mcRule != null) {
+                rules.put(ruleId, mcRule);
+            }
+        }
+        return mcRule;
+    }
+
+    private McRuleAbstract getMcRule(RuleDefinitionTable ruleDefinitionDb) {
+        switch (ruleDefinitionDb.getConditionType()) {
+            case THRESHOLD:
+                return new McConditionThreshold(ruleDefinitionDb);
+            case THRESHOLD_RANGE:
+                return new McConditionThresholdRange(ruleDefinitionDb);
+            case COMPARE:
+                return new McConditionCompare(ruleDefinitionDb);
+            case STATE:
+                return new McConditionState(ruleDefinitionDb);
+            case STRING:
+                return new McConditionString(ruleDefinitionDb);
+            case SCRIPT:
+                return new McConditionScript(ruleDefinitionDb);
+            default:
+                return null;
+        }
+    }
+
+    public void invalidate(Integer ruleId) {
+        version.incrementAndGet();
+        index = null;
+        scheduledRules = null;
+        if (ruleId != null) {
+            // a running evaluation can not queue the state of the old rule after the discard
+            McRuleLocks.RuleLock ruleLock = McRuleLocks.lock(ruleId);
+            try {
+                rules.remove(ruleId);
+                McRuleStateStore.getInstance().discard(ruleId);
+            } finally {
+                McRuleLocks.unlock(ruleLock);
+            }
+        }
+        _logger.debug("Rule invalidated, id:{}", ruleId);
+    }
+
+    public void invalidateAll() {
+        version.incrementAndGet();
+        index = null;
+        scheduledRules = null;
+        // keep the state of the rules, before dropping it
+        McRuleStateStore.getInstance().flushAll();
+        rules.clear();
+        _logger.debug("All the rules invalidated");
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.rule;
+
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.mycontroller.standalone.db.DaoUtils;
+import org.mycontroller.standalone.db.WriteBehindStore;
+import org.mycontroller.standalone.db.tables.OperationTable;
+import org.mycontroller.standalone.db.tables.RuleDefinitionTable;
+import org.mycontroller.standalone.utils.McUtils;
+
+/**
+ * Dampening and trigger state of the rules and last execution of the operations live in the rules registry.
+ * Only the state columns of the changed rules and operations are written back, coalesced and flushed in a batch
+ * on every checkpoint interval or when too many are pending, and on stop. Other columns are owned by the user.
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+public class McRuleStateStore extends WriteBehindStore {
+    public static final long CHECKPOINT_INTERVAL = McUtils.SECOND * 5;
+    private static final int MAX_PENDING = 100;
+
+    private static final McRuleStateStore _instance = new McRuleStateStore();
+
+    // latest state columns, key: database id
+    private final ConcurrentHashMap<Integer, HashMap<String, Object>> pendingRules =
+            new ConcurrentHashMap<Integer, HashMap<String, Object>>();
+    private final ConcurrentHashMap<Integer, HashMap<String, Object>> pendingOperations =
+            new ConcurrentHashMap<Integer, HashMap<String, Object>>();
+
+    private McRuleStateStore() {
+        super("rule-state-store", CHECKPOINT_INTERVAL);
+    }
+
+    public static McRuleStateStore getInstance() {
+        return _instance;
+    }
+
+    private HashMap<String, Object> getStateColumns(RuleDefinitionTable ruleDefinitionTable) {
+        HashMap<String, Object> columns = new HashMap<String, Object>();
+        columns.put(RuleDefinitionTable.KEY_TRIGGERED, ruleDefinitionTable.getTriggered());
+        columns.put(RuleDefinitionTable.KEY_LAST_TRIGGER, ruleDefinitionTable.getLastTrigger());
+        columns.put(RuleDefinitionTable.KEY_DAMPENING_PROPERTIES, ruleDefinitionTable.getDampeningProperties());
+        return columns;
+    }
+
+    public void updateRuleDefinition(RuleDefinitionTable ruleDefinitionTable) {
+        pendingRules.put(ruleDefinitionTable.getId(), getStateColumns(ruleDefinitionTable));
+        checkPending();
+    }
+
+    // disabled on trigger, written immediately
+    public void disableRuleDefinition(RuleDefinitionTable ruleDefinitionTable) {
+        HashMap<String, Object> columns = getStateColumns(ruleDefinitionTable);
+        columns.put(RuleDefinitionTable.KEY_ENABLED, false);
+        pendingRules.put(ruleDefinitionTable.getId(), columns);
+        flushRules();
+    }
+
+    public void updateOperation(OperationTable operationTable) {
+        HashMap<String, Object> columns = new HashMap<String, Object>();
+        columns.put(OperationTable.KEY_LAST_EXECUTION, operationTable.getLastExecution());
+        pendingOperations.put(operationTable.getId(), columns);
+        checkPending();
+    }
+
+    // rule updated in database by user, drop the state of the old rule, waits for a running flush
+    public synchronized void discard(Integer ruleId) {
+        pendingRules.remove(ruleId);
+    }
+
+    private void checkPending() {
+        if (pendingRules.size() + pendingOperations.size() >= MAX_PENDING) {
+            signal();
+        }
+    }
+
+    @Override
+    public void flushAll() {
+        flushRules();
+        flushOperations();
+    }
+
+    public synchronized void flushRules() {
+        flush(DaoUtils.getRuleDefinitionDao().getDao(), pendingRules, RuleDefinitionTable.KEY_ID);
+    }
+
+    public synchronized void flushOperations() {
+        flush(DaoUtils.getOperationDao().getDao(), pendingOperations, OperationTable.KEY_ID);
+    }
+}
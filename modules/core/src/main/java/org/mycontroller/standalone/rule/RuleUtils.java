@@ -266,6 +266,7 @@ public class RuleUtils {
         ruleDefinition.setDisabledByUser(false);
         ruleDefinition.reset();
         DaoUtils.getRuleDefinitionDao().update(ruleDefinition.getRuleDefinitionTable());
+        McRuleRegistry.getInstance().invalidate(ruleDefinition.getId());
     }
 
     public static void disableRuleDefinition(RuleDefinitionAbstract ruleDefinition) {
@@ -275,6 +276,7 @@ public class RuleUtils {
         ruleDefinition.setEnabled(false);
         ruleDefinition.setDisabledByUser(true);
         DaoUtils.getRuleDefinitionDao().update(ruleDefinition.getRuleDefinitionTable());
+        McRuleRegistry.getInstance().invalidate(ruleDefinition.getId());
     }
 
     public static void enableRuleDefinitions(List<Integer> ids) {
@@ -334,6 +336,7 @@ public class RuleUtils {
                 DaoUtils.getOperationRuleDefinitionMapDao().create(operationRuleDefinitionMap);
             }
         }
+        McRuleRegistry.getInstance().invalidate(ruleDefinition.getId());
     }
 
     public static void deleteRuleDefinition(RuleDefinitionAbstract ruleDefinition) {
@@ -346,6 +349,9 @@ public class RuleUtils {
         DaoUtils.getRuleDefinitionDao().deleteById(ruleDefinition.getId());
         //Remove from operations map
         DaoUtils.getOperationRuleDefinitionMapDao().deleteByRuleDefinitionId(ruleDefinition.getId());
+        //Remove from rules registry and evaluation lock
+        McRuleRegistry.getInstance().invalidate(ruleDefinition.getId());
+        McRuleLocks.remove(ruleDefinition.getId());
         _logger.debug("Item removed:{}", ruleDefinition);
     }
 
@@ -17,14 +17,15 @@
 package org.mycontroller.standalone.scripts;
 
 import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.IOException;
 import java.util.HashMap;
 
 import javax.script.Bindings;
-import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptException;
 
+import org.mycontroller.standalone.scripts.McScriptEngineCache.PooledEngine;
+
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -46,55 +47,49 @@ public class McScriptEngine implements Runnable {
             throw new McScriptException("Cannot create script engine, required field is missing!");
         }
 
-        // create a JavaScript engine
-        ScriptEngine engine = null;
-        if (mcScript.getExtension() != null) {
-            engine = McScriptEngineUtils.getScriptEngineManager().getEngineByExtension(mcScript.getExtension());
-        } else if (mcScript.getEngineName() != null) {
-            engine = McScriptEngineUtils.getScriptEngineManager().getEngineByName(mcScript.getEngineName());
-
-        } else {
-            engine = McScriptEngineUtils.getScriptEngineManager().getEngineByMimeType(mcScript.getMimeType());
-        }
-        //check requested engine is available
-        if (engine == null) {
-            //McScriptEngineUtils.listAvailableEngines();
-            throw new McScriptException("Requested engine is not available! " + mcScript);
-        }
+        // take an engine from the pool
+        PooledEngine pooled = McScriptEngineCache.getInstance().borrow(mcScript);
+        try {
+            ScriptEngine engine = pooled.getEngine();
+            // bindings are isolated per invocation
+            Bindings bindings = engine.createBindings();
 
-        //Load pre-conditions
-        McScriptEngineUtils.updateMcApi(engine);
+            //Load pre-conditions
+            McScriptEngineUtils.updateMcApi(bindings);
 
-        //Load bindings, if we have any
-        if (mcScript.getBindings() != null) {
-            for (String key : mcScript.getBindings().keySet()) {
-                engine.put(key, mcScript.getBindings().get(key));
+            //Load bindings, if we have any
+            if (mcScript.getBindings() != null) {
+                bindings.putAll(mcScript.getBindings());
             }
-        }
 
-        Object result = null;
-        // evaluate JavaScript code from String
-        if (mcScript.getData() != null) {
-            result = engine.eval(mcScript.getData());
-        } else { // evaluate JavaScript code from file
-            FileReader scriptFileReader = null;
-            if (mcScript.getCanonicalPath() != null) {
-                scriptFileReader = new FileReader(mcScript.getCanonicalPath());
-            } else {
-                scriptFileReader = new FileReader(mcScript.getName());
+            Object result = null;
+            // evaluate JavaScript code from String
+            if (mcScript.getData() != null) {
+                result = engine.eval(mcScript.getData(), bindings);
+            } else { // evaluate compiled script from file
+                String fileName = mcScript.getCanonicalPath() != null ? mcScript.getCanonicalPath()
+                        : mcScript.getName();
+                try {
+                    result = McScriptEngineCache.getInstance().eval(pooled, fileName, bindings);
+                } catch (FileNotFoundException ex) {
+                    throw ex;
+                } catch (IOException ex) {
+                    throw new McScriptException(ex.getMessage());
+                }
             }
-            result = engine.eval(scriptFileReader);
-        }
 
-        if (result == null) {
-            result = engine.get(McScriptEngineUtils.MC_SCRIPT_RESULT);
-        } else if (engine.get(McScriptEngineUtils.MC_SCRIPT_RESULT) == null) {
-            engine.put(McScriptEngineUtils.MC_SCRIPT_RESULT, result);
+            if (result == null) {
+                result = bindings.get(McScriptEngineUtils.MC_SCRIPT_RESULT);
+            } else if (bindings.get(McScriptEngineUtils.MC_SCRIPT_RESULT) == null) {
+                bindings.put(McScriptEngineUtils.MC_SCRIPT_RESULT, result);
+            }
+            engineScopes = bindings;
+            _logger.debug("{}, \nResult: {}", mcScript, result);
+            _logger.debug("Script bindings:[{}]\n{}", getBindings(), mcScript);
+            return result;
+        } finally {
+            McScriptEngineCache.getInstance().release(pooled);
         }
-        engineScopes = engine.getBindings(ScriptContext.ENGINE_SCOPE);
-        _logger.debug("{}, \nResult: {}", mcScript, result);
-        _logger.debug("Script bindings:[{}]\n{}", getBindings(), mcScript);
-        return result;
     }
 
     public HashMap<String, Object> getBindings() {
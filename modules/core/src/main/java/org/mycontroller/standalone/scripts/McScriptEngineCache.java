@@ -0,0 +1,177 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.scripts;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps idle script engines per language and the scripts compiled on them.<br>
+ * An engine is used by a single invocation at a time, compiled scripts are keyed by canonical path
+ * and recompiled when the file is modified.
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+@Slf4j
+public class McScriptEngineCache {
+    private static final int MAX_IDLE_ENGINES = 4;
+
+    private static McScriptEngineCache _instance = new McScriptEngineCache();
+
+    // idle engines, key: extension, engine name or mime type
+    private final ConcurrentHashMap<String, ArrayBlockingQueue<PooledEngine>> pool =
+            new ConcurrentHashMap<String, ArrayBlockingQueue<PooledEngine>>();
+    // key: engine name
+    private final ConcurrentHashMap<String, Statistics> statistics = new ConcurrentHashMap<String, Statistics>();
+
+    private McScriptEngineCache() {
+    }
+
+    public static McScriptEngineCache getInstance() {
+        return _instance;
+    }
+
+    public PooledEngine borrow(McScript mcScript) throws McScriptException {
+        String key = getKey(mcScript);
+        ArrayBlockingQueue<PooledEngine> idle = pool.get(key);
+        PooledEngine pooled = idle != null ? idle.poll() : null;
+        if (pooled != null) {
+            return pooled;
+        }
+        ScriptEngine engine = null;
+        if (mcScript.getExtension() != null) {
+            engine = McScriptEngineUtils.getScriptEngineManager().getEngineByExtension(mcScript.getExtension());
+        } else if (mcScript.getEngineName() != null) {
+            engine = McScriptEngineUtils.getScriptEngineManager().getEngineByName(mcScript.getEngineName());
+        } else {
+            engine = McScriptEngineUtils.getScriptEngineManager().getEngineByMimeType(mcScript.getMimeType());
+        }
+        //check requested engine is available
+        if (engine == null) {
+            throw new McScriptException("Requested engine is not available! " + mcScript);
+        }
+        _logger.debug("Created script engine:{} for {}", engine.getFactory().getEngineName(), key);
+        return new PooledEngine(key, engine, new HashMap<String, CompiledEntry>());
+    }
+
+    public void release(PooledEngine pooled) {
+        ArrayBlockingQueue<PooledEngine> idle = pool.get(pooled.getKey());
+        if (idle == null) {
+            pool.putIfAbsent(pooled.getKey(), new ArrayBlockingQueue<PooledEngine>(MAX_IDLE_ENGINES));
+            idle = pool.get(pooled.getKey());
+        }
+        // discard, if we have enough idle engines
+        idle.offer(pooled);
+    }
+
+    public Object eval(PooledEngine pooled, String fileName, Bindings bindings) throws ScriptException,
+            IOException {
+        File file = new File(fileName);
+        ScriptEngine engine = pooled.getEngine();
+        if (!(engine instanceof Compilable)) {
+            try (FileReader reader = new FileReader(file)) {
+                return engine.eval(reader, bindings);
+            }
+        }
+        Statistics stats = getStatistics(engine);
+        String canonicalPath = file.getCanonicalPath();
+        CompiledEntry entry = pooled.getCompiled().get(canonicalPath);
+        if (entry != null && entry.getLastModified() == file.lastModified() && entry.getSize() == file.length()) {
+            stats.hits.incrementAndGet();
+            return entry.getScript().eval(bindings);
+        }
+        stats.misses.incrementAndGet();
+        long lastModified = file.lastModified();
+        long size = file.length();
+        long start = System.currentTimeMillis();
+        CompiledScript script = null;
+        try (FileReader reader = new FileReader(file)) {
+            script = ((Compilable) engine).compile(reader);
+        }
+        stats.compileTime.addAndGet(System.currentTimeMillis() - start);
+        pooled.getCompiled().put(canonicalPath, new CompiledEntry(lastModified, size, script));
+        return script.eval(bindings);
+    }
+
+    public HashMap<String, Object> getStatistics(String engineName) {
+        Statistics stats = statistics.get(engineName);
+        HashMap<String, Object> data = new HashMap<String, Object>();
+        data.put("cacheHits", stats != null ? stats.hits.get() : 0L);
+        data.put("cacheMisses", stats != null ? stats.misses.get() : 0L);
+        data.put("compileTime", stats != null ? stats.compileTime.get() : 0L);
+        return data;
+    }
+
+    private Statistics getStatistics(ScriptEngine engine) {
+        String engineName = engine.getFactory().getEngineName();
+        Statistics stats = statistics.get(engineName);
+        if (stats == null) {
+            statistics.putIfAbsent(engineName, new Statistics());
+            stats = statistics.get(engineName);
+        }
+        return stats;
+    }
+
+    private String getKey(McScript mcScript) {
+        if (mcScript.getExtension() != null) {
+            return "extension:" + mcScript.getExtension();
+        } else if (mcScript.getEngineName() != null) {
+            return "name:" + mcScript.getEngineName();
+        }
+        return "mime:" + mcScript.getMimeType();
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class PooledEngine {
+        private final String key;
+        private final ScriptEngine engine;
+        // used only by the invocation holding this engine
+        private final HashMap<String, CompiledEntry> compiled;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    static class CompiledEntry {
+        private final long lastModified;
+        private final long size;
+        private final CompiledScript script;
+    }
+
+    static class Statistics {
+        private final AtomicLong hits = new AtomicLong(0);
+        private final AtomicLong misses = new AtomicLong(0);
+        // milliseconds
+        private final AtomicLong compileTime = new AtomicLong(0);
+    }
+}
@@ -23,7 +23,6 @@ import java.util.HashMap;
 import java.util.List;
 
 import javax.script.Bindings;
-import javax.script.ScriptEngine;
 import javax.script.ScriptEngineFactory;
 import javax.script.ScriptEngineManager;
 
@@ -74,8 +73,8 @@ public class McScriptEngineUtils {
     }
 
     //Load mc api details
-    public static void updateMcApi(ScriptEngine engine) {
-        engine.put(MC_API, new McScriptApi());
+    public static void updateMcApi(Bindings bindings) {
+        bindings.put(MC_API, new McScriptApi());
     }
 
     public static HashMap<String, Object> getBindings(Bindings bindings) {
@@ -101,6 +100,8 @@ public class McScriptEngineUtils {
             engine.put("languageVersion", factory.getLanguageVersion());
             engine.put("extensions", factory.getExtensions());
             engine.put("alias", factory.getNames());
+            // compiled script cache
+            engine.putAll(McScriptEngineCache.getInstance().getStatistics(factory.getEngineName()));
             engines.add(engine);
         }
         return engines;
@@ -28,6 +28,7 @@ import org.mycontroller.standalone.db.ResourcesLogsUtils.LOG_LEVEL;
 import org.mycontroller.standalone.db.tables.Timer;
 import org.mycontroller.standalone.operation.model.Operation;
 import org.mycontroller.standalone.operation.model.OperationSendPayload;
+import org.mycontroller.standalone.rule.McRuleStateStore;
 import org.mycontroller.standalone.scheduler.SchedulerUtils;
 import org.mycontroller.standalone.timer.TimerSimple;
 import org.mycontroller.standalone.timer.TimerUtils.TIMER_TYPE;
@@ -56,6 +57,8 @@ public class TimerJob extends Job {
             for (Operation operation : timer.getOperations()) {
                 try {
                     operation.execute(timer);
+                    operation.setLastExecution(System.currentTimeMillis());
+                    McRuleStateStore.getInstance().updateOperation(operation.getOperationTable());
                 } catch (Exception ex) {
                     _logger.error("Exception,", ex);
                 }
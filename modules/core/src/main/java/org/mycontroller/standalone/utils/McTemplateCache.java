@@ -0,0 +1,145 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.FileUtils;
+import org.mycontroller.standalone.scripts.McScriptApi;
+import org.mycontroller.standalone.scripts.McScriptEngineUtils;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+import freemarker.template.TemplateExceptionHandler;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps parsed freemarker templates, template files are keyed by canonical path and parsed again when the file
+ * is modified. Inline templates (operation subject, body, etc.,) are keyed by source.
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+@Slf4j
+public class McTemplateCache {
+    private static final int MAX_INLINE_TEMPLATES = 100;
+
+    private static McTemplateCache _instance = new McTemplateCache();
+
+    private final Configuration configuration;
+    private final ConcurrentHashMap<String, TemplateEntry> templates = new ConcurrentHashMap<String, TemplateEntry>();
+    // least recently used inline templates
+    private final Map<String, Template> inlineTemplates = new LinkedHashMap<String, Template>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Template> eldest) {
+            return size() > MAX_INLINE_TEMPLATES;
+        }
+    };
+
+    private McTemplateCache() {
+        configuration = new Configuration(Configuration.VERSION_2_3_23);
+        configuration.setDefaultEncoding(StandardCharsets.UTF_8.name());
+        // error goes to the caller, not in to the rendered output
+        configuration.setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
+        configuration.setLogTemplateExceptions(false);
+    }
+
+    public static McTemplateCache getInstance() {
+        return _instance;
+    }
+
+    public void render(File file, HashMap<String, Object> bindings, Writer writer) throws IOException,
+            TemplateException {
+        getTemplate(file).process(getDataModel(bindings), writer);
+    }
+
+    public void render(String source, HashMap<String, Object> bindings, Writer writer) throws IOException,
+            TemplateException {
+        Template template = null;
+        synchronized (inlineTemplates) {
+            template = inlineTemplates.get(source);
+        }
+        if (template == null) {
+            template = new Template("inline", new StringReader(source), configuration);
+            synchronized (inlineTemplates) {
+                inlineTemplates.put(source, template);
+            }
+        }
+        template.process(getDataModel(bindings), writer);
+    }
+
+    public void invalidate(String canonicalPath) {
+        templates.remove(canonicalPath);
+    }
+
+    public void invalidateAll() {
+        templates.clear();
+        synchronized (inlineTemplates) {
+            inlineTemplates.clear();
+        }
+    }
+
+    private Template getTemplate(File file) throws IOException {
+        String canonicalPath = file.getCanonicalPath();
+        TemplateEntry entry = templates.get(canonicalPath);
+        if (entry != null && entry.getLastModified() == file.lastModified() && entry.getSize() == file.length()) {
+            return entry.getTemplate();
+        }
+        long lastModified = file.lastModified();
+        long size = file.length();
+        Template template = null;
+        try (Reader reader = new InputStreamReader(FileUtils.openInputStream(file), StandardCharsets.UTF_8)) {
+            template = new Template(file.getName(), reader, configuration);
+        }
+        templates.put(canonicalPath, new TemplateEntry(lastModified, size, template));
+        _logger.debug("Template parsed and cached: {}", canonicalPath);
+        return template;
+    }
+
+    private HashMap<String, Object> getDataModel(HashMap<String, Object> bindings) {
+        HashMap<String, Object> dataModel = new HashMap<String, Object>();
+        if (bindings != null) {
+            dataModel.putAll(bindings);
+        }
+        dataModel.put(McScriptEngineUtils.MC_API, new McScriptApi());
+        return dataModel;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    static class TemplateEntry {
+        private final long lastModified;
+        private final long size;
+        private final Template template;
+    }
+}
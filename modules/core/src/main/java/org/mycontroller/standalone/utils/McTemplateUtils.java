@@ -19,6 +19,8 @@ package org.mycontroller.standalone.utils;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -39,10 +41,7 @@ import org.mycontroller.standalone.api.jaxrs.model.Query;
 import org.mycontroller.standalone.api.jaxrs.model.QueryResponse;
 import org.mycontroller.standalone.exceptions.McBadRequestException;
 import org.mycontroller.standalone.model.McTemplate;
-import org.mycontroller.standalone.scripts.McScript;
-import org.mycontroller.standalone.scripts.McScriptEngine;
 import org.mycontroller.standalone.scripts.McScriptEngineUtils;
-import org.mycontroller.standalone.scripts.McScriptEngineUtils.SCRIPT_TYPE;
 
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
@@ -166,6 +165,7 @@ public class McTemplateUtils {
         for (String templateFile : templateFiles) {
             String fileFullPath = templatesLocation + templateFile;
             if (McUtils.isInScope(templatesLocation, fileFullPath)) {
+                McTemplateCache.getInstance().invalidate(FileUtils.getFile(fileFullPath).getCanonicalPath());
                 if (FileUtils.deleteQuietly(FileUtils.getFile(fileFullPath))) {
                     _logger.debug("File deleted successfully! {}", fileFullPath);
                 } else {
@@ -218,32 +218,39 @@ public class McTemplateUtils {
     }
 
     public static String execute(String templateName, HashMap<String, Object> bindings) throws Exception {
-        McTemplate mcTemplate = McTemplateUtils.get(templateName);
-        if (mcTemplate == null) {
-            throw new McBadRequestException("Template[" + templateName + "] not available!");
-        }
-        McScript mcTemplateScript = null;
-        String templateResult = null;
-        //Map and execute script result with template
+        StringWriter writer = new StringWriter();
+        execute(templateName, bindings, writer);
+        return writer.toString();
+    }
+
+    public static void execute(String templateName, HashMap<String, Object> bindings, Writer writer)
+            throws Exception {
+        File templateFile = getTemplateFile(templateName);
+        //Map and execute script result with template, parsed template reused until the file modified
         try {
-            mcTemplateScript = McScript.builder()
-                    .canonicalPath(mcTemplate.getCanonicalPath())
-                    .type(SCRIPT_TYPE.OPERATION)
-                    .engineName(McScriptEngineUtils.MC_TEMPLATE_ENGINE)
-                    .bindings(bindings)
-                    .build();
-            McScriptEngine templateEngine = new McScriptEngine(mcTemplateScript);
-            templateResult = (String) templateEngine.executeScript();
+            McTemplateCache.getInstance().render(templateFile, bindings, writer);
         } catch (Exception ex) {
-            if (ex.getMessage() == null) {
-                templateResult = "Exception: null";
-            } else {
-                templateResult = ex.getMessage();
-            }
-            _logger.error("Exception:{},", mcTemplateScript, ex);
+            _logger.error("Exception:{},", templateFile, ex);
             throw ex;
         }
-        return templateResult;
+    }
+
+    private static File getTemplateFile(String templateName) throws IOException, IllegalAccessException,
+            McBadRequestException {
+        String templatesLocation = McUtils.getDirectoryLocation(FileUtils.getFile(
+                AppProperties.getInstance().getTemplatesLocation()).getCanonicalPath());
+        String fileFullPath = templatesLocation + templateName;
+        if (!McUtils.isInScope(templatesLocation, fileFullPath)) {
+            _logger.warn("Trying to get file from outside scope! Filepath:{}, CanonicalPath:{}",
+                    fileFullPath,
+                    FileUtils.getFile(fileFullPath).getCanonicalPath());
+            throw new IllegalAccessException("Trying to get file from outside scope!");
+        }
+        File templateFile = FileUtils.getFile(fileFullPath);
+        if (!templateFile.exists()) {
+            throw new McBadRequestException("Template[" + templateName + "] not available!");
+        }
+        return templateFile;
     }
 
     public static void upload(McTemplate mcTemplate) throws IOException, IllegalAccessException,
@@ -257,6 +264,7 @@ public class McTemplateUtils {
         String fileFullPath = AppProperties.getInstance().getTemplatesLocation()
                 + mcTemplate.getName() + "." + mcTemplate.getExtension();
         FileUtils.writeStringToFile(FileUtils.getFile(fileFullPath), (String) mcTemplate.getData(), false);
+        McTemplateCache.getInstance().invalidate(FileUtils.getFile(fileFullPath).getCanonicalPath());
         _logger.debug("Write success! File:{}", fileFullPath);
     }
 }
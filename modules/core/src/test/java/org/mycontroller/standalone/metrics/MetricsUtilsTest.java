@@ -0,0 +1,54 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.metrics;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mycontroller.standalone.metrics.engine.McMetricsRollup;
+import org.mycontroller.standalone.metrics.engine.conf.MetricEngineConfigMyController;
+
+/**
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+public class MetricsUtilsTest {
+
+    @Before
+    public void setUp() {
+        McMetricsRollup.getInstance().start();
+    }
+
+    @After
+    public void tearDown() {
+        McMetricsRollup.getInstance().stop();
+    }
+
+    @Test
+    public void pingKeepsRollupRunning() throws Exception {
+        MetricEngineConfigMyController conf = new MetricEngineConfigMyController();
+        conf.setType(METRIC_ENGINE.MY_CONTROLLER);
+        try {
+            MetricsUtils.ping(conf);
+        } catch (RuntimeException ex) {
+            // application settings are not loaded here, the pong may fail. The engine is closed anyway
+        }
+        assertTrue(McMetricsRollup.getInstance().isEnabled());
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2015-2021 Jeeva Kandasamy (jkandasa@gmail.com)
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mycontroller.standalone.metrics.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.influxdb.InfluxDB;
+import org.influxdb.InfluxDBFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Runs the pipeline against a local HTTP stand-in of InfluxDB
+ *
+ * @author Jeeva Kandasamy (jkandasa)
+ * @since 1.6.0
+ */
+public class McInfluxDBPipelineTest {
+    private static final String DATABASE = "mc_test";
+    private static final long TIMEOUT = 10 * 1000;
+
+    private final List<String> received = Collections.synchronizedList(new ArrayList<String>());
+    private HttpServer server = null;
+    private int port = 0;
+    private File directory = null;
+    private InfluxDB client = null;
+    private McInfluxDBPipeline pipeline = null;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("mc_influxdb_spill").toFile();
+        startServer();
+        client = InfluxDBFactory.connect("http://127.0.0.1:" + port);
+        pipeline = new McInfluxDBPipeline(client, DATABASE, 5, 100L, 1, null, directory.getAbsolutePath());
+        pipeline.setPingInterval(100);
+    }
+
+    @After
+    public void tearDown() {
+        pipeline.stop();
+        client.close();
+        stopServer();
+        FileUtils.deleteQuietly(directory);
+    }
+
+    @Test
+    public void testWrite() throws InterruptedException {
+        pipeline.start();
+        addPoints(0, 12);
+        waitFor(12);
+        McInfluxDBPipelineStatistics statistics = pipeline.getStatistics();
+        assertEquals(12, statistics.getCountWritten());
+        assertEquals(0, statistics.getCountSpilled());
+        assertEquals(0, spillFiles().length);
+    }
+
+    @Test
+    public void testSpillWhenUnreachable() throws InterruptedException {
+        stopServer();
+        pipeline.start();
+        addPoints(0, 12);
+        long end = System.currentTimeMillis() + TIMEOUT;
+        while (pipeline.getStatistics().getCountSpilled() < 12 && System.currentTimeMillis() < end) {
+            Thread.sleep(50);
+        }
+        McInfluxDBPipelineStatistics statistics = pipeline.getStatistics();
+        assertEquals(12, statistics.getCountSpilled());
+        assertEquals(0, statistics.getCountWritten());
+        assertTrue(spillFiles().length > 0);
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    public void testReplayAfterPingRecovers() throws IOException, InterruptedException {
+        stopServer();
+        pipeline.start();
+        addPoints(0, 12);
+        long end = System.currentTimeMillis() + TIMEOUT;
+        while (pipeline.getStatistics().getCountSpilled() < 12 && System.currentTimeMillis() < end) {
+            Thread.sleep(50);
+        }
+        assertTrue(spillFiles().length > 0);
+
+        startServer();
+        waitFor(12);
+        McInfluxDBPipelineStatistics statistics = pipeline.getStatistics();
+        assertTrue(statistics.isReachable());
+        assertEquals(12, statistics.getCountRetried());
+        assertEquals(0, spillFiles().length);
+        // replayed in the order of the spilled batches
+        for (int index = 0; index < 12; index++) {
+            assertEquals(point(index), received.get(index));
+        }
+    }
+
+    private void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext("/ping", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().add("X-Influxdb-Version", "1.8.0");
+                exchange.sendResponseHeaders(204, -1);
+                exchange.close();
+            }
+        });
+        server.createContext("/write", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                InputStream body = exchange.getRequestBody();
+                for (String line : IOUtils.toString(body, StandardCharsets.UTF_8.name()).split("\n")) {
+                    if (!line.trim().isEmpty()) {
+                        received.add(line.trim());
+                    }
+                }
+                exchange.sendResponseHeaders(204, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+        port = server.getAddress().getPort();
+    }
+
+    private void stopServer() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    private String point(int index) {
+        return "mc_resource_double,internalId=1,type=SENSOR value=" + index + " " + (1000000L + index);
+    }
+
+    private void addPoints(int from, int count) {
+        for (int index = from; index < from + count; index++) {
+            pipeline.add(point(index));
+        }
+    }
+
+    private void waitFor(int count) throws InterruptedException {
+        long end = System.currentTimeMillis() + TIMEOUT;
+        while (received.size() < count && System.currentTimeMillis() < end) {
+            Thread.sleep(50);
+        }
+        assertEquals(count, received.size());
+    }
+
+    private File[] spillFiles() {
+        File[] files = directory.listFiles();
+        return files != null ? files : new File[0];
+    }
+}